@@ -0,0 +1,90 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.ConnectionThreads;
+import com.gmail.tylersyme.checkers.connection.Heartbeat;
+import com.gmail.tylersyme.checkers.server.GameServer;
+import com.gmail.tylersyme.checkers.server.ThreadedGameServer;
+
+/**
+ * Runs a dedicated multiplayer server without opening a window. Players join
+ * it through "Connect to Game" with the server's address:
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.CheckersServer [-port &lt;port&gt;]
+ *                                                 [-mode &lt;mode&gt;]
+ *                                                 [-heartbeat &lt;millis&gt;]
+ * </pre>
+ * <ul>
+ * <li>-port: The port to listen on ({@link ConnectionHandler#PORT} by
+ * default, which is the only port the game connects to)</li>
+ * <li>-mode: "selector" (the default) serves every player from one thread
+ * with a {@link GameServer}. "virtual" and "platform" give each player a
+ * thread of their own with a {@link ThreadedGameServer}, on virtual threads
+ * (where this version of Java has them) or ordinary ones.</li>
+ * <li>-heartbeat: How often a {@link GameServer} pings each game
+ * ({@link Heartbeat#DEFAULT_INTERVAL} by default)</li>
+ * </ul>
+ */
+public class CheckersServer
+{
+	public static void main(String[] args)
+	{
+		int port = ConnectionHandler.PORT;
+		String mode = "selector";
+		long heartbeatInterval = Heartbeat.getDefaultInterval();
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-port"))
+			{
+				port = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-mode"))
+			{
+				mode = args[i + 1];
+			} else if (args[i].equals("-heartbeat"))
+			{
+				heartbeatInterval = Long.parseLong(args[i + 1]);
+			}
+		}
+
+		if (mode.equals("selector"))
+		{
+			GameServer server = new GameServer(port);
+			server.setHeartbeatInterval(heartbeatInterval);
+			try
+			{
+				server.open();
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			System.out.println("Serving games on port " + port);
+			server.run();
+		} else
+		{
+			ExecutorService executor = ConnectionThreads.newExecutor(mode
+					.equals("virtual"));
+			ThreadedGameServer server = new ThreadedGameServer(port, executor);
+			try
+			{
+				server.open();
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			System.out.println("Serving games on port " + port + " with "
+					+ ((ConnectionThreads.isVirtual(executor)) ? ("virtual")
+							: ("platform")) + " threads");
+			server.run();
+		}
+	}
+
+}
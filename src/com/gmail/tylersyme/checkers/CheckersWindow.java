@@ -2,13 +2,12 @@ package com.gmail.tylersyme.checkers;
 
 import java.awt.Dimension;
 import java.awt.Toolkit;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 
 import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
 import com.gmail.tylersyme.checkers.game.CheckerGamePanel;
 
 public class CheckersWindow extends JFrame
@@ -32,20 +31,16 @@ public class CheckersWindow extends JFrame
 	/**
 	 * This will cause the window to launch a new multiplayer checkers game.
 	 * 
-	 * @param output
-	 * @param input
+	 * @param connection The connection to the other player
 	 */
-	public void startNewMultiplayerGame(
-			ObjectOutputStream output,
-			ObjectInputStream input)
+	public void startNewMultiplayerGame(PacketConnection connection)
 	{
 		this.setContentPane(this.checkerGamePanel);
 
 		// Tells the internal Checkerboard (which contains the game logic)
 		// to start the multiplayer game
 		this.checkerGamePanel.getCheckerboard().startNewMultiplayerGame(
-				output,
-				input);
+				connection);
 
 		this.revalidate();
 		this.pack();
@@ -53,6 +48,22 @@ public class CheckersWindow extends JFrame
 		this.repaint(); // Repaints the entire window
 	}
 	
+	/**
+	 * This will cause the window to launch a new singleplayer checkers game
+	 * against the computer.
+	 */
+	public void startNewSingleplayerGame()
+	{
+		this.setContentPane(this.checkerGamePanel);
+
+		this.checkerGamePanel.getCheckerboard().startNewSingleplayerGame();
+
+		this.revalidate();
+		this.pack();
+		this.centerWindow();
+		this.repaint(); // Repaints the entire window
+	}
+
 	public void openMainMenu()
 	{
 		ConnectionHandler.disconnect();
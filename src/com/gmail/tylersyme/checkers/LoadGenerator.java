@@ -0,0 +1,849 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.ConnectionThreads;
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.server.Matchmaker;
+
+/**
+ * <p>
+ * Simulates many players at once against a multiplayer server, without
+ * opening a window. Each player connects just as "Connect to Game" does,
+ * waits to be paired, and then plays random legal moves, pausing before each
+ * one. Now and then a player also sends a chat message or asks for a draw,
+ * which its opponent declines.
+ * </p>
+ * <p>
+ * When both players of a game are simulated here, each move's round trip is
+ * measured: the time for a move to reach the opponent plus the time for the
+ * opponent's reply to come back, leaving out the pause in between.
+ * </p>
+ * <p>
+ * Spectators may be added too. Each asks the server to watch its most watched
+ * match, and counts what it is sent until the match ends. A spectator can be
+ * made to read slowly, to check that it never holds up the players.
+ * </p>
+ * At the end the connect and pairing times, the move round trip times and
+ * any failures are reported.
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.LoadGenerator [-host &lt;address&gt;] [-port &lt;port&gt;]
+ *         [-players &lt;n&gt;] [-delay &lt;millis&gt;] [-moves &lt;n&gt;] [-chat &lt;chance&gt;]
+ *         [-draw &lt;chance&gt;] [-ratings &lt;spread&gt;] [-protocol binary|legacy]
+ *         [-spectators &lt;n&gt;] [-spectatorDelay &lt;millis&gt;] [-seed &lt;n&gt;]
+ * </pre>
+ * <ul>
+ * <li>-host, -port: The server (localhost and {@link ConnectionHandler#PORT}
+ * by default)</li>
+ * <li>-players: How many players connect (1000 by default)</li>
+ * <li>-delay: How long a player pauses before each move (100 milliseconds by
+ * default)</li>
+ * <li>-moves: How many moves a player makes before resigning (40 by
+ * default)</li>
+ * <li>-chat, -draw: The chance of sending a chat message or a draw request
+ * with each move (0.1 and 0.02 by default)</li>
+ * <li>-ratings: Gives each player a random rating within this far of
+ * {@link Matchmaker#DEFAULT_RATING}, which they ask the server to match them
+ * by (0 by default, when players give no rating)</li>
+ * <li>-protocol: "legacy" connects as an older version of the game would,
+ * without offering the binary protocol, and plays by the older rules: now
+ * and then a player steps when it could capture, or stops a multi-jump after
+ * the first jump</li>
+ * <li>-spectators: How many spectators connect once the players have (0 by
+ * default)</li>
+ * <li>-spectatorDelay: How long a spectator pauses after each packet it
+ * reads (0 by default)</li>
+ * </ul>
+ */
+public class LoadGenerator
+{
+	// How long a player waits to hear from the server before giving up
+	private static final int TIMEOUT = 30000;
+
+	// Starts the chat message which tells the opponent who is playing them
+	private static final String HELLO = "load:";
+
+	public static void main(String[] args)
+	{
+		String host = "localhost";
+		int port = ConnectionHandler.PORT;
+		int players = 1000;
+		long delay = 100;
+		int moves = 40;
+		double chatChance = 0.1;
+		double drawChance = 0.02;
+		int ratingSpread = 0;
+		boolean isLegacy = false;
+		int spectators = 0;
+		long spectatorDelay = 0;
+		long seed = System.nanoTime();
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			String value = args[i + 1];
+
+			if (args[i].equals("-host"))
+			{
+				host = value;
+			} else if (args[i].equals("-port"))
+			{
+				port = Integer.parseInt(value);
+			} else if (args[i].equals("-players"))
+			{
+				players = Integer.parseInt(value);
+			} else if (args[i].equals("-delay"))
+			{
+				delay = Long.parseLong(value);
+			} else if (args[i].equals("-moves"))
+			{
+				moves = Integer.parseInt(value);
+			} else if (args[i].equals("-chat"))
+			{
+				chatChance = Double.parseDouble(value);
+			} else if (args[i].equals("-draw"))
+			{
+				drawChance = Double.parseDouble(value);
+			} else if (args[i].equals("-ratings"))
+			{
+				ratingSpread = Integer.parseInt(value);
+			} else if (args[i].equals("-protocol"))
+			{
+				isLegacy = value.equals("legacy");
+			} else if (args[i].equals("-spectators"))
+			{
+				spectators = Integer.parseInt(value);
+			} else if (args[i].equals("-spectatorDelay"))
+			{
+				spectatorDelay = Long.parseLong(value);
+			} else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(value);
+			}
+		}
+
+		LoadGenerator generator = new LoadGenerator(
+				players,
+				delay,
+				moves,
+				chatChance,
+				drawChance,
+				ratingSpread,
+				isLegacy);
+		generator.setSpectators(spectators, spectatorDelay);
+
+		InetSocketAddress address;
+		try
+		{
+			address = new InetSocketAddress(InetAddress.getByName(host), port);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+
+		System.out.println(String.format(
+				"%,d players against %s, one move every %d ms",
+				players,
+				address,
+				delay));
+
+		long start = System.nanoTime();
+		generator.run(address, seed);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		generator.printResults(seconds);
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Times which are sorted once everything has been recorded.
+	 */
+	private static class Samples
+	{
+		private long[] values = new long[1024];
+		private int count = 0;
+
+		private synchronized void add(long value)
+		{
+			if (this.count == this.values.length)
+			{
+				this.values = Arrays.copyOf(this.values, this.count * 2);
+			}
+			this.values[this.count++] = value;
+		}
+
+		/**
+		 * @return The times in milliseconds at the 50th, 90th, 99th and
+		 *         100th percentiles
+		 */
+		private synchronized String describe()
+		{
+			if (this.count == 0)
+				return "no samples";
+
+			Arrays.sort(this.values, 0, this.count);
+
+			return String.format(
+					"p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms (%,d samples)",
+					this.getPercentile(0.5) / 1e6,
+					this.getPercentile(0.9) / 1e6,
+					this.getPercentile(0.99) / 1e6,
+					this.values[this.count - 1] / 1e6,
+					this.count);
+		}
+
+		private long getPercentile(double fraction)
+		{
+			return this.values[Math.min(
+					this.count - 1,
+					(int) (fraction * this.count))];
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private int playerCount;
+	private long delay;
+	private int maxMoves;
+	private double chatChance;
+	private double drawChance;
+	private int ratingSpread;
+	private boolean isLegacy;
+	private int spectatorCount = 0;
+	private long spectatorDelay = 0;
+
+	private Player[] players;
+
+	private Samples connectTimes = new Samples();
+	private Samples pairingTimes = new Samples();
+	private Samples roundTripTimes = new Samples();
+
+	private AtomicInteger connectFailures = new AtomicInteger();
+	private AtomicInteger dropped = new AtomicInteger();
+	private AtomicInteger finished = new AtomicInteger();
+	private AtomicInteger movesPlayed = new AtomicInteger();
+	private AtomicInteger chatsSent = new AtomicInteger();
+	private AtomicInteger drawsRequested = new AtomicInteger();
+	private AtomicInteger boardSyncs = new AtomicInteger();
+	private AtomicInteger forfeits = new AtomicInteger();
+	private AtomicLong totalRatingGap = new AtomicLong();
+	private AtomicInteger ratedGames = new AtomicInteger();
+	private AtomicInteger spectatorsFinished = new AtomicInteger();
+	private AtomicInteger spectatorsDropped = new AtomicInteger();
+	private AtomicLong spectatorPackets = new AtomicLong();
+	private AtomicInteger spectatorSyncs = new AtomicInteger();
+
+	/**
+	 * @param playerCount
+	 * @param delay How long a player pauses before each move
+	 * @param maxMoves How many moves a player makes before resigning
+	 * @param chatChance The chance of a chat message with each move
+	 * @param drawChance The chance of a draw request with each move
+	 * @param ratingSpread How far from the default rating the players'
+	 *            ratings may be, or 0 for players who give no rating
+	 * @param isLegacy Whether the players connect as older games would
+	 */
+	public LoadGenerator(
+			int playerCount,
+			long delay,
+			int maxMoves,
+			double chatChance,
+			double drawChance,
+			int ratingSpread,
+			boolean isLegacy)
+	{
+		this.playerCount = playerCount;
+		this.delay = delay;
+		this.maxMoves = maxMoves;
+		this.chatChance = chatChance;
+		this.drawChance = drawChance;
+		this.ratingSpread = ratingSpread;
+		this.isLegacy = isLegacy;
+	}
+
+	/**
+	 * @param spectatorCount How many spectators connect once the players
+	 *            have
+	 * @param spectatorDelay How long a spectator pauses after each packet
+	 */
+	public void setSpectators(int spectatorCount, long spectatorDelay)
+	{
+		this.spectatorCount = spectatorCount;
+		this.spectatorDelay = spectatorDelay;
+	}
+
+	/**
+	 * Connects every player and spectator and waits for all of them to
+	 * finish.
+	 *
+	 * @param address The server
+	 * @param seed Chooses the players' moves
+	 */
+	public void run(final InetSocketAddress address, long seed)
+	{
+		ExecutorService executor = ConnectionThreads.newExecutor(true);
+		final CountDownLatch done = new CountDownLatch(this.playerCount
+				+ this.spectatorCount);
+
+		this.players = new Player[this.playerCount];
+		for (int i = 0; i < this.playerCount; i++)
+		{
+			this.players[i] = new Player(i, new Random(seed + i));
+		}
+
+		for (final Player player : this.players)
+		{
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					try
+					{
+						player.play(address);
+					} finally
+					{
+						done.countDown();
+					}
+				}
+			});
+		}
+
+		for (int i = 0; i < this.spectatorCount; i++)
+		{
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					try
+					{
+						watch(address);
+					} finally
+					{
+						done.countDown();
+					}
+				}
+			});
+		}
+
+		try
+		{
+			done.await();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		executor.shutdown();
+	}
+
+	public void printResults(double seconds)
+	{
+		System.out.println(String.format(
+				"%,d players finished, %,d failed to connect, %,d dropped (%.1fs)",
+				this.finished.get(),
+				this.connectFailures.get(),
+				this.dropped.get(),
+				seconds));
+		System.out.println(String.format(
+				"%,d moves (%.1f/s), %,d chat messages, %,d draw requests",
+				this.movesPlayed.get(),
+				this.movesPlayed.get() / seconds,
+				this.chatsSent.get(),
+				this.drawsRequested.get()));
+		if (this.boardSyncs.get() > 0)
+		{
+			System.out.println(String.format(
+					"%,d packets refused by the server",
+					this.boardSyncs.get()));
+		}
+		if (this.forfeits.get() > 0)
+		{
+			System.out.println(String.format(
+					"%,d games lost to refused packets",
+					this.forfeits.get()));
+		}
+		if (this.spectatorCount > 0)
+		{
+			System.out.println(String.format(
+					"%,d spectators finished, %,d dropped, %,d packets watched, "
+							+ "%,d boards resent to slow spectators",
+					this.spectatorsFinished.get(),
+					this.spectatorsDropped.get(),
+					this.spectatorPackets.get(),
+					this.spectatorSyncs.get()));
+		}
+		if (this.ratedGames.get() > 0)
+		{
+			System.out.println(String.format(
+					"Average rating gap between opponents %.1f",
+					this.totalRatingGap.get() / (double) this.ratedGames.get()));
+		}
+		System.out.println("Connect:          " + this.connectTimes.describe());
+		System.out.println("Pairing:          " + this.pairingTimes.describe());
+		System.out.println("Move round trip:  " + this.roundTripTimes.describe());
+	}
+
+	/**
+	 * Watches the most watched match until it ends, as an older game would.
+	 * The first board is the match as it stands, and any board after that
+	 * means the server found this spectator too far behind.
+	 */
+	private void watch(InetSocketAddress address)
+	{
+		PacketConnection connection;
+		try
+		{
+			Socket socket = new Socket();
+			socket.connect(address, TIMEOUT);
+			socket.setSoTimeout(TIMEOUT + (int) this.delay * this.maxMoves);
+
+			connection = new PacketConnection(socket);
+			connection.send(Packet.watchRequest(-1));
+		} catch (IOException e)
+		{
+			connectFailures.incrementAndGet();
+			return;
+		}
+
+		try
+		{
+			boolean hasBoard = false;
+			while (true)
+			{
+				Packet packet = connection.receive();
+				this.spectatorPackets.incrementAndGet();
+
+				if (packet.getType() == Packet.END_GAME
+						|| (packet.getType() == Packet.DRAW_RESPONSE && packet
+								.getFlag()))
+					break;
+				if (packet.getType() == Packet.BOARD_SYNC)
+				{
+					if (hasBoard)
+					{
+						this.spectatorSyncs.incrementAndGet();
+					}
+					hasBoard = true;
+				}
+
+				if (this.spectatorDelay > 0)
+				{
+					Thread.sleep(this.spectatorDelay);
+				}
+			}
+
+			this.spectatorsFinished.incrementAndGet();
+		} catch (IOException e)
+		{
+			this.spectatorsDropped.incrementAndGet();
+		} catch (InterruptedException e)
+		{
+			this.spectatorsDropped.incrementAndGet();
+		} finally
+		{
+			connection.close();
+		}
+	}
+
+	/**
+	 * @param id As sent in a player's hello
+	 * @return The player, or null if the opponent is not simulated here
+	 */
+	private Player findPlayer(String id)
+	{
+		try
+		{
+			int index = Integer.parseInt(id);
+			if (index >= 0 && index < this.players.length)
+				return this.players[index];
+		} catch (NumberFormatException e)
+		{
+			// A real player who happens to start a message the same way
+		}
+
+		return null;
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * A single simulated player, which keeps its own copy of the board from
+	 * its point of view, as the game does.
+	 */
+	private class Player
+	{
+		private int id;
+		private Random random;
+
+		private PacketConnection connection;
+		private Position position = new Position();
+		private long[] moves = new long[MoveGenerator.MAX_MOVES];
+		private int[] path = new int[Position.SQUARE_COUNT];
+
+		private boolean hasGameStarted = false;
+		private boolean isUsersTurn = false;
+		private boolean isWaitingForMove = false;
+		private int movesMade = 0;
+		private long pairingTime = 0;
+		private int rating;
+
+		// The opponent, once it has said who it is
+		private Player opponent;
+
+		// When this player's last move was sent, and how long the opponent's
+		// last move took to arrive
+		private volatile long moveSentTime;
+		private volatile long transitTime;
+
+		private Player(int id, Random random)
+		{
+			this.id = id;
+			this.random = random;
+			this.rating = Matchmaker.DEFAULT_RATING
+					+ ((ratingSpread > 0) ? (random.nextInt(ratingSpread * 2 + 1)
+							- ratingSpread) : (0));
+		}
+
+		private void play(InetSocketAddress address)
+		{
+			long start = System.nanoTime();
+			try
+			{
+				Socket socket = new Socket();
+				socket.connect(address, TIMEOUT);
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(TIMEOUT + (int) delay);
+
+				this.connection = new PacketConnection(socket);
+				if (isLegacy == false)
+				{
+					this.connection.negotiate();
+				}
+				if (ratingSpread > 0)
+				{
+					this.connection.send(Packet.matchRequest(this.rating));
+				}
+			} catch (IOException e)
+			{
+				connectFailures.incrementAndGet();
+				return;
+			}
+			long connected = System.nanoTime();
+			connectTimes.add(connected - start);
+
+			this.position.setupInitial();
+			try
+			{
+				while (this.handle(this.connection.receive()))
+				{
+					if (this.hasGameStarted == false)
+						continue;
+
+					if (this.pairingTime == 0)
+					{
+						this.pairingTime = System.nanoTime() - connected;
+						pairingTimes.add(this.pairingTime);
+						this.connection.send(Packet.chatMessage(HELLO + this.id));
+					}
+
+					if (this.isUsersTurn && this.playMove() == false)
+						break;
+				}
+
+				finished.incrementAndGet();
+			} catch (IOException e)
+			{
+				dropped.incrementAndGet();
+			} catch (InterruptedException e)
+			{
+				dropped.incrementAndGet();
+			} finally
+			{
+				this.connection.close();
+			}
+		}
+
+		/**
+		 * @return Whether the game goes on
+		 */
+		private boolean handle(Packet packet) throws IOException
+		{
+			switch (packet.getType())
+			{
+				case (Packet.START_GAME):
+					this.hasGameStarted = true;
+					break;
+				case (Packet.PLAYER_TURN):
+					this.isUsersTurn = packet.getFlag();
+					break;
+				case (Packet.CHECKER_MOVE):
+					if (this.isWaitingForMove)
+					{
+						this.isWaitingForMove = false;
+						this.measureRoundTrip();
+					}
+					this.applyOpponentHop(packet);
+					break;
+				case (Packet.END_GAME):
+					// The server ends the match against a player whose packet
+					// it refuses, if it cannot send them the board
+					if (packet.getFlag() == false
+							&& MoveGenerator.hasMoves(this.position, true))
+					{
+						forfeits.incrementAndGet();
+					}
+					return false;
+				case (Packet.REQUEST_DRAW):
+					this.connection.send(Packet.drawResponse(false));
+					break;
+				case (Packet.PING):
+					this.connection.send(Packet.pong(packet.getTime()));
+					break;
+				case (Packet.DRAW_RESPONSE):
+					return (packet.getFlag() == false);
+				case (Packet.BOARD_SYNC):
+					// Only sent if the server disagrees with a move
+					this.position.set(
+							packet.getUserPieces(),
+							packet.getOpponentPieces(),
+							packet.getKings());
+					this.isUsersTurn = packet.getFlag();
+					boardSyncs.incrementAndGet();
+					break;
+				case (Packet.CHAT_MESSAGE):
+					String message = packet.getMessage();
+					if (message.startsWith(HELLO))
+					{
+						this.opponent = findPlayer(message.substring(HELLO
+								.length()));
+						if (this.opponent != null && this.id < this.opponent.id)
+						{
+							totalRatingGap.addAndGet(Math.abs(this.rating
+									- this.opponent.rating));
+							ratedGames.incrementAndGet();
+						}
+					}
+					break;
+			}
+
+			return true;
+		}
+
+		/**
+		 * A move's round trip is the time it took this player's last move to
+		 * reach the opponent, plus the time the reply took to arrive here.
+		 */
+		private void measureRoundTrip()
+		{
+			if (this.opponent == null)
+				return;
+
+			this.transitTime = System.nanoTime() - this.opponent.moveSentTime;
+			if (this.opponent.transitTime > 0 && this.movesMade > 0)
+			{
+				roundTripTimes.add(this.opponent.transitTime + this.transitTime);
+			}
+		}
+
+		/**
+		 * Plays a single hop of the opponent's, which arrives from the
+		 * opponent's point of view.
+		 */
+		private void applyOpponentHop(Packet packet)
+		{
+			int oldX = 7 - packet.getOldX();
+			int oldY = 7 - packet.getOldY();
+			int newX = 7 - packet.getNewX();
+			int newY = 7 - packet.getNewY();
+			int newSquare = Position.toSquare(newX, newY);
+
+			if (Math.abs(newY - oldY) == 2)
+			{
+				this.position.removePiece(Position.toSquare(
+						(oldX + newX) / 2,
+						(oldY + newY) / 2));
+			}
+			this.position.movePiece(Position.toSquare(oldX, oldY), newSquare);
+
+			if (newY == 7)
+			{
+				this.position.setKing(newSquare, true);
+			}
+		}
+
+		/**
+		 * Plays a random legal move, hop by hop, and ends the turn.
+		 *
+		 * @return Whether the game goes on
+		 */
+		private boolean playMove() throws IOException, InterruptedException
+		{
+			int moveCount = MoveGenerator.generateMoves(
+					this.position,
+					true,
+					this.moves,
+					0);
+			if (moveCount == 0 || this.movesMade >= maxMoves)
+			{
+				// Resigns
+				this.connection.send(Packet.endGame(true));
+				return false;
+			}
+
+			Thread.sleep(delay);
+
+			long move = this.moves[this.random.nextInt(moveCount)];
+			int pathLength = MoveGenerator.getPath(
+					this.position,
+					move,
+					true,
+					this.path);
+
+			this.moveSentTime = System.nanoTime();
+			if (isLegacy && Move.isCapture(move) && this.random.nextBoolean())
+			{
+				// An older game is never made to capture, and may stop part
+				// way through a multi-jump
+				int from = Move.getFrom(move);
+				int to = this.path[0];
+				if (this.random.nextBoolean())
+				{
+					int step = this.findStep();
+					if (step >= 0)
+					{
+						from = step >>> 8;
+						to = step & 0xFF;
+					}
+				}
+				this.playHop(from, to);
+			} else
+			{
+				int square = Move.getFrom(move);
+				for (int i = 0; i < pathLength; i++)
+				{
+					// The hops leave with the next packet, as the game sends
+					// them
+					this.connection.write(Packet.checkerMove(
+							Position.getSquareX(square),
+							Position.getSquareY(square),
+							Position.getSquareX(this.path[i]),
+							Position.getSquareY(this.path[i])));
+					square = this.path[i];
+				}
+
+				this.position.applyMove(move, true);
+			}
+			this.movesMade++;
+			movesPlayed.incrementAndGet();
+
+			if (this.random.nextDouble() < chatChance)
+			{
+				this.connection.send(Packet.chatMessage("Move " + this.movesMade));
+				chatsSent.incrementAndGet();
+			}
+			if (this.random.nextDouble() < drawChance)
+			{
+				this.connection.send(Packet.requestDraw());
+				drawsRequested.incrementAndGet();
+			}
+
+			// An opponent who is unable to move loses the game
+			if (MoveGenerator.hasMoves(this.position, false) == false)
+			{
+				this.connection.send(Packet.endGame(false));
+				return false;
+			}
+
+			this.isUsersTurn = false;
+			this.isWaitingForMove = true;
+			this.connection.send(Packet.playerTurn(true));
+
+			return true;
+		}
+
+		/**
+		 * Chooses a random step, which an older game may make even when a
+		 * capture is there to be made.
+		 *
+		 * @return The square stepped from shifted up 8 bits, with the square
+		 *         stepped to beneath, or -1 if no piece can step
+		 */
+		private int findStep()
+		{
+			int step = -1;
+			int stepCount = 0;
+
+			for (int from = 0; from < Position.SQUARE_COUNT; from++)
+			{
+				if (this.position.isUserPiece(from) == false)
+					continue;
+
+				int x = Position.getSquareX(from);
+				int y = Position.getSquareY(from);
+				for (int dy = -1; dy <= 1; dy += 2)
+				{
+					// Men only step forwards, up the board
+					if (dy > 0 && this.position.isKing(from) == false)
+						continue;
+
+					for (int dx = -1; dx <= 1; dx += 2)
+					{
+						int to = Position.toSquare(x + dx, y + dy);
+						if (to >= 0 && this.position.isEmpty(to)
+								&& this.random.nextInt(++stepCount) == 0)
+						{
+							step = (from << 8) | to;
+						}
+					}
+				}
+			}
+
+			return step;
+		}
+
+		/**
+		 * Sends and plays a single hop of this player's, kinging the piece if
+		 * it reaches the back row.
+		 */
+		private void playHop(int from, int to) throws IOException
+		{
+			int oldX = Position.getSquareX(from);
+			int oldY = Position.getSquareY(from);
+			int newX = Position.getSquareX(to);
+			int newY = Position.getSquareY(to);
+
+			this.connection.write(Packet.checkerMove(oldX, oldY, newX, newY));
+
+			if (Math.abs(newY - oldY) == 2)
+			{
+				this.position.removePiece(Position.toSquare(
+						(oldX + newX) / 2,
+						(oldY + newY) / 2));
+			}
+			this.position.movePiece(from, to);
+
+			if (newY == 0)
+			{
+				this.position.setKing(to, true);
+			}
+		}
+	}
+
+}
@@ -63,7 +63,6 @@ public class MainMenuPanel extends JPanel implements ActionListener,
 		// -- Initialize Child Components -- //
 		this.singleplayer.setFocusPainted(false);
 		this.singleplayer.addActionListener(this);
-		this.singleplayer.setEnabled(false);
 
 		this.hostGame.setFocusPainted(false);
 		this.hostGame.addActionListener(this);
@@ -113,7 +112,10 @@ public class MainMenuPanel extends JPanel implements ActionListener,
 	@Override
 	public void actionPerformed(ActionEvent e)
 	{
-		if (e.getSource() == hostGame)
+		if (e.getSource() == singleplayer)
+		{
+			this.mainWindow.startNewSingleplayerGame();
+		} else if (e.getSource() == hostGame)
 		{
 			ConnectionHandler.hostGame(this.mainWindow);
 		} else if (e.getSource() == findGame)
@@ -0,0 +1,109 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import com.gmail.tylersyme.checkers.engine.OpeningBook;
+import com.gmail.tylersyme.checkers.engine.OpeningBookWriter;
+
+/**
+ * Builds the opening book used by the computer player from files of game
+ * records, one game per line (see {@link OpeningBookWriter}). Blank lines
+ * and lines starting with '#' are skipped. This runs without opening a
+ * window:
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.OpeningBookBuilder [-plies &lt;n&gt;] [-out &lt;file&gt;]
+ *                                                     &lt;game files...&gt;
+ * </pre>
+ * <ul>
+ * <li>-plies: How many moves of each game are added
+ * ({@link OpeningBookWriter#DEFAULT_MAX_PLIES} by default)</li>
+ * <li>-out: The book file to write ({@link OpeningBook#DEFAULT_FILE} by
+ * default), which is also where the game looks for it</li>
+ * </ul>
+ */
+public class OpeningBookBuilder
+{
+	public static void main(String[] args)
+	{
+		int maxPlies = OpeningBookWriter.DEFAULT_MAX_PLIES;
+		File output = new File(OpeningBook.DEFAULT_FILE);
+		int firstInput = 0;
+
+		while (firstInput < args.length - 1 && args[firstInput].startsWith("-"))
+		{
+			if (args[firstInput].equals("-plies"))
+			{
+				maxPlies = Integer.parseInt(args[firstInput + 1]);
+			} else if (args[firstInput].equals("-out"))
+			{
+				output = new File(args[firstInput + 1]);
+			}
+			firstInput += 2;
+		}
+
+		if (firstInput >= args.length)
+		{
+			System.out.println("Usage: OpeningBookBuilder [-plies <n>] "
+					+ "[-out <file>] <game files...>");
+			System.exit(2);
+		}
+
+		OpeningBookWriter writer = new OpeningBookWriter(maxPlies);
+		try
+		{
+			for (int i = firstInput; i < args.length; i++)
+			{
+				readGames(writer, new File(args[i]));
+			}
+
+			writer.write(output);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		System.out.println(String.format(
+				"Wrote %,d moves from %,d positions of %,d games to %s (%,d bytes)",
+				writer.getEntryCount(),
+				writer.getPositionCount(),
+				writer.getGameCount(),
+				output.getPath(),
+				output.length()));
+	}
+
+	private static void readGames(OpeningBookWriter writer, File file)
+			throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try
+		{
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				if (line.trim().isEmpty() || line.startsWith("#"))
+					continue;
+
+				try
+				{
+					writer.addGame(line);
+				} catch (IllegalArgumentException e)
+				{
+					// A bad record is reported and skipped
+					System.out.println(file.getName() + ":" + lineNumber
+							+ ": " + e.getMessage());
+				}
+			}
+		} finally
+		{
+			reader.close();
+		}
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+
+/**
+ * <p>
+ * Measures what is gained by sending the packets of a move together rather
+ * than one at a time. Two connections are opened over the loopback interface.
+ * One plays turns of a multi-jump followed by the end of the turn; the other
+ * hands the turn straight back.
+ * </p>
+ * <p>
+ * Each protocol is measured twice. First every packet is flushed on its own,
+ * as the game used to send them. Then the hops wait for the end of the turn
+ * and leave in a single write, as the game sends them now. For each, the
+ * number of writes to the socket, the turns per second, and the round trip
+ * from the end of the turn to the reply are reported.
+ * </p>
+ * The cost of waiting is the time before the opponent sees the first hop,
+ * which is reported too. With "-hopDelay" standing in for the time a player
+ * takes to drag the piece over each hop, that cost is roughly the delay for
+ * every hop after the first.
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.PacketBenchmark [-turns &lt;n&gt;] [-hops &lt;n&gt;]
+ *                                                   [-hopDelay &lt;millis&gt;]
+ * </pre>
+ */
+public class PacketBenchmark
+{
+	public static void main(String[] args) throws IOException,
+			InterruptedException
+	{
+		int turns = 20000;
+		int hops = 3;
+		long hopDelay = 0;
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-turns"))
+			{
+				turns = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-hops"))
+			{
+				hops = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-hopDelay"))
+			{
+				hopDelay = Long.parseLong(args[i + 1]);
+			}
+		}
+
+		// Fewer turns when each one is drawn out
+		if (hopDelay > 0)
+		{
+			turns = Math.min(turns, (int) (10000 / (hopDelay * hops)) + 1);
+		}
+
+		System.out.println(String.format(
+				"%,d turns of %d hops and a turn packet, %d ms between hops",
+				turns,
+				hops,
+				hopDelay));
+
+		for (boolean isBinary : new boolean[] { false, true })
+		{
+			// Lets the JIT compile both paths before anything is measured
+			measure(isBinary, false, Math.min(turns, 2000), hops, 0);
+			measure(isBinary, true, Math.min(turns, 2000), hops, 0);
+
+			for (boolean isBatched : new boolean[] { false, true })
+			{
+				System.out.println(String.format(
+						"%-6s %-10s %s",
+						(isBinary) ? ("binary") : ("legacy"),
+						(isBatched) ? ("batched") : ("per packet"),
+						measure(isBinary, isBatched, turns, hops, hopDelay)));
+			}
+		}
+	}
+
+	/**
+	 * Plays the given number of turns over a fresh pair of connections.
+	 *
+	 * @return A line describing the results
+	 */
+	private static String measure(
+			boolean isBinary,
+			boolean isBatched,
+			final int turns,
+			final int hops,
+			long hopDelay) throws IOException, InterruptedException
+	{
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		final AtomicInteger writes = new AtomicInteger();
+
+		// Counts every write that reaches the socket
+		Socket socket = new Socket() {
+
+			private OutputStream counted;
+
+			@Override
+			public synchronized OutputStream getOutputStream()
+					throws IOException
+			{
+				if (this.counted == null)
+				{
+					final OutputStream output = super.getOutputStream();
+					this.counted = new OutputStream() {
+
+						@Override
+						public void write(int b) throws IOException
+						{
+							writes.incrementAndGet();
+							output.write(b);
+						}
+
+						@Override
+						public void write(byte[] bytes, int offset, int length)
+								throws IOException
+						{
+							writes.incrementAndGet();
+							output.write(bytes, offset, length);
+						}
+					};
+				}
+
+				return this.counted;
+			}
+		};
+		socket.connect(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(),
+				server.getLocalPort()));
+		socket.setTcpNoDelay(true);
+
+		final Socket accepted = server.accept();
+		accepted.setTcpNoDelay(true);
+		server.close();
+
+		// When each turn's first hop arrived, set by the replying side
+		final long[] firstHopTimes = new long[turns];
+		final boolean negotiate = isBinary;
+		Thread replier = new Thread(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				try
+				{
+					PacketConnection connection = new PacketConnection(accepted);
+					if (negotiate)
+					{
+						connection.negotiate();
+					}
+
+					int turn = 0;
+					boolean isFirstHop = true;
+					while (turn < turns)
+					{
+						Packet packet = connection.receive();
+						if (packet.getType() == Packet.CHECKER_MOVE && isFirstHop)
+						{
+							firstHopTimes[turn] = System.nanoTime();
+							isFirstHop = false;
+						} else if (packet.getType() == Packet.PLAYER_TURN)
+						{
+							connection.send(Packet.playerTurn(true));
+							turn++;
+							isFirstHop = true;
+						}
+					}
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				} finally
+				{
+					try
+					{
+						accepted.close();
+					} catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+		replier.start();
+
+		PacketConnection connection = new PacketConnection(socket);
+		if (isBinary)
+		{
+			connection.negotiate();
+		}
+
+		long[] roundTrips = new long[turns];
+		long totalFirstHopDelay = 0;
+		writes.set(0);
+
+		long start = System.nanoTime();
+		for (int turn = 0; turn < turns; turn++)
+		{
+			long turnStart = System.nanoTime();
+			for (int hop = 0; hop < hops; hop++)
+			{
+				if (hop > 0 && hopDelay > 0)
+				{
+					Thread.sleep(hopDelay);
+				}
+
+				// Hops across the board and back, which the other side
+				// never checks
+				Packet move = Packet.checkerMove(hop, 5, hop + 1, 4);
+				if (isBatched)
+				{
+					connection.write(move);
+				} else
+				{
+					connection.send(move);
+				}
+			}
+
+			long turnEnd = System.nanoTime();
+			connection.send(Packet.playerTurn(true));
+			connection.receive();
+			roundTrips[turn] = System.nanoTime() - turnEnd;
+			totalFirstHopDelay += firstHopTimes[turn] - turnStart;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		replier.join();
+		socket.close();
+
+		Arrays.sort(roundTrips);
+		return String.format(
+				"%5.2f writes/turn  %,8.0f turns/s  round trip p50 %6.1f us, "
+						+ "p99 %6.1f us  first hop after %8.1f us",
+				writes.get() / (double) turns,
+				turns / seconds,
+				roundTrips[turns / 2] / 1e3,
+				roundTrips[(int) (turns * 0.99)] / 1e3,
+				totalFirstHopDelay / 1e3 / turns);
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.gmail.tylersyme.checkers;
+
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+
+/**
+ * <p>
+ * Perft ("performance test") counts every position reachable from a starting
+ * position to a fixed depth. The counts from the starting position of a game
+ * are well known, so comparing against them proves that the move generator
+ * still follows the rules, while the nodes per second it reports tracks how
+ * fast the generator is.
+ * </p>
+ * This runs without opening a window:
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.Perft [-divide] [-verify]
+ *                                         [-position &lt;text&gt;] [-opponent] &lt;depth&gt;
+ * </pre>
+ * <ul>
+ * <li>-divide: Also prints the count below each of the first moves</li>
+ * <li>-verify: Runs every depth up to the given one from the starting
+ * position and compares each count against {@link #KNOWN_COUNTS}</li>
+ * <li>-position: Starts from the given position instead (see
+ * {@link Position#fromString(String)})</li>
+ * <li>-opponent: The opponent moves first instead of the user</li>
+ * </ul>
+ */
+public class Perft
+{
+	// The published counts from the starting position, where KNOWN_COUNTS[n]
+	// is the count at depth n
+	public static final long[] KNOWN_COUNTS = { 1L, 7L, 49L, 302L, 1469L,
+			7361L, 36768L, 179740L, 845931L, 3963680L, 18391564L, 85242128L,
+			388623673L };
+
+	public static final int MAX_DEPTH = 64;
+
+	public static void main(String[] args)
+	{
+		boolean divide = false;
+		boolean verify = false;
+		boolean userToMove = true;
+		Position position = null;
+		int depth = -1;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-divide"))
+			{
+				divide = true;
+			} else if (args[i].equals("-verify"))
+			{
+				verify = true;
+			} else if (args[i].equals("-opponent"))
+			{
+				userToMove = false;
+			} else if (args[i].equals("-position") && i + 1 < args.length)
+			{
+				position = Position.fromString(args[++i]);
+			} else
+			{
+				depth = Integer.parseInt(args[i]);
+			}
+		}
+
+		if (depth < 0 || depth > MAX_DEPTH)
+		{
+			System.out.println("Usage: Perft [-divide] [-verify] "
+					+ "[-position <text>] [-opponent] <depth>");
+			System.exit(2);
+		}
+
+		if (verify)
+		{
+			System.exit((verify(depth)) ? (0) : (1));
+		}
+
+		if (position == null)
+		{
+			// The same setup used by GameLogic#setupCheckerboard()
+			position = new Position();
+			position.setupInitial();
+		}
+
+		Perft perft = new Perft();
+		long start = System.nanoTime();
+		long nodes = (divide) ? (perft.divide(position, userToMove, depth))
+				: (perft.count(position, userToMove, depth));
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(report(depth, nodes, elapsed));
+	}
+
+	/**
+	 * Counts every depth up to the given one from the starting position and
+	 * compares each count against the published value.
+	 *
+	 * @param maxDepth
+	 * @return Whether every count was correct
+	 */
+	public static boolean verify(int maxDepth)
+	{
+		Position position = new Position();
+		position.setupInitial();
+
+		Perft perft = new Perft();
+		boolean allPassed = true;
+
+		for (int depth = 1; depth <= maxDepth; depth++)
+		{
+			long start = System.nanoTime();
+			long nodes = perft.count(position, true, depth);
+			long elapsed = System.nanoTime() - start;
+
+			String result;
+			if (depth >= KNOWN_COUNTS.length)
+			{
+				result = "UNKNOWN";
+			} else if (nodes == KNOWN_COUNTS[depth])
+			{
+				result = "OK";
+			} else
+			{
+				result = "FAILED (expected " + KNOWN_COUNTS[depth] + ")";
+				allPassed = false;
+			}
+
+			System.out.println(report(depth, nodes, elapsed) + "  " + result);
+		}
+
+		return allPassed;
+	}
+
+	// -------------------------------------------------------------------------
+
+	// One section of the buffer for each ply, so that no ply overwrites the
+	// moves of the ply above it
+	private long[] moves = new long[MAX_DEPTH * MoveGenerator.MAX_MOVES];
+
+	/**
+	 * Counts every position exactly the given number of moves away from the
+	 * given position.
+	 *
+	 * @param position This is modified during the count but is always
+	 *            returned to its original state
+	 * @param userToMove
+	 * @param depth
+	 * @return The number of positions found
+	 */
+	public long count(Position position, boolean userToMove, int depth)
+	{
+		if (depth == 0)
+			return 1;
+
+		return this.countMoves(position, userToMove, depth, 0);
+	}
+
+	/**
+	 * Counts and prints the positions below each move of the given position.
+	 *
+	 * @param position
+	 * @param userToMove
+	 * @param depth
+	 * @return The total number of positions found
+	 */
+	public long divide(Position position, boolean userToMove, int depth)
+	{
+		if (depth == 0)
+			return 1;
+
+		int moveCount = MoveGenerator.generateMoves(
+				position,
+				userToMove,
+				this.moves,
+				0);
+
+		long total = 0;
+		for (int i = 0; i < moveCount; i++)
+		{
+			long move = this.moves[i];
+
+			int capturedKings = position.applyMove(move, userToMove);
+			long nodes = (depth == 1) ? (1) : (this.countMoves(
+					position,
+					!userToMove,
+					depth - 1,
+					1));
+			position.undoMove(move, userToMove, capturedKings);
+
+			System.out.println(Move.toString(move) + ": " + nodes);
+			total += nodes;
+		}
+
+		return total;
+	}
+
+	private long countMoves(
+			Position position,
+			boolean userToMove,
+			int depth,
+			int ply)
+	{
+		int offset = ply * MoveGenerator.MAX_MOVES;
+		int moveCount = MoveGenerator.generateMoves(
+				position,
+				userToMove,
+				this.moves,
+				offset);
+
+		// The positions one move away do not need to be played
+		if (depth == 1)
+			return moveCount;
+
+		long nodes = 0;
+		for (int i = 0; i < moveCount; i++)
+		{
+			long move = this.moves[offset + i];
+
+			int capturedKings = position.applyMove(move, userToMove);
+			nodes += this.countMoves(position, !userToMove, depth - 1, ply + 1);
+			position.undoMove(move, userToMove, capturedKings);
+		}
+
+		return nodes;
+	}
+
+	private static String report(int depth, long nodes, long elapsedNanos)
+	{
+		double seconds = elapsedNanos / 1e9;
+		long nodesPerSecond = (seconds > 0) ? ((long) (nodes / seconds)) : (0);
+
+		return String.format(
+				"Depth %2d: %,15d nodes  %8.3fs  %,13d nodes/s",
+				depth,
+				nodes,
+				seconds,
+				nodesPerSecond);
+	}
+
+}
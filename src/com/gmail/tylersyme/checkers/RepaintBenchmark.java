@@ -0,0 +1,302 @@
+package com.gmail.tylersyme.checkers;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.game.Checkerboard;
+import com.gmail.tylersyme.checkers.game.GameLogicSP;
+import com.gmail.tylersyme.checkers.game.MouseHandler;
+
+/**
+ * <p>
+ * Measures what is saved by painting only the parts of the checkerboard
+ * which change. A singleplayer game is played off screen: each of the user's
+ * moves is dragged across the board with the mouse, a few pixels per event,
+ * and the computer answers with moves of its own.
+ * </p>
+ * <p>
+ * After every event the board is painted twice: once in full, as every event
+ * used to paint it, and once clipped to the area the checkerboard asked
+ * Swing to paint. For each, the number of frames, the time and the number of
+ * pixels per frame are reported.
+ * </p>
+ * Off screen there is no graphics card, so the times are those of Java's own
+ * drawing; they show the difference, not what a given machine will manage.
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.RepaintBenchmark [-turns &lt;n&gt;] [-step &lt;pixels&gt;]
+ * </pre>
+ */
+public class RepaintBenchmark
+{
+	private static final long SEED = 1;
+
+	// The area asked to be painted since the last frame
+	private static final Rectangle dirty = new Rectangle(0, 0, -1, -1);
+
+	private static BufferedImage frame;
+	private static Checkerboard board;
+	private static MouseHandler mouse;
+
+	private static long fullFrames = 0;
+	private static long fullTime = 0;
+	private static long fullPixels = 0;
+	private static long dirtyFrames = 0;
+	private static long dirtyTime = 0;
+	private static long dirtyPixels = 0;
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int turns = 200;
+		int step = 4;
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-turns"))
+			{
+				turns = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-step"))
+			{
+				step = Integer.parseInt(args[i + 1]);
+			}
+		}
+
+		System.setProperty("java.awt.headless", "true");
+
+		frame = new BufferedImage(
+				Checkerboard.BOARD_SIZE,
+				Checkerboard.BOARD_SIZE,
+				BufferedImage.TYPE_INT_RGB);
+		final GraphicsConfiguration configuration = frame.createGraphics()
+				.getDeviceConfiguration();
+
+		board = new Checkerboard(null) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void repaint(long time, int x, int y, int width, int height)
+			{
+				// Joined just as Swing's RepaintManager joins them. The
+				// computer's moves are animated on the event dispatch thread.
+				synchronized (dirty)
+				{
+					dirty.add(new Rectangle(x, y, width, height));
+				}
+			}
+
+			// The squares come from the cached image, as on screen
+			@Override
+			public GraphicsConfiguration getGraphicsConfiguration()
+			{
+				return configuration;
+			}
+		};
+		board.setSize(Checkerboard.BOARD_SIZE, Checkerboard.BOARD_SIZE);
+		for (MouseListener listener : board.getMouseListeners())
+		{
+			if (listener instanceof MouseHandler)
+			{
+				mouse = (MouseHandler) listener;
+			}
+		}
+
+		// The computer's moves are played here, between the user's
+		final BlockingQueue<Runnable> computerMoves = new LinkedBlockingQueue<Runnable>();
+		Executor moveExecutor = new Executor() {
+
+			@Override
+			public void execute(Runnable task)
+			{
+				computerMoves.add(task);
+			}
+		};
+
+		Random random = new Random(SEED);
+		long[] moves = new long[MoveGenerator.MAX_MOVES];
+		int[] path = new int[Position.SQUARE_COUNT];
+		int events = 0;
+
+		GameLogicSP gameLogic = null;
+		for (int turn = 0; turn < turns; turn++)
+		{
+			if (gameLogic == null || gameLogic.hasGameStarted() == false)
+			{
+				gameLogic = new GameLogicSP(moveExecutor, 5, 1);
+				board.setGameLogic(gameLogic);
+				gameLogic.addGameListener(board);
+				gameLogic.startNewGame();
+				paint(true); // In full both ways
+			}
+
+			// The computer may move first
+			if (gameLogic.isUsersTurn() == false)
+			{
+				waitForComputer(computerMoves);
+				events++;
+				continue;
+			}
+
+			Position position = gameLogic.getPosition();
+			int moveCount = MoveGenerator.generateMoves(position, true, moves, 0);
+			if (moveCount == 0)
+				break;
+
+			long move = moves[random.nextInt(moveCount)];
+			int hopCount = MoveGenerator.getPath(position, move, true, path);
+			int square = Move.getFrom(move);
+			for (int hop = 0; hop < hopCount; hop++)
+			{
+				events += drag(square, path[hop], step);
+				square = path[hop];
+			}
+
+			if (gameLogic.hasGameStarted())
+			{
+				waitForComputer(computerMoves);
+				events++;
+			}
+		}
+
+		System.out.println(String.format(
+				"%,d mouse and game events over %,d turns, dragged %d pixels at a time",
+				events,
+				turns,
+				step));
+		System.out.println(String.format(
+				"full board  %,7d frames %8.1f us/frame %,9d pixels/frame %8.1f ms",
+				fullFrames,
+				fullTime / 1e3 / Math.max(1, fullFrames),
+				fullPixels / Math.max(1, fullFrames),
+				fullTime / 1e6));
+		System.out.println(String.format(
+				"dirty areas %,7d frames %8.1f us/frame %,9d pixels/frame %8.1f ms",
+				dirtyFrames,
+				dirtyTime / 1e3 / Math.max(1, dirtyFrames),
+				dirtyPixels / Math.max(1, dirtyFrames),
+				dirtyTime / 1e6));
+		System.exit(0);
+	}
+
+	/**
+	 * Drags a piece from one square to another, painting after every event.
+	 *
+	 * @return The number of mouse events
+	 */
+	private static int drag(int from, int to, int step)
+	{
+		int squareSize = board.getSquareSize();
+		int fromX = Position.getSquareX(from) * squareSize + squareSize / 2;
+		int fromY = Position.getSquareY(from) * squareSize + squareSize / 2;
+		int toX = Position.getSquareX(to) * squareSize + squareSize / 2;
+		int toY = Position.getSquareY(to) * squareSize + squareSize / 2;
+
+		mouse.mousePressed(mouseEvent(MouseEvent.MOUSE_PRESSED, fromX, fromY));
+		paint(false);
+
+		int distance = Math.max(Math.abs(toX - fromX), Math.abs(toY - fromY));
+		int steps = Math.max(1, distance / step);
+		for (int i = 1; i <= steps; i++)
+		{
+			mouse.mouseDragged(mouseEvent(
+					MouseEvent.MOUSE_DRAGGED,
+					fromX + (toX - fromX) * i / steps,
+					fromY + (toY - fromY) * i / steps));
+			paint(true);
+		}
+
+		mouse.mouseReleased(mouseEvent(MouseEvent.MOUSE_RELEASED, toX, toY));
+		paint(true);
+
+		return steps + 2;
+	}
+
+	private static MouseEvent mouseEvent(int id, int x, int y)
+	{
+		return new MouseEvent(
+				board,
+				id,
+				System.currentTimeMillis(),
+				MouseEvent.BUTTON1_DOWN_MASK,
+				x,
+				y,
+				1,
+				false,
+				MouseEvent.BUTTON1);
+	}
+
+	private static void waitForComputer(BlockingQueue<Runnable> computerMoves)
+			throws InterruptedException
+	{
+		Runnable move = computerMoves.poll(10, TimeUnit.SECONDS);
+		if (move == null)
+			throw new IllegalStateException("The computer never moved");
+
+		move.run();
+		paint(true);
+	}
+
+	/**
+	 * Paints the frame for the events since the last, the old way and the
+	 * new.
+	 * 
+	 * @param wasRepainted Whether the event used to have the whole board
+	 *            painted, as every drag, release and move did whether or not
+	 *            anything had changed
+	 */
+	private static void paint(boolean wasRepainted)
+	{
+		Rectangle full = new Rectangle(0, 0, board.getWidth(), board.getHeight());
+
+		long start;
+		if (wasRepainted)
+		{
+			start = System.nanoTime();
+			paint(full);
+			fullTime += System.nanoTime() - start;
+			fullPixels += (long) full.width * full.height;
+			fullFrames++;
+		}
+
+		Rectangle area;
+		synchronized (dirty)
+		{
+			area = dirty.intersection(full);
+			dirty.setBounds(0, 0, -1, -1);
+		}
+		if (area.isEmpty())
+			return;
+
+		start = System.nanoTime();
+		paint(area);
+		dirtyTime += System.nanoTime() - start;
+		dirtyPixels += (long) area.width * area.height;
+		dirtyFrames++;
+	}
+
+	private static void paint(Rectangle clip)
+	{
+		Graphics2D g = frame.createGraphics();
+		try
+		{
+			g.setClip(clip);
+			board.paintComponent(g);
+		} finally
+		{
+			g.dispose();
+		}
+	}
+
+}
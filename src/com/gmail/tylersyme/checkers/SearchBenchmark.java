@@ -0,0 +1,131 @@
+package com.gmail.tylersyme.checkers;
+
+import com.gmail.tylersyme.checkers.engine.Evaluator;
+import com.gmail.tylersyme.checkers.engine.ParallelSearch;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.engine.TranspositionTable;
+
+/**
+ * Measures how the {@link ParallelSearch} scales with its number of threads.
+ * Every thread count searches the same set of positions for the same amount
+ * of time, starting from an empty transposition table, and the nodes per
+ * second and average depth reached are reported for each.
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.SearchBenchmark [-threads 1,2,4,8]
+ *                                                   [-time &lt;millis&gt;] [-hash &lt;MB&gt;]
+ * </pre>
+ *
+ * By default every power of two up to the number of available processors is
+ * measured.
+ */
+public class SearchBenchmark
+{
+	// The starting position followed by a few typical middle and end games
+	private static final String[] POSITIONS = {
+			"oooo/oooo/oooo/..../..../uuuu/uuuu/uuuu",
+			"oooo/ooo./.o.o/o.o./.u../u.uu/.uuu/uuuu",
+			"o.oo/.oo./o.../.o.o/u.u./.u.u/u..u/uu.u",
+			"..../.o../o..o/..../.u.u/u.../..U./....",
+			"..O./..../.o../..../..u./.U../..../u..." };
+
+	public static void main(String[] args)
+	{
+		long timeBudget = 2000;
+		int hashSize = TranspositionTable.DEFAULT_SIZE_MB;
+		int[] threadCounts = null;
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-time"))
+			{
+				timeBudget = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-hash"))
+			{
+				hashSize = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-threads"))
+			{
+				String[] counts = args[i + 1].split(",");
+				threadCounts = new int[counts.length];
+				for (int c = 0; c < counts.length; c++)
+				{
+					threadCounts[c] = Integer.parseInt(counts[c].trim());
+				}
+			}
+		}
+
+		if (threadCounts == null)
+		{
+			threadCounts = defaultThreadCounts();
+		}
+
+		// Lets the JIT compile the search before anything is measured
+		ParallelSearch warmUp = new ParallelSearch(1);
+		for (String text : POSITIONS)
+		{
+			warmUp.findBestMove(Position.fromString(text), true, 200, 99);
+		}
+
+		double singleThreadRate = 0;
+		for (int threads : threadCounts)
+		{
+			TranspositionTable table = new TranspositionTable(hashSize);
+			ParallelSearch search = new ParallelSearch(
+					threads,
+					new Evaluator(),
+					table);
+
+			long nodes = 0;
+			long elapsed = 0;
+			int depthTotal = 0;
+
+			for (String text : POSITIONS)
+			{
+				table.clear();
+				Position position = Position.fromString(text);
+
+				long start = System.nanoTime();
+				search.findBestMove(position, true, timeBudget, 99);
+				elapsed += System.nanoTime() - start;
+
+				nodes += search.getNodes();
+				depthTotal += search.getCompletedDepth();
+			}
+			search.shutdown();
+
+			double rate = nodes / (elapsed / 1e9);
+			if (singleThreadRate == 0)
+			{
+				singleThreadRate = rate;
+			}
+
+			System.out.println(String.format(
+					"%3d threads: %,14d nodes/s  %5.2fx  average depth %.1f",
+					threads,
+					(long) rate,
+					rate / singleThreadRate,
+					depthTotal / (double) POSITIONS.length));
+		}
+	}
+
+	private static int[] defaultThreadCounts()
+	{
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		int count = 1;
+		for (int threads = 1; threads < processors; threads *= 2)
+		{
+			count++;
+		}
+
+		int[] threadCounts = new int[count];
+		for (int i = 0; i < count - 1; i++)
+		{
+			threadCounts[i] = 1 << i;
+		}
+		threadCounts[count - 1] = processors;
+
+		return threadCounts;
+	}
+
+}
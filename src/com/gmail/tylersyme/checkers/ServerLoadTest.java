@@ -0,0 +1,385 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gmail.tylersyme.checkers.connection.ConnectionThreads;
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.server.ThreadedGameServer;
+
+/**
+ * <p>
+ * Measures how many games at once a {@link ThreadedGameServer} holds within a
+ * single JVM, on virtual threads and on ordinary ("platform") threads. The
+ * server and every simulated player run in this JVM, each player and each of
+ * the server's connections on a thread of the kind being measured.
+ * </p>
+ * <p>
+ * All the games are started at once. Each player takes turns with their
+ * opponent, pausing before every move as a person would, until both have
+ * made the given number of moves. Players make the first legal move they
+ * find, since the server refuses illegal ones. The most games seen in progress at once,
+ * the peak number of live platform threads and the memory used are reported
+ * for each kind of thread.
+ * </p>
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.ServerLoadTest [-games &lt;n&gt;] [-moves &lt;n&gt;]
+ *         [-delay &lt;millis&gt;] [-threads virtual|platform|both]
+ * </pre>
+ * <ul>
+ * <li>-games: How many games to start (1000 by default)</li>
+ * <li>-moves: How many moves each player makes (10 by default)</li>
+ * <li>-delay: How long each player pauses before a move (200 milliseconds by
+ * default)</li>
+ * <li>-threads: Which kind of thread to measure (both by default). Virtual
+ * threads need a version of Java which has them.</li>
+ * </ul>
+ */
+public class ServerLoadTest
+{
+	// How long a player waits to hear from the server before giving up
+	private static final int PAIRING_TIMEOUT = 30000;
+
+	public static void main(String[] args) throws IOException
+	{
+		int games = 1000;
+		int moves = 10;
+		long delay = 200;
+		String threads = "both";
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-games"))
+			{
+				games = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-moves"))
+			{
+				moves = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-delay"))
+			{
+				delay = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-threads"))
+			{
+				threads = args[i + 1];
+			}
+		}
+
+		if (threads.equals("both") || threads.equals("virtual"))
+		{
+			ExecutorService executor = ConnectionThreads.newExecutor(true);
+			if (ConnectionThreads.isVirtual(executor))
+			{
+				new ServerLoadTest(games, moves, delay).run("virtual", executor);
+			} else
+			{
+				System.out.println("virtual: not available in Java "
+						+ System.getProperty("java.version"));
+			}
+		}
+
+		if (threads.equals("both") || threads.equals("platform"))
+		{
+			new ServerLoadTest(games, moves, delay).run(
+					"platform",
+					ConnectionThreads.newExecutor(false));
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private int games;
+	private int moves;
+	private long delay;
+
+	private AtomicInteger playing = new AtomicInteger();
+	private AtomicInteger finished = new AtomicInteger();
+	private AtomicInteger failed = new AtomicInteger();
+
+	// Sampled while the games are being played
+	private AtomicLong peakPlaying = new AtomicLong();
+	private AtomicLong peakHeap = new AtomicLong();
+	private AtomicLong peakResident = new AtomicLong();
+
+	/**
+	 * @param games
+	 * @param moves How many moves each player makes
+	 * @param delay How long each player pauses before a move
+	 */
+	public ServerLoadTest(int games, int moves, long delay)
+	{
+		this.games = games;
+		this.moves = moves;
+		this.delay = delay;
+	}
+
+	/**
+	 * Plays every game on the given kind of thread and prints the results.
+	 * 
+	 * @param name The kind of thread
+	 * @param executor Runs the server's connections and the players
+	 * @throws IOException If the server could not be started
+	 */
+	public void run(String name, ExecutorService executor) throws IOException
+	{
+		final ThreadedGameServer server = new ThreadedGameServer(0, executor);
+		server.open();
+		Thread acceptThread = new Thread(server, "Server");
+		acceptThread.start();
+
+		ScheduledExecutorService sampler = Executors
+				.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				sample();
+			}
+		}, 100, 100, TimeUnit.MILLISECONDS);
+		ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+
+		final CountDownLatch done = new CountDownLatch(this.games * 2);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < this.games * 2; i++)
+		{
+			try
+			{
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run()
+					{
+						try
+						{
+							play(server.getPort());
+						} finally
+						{
+							done.countDown();
+						}
+					}
+				});
+			} catch (OutOfMemoryError e)
+			{
+				// No more threads can be started
+				this.failed.incrementAndGet();
+				done.countDown();
+			}
+		}
+
+		try
+		{
+			done.await();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		sampler.shutdown();
+		server.stop();
+		executor.shutdown();
+
+		System.out.println(String.format(
+				"%s: %,d of %,d games finished (%,d players failed) in %.1fs, "
+						+ "%,d at once, peak %,d platform threads, "
+						+ "heap %,d MB, resident %s",
+				name,
+				this.finished.get() / 2,
+				this.games,
+				this.failed.get(),
+				seconds,
+				this.peakPlaying.get() / 2,
+				ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+				this.peakHeap.get() >> 20,
+				(this.peakResident.get() > 0) ? (String.format(
+						"%,d MB",
+						this.peakResident.get() >> 20)) : ("unknown")));
+	}
+
+	/**
+	 * Plays a single player's side of a game against whoever the server
+	 * pairs them with.
+	 */
+	private void play(int port)
+	{
+		PacketConnection connection = null;
+		boolean isPlaying = false;
+		try
+		{
+			Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+
+			// A player whose opponent failed to start is never paired
+			socket.setSoTimeout(PAIRING_TIMEOUT + (int) this.delay);
+
+			connection = new PacketConnection(socket);
+			connection.negotiate();
+
+			this.playing.incrementAndGet();
+			isPlaying = true;
+
+			Position position = new Position();
+			position.setupInitial();
+			long[] moves = new long[MoveGenerator.MAX_MOVES];
+			int[] path = new int[Position.SQUARE_COUNT];
+
+			int movesMade = 0;
+			while (true)
+			{
+				Packet packet = connection.receive();
+				if (packet.getType() == Packet.END_GAME)
+					break;
+
+				if (packet.getType() == Packet.CHECKER_MOVE)
+				{
+					applyOpponentHop(position, packet);
+				} else if (packet.getType() == Packet.PING)
+				{
+					connection.send(Packet.pong(packet.getTime()));
+				} else if (packet.getType() == Packet.PLAYER_TURN
+						&& packet.getFlag())
+				{
+					int moveCount = MoveGenerator.generateMoves(
+							position,
+							true,
+							moves,
+							0);
+					if (movesMade == this.moves || moveCount == 0)
+					{
+						// Resigns
+						connection.send(Packet.endGame(true));
+						break;
+					}
+
+					Thread.sleep(this.delay);
+					long move = moves[0];
+					int pathLength = MoveGenerator.getPath(position, move, true, path);
+					int square = Move.getFrom(move);
+					for (int i = 0; i < pathLength; i++)
+					{
+						connection.send(Packet.checkerMove(
+								Position.getSquareX(square),
+								Position.getSquareY(square),
+								Position.getSquareX(path[i]),
+								Position.getSquareY(path[i])));
+						square = path[i];
+					}
+					position.applyMove(move, true);
+					connection.send(Packet.playerTurn(true));
+					movesMade++;
+				}
+			}
+
+			this.finished.incrementAndGet();
+		} catch (IOException e)
+		{
+			this.failed.incrementAndGet();
+		} catch (InterruptedException e)
+		{
+			this.failed.incrementAndGet();
+		} finally
+		{
+			if (isPlaying)
+			{
+				this.playing.decrementAndGet();
+			}
+			if (connection != null)
+			{
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Plays a single hop of the opponent's, which arrives from the
+	 * opponent's point of view.
+	 */
+	private static void applyOpponentHop(Position position, Packet packet)
+	{
+		int oldX = 7 - packet.getOldX();
+		int oldY = 7 - packet.getOldY();
+		int newX = 7 - packet.getNewX();
+		int newY = 7 - packet.getNewY();
+		int newSquare = Position.toSquare(newX, newY);
+
+		if (Math.abs(newY - oldY) == 2)
+		{
+			position.removePiece(Position.toSquare(
+					(oldX + newX) / 2,
+					(oldY + newY) / 2));
+		}
+		position.movePiece(Position.toSquare(oldX, oldY), newSquare);
+		if (newY == 7)
+		{
+			position.setKing(newSquare, true);
+		}
+	}
+
+	private void sample()
+	{
+		Runtime runtime = Runtime.getRuntime();
+
+		raise(this.peakPlaying, this.playing.get());
+		raise(this.peakHeap, runtime.totalMemory() - runtime.freeMemory());
+		raise(this.peakResident, getResidentMemory());
+	}
+
+	private static void raise(AtomicLong peak, long value)
+	{
+		long current;
+		while (value > (current = peak.get())
+				&& peak.compareAndSet(current, value) == false)
+		{ }
+	}
+
+	/**
+	 * @return The memory the process holds, which unlike the heap includes
+	 *         every thread's stack<br>
+	 *         Will return 0 where this cannot be found out
+	 */
+	private static long getResidentMemory()
+	{
+		try
+		{
+			BufferedReader reader = new BufferedReader(new FileReader(
+					"/proc/self/status"));
+			try
+			{
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					if (line.startsWith("VmRSS:"))
+					{
+						return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+					}
+				}
+			} finally
+			{
+				reader.close();
+			}
+		} catch (IOException e)
+		{
+			// Not Linux
+		}
+
+		return 0;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.gmail.tylersyme.checkers.engine.Tablebase;
+import com.gmail.tylersyme.checkers.engine.TablebaseGenerator;
+
+/**
+ * Builds the endgame tablebase used by the computer player. This runs without
+ * opening a window:
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.TablebaseBuilder [-pieces &lt;n&gt;] [-dir &lt;directory&gt;]
+ * </pre>
+ * <ul>
+ * <li>-pieces: The most pieces of any table, up to
+ * {@link Tablebase#MAX_PIECES} (4 by default)</li>
+ * <li>-dir: Where the tables are written ("tablebase" by default), which is
+ * also where the game looks for them</li>
+ * </ul>
+ */
+public class TablebaseBuilder
+{
+	public static void main(String[] args)
+	{
+		int pieces = 4;
+		File directory = new File(Tablebase.DEFAULT_DIRECTORY);
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			if (args[i].equals("-pieces"))
+			{
+				pieces = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-dir"))
+			{
+				directory = new File(args[i + 1]);
+			}
+		}
+
+		if (pieces < 2 || pieces > Tablebase.MAX_PIECES)
+		{
+			System.out.println("Usage: TablebaseBuilder [-pieces <2-"
+					+ Tablebase.MAX_PIECES + ">] [-dir <directory>]");
+			System.exit(2);
+		}
+
+		long start = System.nanoTime();
+		try
+		{
+			new TablebaseGenerator(directory).generate(pieces, System.out);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		System.out.println(String.format(
+				"Built every table up to %d pieces in %s in %.1fs",
+				pieces,
+				directory.getAbsolutePath(),
+				(System.nanoTime() - start) / 1e9));
+	}
+
+}
@@ -0,0 +1,388 @@
+package com.gmail.tylersyme.checkers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gmail.tylersyme.checkers.engine.Evaluator;
+import com.gmail.tylersyme.checkers.engine.ParallelSearch;
+import com.gmail.tylersyme.checkers.engine.Search;
+import com.gmail.tylersyme.checkers.engine.Tablebase;
+import com.gmail.tylersyme.checkers.engine.TranspositionTable;
+import com.gmail.tylersyme.checkers.game.GameLogicSelfPlay;
+
+/**
+ * <p>
+ * Plays two engines against each other over many games, using every core,
+ * and reports how much stronger the first engine ("A") is than the second
+ * ("B"). The engines differ only in their evaluation weights. Every game runs
+ * headless on its own thread of a fork-join pool.
+ * </p>
+ * <p>
+ * Games are played in pairs which start from the same random opening, with
+ * each engine taking each side once, so that an unbalanced opening favours
+ * neither engine.
+ * </p>
+ *
+ * <pre>
+ * java com.gmail.tylersyme.checkers.Tournament [-games &lt;n&gt;] [-time &lt;millis&gt;]
+ *         [-depth &lt;n&gt;] [-opening &lt;plies&gt;] [-threads &lt;n&gt;] [-hash &lt;MB&gt;]
+ *         [-tablebase &lt;directory&gt;] [-a &lt;weights&gt;] [-b &lt;weights&gt;]
+ * </pre>
+ * <ul>
+ * <li>-games: How many games to play (1000 by default)</li>
+ * <li>-time: How long each move may take (50 milliseconds by default)</li>
+ * <li>-depth: The deepest each move may be searched, which makes games
+ * repeatable when the time is long enough to reach it</li>
+ * <li>-opening: How many random moves start each pair of games (4 by
+ * default)</li>
+ * <li>-threads: How many games are played at once (one per core by
+ * default)</li>
+ * <li>-hash: The size of each engine's transposition table (4 MB by
+ * default)</li>
+ * <li>-tablebase: Used by both engines and to end games whose result is
+ * known</li>
+ * <li>-a, -b: Each engine's weights as
+ * "man,king,advancement,backRow,centerKing", such as "100,140,3,8,10"</li>
+ * </ul>
+ */
+public class Tournament
+{
+	// One engine per side, reused by every game played on the same thread
+	private static class Engines
+	{
+		private ParallelSearch a;
+		private ParallelSearch b;
+	}
+
+	public static void main(String[] args)
+	{
+		int games = 1000;
+		long timeBudget = 50;
+		int maxDepth = Search.MAX_PLY;
+		int openingPlies = 4;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int hashSize = 4;
+		Tablebase tablebase = null;
+		Evaluator evaluatorA = new Evaluator();
+		Evaluator evaluatorB = new Evaluator();
+
+		for (int i = 0; i < args.length - 1; i += 2)
+		{
+			String value = args[i + 1];
+
+			if (args[i].equals("-games"))
+			{
+				games = Integer.parseInt(value);
+			} else if (args[i].equals("-time"))
+			{
+				timeBudget = Long.parseLong(value);
+			} else if (args[i].equals("-depth"))
+			{
+				maxDepth = Integer.parseInt(value);
+			} else if (args[i].equals("-opening"))
+			{
+				openingPlies = Integer.parseInt(value);
+			} else if (args[i].equals("-threads"))
+			{
+				threads = Integer.parseInt(value);
+			} else if (args[i].equals("-hash"))
+			{
+				hashSize = Integer.parseInt(value);
+			} else if (args[i].equals("-tablebase"))
+			{
+				tablebase = Tablebase.open(new File(value));
+			} else if (args[i].equals("-a"))
+			{
+				evaluatorA = parseWeights(value);
+			} else if (args[i].equals("-b"))
+			{
+				evaluatorB = parseWeights(value);
+			}
+		}
+
+		Tournament tournament = new Tournament(
+				evaluatorA,
+				evaluatorB,
+				timeBudget,
+				maxDepth,
+				openingPlies,
+				hashSize,
+				tablebase);
+
+		System.out.println(String.format(
+				"Playing %,d games on %d threads, %d ms per move",
+				games,
+				threads,
+				timeBudget));
+		System.out.println("A: " + describe(evaluatorA));
+		System.out.println("B: " + describe(evaluatorB));
+
+		long start = System.nanoTime();
+		tournament.play(games, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		tournament.printResults(seconds);
+	}
+
+	// -------------------------------------------------------------------------
+
+	private Evaluator evaluatorA;
+	private Evaluator evaluatorB;
+	private long timeBudget;
+	private int maxDepth;
+	private int openingPlies;
+	private int hashSize;
+	private Tablebase tablebase;
+
+	private ThreadLocal<Engines> engines = new ThreadLocal<Engines>();
+
+	// From engine A's point of view
+	private AtomicInteger wins = new AtomicInteger();
+	private AtomicInteger draws = new AtomicInteger();
+	private AtomicInteger losses = new AtomicInteger();
+	private AtomicInteger errors = new AtomicInteger();
+	private AtomicInteger played = new AtomicInteger();
+
+	public Tournament(
+			Evaluator evaluatorA,
+			Evaluator evaluatorB,
+			long timeBudget,
+			int maxDepth,
+			int openingPlies,
+			int hashSize,
+			Tablebase tablebase)
+	{
+		this.evaluatorA = evaluatorA;
+		this.evaluatorB = evaluatorB;
+		this.timeBudget = timeBudget;
+		this.maxDepth = maxDepth;
+		this.openingPlies = openingPlies;
+		this.hashSize = hashSize;
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 * Plays every game and waits for them all to finish.
+	 *
+	 * @param games
+	 * @param threads How many games are played at once
+	 */
+	public void play(final int games, int threads)
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		final long seedBase = System.nanoTime();
+
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int i = 0; i < games; i++)
+		{
+			final int game = i;
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					// Both games of a pair share an opening, with the engines
+					// swapping sides
+					playGame(seedBase + (game / 2), (game & 1) == 0);
+
+					int count = played.incrementAndGet();
+					if (count % Math.max(1, games / 10) == 0)
+					{
+						System.out.println(String.format(
+								"%,d/%,d games played",
+								count,
+								games));
+					}
+				}
+			});
+		}
+
+		for (Runnable task : tasks)
+		{
+			pool.execute(task);
+		}
+
+		pool.shutdown();
+		try
+		{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param openingSeed
+	 * @param isAUser Whether engine A plays the user's side
+	 */
+	private void playGame(long openingSeed, boolean isAUser)
+	{
+		Engines engines = this.getEngines();
+
+		// Results of earlier games must not leak into this one
+		engines.a.getTranspositionTable().clear();
+		engines.b.getTranspositionTable().clear();
+
+		GameLogicSelfPlay game = new GameLogicSelfPlay(
+				(isAUser) ? (engines.a) : (engines.b),
+				(isAUser) ? (engines.b) : (engines.a),
+				this.timeBudget,
+				this.maxDepth,
+				this.openingPlies,
+				openingSeed);
+		game.setAdjudicator(this.tablebase);
+
+		try
+		{
+			game.startNewGame();
+		} catch (RuntimeException e)
+		{
+			// A game which breaks the rules is reported but not counted
+			if (this.errors.incrementAndGet() == 1)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		int result = (isAUser) ? (game.getResult()) : (-game.getResult());
+		if (result == GameLogicSelfPlay.WON)
+		{
+			this.wins.incrementAndGet();
+		} else if (result == GameLogicSelfPlay.LOST)
+		{
+			this.losses.incrementAndGet();
+		} else
+		{
+			this.draws.incrementAndGet();
+		}
+	}
+
+	private Engines getEngines()
+	{
+		Engines engines = this.engines.get();
+		if (engines == null)
+		{
+			engines = new Engines();
+			engines.a = new ParallelSearch(1, this.evaluatorA,
+					new TranspositionTable(this.hashSize));
+			engines.b = new ParallelSearch(1, this.evaluatorB,
+					new TranspositionTable(this.hashSize));
+			engines.a.setTablebase(this.tablebase);
+			engines.b.setTablebase(this.tablebase);
+
+			this.engines.set(engines);
+		}
+
+		return engines;
+	}
+
+	/**
+	 * Prints the score of engine A, and the Elo difference it suggests with
+	 * a 95% confidence interval.
+	 *
+	 * @param seconds How long the games took
+	 */
+	public void printResults(double seconds)
+	{
+		int wins = this.wins.get();
+		int draws = this.draws.get();
+		int losses = this.losses.get();
+		int games = wins + draws + losses;
+
+		System.out.println(String.format(
+				"A won %,d, drew %,d and lost %,d of %,d games",
+				wins,
+				draws,
+				losses,
+				games));
+		if (this.errors.get() > 0)
+		{
+			System.out.println(String.format(
+					"%,d games broke off with an error",
+					this.errors.get()));
+		}
+
+		if (games > 0)
+		{
+			double score = (wins + (draws / 2.0)) / games;
+
+			// The standard error of the mean score of a single game
+			double variance = ((wins * Math.pow(1 - score, 2))
+					+ (draws * Math.pow(0.5 - score, 2))
+					+ (losses * Math.pow(score, 2))) / games;
+			double error = 1.96 * Math.sqrt(variance / games);
+
+			System.out.println(String.format(
+					"Score %.1f%%, Elo difference %s (95%% interval %s to %s)",
+					score * 100,
+					formatElo(toElo(score)),
+					formatElo(toElo(score - error)),
+					formatElo(toElo(score + error))));
+		}
+
+		System.out.println(String.format(
+				"%.1f games/s (%.1fs)",
+				games / seconds,
+				seconds));
+	}
+
+	/**
+	 * @param score The share of the points won, from 0 to 1
+	 * @return The Elo difference which would give that score
+	 */
+	public static double toElo(double score)
+	{
+		if (score <= 0)
+			return Double.NEGATIVE_INFINITY;
+		if (score >= 1)
+			return Double.POSITIVE_INFINITY;
+
+		return -400 * Math.log10((1 / score) - 1);
+	}
+
+	private static String formatElo(double elo)
+	{
+		if (Double.isInfinite(elo))
+			return (elo > 0) ? ("+inf") : ("-inf");
+
+		return String.format("%+.1f", elo);
+	}
+
+	private static Evaluator parseWeights(String text)
+	{
+		String[] parts = text.split(",");
+		if (parts.length != 5)
+		{
+			throw new IllegalArgumentException("Expected five weights but got \""
+					+ text + "\"");
+		}
+
+		int[] weights = new int[5];
+		for (int i = 0; i < 5; i++)
+		{
+			weights[i] = Integer.parseInt(parts[i].trim());
+		}
+
+		return new Evaluator(
+				weights[0],
+				weights[1],
+				weights[2],
+				weights[3],
+				weights[4]);
+	}
+
+	private static String describe(Evaluator evaluator)
+	{
+		return evaluator.getManValue() + "," + evaluator.getKingValue() + ","
+				+ evaluator.getAdvancementValue() + ","
+				+ evaluator.getBackRowValue() + ","
+				+ evaluator.getCenterKingValue();
+	}
+
+}
@@ -1,8 +1,6 @@
 package com.gmail.tylersyme.checkers.connection;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
@@ -26,8 +24,7 @@ public class ConnectionHandler
 	public static Socket connection;
 	public static final int PORT = 38977;
 
-	private static ObjectOutputStream output;
-	private static ObjectInputStream input;
+	private static PacketConnection packetConnection;
 
 	/**
 	 * This method will create a server which will then wait for an opponent
@@ -62,7 +59,7 @@ public class ConnectionHandler
 						
 						// Tells the main window that a multiplayer game has 
 						// begun
-						mainWindow.startNewMultiplayerGame(output, input);
+						mainWindow.startNewMultiplayerGame(packetConnection);
 
 					} catch (IOException ex)
 					{
@@ -102,7 +99,7 @@ public class ConnectionHandler
 					{
 						establishStreams();
 
-						mainWindow.startNewMultiplayerGame(output, input);
+						mainWindow.startNewMultiplayerGame(packetConnection);
 					}
 					isConnecting = false;
 				}
@@ -117,6 +114,10 @@ public class ConnectionHandler
 		try
 		{
 			connection = new Socket(InetAddress.getByName(ipAddress), PORT);
+
+			// A move and the turn change that follows it are separate writes,
+			// which must not wait on each other's acknowledgement
+			connection.setTcpNoDelay(true);
 			return true;
 		} catch (ConnectException connectionFailed)
 		{
@@ -138,10 +139,15 @@ public class ConnectionHandler
 		isHost = false;
 		try
 		{
-			output.close();
-			input.close();
+			if (packetConnection != null)
+			{
+				packetConnection.close();
+			}
 			server.close();
-			connection.close();
+			if (connection != null)
+			{
+				connection.close();
+			}
 		} catch (IOException e)
 		{
 			e.printStackTrace();
@@ -159,6 +165,7 @@ public class ConnectionHandler
 		{
 			System.out.println("Waiting for Opponent...");
 			connection = server.accept();
+			connection.setTcpNoDelay(true);
 			System.out.println("Opponent Found!");
 
 			isHost = true;
@@ -175,8 +182,16 @@ public class ConnectionHandler
 		isConnecting = false;
 		try
 		{
-			output.close();
-			input.close();
+			// Singleplayer games never open a connection
+			if (connection == null)
+			{
+				return;
+			}
+
+			if (packetConnection != null)
+			{
+				packetConnection.close();
+			}
 			connection.close();
 			if (server != null)
 			{
@@ -188,14 +203,34 @@ public class ConnectionHandler
 		}
 	}
 
+	/**
+	 * Replaces the connection once a lost match has been resumed over a new
+	 * one, so that {@link #disconnect()} closes the right one.
+	 * 
+	 * @param socket
+	 * @param resumed
+	 */
+	static void setConnection(Socket socket, PacketConnection resumed)
+	{
+		connection = socket;
+		packetConnection = resumed;
+	}
+
+	/**
+	 * Opens the connection's streams and agrees on a protocol version with
+	 * the other player.
+	 * 
+	 * @see PacketConnection
+	 */
 	private static void establishStreams()
 	{
 		System.out.println("Establishing Stream Connections");
 		try
 		{
-			output = new ObjectOutputStream(connection.getOutputStream());
-			output.flush(); // Precautionary Measure
-			input = new ObjectInputStream(connection.getInputStream());
+			packetConnection = new PacketConnection(connection);
+			packetConnection.negotiate();
+			System.out.println("Using Protocol Version "
+					+ packetConnection.getVersion());
 		} catch (IOException e)
 		{
 			e.printStackTrace();
@@ -0,0 +1,132 @@
+package com.gmail.tylersyme.checkers.connection;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The threads which connections block on. Every connection reads its packets
+ * on a thread of its own, so when the Java version has virtual threads they
+ * are used; thousands of connections then cost no more than thousands of
+ * small objects. Older Java versions fall back to ordinary threads.
+ * </p>
+ * Delayed work, such as closing a connection once a game has ended, waits on
+ * a single shared timer rather than on a sleeping thread of its own.
+ */
+public final class ConnectionThreads
+{
+	// Set to false to use ordinary threads even where virtual threads exist
+	public static final String VIRTUAL_THREADS_PROPERTY = "checkers.virtualThreads";
+
+	private static final ExecutorService EXECUTOR = newExecutor(Boolean
+			.parseBoolean(System.getProperty(VIRTUAL_THREADS_PROPERTY, "true")));
+
+	private static final ScheduledExecutorService TIMER = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "Connection Timer");
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+
+	private ConnectionThreads()
+	{ }
+
+	/**
+	 * Creates an executor which starts a new thread for every task.
+	 * 
+	 * @param useVirtualThreads Whether to use virtual threads if this Java
+	 *            version has them
+	 * @return The executor
+	 */
+	public static ExecutorService newExecutor(boolean useVirtualThreads)
+	{
+		if (useVirtualThreads)
+		{
+			try
+			{
+				// Looked up by name so that the game still runs on versions
+				// of Java from before virtual threads
+				Method method = Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor");
+
+				return (ExecutorService) method.invoke(null);
+			} catch (ReflectiveOperationException e)
+			{
+				// Not available in this version of Java
+			}
+		}
+
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * @return Whether the given executor runs its tasks on virtual threads
+	 */
+	public static boolean isVirtual(ExecutorService executor)
+	{
+		return (executor.getClass().getName().contains("ThreadPerTask"));
+	}
+
+	/**
+	 * Runs a task which may block on a connection on a thread of its own.
+	 * 
+	 * @param task
+	 */
+	public static void execute(Runnable task)
+	{
+		EXECUTOR.execute(task);
+	}
+
+	/**
+	 * Runs a task on a thread of its own once the given delay has passed.
+	 * 
+	 * @param task
+	 * @param delay In milliseconds
+	 */
+	public static void schedule(Runnable task, long delay)
+	{
+		schedule(EXECUTOR, task, delay);
+	}
+
+	/**
+	 * Hands a task to the given executor once the given delay has passed.
+	 * 
+	 * @param executor
+	 * @param task
+	 * @param delay In milliseconds
+	 */
+	public static void schedule(
+			final Executor executor,
+			final Runnable task,
+			long delay)
+	{
+		TIMER.schedule(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				executor.execute(task);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return Whether connections are served by virtual threads
+	 */
+	public static boolean isVirtual()
+	{
+		return isVirtual(EXECUTOR);
+	}
+
+}
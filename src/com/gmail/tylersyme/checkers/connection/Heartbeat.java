@@ -0,0 +1,163 @@
+package com.gmail.tylersyme.checkers.connection;
+
+/**
+ * <p>
+ * The heartbeat of one connection. Each side pings the other every interval
+ * with the time the ping was sent, and the other side answers with a pong
+ * carrying the same time, so every pong measures a round trip without either
+ * side keeping track of its pings.
+ * </p>
+ * <p>
+ * Round trips are smoothed as TCP smooths them: each new sample moves the
+ * smoothed round trip an eighth of the way towards it, and the jitter (the
+ * smoothed difference between samples and the smoothed round trip) a
+ * quarter of the way.
+ * </p>
+ * A connection which has sent nothing at all, pongs included, for
+ * {@link #TIMEOUT_INTERVALS} intervals is taken to be dead, long before the
+ * operating system would notice.
+ */
+public class Heartbeat
+{
+	// Set to the interval in milliseconds to ping more or less often
+	public static final String INTERVAL_PROPERTY = "checkers.heartbeatInterval";
+	public static final long DEFAULT_INTERVAL = 2000;
+
+	public static final int TIMEOUT_INTERVALS = 5;
+
+	private long interval; // In nanoseconds, as are all the times below
+	private long lastPingTime;
+	private long lastReceiveTime;
+
+	private double smoothedRoundTrip = 0;
+	private double jitter = 0;
+	private long lastRoundTrip = 0;
+	private int sampleCount = 0;
+
+	/**
+	 * @param interval How often to ping, in milliseconds
+	 */
+	public Heartbeat(long interval)
+	{
+		this.interval = interval * 1000000;
+
+		long now = System.nanoTime();
+		this.lastPingTime = now;
+		this.lastReceiveTime = now;
+	}
+
+	/**
+	 * @return The interval given by {@link #INTERVAL_PROPERTY}, or
+	 *         {@link #DEFAULT_INTERVAL}
+	 */
+	public static long getDefaultInterval()
+	{
+		return Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Notes that something arrived from the other side.
+	 *
+	 * @param now As given by {@link System#nanoTime()}
+	 */
+	public synchronized void received(long now)
+	{
+		this.lastReceiveTime = now;
+	}
+
+	/**
+	 * @param now As given by {@link System#nanoTime()}
+	 * @return Whether a ping should be sent now, in which case the next one
+	 *         is due an interval later
+	 */
+	public synchronized boolean isPingDue(long now)
+	{
+		if (now - this.lastPingTime < this.interval)
+			return false;
+
+		this.lastPingTime = now;
+		return true;
+	}
+
+	/**
+	 * Measures a round trip.
+	 *
+	 * @param sentTime The time carried by the pong
+	 * @param now As given by {@link System#nanoTime()}
+	 */
+	public synchronized void pongReceived(long sentTime, long now)
+	{
+		this.lastReceiveTime = now;
+
+		long roundTrip = now - sentTime;
+		if (roundTrip < 0 || roundTrip > this.interval * TIMEOUT_INTERVALS)
+			return; // Not a time this side sent
+
+		this.lastRoundTrip = roundTrip;
+		if (this.sampleCount == 0)
+		{
+			this.smoothedRoundTrip = roundTrip;
+			this.jitter = roundTrip / 2.0;
+		} else
+		{
+			this.jitter += (Math.abs(this.smoothedRoundTrip - roundTrip) - this.jitter) / 4;
+			this.smoothedRoundTrip += (roundTrip - this.smoothedRoundTrip) / 8;
+		}
+		this.sampleCount++;
+	}
+
+	/**
+	 * @param now As given by {@link System#nanoTime()}
+	 * @return Whether the other side has been quiet for too long
+	 */
+	public synchronized boolean isDead(long now)
+	{
+		return now - this.lastReceiveTime > this.interval * TIMEOUT_INTERVALS;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The smoothed round trip in milliseconds, or 0 before the first
+	 *         pong
+	 */
+	public synchronized double getSmoothedRoundTrip()
+	{
+		return this.smoothedRoundTrip / 1e6;
+	}
+
+	/**
+	 * @return The jitter in milliseconds
+	 */
+	public synchronized double getJitter()
+	{
+		return this.jitter / 1e6;
+	}
+
+	/**
+	 * @return The last round trip measured, in milliseconds
+	 */
+	public synchronized double getLastRoundTrip()
+	{
+		return this.lastRoundTrip / 1e6;
+	}
+
+	/**
+	 * @return The number of round trips measured
+	 */
+	public synchronized int getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	 * @return How often to ping, in milliseconds
+	 */
+	public long getInterval()
+	{
+		return this.interval / 1000000;
+	}
+
+}
@@ -0,0 +1,761 @@
+package com.gmail.tylersyme.checkers.connection;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * A single message between two players' games. Packets travel in one of two
+ * forms, depending on what the two games agreed on when they connected (see
+ * {@link PacketConnection}):
+ * </p>
+ * <ul>
+ * <li>The legacy form, used by older versions of the game, is a String such
+ * as "2:oldX:oldY:newX:newY" written to an ObjectOutputStream.</li>
+ * <li>The binary form is a frame of a two byte length, followed by a one byte
+ * type and the packet's fields. A checker move takes five bytes in all.</li>
+ * </ul>
+ * Frames are read and written directly on ByteBuffers, so they suit both
+ * blocking streams and non-blocking channels.
+ */
+public final class Packet
+{
+	// Packet types, which are also the IDs of the legacy packets
+	public static final int START_GAME = 0;
+	public static final int PLAYER_TURN = 1;
+	public static final int CHECKER_MOVE = 2;
+	public static final int END_GAME = 3;
+	public static final int REQUEST_DRAW = 4;
+	public static final int DRAW_RESPONSE = 5;
+	public static final int CHAT_MESSAGE = 6;
+	public static final int VERSION_OFFER = 7; // Only sent as a legacy packet
+	public static final int BOARD_SYNC = 8; // Only sent by a server
+	public static final int MATCH_REQUEST = 9; // Only sent to a server
+	public static final int WATCH_REQUEST = 10; // Only sent to a server
+	public static final int SESSION_TOKEN = 11; // Only sent by a server
+	public static final int RESUME = 12; // Only sent to a server
+	public static final int RESUMED = 13; // Only sent by a server
+	public static final int PING = 14;
+	public static final int PONG = 15;
+
+	// The length prefix of a frame
+	public static final int LENGTH_SIZE = 2;
+	public static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+	// Longer chat messages are cut short, so every packet fits in a frame
+	public static final int MAX_MESSAGE_LENGTH = 4096;
+
+	private static final Packet START_GAME_PACKET = new Packet(START_GAME);
+	private static final Packet REQUEST_DRAW_PACKET = new Packet(REQUEST_DRAW);
+
+	// -------------------------------------------------------------------------
+
+	private int type;
+
+	// The turn, the result of the game, the draw response or the version,
+	// depending on the type
+	private boolean flag;
+	private int version;
+	private int rating;
+	private int matchId;
+
+	// The session token and packet count of a resume, or the count of the
+	// server's answer
+	private long token;
+	private int count;
+
+	// When the ping was sent, which its pong carries back
+	private long time;
+
+	private int oldX;
+	private int oldY;
+	private int newX;
+	private int newY;
+
+	private String message;
+
+	// The board of a board sync, from the receiver's point of view
+	private int userPieces;
+	private int opponentPieces;
+	private int kings;
+	private int jumpingSquare;
+
+	private Packet(int type)
+	{
+		this.type = type;
+	}
+
+	/**
+	 * Causes the receiver's game to start.
+	 */
+	public static Packet startGame()
+	{
+		return START_GAME_PACKET;
+	}
+
+	/**
+	 * Sets the receiver's turn.
+	 * 
+	 * @param isReceiversTurn
+	 */
+	public static Packet playerTurn(boolean isReceiversTurn)
+	{
+		return flagPacket(PLAYER_TURN, isReceiversTurn);
+	}
+
+	/**
+	 * Moves one of the sender's checkers, given from the sender's point of
+	 * view.
+	 */
+	public static Packet checkerMove(int oldX, int oldY, int newX, int newY)
+	{
+		Packet packet = new Packet(CHECKER_MOVE);
+		packet.oldX = oldX & 7;
+		packet.oldY = oldY & 7;
+		packet.newX = newX & 7;
+		packet.newY = newY & 7;
+
+		return packet;
+	}
+
+	/**
+	 * Ends the receiver's game.
+	 * 
+	 * @param didReceiverWin
+	 */
+	public static Packet endGame(boolean didReceiverWin)
+	{
+		return flagPacket(END_GAME, didReceiverWin);
+	}
+
+	/**
+	 * Asks the receiver to agree to a draw.
+	 */
+	public static Packet requestDraw()
+	{
+		return REQUEST_DRAW_PACKET;
+	}
+
+	/**
+	 * Answers the receiver's request for a draw.
+	 * 
+	 * @param didAccept
+	 */
+	public static Packet drawResponse(boolean didAccept)
+	{
+		return flagPacket(DRAW_RESPONSE, didAccept);
+	}
+
+	/**
+	 * @param message Cut short to {@link #MAX_MESSAGE_LENGTH} characters
+	 */
+	public static Packet chatMessage(String message)
+	{
+		Packet packet = new Packet(CHAT_MESSAGE);
+		packet.message = (message.length() > MAX_MESSAGE_LENGTH) ? (message
+				.substring(0, MAX_MESSAGE_LENGTH)) : (message);
+
+		return packet;
+	}
+
+	/**
+	 * Offers the receiver the newest protocol version the sender speaks.
+	 * 
+	 * @param version
+	 */
+	public static Packet versionOffer(int version)
+	{
+		Packet packet = new Packet(VERSION_OFFER);
+		packet.version = version;
+
+		return packet;
+	}
+
+	/**
+	 * Replaces the receiver's board with the server's, after the server
+	 * refused one of the receiver's moves.
+	 * 
+	 * @param userPieces The receiver's pieces
+	 * @param opponentPieces The sender's pieces
+	 * @param kings
+	 * @param isReceiversTurn
+	 * @param jumpingSquare The square of the receiver's piece part way
+	 *            through a multi-jump, or -1 if no piece is
+	 */
+	public static Packet boardSync(
+			int userPieces,
+			int opponentPieces,
+			int kings,
+			boolean isReceiversTurn,
+			int jumpingSquare)
+	{
+		Packet packet = new Packet(BOARD_SYNC);
+		packet.userPieces = userPieces;
+		packet.opponentPieces = opponentPieces;
+		packet.kings = kings;
+		packet.flag = isReceiversTurn;
+		packet.jumpingSquare = jumpingSquare;
+
+		return packet;
+	}
+
+	/**
+	 * Asks a dedicated server for an opponent of about the given rating.
+	 * Players who never ask are given a default rating.
+	 * 
+	 * @param rating From 0 to 65535
+	 */
+	public static Packet matchRequest(int rating)
+	{
+		Packet packet = new Packet(MATCH_REQUEST);
+		packet.rating = Math.max(0, Math.min(0xFFFF, rating));
+
+		return packet;
+	}
+
+	/**
+	 * Asks a dedicated server to let the sender watch a match rather than
+	 * play one. Spectators are sent the board from the first player's point
+	 * of view, then every move and the end of the game.
+	 * 
+	 * @param matchId The match to watch, or -1 for the most watched match
+	 */
+	public static Packet watchRequest(int matchId)
+	{
+		Packet packet = new Packet(WATCH_REQUEST);
+		packet.matchId = matchId;
+
+		return packet;
+	}
+
+	/**
+	 * Gives the receiver a token with which they may take their place in the
+	 * match back if their connection is lost.
+	 * 
+	 * @param token
+	 */
+	public static Packet sessionToken(long token)
+	{
+		Packet packet = new Packet(SESSION_TOKEN);
+		packet.token = token;
+
+		return packet;
+	}
+
+	/**
+	 * Takes the sender's place in a match back over a new connection.
+	 * 
+	 * @param token As given by a {@link #SESSION_TOKEN} packet
+	 * @param count The number of packets the sender has received in the
+	 *            match, so that the server only sends the rest again
+	 */
+	public static Packet resume(long token, int count)
+	{
+		Packet packet = new Packet(RESUME);
+		packet.token = token;
+		packet.count = count;
+
+		return packet;
+	}
+
+	/**
+	 * Answers a {@link #RESUME} packet.
+	 * 
+	 * @param count The number of packets the server has received from the
+	 *            receiver, so that the receiver only sends the rest again, or
+	 *            -1 if the match can no longer be resumed
+	 */
+	public static Packet resumed(int count)
+	{
+		Packet packet = new Packet(RESUMED);
+		packet.count = count;
+
+		return packet;
+	}
+
+	/**
+	 * Asks the receiver to answer with a {@link #PONG} carrying the same
+	 * time.
+	 * 
+	 * @param time When the ping was sent, as the sender measures time
+	 */
+	public static Packet ping(long time)
+	{
+		Packet packet = new Packet(PING);
+		packet.time = time;
+
+		return packet;
+	}
+
+	/**
+	 * Answers a {@link #PING}.
+	 * 
+	 * @param time The time the ping carried
+	 */
+	public static Packet pong(long time)
+	{
+		Packet packet = new Packet(PONG);
+		packet.time = time;
+
+		return packet;
+	}
+
+	private static Packet flagPacket(int type, boolean flag)
+	{
+		Packet packet = new Packet(type);
+		packet.flag = flag;
+
+		return packet;
+	}
+
+	// -------------------------------------------------------------------------
+	// Binary Frames
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The number of bytes {@link #encode(ByteBuffer)} writes,
+	 *         including the length prefix
+	 */
+	public int getEncodedLength()
+	{
+		return LENGTH_SIZE + 1 + this.getPayloadLength();
+	}
+
+	private int getPayloadLength()
+	{
+		switch (this.type)
+		{
+			case (PLAYER_TURN):
+			case (END_GAME):
+			case (DRAW_RESPONSE):
+				return 1;
+			case (CHECKER_MOVE):
+				return 2;
+			case (BOARD_SYNC):
+				return 14;
+			case (MATCH_REQUEST):
+				return 2;
+			case (WATCH_REQUEST):
+				return 4;
+			case (SESSION_TOKEN):
+				return 8;
+			case (RESUME):
+				return 12;
+			case (RESUMED):
+				return 4;
+			case (PING):
+			case (PONG):
+				return 8;
+			case (CHAT_MESSAGE):
+				return this.getMessageBytes().length;
+			default:
+				return 0;
+		}
+	}
+
+	private byte[] getMessageBytes()
+	{
+		return this.message.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the packet as a binary frame.
+	 * 
+	 * @param output Must have room for {@link #getEncodedLength()} bytes
+	 * @throws IllegalStateException If the packet has no binary form
+	 */
+	public void encode(ByteBuffer output)
+	{
+		if (this.type == VERSION_OFFER)
+			throw new IllegalStateException("Version offers are never framed");
+
+		int start = output.position();
+		output.position(start + LENGTH_SIZE);
+		output.put((byte) this.type);
+
+		switch (this.type)
+		{
+			case (PLAYER_TURN):
+			case (END_GAME):
+			case (DRAW_RESPONSE):
+				output.put((byte) ((this.flag) ? (1) : (0)));
+				break;
+			case (CHECKER_MOVE):
+				// Each square as x | y << 3
+				output.put((byte) (this.oldX | (this.oldY << 3)));
+				output.put((byte) (this.newX | (this.newY << 3)));
+				break;
+			case (BOARD_SYNC):
+				output.putInt(this.userPieces);
+				output.putInt(this.opponentPieces);
+				output.putInt(this.kings);
+				output.put((byte) ((this.flag) ? (1) : (0)));
+				output.put((byte) this.jumpingSquare);
+				break;
+			case (MATCH_REQUEST):
+				output.putShort((short) this.rating);
+				break;
+			case (WATCH_REQUEST):
+				output.putInt(this.matchId);
+				break;
+			case (SESSION_TOKEN):
+				output.putLong(this.token);
+				break;
+			case (RESUME):
+				output.putLong(this.token);
+				output.putInt(this.count);
+				break;
+			case (RESUMED):
+				output.putInt(this.count);
+				break;
+			case (PING):
+			case (PONG):
+				output.putLong(this.time);
+				break;
+			case (CHAT_MESSAGE):
+				output.put(this.getMessageBytes());
+				break;
+		}
+
+		output.putShort(start, (short) (output.position() - start - LENGTH_SIZE));
+	}
+
+	/**
+	 * Reads the next binary frame. Nothing is consumed unless the whole frame
+	 * is available.
+	 * 
+	 * @param input A buffer ready to be read from
+	 * @return The packet<br>
+	 *         Will return <b>null</b> if the frame has not fully arrived
+	 * @throws ProtocolException If the frame is not a valid packet
+	 */
+	public static Packet decode(ByteBuffer input) throws ProtocolException
+	{
+		if (input.remaining() < LENGTH_SIZE)
+			return null;
+
+		int start = input.position();
+		int length = input.getShort(start) & 0xFFFF;
+		if (input.remaining() < LENGTH_SIZE + length)
+			return null;
+		if (length == 0)
+			throw new ProtocolException("Empty frame");
+
+		int payloadStart = start + LENGTH_SIZE + 1;
+		int payloadLength = length - 1;
+		int type = input.get(start + LENGTH_SIZE);
+		Packet packet;
+
+		switch (type)
+		{
+			case (START_GAME):
+				packet = START_GAME_PACKET;
+				break;
+			case (REQUEST_DRAW):
+				packet = REQUEST_DRAW_PACKET;
+				break;
+			case (PLAYER_TURN):
+			case (END_GAME):
+			case (DRAW_RESPONSE):
+				checkLength(type, payloadLength, 1);
+				packet = flagPacket(type, input.get(payloadStart) != 0);
+				break;
+			case (CHECKER_MOVE):
+				checkLength(type, payloadLength, 2);
+				int from = input.get(payloadStart);
+				int to = input.get(payloadStart + 1);
+				packet = checkerMove(from, from >> 3, to, to >> 3);
+				break;
+			case (BOARD_SYNC):
+				checkLength(type, payloadLength, 14);
+				packet = boardSync(
+						input.getInt(payloadStart),
+						input.getInt(payloadStart + 4),
+						input.getInt(payloadStart + 8),
+						input.get(payloadStart + 12) != 0,
+						input.get(payloadStart + 13));
+				break;
+			case (MATCH_REQUEST):
+				checkLength(type, payloadLength, 2);
+				packet = matchRequest(input.getShort(payloadStart) & 0xFFFF);
+				break;
+			case (WATCH_REQUEST):
+				checkLength(type, payloadLength, 4);
+				packet = watchRequest(input.getInt(payloadStart));
+				break;
+			case (SESSION_TOKEN):
+				checkLength(type, payloadLength, 8);
+				packet = sessionToken(input.getLong(payloadStart));
+				break;
+			case (RESUME):
+				checkLength(type, payloadLength, 12);
+				packet = resume(
+						input.getLong(payloadStart),
+						input.getInt(payloadStart + 8));
+				break;
+			case (RESUMED):
+				checkLength(type, payloadLength, 4);
+				packet = resumed(input.getInt(payloadStart));
+				break;
+			case (PING):
+				checkLength(type, payloadLength, 8);
+				packet = ping(input.getLong(payloadStart));
+				break;
+			case (PONG):
+				checkLength(type, payloadLength, 8);
+				packet = pong(input.getLong(payloadStart));
+				break;
+			case (CHAT_MESSAGE):
+				byte[] bytes = new byte[payloadLength];
+				for (int i = 0; i < payloadLength; i++)
+				{
+					bytes[i] = input.get(payloadStart + i);
+				}
+				packet = new Packet(CHAT_MESSAGE);
+				packet.message = new String(bytes, StandardCharsets.UTF_8);
+				break;
+			default:
+				throw new ProtocolException("Unknown packet type " + type);
+		}
+
+		input.position(start + LENGTH_SIZE + length);
+
+		return packet;
+	}
+
+	private static void checkLength(int type, int length, int expected)
+			throws ProtocolException
+	{
+		if (length != expected)
+		{
+			throw new ProtocolException("Packet type " + type + " has "
+					+ length + " bytes instead of " + expected);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Legacy Strings
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The packet as an older version of the game writes it
+	 */
+	public String toLegacyString()
+	{
+		switch (this.type)
+		{
+			case (PLAYER_TURN):
+			case (END_GAME):
+			case (DRAW_RESPONSE):
+				return this.type + ":" + this.flag;
+			case (CHECKER_MOVE):
+				return this.type + ":" + this.oldX + ":" + this.oldY + ":"
+						+ this.newX + ":" + this.newY;
+			case (CHAT_MESSAGE):
+				return this.type + ":" + this.message;
+			case (VERSION_OFFER):
+				return this.type + ":" + this.version;
+			case (BOARD_SYNC):
+				return this.type + ":" + this.userPieces + ":"
+						+ this.opponentPieces + ":" + this.kings + ":"
+						+ this.flag + ":" + this.jumpingSquare;
+			case (MATCH_REQUEST):
+				return this.type + ":" + this.rating;
+			case (WATCH_REQUEST):
+				return this.type + ":" + this.matchId;
+			case (SESSION_TOKEN):
+				return this.type + ":" + this.token;
+			case (RESUME):
+				return this.type + ":" + this.token + ":" + this.count;
+			case (RESUMED):
+				return this.type + ":" + this.count;
+			case (PING):
+			case (PONG):
+				return this.type + ":" + this.time;
+			default:
+				return this.type + ":";
+		}
+	}
+
+	/**
+	 * Reads a packet written by an older version of the game. Everything
+	 * after the ID of a chat message is the message, colons and all.
+	 * 
+	 * @param text
+	 * @return The packet
+	 * @throws ProtocolException If the text is not a valid packet
+	 */
+	public static Packet fromLegacyString(String text) throws ProtocolException
+	{
+		int separator = text.indexOf(':');
+		String fields = (separator < 0) ? ("") : (text.substring(separator + 1));
+
+		try
+		{
+			int type = Integer.parseInt((separator < 0) ? (text) : (text
+					.substring(0, separator)));
+
+			switch (type)
+			{
+				case (START_GAME):
+					return START_GAME_PACKET;
+				case (REQUEST_DRAW):
+					return REQUEST_DRAW_PACKET;
+				case (PLAYER_TURN):
+				case (END_GAME):
+				case (DRAW_RESPONSE):
+					return flagPacket(type, Boolean.parseBoolean(fields));
+				case (CHECKER_MOVE):
+					String[] squares = fields.split(":");
+					return checkerMove(
+							Integer.parseInt(squares[0]),
+							Integer.parseInt(squares[1]),
+							Integer.parseInt(squares[2]),
+							Integer.parseInt(squares[3]));
+				case (CHAT_MESSAGE):
+					return chatMessage(fields);
+				case (VERSION_OFFER):
+					return versionOffer(Integer.parseInt(fields));
+				case (BOARD_SYNC):
+					String[] board = fields.split(":");
+					return boardSync(
+							Integer.parseInt(board[0]),
+							Integer.parseInt(board[1]),
+							Integer.parseInt(board[2]),
+							Boolean.parseBoolean(board[3]),
+							Integer.parseInt(board[4]));
+				case (MATCH_REQUEST):
+					return matchRequest(Integer.parseInt(fields));
+				case (WATCH_REQUEST):
+					return watchRequest(Integer.parseInt(fields));
+				case (SESSION_TOKEN):
+					return sessionToken(Long.parseLong(fields));
+				case (RESUME):
+					String[] resume = fields.split(":");
+					return resume(
+							Long.parseLong(resume[0]),
+							Integer.parseInt(resume[1]));
+				case (RESUMED):
+					return resumed(Integer.parseInt(fields));
+				case (PING):
+					return ping(Long.parseLong(fields));
+				case (PONG):
+					return pong(Long.parseLong(fields));
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+		{
+			// Reported below along with unknown IDs
+		}
+
+		throw new ProtocolException("Invalid packet \"" + text + "\"");
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public int getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return The turn of a {@link #PLAYER_TURN} or {@link #BOARD_SYNC}
+	 *         packet, the result of an {@link #END_GAME} packet or the answer
+	 *         of a {@link #DRAW_RESPONSE} packet
+	 */
+	public boolean getFlag()
+	{
+		return flag;
+	}
+
+	public int getVersion()
+	{
+		return version;
+	}
+
+	public int getOldX()
+	{
+		return oldX;
+	}
+
+	public int getOldY()
+	{
+		return oldY;
+	}
+
+	public int getNewX()
+	{
+		return newX;
+	}
+
+	public int getNewY()
+	{
+		return newY;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	public int getRating()
+	{
+		return rating;
+	}
+
+	public int getMatchId()
+	{
+		return matchId;
+	}
+
+	public long getToken()
+	{
+		return token;
+	}
+
+	/**
+	 * @return The time carried by a {@link #PING} or {@link #PONG} packet
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return The packet count of a {@link #RESUME} or {@link #RESUMED}
+	 *         packet
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	public int getUserPieces()
+	{
+		return userPieces;
+	}
+
+	public int getOpponentPieces()
+	{
+		return opponentPieces;
+	}
+
+	public int getKings()
+	{
+		return kings;
+	}
+
+	public int getJumpingSquare()
+	{
+		return jumpingSquare;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.toLegacyString();
+	}
+
+}
@@ -0,0 +1,314 @@
+package com.gmail.tylersyme.checkers.connection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Sends and receives {@link Packet}s over a connection to the other player.
+ * </p>
+ * <p>
+ * Every connection starts out the way older versions of the game expect:
+ * object streams carrying Strings. Each side then offers the newest protocol
+ * version it speaks as a legacy {@link Packet#VERSION_OFFER} packet. When both
+ * sides offer {@link #BINARY_VERSION}, the connection switches to binary
+ * frames written straight to the socket.
+ * </p>
+ * <p>
+ * An older game never answers the offer, so the connection stays with
+ * legacy packets if anything else arrives first, or if nothing arrives
+ * within {@link #NEGOTIATION_TIMEOUT} milliseconds.
+ * </p>
+ * Packets given to {@link #write(Packet)} wait until {@link #flush()}, so
+ * that several packets can leave in a single write to the socket (and so,
+ * with TCP_NODELAY, usually a single segment).
+ * {@link #send(Packet)} writes and flushes straight away.
+ */
+public class PacketConnection
+{
+	public static final int LEGACY_VERSION = 0;
+	public static final int BINARY_VERSION = 1;
+
+	// The newest version this game speaks
+	public static final int VERSION = BINARY_VERSION;
+
+	public static final int NEGOTIATION_TIMEOUT = 2000;
+
+	// How long a dedicated server holds a player's place in a match after
+	// their connection is lost
+	public static final int RESUME_TIMEOUT = 30000;
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private Socket socket;
+	private int version = LEGACY_VERSION;
+	private volatile boolean isClosed = false;
+
+	private ObjectOutputStream objectOutput;
+	private ObjectInputStream objectInput;
+
+	private OutputStream output;
+	private DataInputStream input;
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	// A legacy packet which arrived in place of a version offer
+	private Packet pendingPacket;
+
+	/**
+	 * Opens the object streams every connection starts with. This waits for
+	 * the other side to open its streams too.
+	 * 
+	 * @param socket
+	 * @throws IOException
+	 */
+	public PacketConnection(Socket socket) throws IOException
+	{
+		this.socket = socket;
+
+		// The object stream writes out every object it is given, so only the
+		// buffer beneath it lets packets wait for a flush
+		this.objectOutput = new ObjectOutputStream(new BufferedOutputStream(
+				socket.getOutputStream()));
+		this.objectOutput.flush(); // The other side waits for the header
+		this.objectInput = new ObjectInputStream(socket.getInputStream());
+	}
+
+	/**
+	 * Agrees on a protocol version with the other side. This must be called
+	 * before any other packet is sent or received.
+	 * 
+	 * @throws IOException
+	 */
+	public void negotiate() throws IOException
+	{
+		this.send(Packet.versionOffer(VERSION));
+
+		int timeout = this.socket.getSoTimeout();
+		this.socket.setSoTimeout(NEGOTIATION_TIMEOUT);
+		try
+		{
+			Packet reply = this.receive();
+			if (reply.getType() == Packet.VERSION_OFFER)
+			{
+				this.setVersion(Math.min(VERSION, reply.getVersion()));
+			} else
+			{
+				this.pendingPacket = reply;
+			}
+		} catch (SocketTimeoutException e)
+		{
+			// An older game, which does not know about versions
+		} finally
+		{
+			this.socket.setSoTimeout(timeout);
+		}
+	}
+
+	private void setVersion(int version) throws IOException
+	{
+		this.version = version;
+
+		if (version >= BINARY_VERSION)
+		{
+			// The object stream has read nothing past the offer, so the rest
+			// of the socket's input is binary frames
+			this.output = this.socket.getOutputStream();
+			this.input = new DataInputStream(new BufferedInputStream(
+					this.socket.getInputStream()));
+		}
+	}
+
+	/**
+	 * Sends a packet, along with any packets waiting to be flushed. Packets
+	 * may be sent from any thread.
+	 * 
+	 * @param packet
+	 * @throws IOException
+	 */
+	public synchronized void send(Packet packet) throws IOException
+	{
+		this.write(packet);
+		this.flush();
+	}
+
+	/**
+	 * Adds a packet to those waiting for the next {@link #flush()}.
+	 * 
+	 * @param packet
+	 * @throws IOException
+	 */
+	public synchronized void write(Packet packet) throws IOException
+	{
+		if (this.version == LEGACY_VERSION)
+		{
+			this.objectOutput.writeObject(packet.toLegacyString());
+			return;
+		}
+
+		int length = packet.getEncodedLength();
+		if (this.writeBuffer.remaining() < length)
+		{
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(
+					this.writeBuffer.capacity() * 2,
+					this.writeBuffer.position() + length));
+			this.writeBuffer.flip();
+			larger.put(this.writeBuffer);
+			this.writeBuffer = larger;
+		}
+
+		packet.encode(this.writeBuffer);
+	}
+
+	/**
+	 * Sends every packet waiting in a single write.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException
+	{
+		if (this.version == LEGACY_VERSION)
+		{
+			this.objectOutput.flush();
+			return;
+		}
+
+		if (this.writeBuffer.position() > 0)
+		{
+			try
+			{
+				this.output.write(this.writeBuffer.array(), 0, this.writeBuffer
+						.position());
+				this.output.flush();
+			} finally
+			{
+				this.writeBuffer.clear();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next packet.
+	 * 
+	 * @return The packet
+	 * @throws java.io.EOFException If the other side closed the connection
+	 * @throws IOException
+	 */
+	public Packet receive() throws IOException
+	{
+		if (this.pendingPacket != null)
+		{
+			Packet packet = this.pendingPacket;
+			this.pendingPacket = null;
+			return packet;
+		}
+
+		if (this.version == LEGACY_VERSION)
+		{
+			Object object;
+			try
+			{
+				object = this.objectInput.readObject();
+			} catch (ClassNotFoundException e)
+			{
+				throw new StreamCorruptedException(e.getMessage());
+			}
+
+			if (object instanceof String == false)
+				throw new StreamCorruptedException("Received " + object);
+
+			return Packet.fromLegacyString((String) object);
+		}
+
+		this.input.readFully(this.readBuffer.array(), 0, Packet.LENGTH_SIZE);
+		int length = this.readBuffer.getShort(0) & 0xFFFF;
+		if (this.readBuffer.capacity() < Packet.LENGTH_SIZE + length)
+		{
+			ByteBuffer larger = ByteBuffer.allocate(Packet.LENGTH_SIZE + length);
+			larger.putShort(0, (short) length);
+			this.readBuffer = larger;
+		}
+
+		this.input.readFully(this.readBuffer.array(), Packet.LENGTH_SIZE, length);
+		this.readBuffer.position(0);
+		this.readBuffer.limit(Packet.LENGTH_SIZE + length);
+		Packet packet = Packet.decode(this.readBuffer);
+		this.readBuffer.clear();
+
+		return packet;
+	}
+
+	/**
+	 * Closes the connection. A thread waiting in {@link #receive()} is woken
+	 * with an exception.
+	 */
+	public void close()
+	{
+		this.isClosed = true;
+		try
+		{
+			this.socket.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Closes the socket as if the connection had been lost, for a connection
+	 * which has stopped answering. Unlike {@link #close()}, this leaves the
+	 * connection free to be resumed.
+	 */
+	public void drop()
+	{
+		try
+		{
+			this.socket.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The protocol version agreed on, which is
+	 *         {@link #LEGACY_VERSION} until {@link #negotiate()} has finished
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * @return Whether {@link #close()} has been called, rather than the
+	 *         connection being lost
+	 */
+	public boolean isClosed()
+	{
+		return isClosed;
+	}
+
+	/**
+	 * @return The other side's address, which is kept after the connection
+	 *         is lost
+	 */
+	public InetSocketAddress getRemoteAddress()
+	{
+		return (InetSocketAddress) this.socket.getRemoteSocketAddress();
+	}
+
+}
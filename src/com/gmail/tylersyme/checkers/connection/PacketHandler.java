@@ -2,66 +2,123 @@ package com.gmail.tylersyme.checkers.connection;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
 
-import com.gmail.tylersyme.checkers.CheckersWindow;
 import com.gmail.tylersyme.checkers.game.CheckerPiece;
-import com.gmail.tylersyme.checkers.game.GameLogic;
-
+import com.gmail.tylersyme.checkers.game.GameLogicMP;
+
+/**
+ * <p>
+ * Passes packets between a multiplayer game and the connection to the
+ * opponent (or to a dedicated server).
+ * </p>
+ * <p>
+ * Packets leave together wherever the game makes several at once: the hops
+ * of a move are held until the move is finished, and a {@link #startBatch()}
+ * holds everything until the matching {@link #endBatch()}. Every other
+ * packet, and the end of the user's turn in particular, flushes whatever is
+ * waiting in a single write.
+ * </p>
+ * <p>
+ * A dedicated server gives each player a session token once their match
+ * starts. If the connection is then lost, the handler reconnects with the
+ * token, and the server and the game each send again only the packets the
+ * other missed. Both sides simply count the packets of the match, so every
+ * packet the game sends once it holds a token is kept until the match ends.
+ * A game played directly keeps nothing.
+ * </p>
+ * <p>
+ * Every {@link Heartbeat#getDefaultInterval()} milliseconds the handler pings
+ * the other side, which measures the round trip shown to the user. A peer
+ * which has said nothing for several intervals is dropped as if the
+ * connection were lost, so that the match is resumed rather than waiting on
+ * a connection which will never deliver anything again. Games which only
+ * speak the legacy protocol are only pinged once they have pinged us, since
+ * older games do not know the packet.
+ * </p>
+ * The thread reading packets deals with the connection itself (pings,
+ * tokens, reconnecting) and hands everything meant for the game to the game's
+ * event executor, so it never waits on the game's windows.
+ */
 public class PacketHandler
 {
-	private GameLogic gameLogic;
-	private ObjectOutputStream output;
-	private ObjectInputStream input;
-	private boolean isListening = false;
+	// How often a lost connection is retried, and how long each try may take
+	private static final int RESUME_RETRY_INTERVAL = 250;
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	private GameLogicMP gameLogic;
+	private volatile PacketConnection connection;
+	private volatile boolean isListening = false;
+
+	// Given by a dedicated server, or 0 if the match cannot be resumed
+	private volatile long token = 0;
+	private int receivedCount = 0;
+	private List<Packet> sentPackets = new ArrayList<Packet>();
+
+	// Followed on the listening thread, which cannot wait for the game's
+	// executor to play the start and the end of the match
+	private volatile boolean isMatchStarted = false;
+
+	// How many batches have been started and not yet ended
+	private int batchDepth = 0;
 
-	public PacketHandler(GameLogic gameLogic, ObjectOutputStream output,
-			ObjectInputStream input)
+	private Heartbeat heartbeat = new Heartbeat(Heartbeat.getDefaultInterval());
+	private volatile boolean isHeartbeatPeer = false; // Answers pings
+	private volatile boolean isResuming = false;
+
+	public PacketHandler(GameLogicMP gameLogic, PacketConnection connection)
 	{
 		this.gameLogic = gameLogic;
-		this.output = output;
-		this.input = input;
+		this.connection = connection;
 	}
 
 	/**
 	 * This method will constantly listen for incoming packets on a separate
-	 * thread. When a packet is found and read, it is then handled according
-	 * to its packet ID.<br>
+	 * thread (see {@link ConnectionThreads}). When a packet is found and read, it is then handled according
+	 * to its packet type.<br>
 	 * If the connection is lost, this method stop itself from listening for
 	 * more packets.
 	 * 
-	 * @see PacketHandler#handlePacket(String)
+	 * @see PacketHandler#processPacket(Packet)
 	 */
 	public void startListening()
 	{
-		Thread listenThread = new Thread(new Runnable() {
+		this.isListening = true;
+		this.isHeartbeatPeer = this.connection.getVersion() >= PacketConnection.BINARY_VERSION;
+		this.scheduleHeartbeat();
+
+		ConnectionThreads.execute(new Runnable() {
 
 			@Override
 			public void run()
 			{
-				isListening = true;
 				
 				// Will continue to listen until told otherwise
 				while (isListening)
 				{
 					try
 					{
-						String packet = (String) input.readObject();
-						processPacket(packet);
+						processPacket(connection.receive());
 					} catch (SocketException e) // Lost Connection
 					{
 						System.out.println("Lost Connection...");
 						
-						// Loss of connection stops listening for packets
-						isListening = false;
-					} catch (ClassNotFoundException e)
-					{
-						e.printStackTrace();
+						// Loss of connection stops listening for packets,
+						// unless the match can be resumed
+						if (resume() == false)
+						{
+							isListening = false;
+						}
 					} catch (EOFException e) // IO Stream closed
 					{ 
-						isListening = false;
+						if (resume() == false)
+						{
+							isListening = false;
+						}
 					} catch (IOException e)
 					{
 						e.printStackTrace();
@@ -69,108 +126,359 @@ public class PacketHandler
 				}
 			}
 		});
-		listenThread.start();
 	}
 
 	/**
-	 * This will handle any received packets based upon the packet's ID number.
+	 * Checks on the other side every interval, for as long as the handler is
+	 * listening.
+	 */
+	private void scheduleHeartbeat()
+	{
+		ConnectionThreads.schedule(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				if (isListening == false)
+					return;
+
+				beat();
+				scheduleHeartbeat();
+			}
+		}, this.heartbeat.getInterval());
+	}
+
+	/**
+	 * Drops the connection if the other side has gone quiet, or pings it.
+	 */
+	private void beat()
+	{
+		if (this.isHeartbeatPeer == false || this.isResuming)
+			return;
+
+		long now = System.nanoTime();
+		PacketConnection current = this.connection;
+		if (this.heartbeat.isDead(now))
+		{
+			System.out.println("Opponent stopped answering...");
+
+			// The listening thread then finds the connection lost
+			current.drop();
+			this.heartbeat.received(now);
+		} else if (this.heartbeat.isPingDue(now))
+		{
+			this.sendUnlogged(Packet.ping(now));
+		}
+	}
+
+	/**
+	 * Reconnects to the dedicated server after the connection was lost, and
+	 * takes the user's place in the match back. Connecting is retried until
+	 * the server would have given the match to the opponent. A game which is
+	 * not resumed is ended.
 	 * 
-	 * @param packet The unparsed packet data
-	 * @throws IOException If an invalid packet ID number was received
+	 * @return Whether the match was resumed
 	 */
-	private void processPacket(String packet) throws IOException
+	private boolean resume()
 	{
-		String[] parsedPacket = packet.split(":");
-		int ID = Integer.parseInt(parsedPacket[0]);
+		PacketConnection lost = this.connection;
 
-		switch (ID)
+		// Games already over and connections closed on purpose end here
+		if (this.isListening == false || lost.isClosed()
+				|| this.isMatchStarted == false)
+			return false;
+
+		// A game played directly against another player cannot be resumed,
+		// so it ends
+		if (this.token == 0)
 		{
-			case (0): // Game Started Packet
-				this.gameLogic.setHasGameStarted(true);
-				System.out.println("Client Game Has Started");
+			this.dispatch(new Runnable() {
 
-				break;
-			case (1): // Player Change Turn Packet
-				boolean usersTurn = Boolean.parseBoolean(parsedPacket[1]);
+				@Override
+				public void run()
+				{
+					gameLogic.opponentLost();
+				}
+			});
+			return false;
+		}
 
-				this.gameLogic.setUsersTurn(usersTurn);
-				this.gameLogic.getCheckerboard().getCheckerGamePanel()
-						.updateUsersTurnLabel(usersTurn);
+		this.dispatch(new Runnable() {
 
-				break;
-			case (2): // Checker Moved Packet
-				int oldX = Integer.parseInt(parsedPacket[1]);
-				int oldY = Integer.parseInt(parsedPacket[2]);
-				int newX = Integer.parseInt(parsedPacket[3]);
-				int newY = Integer.parseInt(parsedPacket[4]);
+			@Override
+			public void run()
+			{
+				gameLogic.connectionLost();
+			}
+		});
+		this.isResuming = true;
+		try
+		{
+			return this.reconnect(lost);
+		} finally
+		{
+			this.heartbeat.received(System.nanoTime());
+			this.isResuming = false;
+		}
+	}
 
-				// Mirrors the piece
-				oldX = (7 - oldX);
-				oldY = (7 - oldY);
-				newX = (7 - newX);
-				newY = (7 - newY);
+	/**
+	 * Retries connecting until the match is resumed or given up.
+	 */
+	private boolean reconnect(PacketConnection lost)
+	{
+		InetSocketAddress address = lost.getRemoteAddress();
+		long deadline = System.currentTimeMillis()
+				+ PacketConnection.RESUME_TIMEOUT;
+		while (this.isListening && lost.isClosed() == false
+				&& System.currentTimeMillis() < deadline)
+		{
+			PacketConnection resumed = null;
+			try
+			{
+				Socket socket = new Socket();
+				socket.connect(address, CONNECT_TIMEOUT);
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(PacketConnection.RESUME_TIMEOUT);
 
-				CheckerPiece piece = this.gameLogic.getCheckerPieceAt(
-						oldX,
-						oldY);
-				piece.move(newX, newY);
+				resumed = new PacketConnection(socket);
+				resumed.negotiate();
+				resumed.send(Packet.resume(this.token, this.receivedCount));
 
-				break;
-			case (3): // Game Ended Packet
-				this.gameLogic.setHasGameStarted(false);
+				Packet reply = resumed.receive();
+				if (reply.getType() != Packet.RESUMED || reply.getCount() < 0)
+				{
+					// The match is over, or was given to the opponent
+					resumed.close();
+					break;
+				}
+				socket.setSoTimeout(0);
 
-				this.gameLogic.getCheckerboard().showGameEnded(
-						Boolean.parseBoolean(parsedPacket[1]));
-				this.gameLogic.getCheckerboard().getCheckerGamePanel()
-						.disableButtons();
+				// Packets sent from now on go to the new connection, so only
+				// those sent before it need sending again
+				synchronized (this)
+				{
+					this.connection = resumed;
+					for (int i = reply.getCount(); i < this.sentPackets.size(); i++)
+					{
+						resumed.write(this.sentPackets.get(i));
+					}
+					resumed.flush();
+				}
+				ConnectionHandler.setConnection(socket, resumed);
+				lost.close();
 
-				// Returns the player to the menu screen after two seconds
-				Thread returnToMenu = new Thread(new Runnable() {
+				this.dispatchConnectionResumed(true);
+				return true;
+			} catch (IOException e)
+			{
+				if (resumed != null)
+				{
+					resumed.close();
+				}
+
+				try
+				{
+					Thread.sleep(RESUME_RETRY_INTERVAL);
+				} catch (InterruptedException interrupted)
+				{
+					break;
+				}
+			}
+		}
+
+		this.dispatchConnectionResumed(false);
+		return false;
+	}
+
+	private void dispatchConnectionResumed(final boolean wasResumed)
+	{
+		this.dispatch(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				gameLogic.connectionResumed(wasResumed);
+			}
+		});
+	}
+
+	/**
+	 * Hands a task to the game's event executor, which plays it on the same
+	 * thread as the user's moves.
+	 * 
+	 * @param task
+	 */
+	private void dispatch(Runnable task)
+	{
+		this.gameLogic.getEventExecutor().execute(task);
+	}
+
+	/**
+	 * This will handle any received packets based upon the packet's type.
+	 * Packets about the connection are handled straight away, and the rest
+	 * are handed to the game.
+	 * 
+	 * @param packet
+	 * @throws IOException If a packet of an unexpected type was received
+	 */
+	private void processPacket(final Packet packet) throws IOException
+	{
+		long now = System.nanoTime();
+		this.heartbeat.received(now);
+
+		// Every packet of the match is counted, so a server resuming it knows
+		// where to start again
+		int type = packet.getType();
+		this.followMatch(packet);
+		if (type != Packet.VERSION_OFFER && type != Packet.SESSION_TOKEN
+				&& type != Packet.RESUMED && type != Packet.PING
+				&& type != Packet.PONG)
+		{
+			this.receivedCount++;
+		}
+
+		switch (type)
+		{
+			case (Packet.START_GAME):
+			case (Packet.PLAYER_TURN):
+			case (Packet.CHECKER_MOVE):
+			case (Packet.END_GAME):
+			case (Packet.REQUEST_DRAW):
+			case (Packet.DRAW_RESPONSE):
+			case (Packet.CHAT_MESSAGE):
+			case (Packet.BOARD_SYNC):
+				this.dispatch(new Runnable() {
 
 					@Override
 					public void run()
 					{
 						try
 						{
-							isListening = false;
-							
-							try
-							{
-								input.close();
-								output.close();
-							} catch (IOException e)
-							{
-								e.printStackTrace();
-							}
-							
-							Thread.sleep(2000);
-
-							CheckersWindow checkerWindow = 
-									(CheckersWindow) gameLogic
-											.getCheckerboard()
-											.getCheckerGamePanel()
-											.getTopLevelAncestor();
-
-							checkerWindow.openMainMenu();
-						} catch (InterruptedException e)
+							playPacket(packet);
+						} catch (IOException e)
 						{
 							e.printStackTrace();
 						}
 					}
 				});
 
-				returnToMenu.start();
+				break;
+			case (Packet.VERSION_OFFER): // A late answer to negotiation
+				break;
+			case (Packet.SESSION_TOKEN): // The match may be resumed
+				this.token = packet.getToken();
+
+				break;
+			case (Packet.RESUMED): // Only expected while reconnecting
+				break;
+			case (Packet.PING): // Answered straight away
+				this.isHeartbeatPeer = true;
+				this.sendUnlogged(Packet.pong(packet.getTime()));
+
+				break;
+			case (Packet.PONG): // Answers one of our pings
+				this.isHeartbeatPeer = true;
+				this.heartbeat.pongReceived(packet.getTime(), now);
+				if (this.heartbeat.getSampleCount() > 0)
+				{
+					final double roundTrip = this.heartbeat.getSmoothedRoundTrip();
+					final double jitter = this.heartbeat.getJitter();
+					this.dispatch(new Runnable() {
+
+						@Override
+						public void run()
+						{
+							gameLogic.latencyMeasured(roundTrip, jitter);
+						}
+					});
+				}
+
+				break;
+			default: // An unrecognized packet type was sent
+				throw new IOException("Invalid Packet Type was Received: "
+						+ packet.getType());
+		}
+	}
+
+	/**
+	 * Notes the start and the end of the match from a packet either side
+	 * sent. A token means the match has started, even should the start of the
+	 * game itself still be waiting to be played.
+	 * 
+	 * @param packet
+	 */
+	private void followMatch(Packet packet)
+	{
+		switch (packet.getType())
+		{
+			case (Packet.START_GAME):
+			case (Packet.SESSION_TOKEN):
+				this.isMatchStarted = true;
+
+				break;
+			case (Packet.END_GAME):
+				this.isMatchStarted = false;
+
+				break;
+			case (Packet.DRAW_RESPONSE):
+				if (packet.getFlag())
+				{
+					this.isMatchStarted = false;
+				}
 
-				this.gameLogic.getCheckerboard().repaint();
+				break;
+		}
+	}
+
+	/**
+	 * Plays a packet meant for the game, on the thread of the game's event
+	 * executor.
+	 * 
+	 * @param packet
+	 * @throws IOException If the packet does not fit the game
+	 */
+	private void playPacket(Packet packet) throws IOException
+	{
+		switch (packet.getType())
+		{
+			case (Packet.START_GAME): // Game Started Packet
+				this.gameLogic.setHasGameStarted(true);
+				System.out.println("Client Game Has Started");
+
+				break;
+			case (Packet.PLAYER_TURN): // Player Change Turn Packet
+				this.gameLogic.setUsersTurn(packet.getFlag());
 
 				break;
-			case (4): // Request Draw Packet
+			case (Packet.CHECKER_MOVE): // Checker Moved Packet
+				// Mirrors the piece
+				int oldX = (7 - packet.getOldX());
+				int oldY = (7 - packet.getOldY());
+				int newX = (7 - packet.getNewX());
+				int newY = (7 - packet.getNewY());
+
+				CheckerPiece piece = this.gameLogic.getCheckerPieceAt(
+						oldX,
+						oldY);
+				if (piece == null)
+				{
+					throw new IOException("No checker piece to move at ("
+							+ oldX + ", " + oldY + ")");
+				}
+				piece.move(newX, newY);
+
+				break;
+			case (Packet.END_GAME): // Game Ended Packet
+				this.gameLogic.opponentEndedGame(packet.getFlag());
+
+				break;
+			case (Packet.REQUEST_DRAW): // Request Draw Packet
 				this.gameLogic.opponentRequestedDraw();
 
 				break;
-			case (5): // Request Draw Response Packet
-				boolean didAccept = Boolean.parseBoolean(parsedPacket[1]);
-				if (didAccept)
+			case (Packet.DRAW_RESPONSE): // Request Draw Response Packet
+				if (packet.getFlag())
 				{
 					this.gameLogic.drawGame();
 				} else
@@ -180,60 +488,148 @@ public class PacketHandler
 
 				break;
 
-			case (6): // Sent Chat Message Packet
-				String chatMsg = parsedPacket[1];
+			case (Packet.CHAT_MESSAGE): // Sent Chat Message Packet
+				this.gameLogic.receiveChatMessage(packet.getMessage());
 
-				this.gameLogic.getCheckerboard().getCheckerGamePanel()
-						.showMessage(chatMsg, false);
+				break;
+			case (Packet.BOARD_SYNC): // The server refused one of our moves
+				this.gameLogic.synchronizeBoard(
+						packet.getUserPieces(),
+						packet.getOpponentPieces(),
+						packet.getKings(),
+						packet.getFlag(),
+						packet.getJumpingSquare());
 
 				break;
-			default: // An unrecognized packet ID was sent
-				throw new IOException("Invalid Packet ID was Received: ");
 		}
 	}
 
-	// -------------------------------------------------------------------------
-	// Packet Types
-	// -------------------------------------------------------------------------
-
 	/**
-	 * This packet will cause the receiver's game to start.
+	 * Sends a packet and keeps it, in case the connection is lost before it
+	 * arrives.
+	 * 
+	 * @param packet
+	 * @param shouldFlush Whether the packet completes what the game is
+	 *            doing, or more packets are sure to follow it
 	 */
-	public void sendStartGamePacket()
+	private synchronized void send(Packet packet, boolean shouldFlush)
 	{
-		int ID = 0;
+		this.followMatch(packet);
+
+		// Only a match which may be resumed needs its packets again
+		if (this.token != 0 && this.isListening)
+		{
+			this.sentPackets.add(packet);
+		}
 
 		try
 		{
-			output.writeObject(new String("" + ID + ":"));
+			this.connection.write(packet);
+			if (shouldFlush && this.batchDepth == 0)
+			{
+				this.connection.flush();
+			}
 		} catch (IOException e)
 		{
-			e.printStackTrace();
+			// Sent again once the match is resumed
+			if (this.token == 0)
+			{
+				e.printStackTrace();
+			}
 		}
 	}
 
 	/**
-	 * This packet will cause the receiver's turn to change to the given
-	 * boolean value.
+	 * Sends a packet which is not part of the match, so is neither counted by
+	 * the other side nor sent again after resuming. It leaves at once, along
+	 * with anything waiting to be flushed.
 	 * 
-	 * @param isOpponentTurn
+	 * @param packet
 	 */
-	public void sendPlayerTurnPacket(boolean isOpponentTurn)
+	private synchronized void sendUnlogged(Packet packet)
 	{
-		int ID = 1;
+		try
+		{
+			this.connection.send(packet);
+		} catch (IOException e)
+		{
+			// A lost connection is noticed by the listening thread
+		}
+	}
+
+	/**
+	 * Holds every packet sent from now on until {@link #endBatch()}, so that
+	 * packets made by one action of the game leave together. Batches may be
+	 * nested.
+	 */
+	public synchronized void startBatch()
+	{
+		this.batchDepth++;
+	}
+
+	/**
+	 * Ends a batch, sending its packets once the outermost batch ends.
+	 */
+	public synchronized void endBatch()
+	{
+		this.batchDepth--;
+		if (this.batchDepth > 0)
+			return;
 
 		try
 		{
-			output.writeObject(new String("" + ID + ":" + isOpponentTurn));
+			this.connection.flush();
 		} catch (IOException e)
 		{
-			e.printStackTrace();
+			if (this.token == 0)
+			{
+				e.printStackTrace();
+			}
 		}
 	}
 
+	/**
+	 * Stops listening for packets and closes the connection for good.
+	 */
+	public void close()
+	{
+		this.isListening = false;
+		this.connection.close();
+
+		synchronized (this)
+		{
+			this.sentPackets.clear();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Packet Types
+	// -------------------------------------------------------------------------
+
+	/**
+	 * This packet will cause the receiver's game to start.
+	 */
+	public void sendStartGamePacket()
+	{
+		this.send(Packet.startGame(), true);
+	}
+
+	/**
+	 * This packet will cause the receiver's turn to change to the given
+	 * boolean value.
+	 * 
+	 * @param isOpponentTurn
+	 */
+	public void sendPlayerTurnPacket(boolean isOpponentTurn)
+	{
+		this.send(Packet.playerTurn(isOpponentTurn), true);
+	}
+
 	/**
 	 * This packet will cause the receiver's checkerboard to process a checker
-	 * movement from its perspective.
+	 * movement from its perspective.<br>
+	 * The hop waits for the rest of the move, and leaves with the next packet
+	 * which is flushed (at the latest, the end of the turn).
 	 * 
 	 * @param oldX
 	 * @param oldY
@@ -242,16 +638,7 @@ public class PacketHandler
 	 */
 	public void sendCheckerMovePacket(int oldX, int oldY, int newX, int newY)
 	{
-		int ID = 2;
-
-		try
-		{
-			output.writeObject(new String("" + ID + ":" + oldX + ":" + oldY
-					+ ":" + newX + ":" + newY));
-		} catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		this.send(Packet.checkerMove(oldX, oldY, newX, newY), false);
 	}
 
 	/**
@@ -260,15 +647,7 @@ public class PacketHandler
 	 */
 	public void sendEndGamePacket(boolean didUserWin)
 	{
-		int ID = 3;
-
-		try
-		{
-			output.writeObject(new String("" + ID + ":" + didUserWin));
-		} catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		this.send(Packet.endGame(didUserWin), true);
 	}
 
 	/**
@@ -277,15 +656,7 @@ public class PacketHandler
 	 */
 	public void sendRequestDrawPacket()
 	{
-		int ID = 4;
-
-		try
-		{
-			output.writeObject(new String("" + ID + ":"));
-		} catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		this.send(Packet.requestDraw(), true);
 	}
 
 	/**
@@ -294,38 +665,29 @@ public class PacketHandler
 	 */
 	public void sendDrawResponsePacket(boolean didAccept)
 	{
-		int ID = 5;
-
-		try
-		{
-			output.writeObject(new String("" + ID + ":" + didAccept));
-		} catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		this.send(Packet.drawResponse(didAccept), true);
 	}
 
 	/**
-	 * This packet will cause the receiver to be alerted of their opponent's
-	 * acceptance or rejection of a draw request.
+	 * This packet will show a chat message in the receiver's chat box.
 	 */
 	public void sendChatMessagePacket(String chatMsg)
 	{
-		int ID = 6;
-
-		try
-		{
-			output.writeObject(new String("" + ID + ":" + chatMsg));
-		} catch (IOException e)
-		{
-			e.printStackTrace();
-		}
+		this.send(Packet.chatMessage(chatMsg), true);
 	}
 	
 	// -------------------------------------------------------------------------
 	// Getters and Setters
 	// -------------------------------------------------------------------------
 	
+	/**
+	 * @return The round trip measurements of the connection
+	 */
+	public Heartbeat getHeartbeat()
+	{
+		return this.heartbeat;
+	}
+
 	public boolean isListening()
 	{
 		return this.isListening;
@@ -0,0 +1,132 @@
+package com.gmail.tylersyme.checkers.engine;
+
+/**
+ * Scores a {@link Position} from the point of view of one player. A positive
+ * score means that player is ahead, measured in hundredths of a man.<br>
+ * The weights may be changed so that different evaluations can be played
+ * against each other.
+ */
+public class Evaluator
+{
+	// ROWS[y] holds the four squares of row y
+	private static final int[] ROWS = new int[8];
+
+	// The four squares in the middle of the board
+	private static final int CENTER = (1 << 13) | (1 << 14) | (1 << 17)
+			| (1 << 18);
+
+	static
+	{
+		for (int y = 0; y < 8; y++)
+		{
+			ROWS[y] = 0xF << (y * 4);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private int manValue = 100;
+	private int kingValue = 140;
+	// Awarded to a man for each row it has advanced
+	private int advancementValue = 3;
+	// Awarded to a man guarding its own back row from being "kinged" on
+	private int backRowValue = 8;
+	// Awarded to a king standing in the middle of the board
+	private int centerKingValue = 10;
+
+	/**
+	 * Creates an evaluator with the default weights.
+	 */
+	public Evaluator()
+	{ }
+
+	public Evaluator(
+			int manValue,
+			int kingValue,
+			int advancementValue,
+			int backRowValue,
+			int centerKingValue)
+	{
+		this.manValue = manValue;
+		this.kingValue = kingValue;
+		this.advancementValue = advancementValue;
+		this.backRowValue = backRowValue;
+		this.centerKingValue = centerKingValue;
+	}
+
+	/**
+	 * Scores the given position for the given player.
+	 *
+	 * @param position
+	 * @param forUser Whether the score is from the user's point of view
+	 * @return The score, where positive values favor the given player
+	 */
+	public int evaluate(Position position, boolean forUser)
+	{
+		int score = this.evaluateForUser(position);
+
+		return (forUser) ? (score) : (-score);
+	}
+
+	private int evaluateForUser(Position position)
+	{
+		int kings = position.getKings();
+		int userMen = position.getUserPieces() & ~kings;
+		int userKings = position.getUserPieces() & kings;
+		int opponentMen = position.getOpponentPieces() & ~kings;
+		int opponentKings = position.getOpponentPieces() & kings;
+
+		int score = (this.manValue * (Integer.bitCount(userMen) - Integer
+				.bitCount(opponentMen)))
+				+ (this.kingValue * (Integer.bitCount(userKings) - Integer
+						.bitCount(opponentKings)));
+
+		// The user's men advance towards row 0 and the opponent's towards 7
+		for (int y = 1; y < 7; y++)
+		{
+			score += this.advancementValue
+					* (((7 - y) * Integer.bitCount(userMen & ROWS[y])) - (y * Integer
+							.bitCount(opponentMen & ROWS[y])));
+		}
+
+		score += this.backRowValue
+				* (Integer.bitCount(userMen & ROWS[7]) - Integer
+						.bitCount(opponentMen & ROWS[0]));
+
+		score += this.centerKingValue
+				* (Integer.bitCount(userKings & CENTER) - Integer
+						.bitCount(opponentKings & CENTER));
+
+		return score;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public int getManValue()
+	{
+		return manValue;
+	}
+
+	public int getKingValue()
+	{
+		return kingValue;
+	}
+
+	public int getAdvancementValue()
+	{
+		return advancementValue;
+	}
+
+	public int getBackRowValue()
+	{
+		return backRowValue;
+	}
+
+	public int getCenterKingValue()
+	{
+		return centerKingValue;
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.gmail.tylersyme.checkers.engine;
+
+/**
+ * <p>
+ * Moves are stored as primitive longs so that they can be generated into and
+ * passed around in plain long[] buffers without creating any objects. This
+ * class only holds the methods used to pack and unpack them.
+ * </p>
+ * A move is laid out as:
+ * <ul>
+ * <li>Bits 0-31: A mask of every square captured along the way</li>
+ * <li>Bits 32-36: The square the piece started on</li>
+ * <li>Bits 37-41: The square the piece finished on</li>
+ * <li>Bit 42: Set if the move "kings" the piece</li>
+ * </ul>
+ * A full multi-jump is a single move which captures more than one square.
+ */
+public final class Move
+{
+	// Stands for "no move" wherever a move is optional
+	public static final long NONE = 0L;
+
+	private static final int FROM_SHIFT = 32;
+	private static final int TO_SHIFT = 37;
+	private static final long PROMOTION_FLAG = 1L << 42;
+
+	private Move()
+	{ }
+
+	/**
+	 * Packs the given move information into a single long.
+	 *
+	 * @param from
+	 * @param to
+	 * @param captured A mask of every captured square
+	 * @param isPromotion Whether the piece is "kinged" by the move
+	 * @return The packed move
+	 */
+	public static long create(
+			int from,
+			int to,
+			int captured,
+			boolean isPromotion)
+	{
+		long move = (captured & 0xFFFFFFFFL)
+				| ((long) from << FROM_SHIFT)
+				| ((long) to << TO_SHIFT);
+
+		return (isPromotion) ? (move | PROMOTION_FLAG) : (move);
+	}
+
+	public static int getFrom(long move)
+	{
+		return (int) (move >>> FROM_SHIFT) & 31;
+	}
+
+	public static int getTo(long move)
+	{
+		return (int) (move >>> TO_SHIFT) & 31;
+	}
+
+	public static int getCaptured(long move)
+	{
+		return (int) move;
+	}
+
+	public static boolean isCapture(long move)
+	{
+		return (int) move != 0;
+	}
+
+	public static boolean isPromotion(long move)
+	{
+		return (move & PROMOTION_FLAG) != 0;
+	}
+
+	/**
+	 * Returns the move written in the usual "from-to" or "fromxto" notation
+	 * using square numbers 1-32 (one more than the {@link Position} square
+	 * index).
+	 *
+	 * @param move
+	 * @return
+	 */
+	public static String toString(long move)
+	{
+		return (getFrom(move) + 1) + ((isCapture(move)) ? ("x") : ("-"))
+				+ (getTo(move) + 1);
+	}
+
+}
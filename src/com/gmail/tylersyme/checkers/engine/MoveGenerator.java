@@ -0,0 +1,519 @@
+package com.gmail.tylersyme.checkers.engine;
+
+/**
+ * <p>
+ * Generates every legal move for either player of a {@link Position}. Moves
+ * are written into a long[] buffer owned by the caller (see {@link Move}), so
+ * generating moves never creates any objects.
+ * </p>
+ * The rules followed are those of English checkers:
+ * <ul>
+ * <li>Men move and capture diagonally forward, kings in every direction</li>
+ * <li>Captures are mandatory, but any capture may be chosen</li>
+ * <li>A capture continues until no more jumps are possible and the whole
+ * sequence is generated as a single move</li>
+ * <li>A man which reaches the far row is "kinged" and its move ends</li>
+ * </ul>
+ */
+public final class MoveGenerator
+{
+	// No legal position comes close to needing more room than this
+	public static final int MAX_MOVES = 128;
+
+	// The four diagonal directions. The user moves "forward" towards row 0
+	// while the opponent moves "forward" towards row 7.
+	public static final int UP_LEFT = 0;
+	public static final int UP_RIGHT = 1;
+	public static final int DOWN_LEFT = 2;
+	public static final int DOWN_RIGHT = 3;
+
+	// The squares on which each player's men are "kinged"
+	public static final int USER_KING_ROW = 0x0000000F;
+	public static final int OPPONENT_KING_ROW = 0xF0000000;
+
+	// NEIGHBOURS[direction][square] is the adjacent square in that direction
+	// and JUMPS[direction][square] is the square two steps away. Both hold
+	// -1 where the board ends.
+	private static final int[][] NEIGHBOURS = new int[4][Position.SQUARE_COUNT];
+	private static final int[][] JUMPS = new int[4][Position.SQUARE_COUNT];
+
+	static
+	{
+		int[] xSteps = { -1, 1, -1, 1 };
+		int[] ySteps = { -1, -1, 1, 1 };
+
+		for (int direction = 0; direction < 4; direction++)
+		{
+			for (int square = 0; square < Position.SQUARE_COUNT; square++)
+			{
+				int x = Position.getSquareX(square);
+				int y = Position.getSquareY(square);
+
+				NEIGHBOURS[direction][square] = Position.toSquare(
+						x + xSteps[direction],
+						y + ySteps[direction]);
+				JUMPS[direction][square] = Position.toSquare(
+						x + (2 * xSteps[direction]),
+						y + (2 * ySteps[direction]));
+			}
+		}
+	}
+
+	private MoveGenerator()
+	{ }
+
+	/**
+	 * Fills the given buffer with every legal move for one player. If any
+	 * capture is possible then only captures are generated.
+	 *
+	 * @param position
+	 * @param userToMove Whether moves are generated for the user's pieces
+	 * @param moves The buffer the moves will be written to
+	 * @param offset The index of the first move written to the buffer, which
+	 *            must have at least {@link #MAX_MOVES} free elements after it
+	 * @return The number of moves written
+	 */
+	public static int generateMoves(
+			Position position,
+			boolean userToMove,
+			long[] moves,
+			int offset)
+	{
+		int count = generateCaptures(position, userToMove, moves, offset);
+		if (count > 0)
+		{
+			return count;
+		}
+
+		int own = (userToMove) ? (position.getUserPieces()) : (position
+				.getOpponentPieces());
+		int empty = ~position.getOccupied();
+		int kingRow = (userToMove) ? (USER_KING_ROW) : (OPPONENT_KING_ROW);
+
+		while (own != 0)
+		{
+			int from = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+
+			boolean isKing = position.isKing(from);
+			int firstDirection = firstDirection(userToMove, isKing);
+			int lastDirection = lastDirection(userToMove, isKing);
+
+			for (int direction = firstDirection; direction <= lastDirection; direction++)
+			{
+				int to = NEIGHBOURS[direction][from];
+				if (to >= 0 && ((empty >>> to) & 1) != 0)
+				{
+					boolean isPromotion = !isKing && ((kingRow >>> to) & 1) != 0;
+
+					moves[offset + count] = Move.create(from, to, 0, isPromotion);
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Fills the given buffer with every legal capture for one player. Each
+	 * multi-jump is written as a single move.
+	 *
+	 * @param position
+	 * @param userToMove
+	 * @param moves
+	 * @param offset
+	 * @return The number of captures written
+	 * @see #generateMoves(Position, boolean, long[], int)
+	 */
+	public static int generateCaptures(
+			Position position,
+			boolean userToMove,
+			long[] moves,
+			int offset)
+	{
+		int own = (userToMove) ? (position.getUserPieces()) : (position
+				.getOpponentPieces());
+		int enemies = (userToMove) ? (position.getOpponentPieces())
+				: (position.getUserPieces());
+		int empty = ~position.getOccupied();
+
+		int count = 0;
+		while (own != 0)
+		{
+			int from = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+
+			// The moving piece no longer occupies the square it started on
+			count = addJumps(
+					from,
+					from,
+					position.isKing(from),
+					userToMove,
+					enemies,
+					empty | (1 << from),
+					0,
+					moves,
+					offset,
+					count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Recursively follows every jump sequence from the given square and
+	 * writes each finished sequence as a move.
+	 *
+	 * @param square The square the jumping piece is currently on
+	 * @param from The square the jumping piece started on
+	 * @param isKing
+	 * @param userToMove
+	 * @param enemies Every enemy piece, including those already captured
+	 * @param empty Every empty square
+	 * @param captured The squares captured so far
+	 * @param moves
+	 * @param offset
+	 * @param count The number of moves written so far
+	 * @return The number of moves written once this sequence is finished
+	 */
+	private static int addJumps(
+			int square,
+			int from,
+			boolean isKing,
+			boolean userToMove,
+			int enemies,
+			int empty,
+			int captured,
+			long[] moves,
+			int offset,
+			int count)
+	{
+		int kingRow = (userToMove) ? (USER_KING_ROW) : (OPPONENT_KING_ROW);
+		int firstDirection = firstDirection(userToMove, isKing);
+		int lastDirection = lastDirection(userToMove, isKing);
+
+		for (int direction = firstDirection; direction <= lastDirection; direction++)
+		{
+			int landing = JUMPS[direction][square];
+			if (landing < 0 || ((empty >>> landing) & 1) == 0)
+				continue;
+
+			// Captured pieces stay on the board until the move is finished,
+			// so they can be neither jumped twice nor landed on
+			int jumped = NEIGHBOURS[direction][square];
+			int jumpedBit = 1 << jumped;
+			if ((enemies & jumpedBit) == 0 || (captured & jumpedBit) != 0)
+				continue;
+
+			boolean isPromotion = !isKing && ((kingRow >>> landing) & 1) != 0;
+			int newCount = count;
+			if (isPromotion == false)
+			{
+				newCount = addJumps(
+						landing,
+						from,
+						isKing,
+						userToMove,
+						enemies,
+						empty,
+						captured | jumpedBit,
+						moves,
+						offset,
+						count);
+			}
+
+			// The sequence ends here if no further jump was found
+			if (newCount == count)
+			{
+				moves[offset + count] = Move.create(
+						from,
+						landing,
+						captured | jumpedBit,
+						isPromotion);
+				newCount++;
+			}
+
+			count = newCount;
+		}
+
+		return count;
+	}
+
+	// -------------------------------------------------------------------------
+	// Move Queries
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns whether the given player is forced to capture.
+	 *
+	 * @param position
+	 * @param userToMove
+	 * @return
+	 */
+	public static boolean hasCaptures(Position position, boolean userToMove)
+	{
+		int own = (userToMove) ? (position.getUserPieces()) : (position
+				.getOpponentPieces());
+
+		while (own != 0)
+		{
+			int square = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+
+			if (canJumpFrom(position, square, userToMove))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether the given player's piece at the given square is able
+	 * to jump one of the enemy's pieces.
+	 *
+	 * @param position
+	 * @param square
+	 * @param userToMove
+	 * @return
+	 */
+	public static boolean canJumpFrom(
+			Position position,
+			int square,
+			boolean userToMove)
+	{
+		int enemies = (userToMove) ? (position.getOpponentPieces())
+				: (position.getUserPieces());
+		int empty = ~position.getOccupied();
+
+		boolean isKing = position.isKing(square);
+		int lastDirection = lastDirection(userToMove, isKing);
+
+		for (int direction = firstDirection(userToMove, isKing); direction <= lastDirection; direction++)
+		{
+			int landing = JUMPS[direction][square];
+			if (landing >= 0 && ((empty >>> landing) & 1) != 0
+					&& ((enemies >>> NEIGHBOURS[direction][square]) & 1) != 0)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether the given player has any legal move at all. A player
+	 * who cannot move loses the game.
+	 *
+	 * @param position
+	 * @param userToMove
+	 * @return
+	 */
+	public static boolean hasMoves(Position position, boolean userToMove)
+	{
+		int own = (userToMove) ? (position.getUserPieces()) : (position
+				.getOpponentPieces());
+		int empty = ~position.getOccupied();
+
+		while (own != 0)
+		{
+			int square = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+
+			boolean isKing = position.isKing(square);
+			int lastDirection = lastDirection(userToMove, isKing);
+
+			for (int direction = firstDirection(userToMove, isKing); direction <= lastDirection; direction++)
+			{
+				int to = NEIGHBOURS[direction][square];
+				if (to >= 0 && ((empty >>> to) & 1) != 0)
+				{
+					return true;
+				}
+			}
+
+			if (canJumpFrom(position, square, userToMove))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether a single step or jump by one of the given player's
+	 * pieces is legal, for games where pieces are moved one hop at a time. A
+	 * player able to capture must jump, and a piece part way through a
+	 * multi-jump must carry on jumping.
+	 *
+	 * @param position
+	 * @param userToMove
+	 * @param from
+	 * @param to
+	 * @param jumpingSquare The square of the piece part way through a
+	 *            multi-jump, or -1 if no piece is
+	 * @return
+	 */
+	public static boolean isLegalHop(
+			Position position,
+			boolean userToMove,
+			int from,
+			int to,
+			int jumpingSquare)
+	{
+		if (from < 0 || to < 0 || position.isEmpty(to) == false
+				|| (jumpingSquare >= 0 && from != jumpingSquare))
+			return false;
+
+		int own = (userToMove) ? (position.getUserPieces()) : (position
+				.getOpponentPieces());
+		if (((own >>> from) & 1) == 0)
+			return false;
+
+		int enemies = (userToMove) ? (position.getOpponentPieces())
+				: (position.getUserPieces());
+		boolean isKing = position.isKing(from);
+		int lastDirection = lastDirection(userToMove, isKing);
+
+		for (int direction = firstDirection(userToMove, isKing); direction <= lastDirection; direction++)
+		{
+			if (JUMPS[direction][from] == to)
+				return ((enemies >>> NEIGHBOURS[direction][from]) & 1) != 0;
+
+			if (NEIGHBOURS[direction][from] == to)
+				return (jumpingSquare < 0 && hasCaptures(position, userToMove) == false);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Lists the squares a move passes through, one for each hop, in the order
+	 * the piece visits them. When a capture's pieces may be jumped in more
+	 * than one order, any order which jumps exactly those pieces is given.
+	 *
+	 * @param position The position before the move is played
+	 * @param move
+	 * @param userToMove Whether the move belongs to the user
+	 * @param path Filled with the squares, ending with the move's to square
+	 * @return The number of hops<br>
+	 *         Will return <b>-1</b> if the move cannot be played
+	 */
+	public static int getPath(
+			Position position,
+			long move,
+			boolean userToMove,
+			int[] path)
+	{
+		int from = Move.getFrom(move);
+		if (Move.isCapture(move) == false)
+		{
+			path[0] = Move.getTo(move);
+			return 1;
+		}
+
+		return findPath(
+				position,
+				userToMove,
+				position.isKing(from),
+				from,
+				from,
+				Move.getTo(move),
+				Move.getCaptured(move),
+				path,
+				0);
+	}
+
+	/**
+	 * @param from The square the capture started from, which is empty once
+	 *            the piece has left it
+	 * @param square The square the piece has reached
+	 * @param to The square the capture ends on
+	 * @param remaining The captured pieces not yet jumped
+	 * @param length The number of hops in the path so far
+	 */
+	private static int findPath(
+			Position position,
+			boolean userToMove,
+			boolean isKing,
+			int from,
+			int square,
+			int to,
+			int remaining,
+			int[] path,
+			int length)
+	{
+		if (remaining == 0)
+			return (square == to) ? (length) : (-1);
+
+		int lastDirection = lastDirection(userToMove, isKing);
+		for (int direction = firstDirection(userToMove, isKing); direction <= lastDirection; direction++)
+		{
+			int jumped = NEIGHBOURS[direction][square];
+			int landing = JUMPS[direction][square];
+
+			if (landing < 0 || ((remaining >>> jumped) & 1) == 0
+					|| (position.isEmpty(landing) == false && landing != from))
+				continue;
+
+			path[length] = landing;
+			int pathLength = findPath(
+					position,
+					userToMove,
+					isKing,
+					from,
+					landing,
+					to,
+					remaining & ~(1 << jumped),
+					path,
+					length + 1);
+			if (pathLength >= 0)
+				return pathLength;
+		}
+
+		return -1;
+	}
+
+	// -------------------------------------------------------------------------
+	// Direction Assistance
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @param direction
+	 * @param square
+	 * @return The square next to the given one in the given direction<br>
+	 *         Will return <b>-1</b> if the board ends in that direction
+	 */
+	public static int getNeighbour(int direction, int square)
+	{
+		return NEIGHBOURS[direction][square];
+	}
+
+	/**
+	 * @param direction
+	 * @param square
+	 * @return The square two steps from the given one in the given direction<br>
+	 *         Will return <b>-1</b> if the board ends in that direction
+	 */
+	public static int getJump(int direction, int square)
+	{
+		return JUMPS[direction][square];
+	}
+
+	// Men only move forward, which is "up" for the user and "down" for the
+	// opponent. Kings may move in all four directions.
+	private static int firstDirection(boolean userToMove, boolean isKing)
+	{
+		return (isKing || userToMove) ? (UP_LEFT) : (DOWN_LEFT);
+	}
+
+	private static int lastDirection(boolean userToMove, boolean isKing)
+	{
+		return (isKing || !userToMove) ? (DOWN_RIGHT) : (UP_RIGHT);
+	}
+
+}
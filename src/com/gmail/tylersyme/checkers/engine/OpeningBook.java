@@ -0,0 +1,265 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * <p>
+ * An opening book holds the moves played from the first positions of many
+ * games, as written by the {@link OpeningBookWriter}. Each move has a weight
+ * and a move is picked at random in proportion to its weight, so the
+ * computer's openings vary from game to game without any search at all.
+ * </p>
+ * <p>
+ * Positions are stored from the point of view of the user to move. A
+ * position where the opponent is to move is turned around first (rotated
+ * half a turn with the colours swapped), so a line of play is found whichever
+ * player started the game.
+ * </p>
+ * The file is memory-mapped and laid out as:
+ * <ul>
+ * <li>A header of four ints: {@link #MAGIC}, {@link #VERSION}, the number of
+ * entries and the number of bucket bits</li>
+ * <li>An index of 2^bits + 1 ints, where bucket b's entries start at index[b]
+ * and end before index[b + 1]</li>
+ * <li>The entries, sorted by their unsigned key. Each entry is the
+ * {@link Zobrist} key of the position (a long), the from and to squares of
+ * the move (a short) and the move's weight (an unsigned short).</li>
+ * </ul>
+ * An entry's bucket is the top bits of its key, so a probe only has to
+ * binary search the handful of entries of a single bucket.
+ */
+public class OpeningBook
+{
+	// The book the game looks for unless told otherwise
+	public static final String DEFAULT_FILE = "openings.book";
+
+	public static final int MAGIC = 0x434B424B; // "CKBK"
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 16;
+	static final int ENTRY_SIZE = 12;
+
+	// -------------------------------------------------------------------------
+
+	private ByteBuffer buffer;
+	private int bucketBits;
+	private int entryCount;
+	private int entriesStart;
+
+	/**
+	 * Creates an empty book.
+	 */
+	public OpeningBook()
+	{ }
+
+	/**
+	 * Maps the given book file. A file which does not exist gives an empty
+	 * book.
+	 *
+	 * @param file
+	 * @return The book
+	 */
+	public static OpeningBook open(File file)
+	{
+		OpeningBook book = new OpeningBook();
+		if (file.isFile() == false)
+			return book;
+
+		try
+		{
+			book.map(file);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		return book;
+	}
+
+	private void map(File file) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = input.getChannel();
+			ByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY,
+					0,
+					channel.size());
+
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != VERSION)
+			{
+				throw new IOException(file + " is not an opening book");
+			}
+
+			int entryCount = buffer.getInt(8);
+			int bucketBits = buffer.getInt(12);
+			int entriesStart = HEADER_SIZE + (((1 << bucketBits) + 1) * 4);
+			if (bucketBits < 0 || bucketBits > 30
+					|| buffer.limit() != entriesStart
+							+ ((long) entryCount * ENTRY_SIZE))
+			{
+				throw new IOException(file + " is damaged");
+			}
+
+			this.buffer = buffer;
+			this.entryCount = entryCount;
+			this.bucketBits = bucketBits;
+			this.entriesStart = entriesStart;
+		} finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Picks a book move for the given position.
+	 *
+	 * @param position
+	 * @param userToMove Whether the user is the player to move
+	 * @param random Chooses between the moves in proportion to their weights
+	 * @return A legal move<br>
+	 *         Will return {@link Move#NONE} if the position is not in the book
+	 */
+	public long probe(Position position, boolean userToMove, Random random)
+	{
+		if (this.entryCount == 0)
+			return Move.NONE;
+
+		long key = getKey(position, userToMove);
+		int first = this.findFirst(key);
+
+		int totalWeight = 0;
+		for (int i = first; i < this.entryCount && this.getKey(i) == key; i++)
+		{
+			totalWeight += this.getWeight(i);
+		}
+		if (totalWeight == 0)
+			return Move.NONE;
+
+		long[] moves = new long[MoveGenerator.MAX_MOVES];
+		int moveCount = MoveGenerator.generateMoves(
+				position,
+				userToMove,
+				moves,
+				0);
+
+		int choice = random.nextInt(totalWeight);
+		for (int i = first; i < this.entryCount && this.getKey(i) == key; i++)
+		{
+			choice -= this.getWeight(i);
+			if (choice < 0)
+			{
+				return findMove(
+						moves,
+						moveCount,
+						this.getFrom(i, userToMove),
+						this.getTo(i, userToMove));
+			}
+		}
+
+		return Move.NONE;
+	}
+
+	/**
+	 * @return The index of the first entry whose key is not below the given
+	 *         key
+	 */
+	private int findFirst(long key)
+	{
+		int bucket = (this.bucketBits == 0) ? (0)
+				: ((int) (key >>> (64 - this.bucketBits)));
+		int low = this.buffer.getInt(HEADER_SIZE + (bucket * 4));
+		int high = this.buffer.getInt(HEADER_SIZE + ((bucket + 1) * 4));
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(this.getKey(middle), key) < 0)
+			{
+				low = middle + 1;
+			} else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private long getKey(int entry)
+	{
+		return this.buffer.getLong(this.entriesStart + (entry * ENTRY_SIZE));
+	}
+
+	private int getFrom(int entry, boolean userToMove)
+	{
+		int from = this.buffer.getShort(this.entriesStart
+				+ (entry * ENTRY_SIZE) + 8) & 31;
+
+		return (userToMove) ? (from) : (Position.SQUARE_COUNT - 1 - from);
+	}
+
+	private int getTo(int entry, boolean userToMove)
+	{
+		int to = (this.buffer.getShort(this.entriesStart
+				+ (entry * ENTRY_SIZE) + 8) >>> 5) & 31;
+
+		return (userToMove) ? (to) : (Position.SQUARE_COUNT - 1 - to);
+	}
+
+	private int getWeight(int entry)
+	{
+		return this.buffer.getShort(this.entriesStart + (entry * ENTRY_SIZE)
+				+ 10) & 0xFFFF;
+	}
+
+	/**
+	 * @return The book's key of the given position, which is the key of the
+	 *         position turned around if the opponent is to move
+	 */
+	static long getKey(Position position, boolean userToMove)
+	{
+		if (userToMove)
+			return position.getHash();
+
+		return Zobrist.hash(
+				Integer.reverse(position.getOpponentPieces()),
+				Integer.reverse(position.getUserPieces()),
+				Integer.reverse(position.getKings()));
+	}
+
+	/**
+	 * @return The move with the given from and to squares, or
+	 *         {@link Move#NONE} if there is none
+	 */
+	static long findMove(long[] moves, int moveCount, int from, int to)
+	{
+		for (int i = 0; i < moveCount; i++)
+		{
+			if (Move.getFrom(moves[i]) == from && Move.getTo(moves[i]) == to)
+				return moves[i];
+		}
+
+		return Move.NONE;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The number of moves in the book
+	 */
+	public int getEntryCount()
+	{
+		return entryCount;
+	}
+
+}
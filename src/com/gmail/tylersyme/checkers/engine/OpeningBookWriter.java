@@ -0,0 +1,286 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Collects the opening moves of many game records and writes them out as an
+ * {@link OpeningBook}.
+ * </p>
+ * A game record is a single line of moves written as {@link Move#toString}
+ * writes them, such as "22-18 11-15 18x11 8x15", beginning from the
+ * starting position. Multi-jumps may list every square they pass through
+ * ("27x18x11"). Move numbers ("1.") are skipped, and a result of "1-0" (the
+ * first player won), "0-1" (the second player won), "1/2-1/2" or "*" may end
+ * the record. Either player may move first.
+ */
+public class OpeningBookWriter
+{
+	public static final int DEFAULT_MAX_PLIES = 16;
+
+	private static final int MAX_WEIGHT = 0xFFFF;
+
+	// Results of a game, from the point of view of one of the players
+	private static final int WON = 1;
+	private static final int LOST = -1;
+	private static final int DRAWN = 0;
+
+	// -------------------------------------------------------------------------
+
+	private int maxPlies;
+
+	// The weights of each move, keyed by the book's key of the position the
+	// move is played from
+	private Map<Long, Map<Integer, Integer>> weights = new HashMap<Long, Map<Integer, Integer>>();
+	private int gameCount = 0;
+
+	public OpeningBookWriter()
+	{
+		this(DEFAULT_MAX_PLIES);
+	}
+
+	/**
+	 * @param maxPlies How many moves of each game are added to the book
+	 */
+	public OpeningBookWriter(int maxPlies)
+	{
+		this.maxPlies = maxPlies;
+	}
+
+	/**
+	 * Adds the opening of a single game. A move played by the winner of the
+	 * game counts twice, a move from a drawn (or unfinished) game counts
+	 * once, and the loser's moves are left out of the book.
+	 *
+	 * @param record The game's moves, as described above
+	 * @throws IllegalArgumentException If the record holds an illegal move
+	 */
+	public void addGame(String record)
+	{
+		List<String> moveTexts = new ArrayList<String>();
+		int firstPlayerResult = DRAWN;
+
+		for (String token : record.trim().split("\\s+"))
+		{
+			if (token.isEmpty() || token.endsWith("."))
+				continue;
+
+			if (token.equals("1-0"))
+			{
+				firstPlayerResult = WON;
+			} else if (token.equals("0-1"))
+			{
+				firstPlayerResult = LOST;
+			} else if (token.equals("1/2-1/2") == false
+					&& token.equals("*") == false)
+			{
+				moveTexts.add(token);
+			}
+		}
+
+		Position position = new Position();
+		position.setupInitial();
+		long[] moves = new long[MoveGenerator.MAX_MOVES];
+		boolean userToMove = true;
+
+		for (int ply = 0; ply < moveTexts.size() && ply < this.maxPlies; ply++)
+		{
+			String text = moveTexts.get(ply);
+			String[] squares = text.split("[-x]");
+			int from;
+			int to;
+			try
+			{
+				from = Integer.parseInt(squares[0]) - 1;
+				to = Integer.parseInt(squares[squares.length - 1]) - 1;
+			} catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("\"" + text
+						+ "\" is not a move");
+			}
+
+			int moveCount = MoveGenerator.generateMoves(
+					position,
+					userToMove,
+					moves,
+					0);
+			long move = OpeningBook.findMove(moves, moveCount, from, to);
+
+			// Whoever is able to make the first move is the first player
+			if (move == Move.NONE && ply == 0)
+			{
+				userToMove = false;
+				moveCount = MoveGenerator.generateMoves(
+						position,
+						userToMove,
+						moves,
+						0);
+				move = OpeningBook.findMove(moves, moveCount, from, to);
+			}
+
+			if (move == Move.NONE)
+			{
+				throw new IllegalArgumentException("\"" + text
+						+ "\" is not a legal move at ply " + (ply + 1));
+			}
+
+			int result = ((ply & 1) == 0) ? (firstPlayerResult)
+					: (-firstPlayerResult);
+			if (result != LOST)
+			{
+				this.addMove(
+						OpeningBook.getKey(position, userToMove),
+						move,
+						userToMove,
+						(result == WON) ? (2) : (1));
+			}
+
+			position.applyMove(move, userToMove);
+			userToMove = !userToMove;
+		}
+
+		this.gameCount++;
+	}
+
+	private void addMove(long key, long move, boolean userToMove, int weight)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+
+		// Moves are stored the way round the position is
+		if (userToMove == false)
+		{
+			from = Position.SQUARE_COUNT - 1 - from;
+			to = Position.SQUARE_COUNT - 1 - to;
+		}
+
+		Map<Integer, Integer> moveWeights = this.weights.get(key);
+		if (moveWeights == null)
+		{
+			moveWeights = new HashMap<Integer, Integer>();
+			this.weights.put(key, moveWeights);
+		}
+
+		Integer oldWeight = moveWeights.get(from | (to << 5));
+		moveWeights.put(from | (to << 5), Math.min(
+				MAX_WEIGHT,
+				((oldWeight == null) ? (0) : (oldWeight)) + weight));
+	}
+
+	/**
+	 * Writes every move added so far into a book file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException
+	{
+		List<Long> keys = new ArrayList<Long>(this.weights.keySet());
+		Collections.sort(keys, new Comparator<Long>() {
+
+			@Override
+			public int compare(Long a, Long b)
+			{
+				return Long.compareUnsigned(a, b);
+			}
+		});
+
+		int entryCount = this.getEntryCount();
+
+		// Roughly two entries for each bucket
+		int bucketBits = 0;
+		while (bucketBits < 24 && (2 << bucketBits) < entryCount)
+		{
+			bucketBits++;
+		}
+
+		int[] index = new int[(1 << bucketBits) + 1];
+		int entry = 0;
+		int bucket = 0;
+		for (long key : keys)
+		{
+			int keyBucket = (bucketBits == 0) ? (0)
+					: ((int) (key >>> (64 - bucketBits)));
+			while (bucket <= keyBucket)
+			{
+				index[bucket++] = entry;
+			}
+			entry += this.weights.get(key).size();
+		}
+		while (bucket < index.length)
+		{
+			index[bucket++] = entry;
+		}
+
+		DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			output.writeInt(OpeningBook.MAGIC);
+			output.writeInt(OpeningBook.VERSION);
+			output.writeInt(entryCount);
+			output.writeInt(bucketBits);
+
+			for (int start : index)
+			{
+				output.writeInt(start);
+			}
+
+			for (long key : keys)
+			{
+				for (Map.Entry<Integer, Integer> move : this.weights.get(key)
+						.entrySet())
+				{
+					output.writeLong(key);
+					output.writeShort(move.getKey());
+					output.writeShort(move.getValue());
+				}
+			}
+		} finally
+		{
+			output.close();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public int getGameCount()
+	{
+		return gameCount;
+	}
+
+	/**
+	 * @return The number of different positions added so far
+	 */
+	public int getPositionCount()
+	{
+		return this.weights.size();
+	}
+
+	/**
+	 * @return The number of different moves added so far
+	 */
+	public int getEntryCount()
+	{
+		int entryCount = 0;
+		for (Map<Integer, Integer> moveWeights : this.weights.values())
+		{
+			entryCount += moveWeights.size();
+		}
+
+		return entryCount;
+	}
+
+}
@@ -0,0 +1,263 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * Runs several {@link Search}es of the same position at once, one per thread,
+ * all sharing a single {@link TranspositionTable} ("Lazy SMP"). The threads
+ * never talk to each other directly. Instead each one finds the results the
+ * others have left in the table and so skips work they have already done,
+ * while the helpers searching other depths fill the table ahead of the main
+ * search.
+ * </p>
+ * The calling thread runs the main search and the helpers run on a pool of
+ * daemon threads kept between moves. Once the main search finishes the
+ * helpers are stopped and the move of whichever thread finished the deepest
+ * iteration is played.
+ */
+public class ParallelSearch
+{
+	private Search[] searches;
+	private TranspositionTable transpositionTable;
+	private ExecutorService helperPool;
+
+	// The search whose move was chosen last
+	private Search chosenSearch;
+
+	// Set for good by shutdown(), from any thread
+	private volatile boolean isShutdown = false;
+
+	public ParallelSearch(int threadCount)
+	{
+		this(threadCount, new Evaluator(), new TranspositionTable());
+	}
+
+	/**
+	 * @param threadCount The number of threads, including the calling thread
+	 * @param evaluator
+	 * @param transpositionTable The table shared by every thread
+	 */
+	public ParallelSearch(
+			int threadCount,
+			Evaluator evaluator,
+			TranspositionTable transpositionTable)
+	{
+		threadCount = Math.max(1, threadCount);
+
+		this.transpositionTable = transpositionTable;
+		this.searches = new Search[threadCount];
+		for (int i = 0; i < threadCount; i++)
+		{
+			this.searches[i] = new Search(evaluator, transpositionTable);
+			this.searches[i].setHelperIndex(i);
+		}
+		this.chosenSearch = this.searches[0];
+
+		if (threadCount > 1)
+		{
+			this.helperPool = Executors.newFixedThreadPool(
+					threadCount - 1,
+					new ThreadFactory() {
+
+						private int created = 0;
+
+						@Override
+						public Thread newThread(Runnable task)
+						{
+							Thread thread = new Thread(task, "Search Helper "
+									+ (++created));
+							thread.setDaemon(true);
+
+							return thread;
+						}
+					});
+		}
+	}
+
+	/**
+	 * Searches the given position on every thread until either the time
+	 * budget or the maximum depth is reached.
+	 *
+	 * @param root The position to search, which is not modified
+	 * @param userToMove Whether the user is the player to move
+	 * @param timeBudgetMillis How long the search may take
+	 * @param maxDepth The deepest iteration that will be searched
+	 * @return The best move found<br>
+	 *         Will return {@link Move#NONE} if the player has no legal moves,
+	 *         or once the search has been shut down
+	 * @see Search#findBestMove(Position, boolean, long, int)
+	 */
+	public long findBestMove(
+			final Position root,
+			final boolean userToMove,
+			final long timeBudgetMillis,
+			final int maxDepth)
+	{
+		if (this.isShutdown)
+			return Move.NONE;
+
+		this.transpositionTable.newSearch();
+		for (Search search : this.searches)
+		{
+			search.clearStop();
+		}
+
+		// A shutdown from here on stops the searches after their stops were
+		// cleared, but one before must not be undone
+		if (this.isShutdown)
+			return Move.NONE;
+
+		int helperCount = this.searches.length - 1;
+		final CountDownLatch helpersDone = new CountDownLatch(helperCount);
+
+		for (int i = 1; i <= helperCount; i++)
+		{
+			final Search helper = this.searches[i];
+			try
+			{
+				this.helperPool.execute(new Runnable() {
+
+					@Override
+					public void run()
+					{
+						try
+						{
+							helper.search(root, userToMove, timeBudgetMillis, maxDepth);
+						} finally
+						{
+							helpersDone.countDown();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e)
+			{
+				// Shut down since the check above, so the main search is
+				// already stopped
+				helpersDone.countDown();
+			}
+		}
+
+		long move = this.searches[0].search(
+				root,
+				userToMove,
+				timeBudgetMillis,
+				maxDepth);
+
+		// The helpers only exist to help the main search, so they stop with it
+		for (int i = 1; i <= helperCount; i++)
+		{
+			this.searches[i].stop();
+		}
+		try
+		{
+			helpersDone.await();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		this.chosenSearch = this.searches[0];
+		for (int i = 1; i <= helperCount; i++)
+		{
+			if (this.searches[i].getCompletedDepth() > this.chosenSearch
+					.getCompletedDepth())
+			{
+				this.chosenSearch = this.searches[i];
+			}
+		}
+
+		return (this.chosenSearch == this.searches[0]) ? (move)
+				: (this.chosenSearch.getBestMove());
+	}
+
+	/**
+	 * @param tablebase The endgame tablebase every thread looks positions up
+	 *            in, or null to search every position
+	 */
+	public void setTablebase(Tablebase tablebase)
+	{
+		for (Search search : this.searches)
+		{
+			search.setTablebase(tablebase);
+		}
+	}
+
+	/**
+	 * Stops a search running on another thread as soon as possible.
+	 */
+	public void stop()
+	{
+		for (Search search : this.searches)
+		{
+			search.stop();
+		}
+	}
+
+	/**
+	 * Stops the helper threads for good. Any later search returns straight
+	 * away with {@link Move#NONE}.
+	 */
+	public void shutdown()
+	{
+		this.isShutdown = true;
+		this.stop();
+
+		// Helpers which are still queued must run (and immediately stop) so
+		// that a search in progress is not left waiting for them
+		if (this.helperPool != null)
+		{
+			this.helperPool.shutdown();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The number of positions visited by every thread during the last
+	 *         search
+	 */
+	public long getNodes()
+	{
+		long nodes = 0;
+		for (Search search : this.searches)
+		{
+			nodes += search.getNodes();
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * @return The score of the chosen move
+	 */
+	public int getBestScore()
+	{
+		return this.chosenSearch.getBestScore();
+	}
+
+	/**
+	 * @return The depth searched by the thread whose move was chosen
+	 */
+	public int getCompletedDepth()
+	{
+		return this.chosenSearch.getCompletedDepth();
+	}
+
+	public int getThreadCount()
+	{
+		return this.searches.length;
+	}
+
+	public TranspositionTable getTranspositionTable()
+	{
+		return transpositionTable;
+	}
+
+}
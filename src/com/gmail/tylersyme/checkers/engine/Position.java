@@ -0,0 +1,500 @@
+package com.gmail.tylersyme.checkers.engine;
+
+/**
+ * <p>
+ * A compact checkerboard position made up of three 32-bit masks, one bit for
+ * each of the 32 dark squares a checker piece is able to stand on.
+ * </p>
+ * <p>
+ * Squares are numbered from left to right and top to bottom, so square 0 is
+ * the top-most dark square at (1, 0) and square 31 is the bottom-most dark
+ * square at (6, 7). The user's pieces start on the bottom three rows and move
+ * towards row 0, just as they do on the visible checkerboard.
+ * </p>
+ * Every change to a position also updates its {@link Zobrist} key, so the
+ * key of any position is always available without hashing the board.
+ */
+public class Position
+{
+	public static final int SQUARE_COUNT = 32;
+
+	// The squares each player's pieces occupy at the start of a game
+	public static final int USER_START = 0xFFF00000;
+	public static final int OPPONENT_START = 0x00000FFF;
+
+	// -------------------------------------------------------------------------
+
+	private int userPieces;
+	private int opponentPieces;
+	private int kings;
+	private long hash;
+
+	/**
+	 * Creates an empty position with no pieces on the board.
+	 */
+	public Position()
+	{ }
+
+	public Position(int userPieces, int opponentPieces, int kings)
+	{
+		this.set(userPieces, opponentPieces, kings);
+	}
+
+	/**
+	 * Clears the board and places both the user's and opponent's pieces into
+	 * the correct starting setup.
+	 */
+	public void setupInitial()
+	{
+		this.set(USER_START, OPPONENT_START, 0);
+	}
+
+	/**
+	 * Replaces the entire contents of this position.
+	 *
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings Must be a subset of the user's and opponent's pieces
+	 */
+	public void set(int userPieces, int opponentPieces, int kings)
+	{
+		this.userPieces = userPieces;
+		this.opponentPieces = opponentPieces;
+		this.kings = kings;
+		this.hash = Zobrist.hash(userPieces, opponentPieces, kings);
+	}
+
+	/**
+	 * Copies the contents of the given position into this one.
+	 *
+	 * @param other
+	 */
+	public void copyFrom(Position other)
+	{
+		this.userPieces = other.userPieces;
+		this.opponentPieces = other.opponentPieces;
+		this.kings = other.kings;
+		this.hash = other.hash;
+	}
+
+	// -------------------------------------------------------------------------
+	// Piece Manipulation
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Moves whatever piece is at the from square to the to square, keeping
+	 * its owner and king status.<br>
+	 * <b>Note:</b> Does not check whether the movement is valid
+	 *
+	 * @param from
+	 * @param to
+	 */
+	public void movePiece(int from, int to)
+	{
+		int fromBit = 1 << from;
+		int path = fromBit ^ (1 << to); // Empty if from and to are the same
+		boolean isUserPiece = (this.userPieces & fromBit) != 0;
+		boolean isKing = (this.kings & fromBit) != 0;
+
+		if (isUserPiece)
+		{
+			this.userPieces ^= path;
+		} else if ((this.opponentPieces & fromBit) != 0)
+		{
+			this.opponentPieces ^= path;
+		} else
+		{
+			return; // Nothing to move
+		}
+
+		if (isKing)
+		{
+			this.kings ^= path;
+		}
+
+		this.hash ^= Zobrist.getPieceKey(from, isUserPiece, isKing)
+				^ Zobrist.getPieceKey(to, isUserPiece, isKing);
+	}
+
+	/**
+	 * Plays a move produced by the {@link MoveGenerator}, capturing every
+	 * jumped piece and "kinging" the moved piece if needed.
+	 *
+	 * @param move
+	 * @param userToMove Whether the move belongs to the user
+	 * @return The captured squares which held kings, which must be handed
+	 *         back to {@link #undoMove(long, boolean, int)}
+	 */
+	public int applyMove(long move, boolean userToMove)
+	{
+		int fromBit = 1 << Move.getFrom(move);
+		int toBit = 1 << Move.getTo(move);
+		int path = fromBit ^ toBit;
+		int captured = Move.getCaptured(move);
+		int capturedKings = this.kings & captured;
+
+		this.hash ^= moveKey(move, userToMove, (this.kings & fromBit) != 0,
+				capturedKings);
+
+		if (userToMove)
+		{
+			this.userPieces ^= path;
+			this.opponentPieces &= ~captured;
+		} else
+		{
+			this.opponentPieces ^= path;
+			this.userPieces &= ~captured;
+		}
+
+		if ((this.kings & fromBit) != 0)
+		{
+			this.kings ^= path;
+		}
+		this.kings &= ~captured;
+
+		if (Move.isPromotion(move))
+		{
+			this.kings |= toBit;
+		}
+
+		return capturedKings;
+	}
+
+	/**
+	 * Takes back a move played with {@link #applyMove(long, boolean)}.
+	 *
+	 * @param move
+	 * @param userToMove Whether the move belongs to the user
+	 * @param capturedKings The value returned when the move was applied
+	 */
+	public void undoMove(long move, boolean userToMove, int capturedKings)
+	{
+		int fromBit = 1 << Move.getFrom(move);
+		int toBit = 1 << Move.getTo(move);
+		int path = fromBit ^ toBit;
+		int captured = Move.getCaptured(move);
+
+		if (Move.isPromotion(move))
+		{
+			this.kings &= ~toBit;
+		}
+
+		this.hash ^= moveKey(move, userToMove, (this.kings & toBit) != 0,
+				capturedKings);
+
+		if ((this.kings & toBit) != 0)
+		{
+			this.kings ^= path;
+		}
+		this.kings |= capturedKings;
+
+		if (userToMove)
+		{
+			this.userPieces ^= path;
+			this.opponentPieces |= captured;
+		} else
+		{
+			this.opponentPieces ^= path;
+			this.userPieces |= captured;
+		}
+	}
+
+	/**
+	 * Returns the change a move makes to the key of a position, which is the
+	 * same whether the move is being played or taken back.
+	 *
+	 * @param move
+	 * @param userToMove
+	 * @param wasKing Whether the moved piece was a king before the move
+	 * @param capturedKings
+	 * @return
+	 */
+	private static long moveKey(
+			long move,
+			boolean userToMove,
+			boolean wasKing,
+			int capturedKings)
+	{
+		int captured = Move.getCaptured(move);
+
+		return Zobrist.getPieceKey(Move.getFrom(move), userToMove, wasKing)
+				^ Zobrist.getPieceKey(
+						Move.getTo(move),
+						userToMove,
+						wasKing || Move.isPromotion(move))
+				^ Zobrist.hashPieces(captured, !userToMove, capturedKings);
+	}
+
+	/**
+	 * Erases whatever piece is at the given square.
+	 *
+	 * @param square
+	 */
+	public void removePiece(int square)
+	{
+		int mask = ~(1 << square);
+
+		if (this.isEmpty(square) == false)
+		{
+			this.hash ^= Zobrist.getPieceKey(
+					square,
+					this.isUserPiece(square),
+					this.isKing(square));
+		}
+
+		this.userPieces &= mask;
+		this.opponentPieces &= mask;
+		this.kings &= mask;
+	}
+
+	/**
+	 * "Kings" or "unkings" the piece at the given square. Empty squares are
+	 * left untouched.
+	 *
+	 * @param square
+	 * @param isKing
+	 */
+	public void setKing(int square, boolean isKing)
+	{
+		if (this.isEmpty(square) || this.isKing(square) == isKing)
+			return;
+
+		boolean isUserPiece = this.isUserPiece(square);
+		this.hash ^= Zobrist.getPieceKey(square, isUserPiece, !isKing)
+				^ Zobrist.getPieceKey(square, isUserPiece, isKing);
+
+		this.kings ^= 1 << square;
+	}
+
+	// -------------------------------------------------------------------------
+	// Square Queries
+	// -------------------------------------------------------------------------
+
+	public boolean isEmpty(int square)
+	{
+		return ((this.getOccupied() >>> square) & 1) == 0;
+	}
+
+	public boolean isUserPiece(int square)
+	{
+		return ((this.userPieces >>> square) & 1) != 0;
+	}
+
+	public boolean isOpponentPiece(int square)
+	{
+		return ((this.opponentPieces >>> square) & 1) != 0;
+	}
+
+	public boolean isKing(int square)
+	{
+		return ((this.kings >>> square) & 1) != 0;
+	}
+
+	public int getUserPieceCount()
+	{
+		return Integer.bitCount(this.userPieces);
+	}
+
+	public int getOpponentPieceCount()
+	{
+		return Integer.bitCount(this.opponentPieces);
+	}
+
+	// -------------------------------------------------------------------------
+	// Square Coordinates
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns the square index of the given x and y location on the
+	 * checkerboard.
+	 *
+	 * @param x
+	 * @param y
+	 * @return The square index (0-31)<br>
+	 *         Will return <b>-1</b> if (x, y) is off the board or is a light
+	 *         square which pieces can never stand on
+	 */
+	public static int toSquare(int x, int y)
+	{
+		if (x < 0 || x > 7 || y < 0 || y > 7 || ((x + y) & 1) == 0)
+			return -1;
+
+		return (y * 4) + (x / 2);
+	}
+
+	/**
+	 * @param square
+	 * @return The x location of the given square on the checkerboard
+	 */
+	public static int getSquareX(int square)
+	{
+		int y = square >>> 2;
+
+		return ((square & 3) * 2) + ((y + 1) & 1);
+	}
+
+	/**
+	 * @param square
+	 * @return The y location of the given square on the checkerboard
+	 */
+	public static int getSquareY(int square)
+	{
+		return square >>> 2;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public int getUserPieces()
+	{
+		return this.userPieces;
+	}
+
+	public int getOpponentPieces()
+	{
+		return this.opponentPieces;
+	}
+
+	public int getKings()
+	{
+		return this.kings;
+	}
+
+	/**
+	 * @return The {@link Zobrist} key of the pieces on the board. The key
+	 *         does not include the player to move.
+	 */
+	public long getHash()
+	{
+		return this.hash;
+	}
+
+	/**
+	 * @param userToMove
+	 * @return The {@link Zobrist} key of this position with the given player
+	 *         to move
+	 */
+	public long getHash(boolean userToMove)
+	{
+		return (userToMove) ? (this.hash) : (this.hash ^ Zobrist.OPPONENT_TO_MOVE);
+	}
+
+	/**
+	 * @return Every square that has a piece on it
+	 */
+	public int getOccupied()
+	{
+		return this.userPieces | this.opponentPieces;
+	}
+
+	// -------------------------------------------------------------------------
+	// Text Form
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Reads a position written by {@link #toString()}. Any character other
+	 * than those naming a square's contents (such as '/' between rows) is
+	 * ignored.
+	 *
+	 * @param text 32 characters in square order where '.' is an empty square,
+	 *            'u' and 'U' are the user's man and king and 'o' and 'O' are
+	 *            the opponent's man and king
+	 * @return The position
+	 * @throws IllegalArgumentException If the text does not describe exactly
+	 *             32 squares
+	 */
+	public static Position fromString(String text)
+	{
+		Position position = new Position();
+		int square = 0;
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if ("uUoO.".indexOf(c) < 0)
+				continue;
+
+			if (square >= SQUARE_COUNT)
+				throw new IllegalArgumentException("Too many squares: " + text);
+
+			int bit = 1 << square;
+			if (c == 'u' || c == 'U')
+			{
+				position.userPieces |= bit;
+			} else if (c == 'o' || c == 'O')
+			{
+				position.opponentPieces |= bit;
+			}
+			if (c == 'U' || c == 'O')
+			{
+				position.kings |= bit;
+			}
+
+			square++;
+		}
+
+		if (square != SQUARE_COUNT)
+			throw new IllegalArgumentException("Too few squares: " + text);
+
+		// Also computes the key of the new position
+		position.set(
+				position.userPieces,
+				position.opponentPieces,
+				position.kings);
+
+		return position;
+	}
+
+	/**
+	 * @return The position as 32 characters in square order with a '/'
+	 *         between each row
+	 * @see #fromString(String)
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder(40);
+
+		for (int square = 0; square < SQUARE_COUNT; square++)
+		{
+			if (square > 0 && (square & 3) == 0)
+			{
+				text.append('/');
+			}
+
+			char c = '.';
+			if (this.isUserPiece(square))
+			{
+				c = 'u';
+			} else if (this.isOpponentPiece(square))
+			{
+				c = 'o';
+			}
+			text.append((this.isKing(square)) ? (Character.toUpperCase(c))
+					: (c));
+		}
+
+		return text.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj instanceof Position == false)
+			return false;
+
+		Position other = (Position) obj;
+		return (this.userPieces == other.userPieces
+				&& this.opponentPieces == other.opponentPieces
+				&& this.kings == other.kings);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (31 * ((31 * this.userPieces) + this.opponentPieces))
+				+ this.kings;
+	}
+
+}
@@ -0,0 +1,646 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Finds the best move of a {@link Position} using an iterative deepening
+ * negamax search with alpha-beta pruning. Each iteration searches one move
+ * deeper than the last until the time budget runs out, and the best move of
+ * the deepest finished iteration is played.
+ * </p>
+ * <p>
+ * Moves are tried in the order most likely to cause a cutoff: the best move
+ * of the last iteration first, then captures of the most pieces, then
+ * "killer" moves which caused cutoffs at the same ply, and finally by a
+ * history of past cutoffs. Once the depth runs out, positions with a pending
+ * capture keep being searched so that the evaluation never stops halfway
+ * through an exchange.
+ * </p>
+ * <p>
+ * Results are stored in a {@link TranspositionTable} so that positions
+ * reached again through a different move order are not searched twice.
+ * Several searches may share one table.
+ * </p>
+ * <p>
+ * Once few enough pieces are left, positions are looked up in an endgame
+ * {@link Tablebase} (if one is given) instead of being searched at all.
+ * </p>
+ * A Search reuses all of its buffers between moves and allocates nothing
+ * while searching. It is not thread safe, but separate instances may search
+ * at the same time.
+ */
+public class Search
+{
+	// Scores beyond WIN - MAX_PLY are won (or lost) positions, where the
+	// quicker the win the higher the score
+	public static final int INFINITY = 1000000;
+	public static final int WIN = 100000;
+	public static final int MAX_PLY = 128;
+
+	// How many nodes are searched between each check of the clock
+	private static final int CLOCK_CHECK_INTERVAL = 2048;
+
+	// Move ordering scores
+	private static final int BEST_MOVE_SCORE = Integer.MAX_VALUE;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 27;
+
+	// -------------------------------------------------------------------------
+
+	private Evaluator evaluator;
+	private TranspositionTable transpositionTable;
+	private Tablebase tablebase;
+	private Position position = new Position();
+
+	// One section of each buffer for every ply
+	private long[] moves = new long[MAX_PLY * MoveGenerator.MAX_MOVES];
+	private int[] moveScores = new int[MAX_PLY * MoveGenerator.MAX_MOVES];
+
+	// Two killer moves for each ply
+	private long[] killers = new long[MAX_PLY * 2];
+	// Indexed by player, from square and to square
+	private int[] history = new int[2 * 32 * 32];
+
+	private long nodes;
+	private long deadline;
+	private volatile boolean stopped;
+
+	// Set when this is one of the helpers of a ParallelSearch, which then
+	// searches only some depths so the helpers do not all repeat each other
+	private int helperIndex = 0;
+
+	// The results of the last finished iteration
+	private long bestMove;
+	private int bestScore;
+	private int completedDepth;
+
+	public Search()
+	{
+		this(new Evaluator());
+	}
+
+	public Search(Evaluator evaluator)
+	{
+		this(evaluator, new TranspositionTable());
+	}
+
+	public Search(Evaluator evaluator, TranspositionTable transpositionTable)
+	{
+		this.evaluator = evaluator;
+		this.transpositionTable = transpositionTable;
+	}
+
+	/**
+	 * Searches the given position until either the time budget or the
+	 * maximum depth is reached.
+	 *
+	 * @param root The position to search, which is not modified
+	 * @param userToMove Whether the user is the player to move
+	 * @param timeBudgetMillis How long the search may take
+	 * @param maxDepth The deepest iteration that will be searched
+	 * @return The best move found<br>
+	 *         Will return {@link Move#NONE} if the player has no legal moves
+	 */
+	public long findBestMove(
+			Position root,
+			boolean userToMove,
+			long timeBudgetMillis,
+			int maxDepth)
+	{
+		this.stopped = false;
+		this.transpositionTable.newSearch();
+
+		return this.search(root, userToMove, timeBudgetMillis, maxDepth);
+	}
+
+	/**
+	 * Runs the search without first clearing the stop flag or starting a new
+	 * generation of the transposition table. {@link ParallelSearch} does both
+	 * itself before any of its threads begin, so a thread that is stopped
+	 * before it even starts searching stays stopped.
+	 *
+	 * @see #findBestMove(Position, boolean, long, int)
+	 */
+	long search(
+			Position root,
+			boolean userToMove,
+			long timeBudgetMillis,
+			int maxDepth)
+	{
+		this.position.copyFrom(root);
+		this.nodes = 0;
+		this.deadline = System.nanoTime() + (timeBudgetMillis * 1000000L);
+		this.bestMove = Move.NONE;
+		this.bestScore = 0;
+		this.completedDepth = 0;
+
+		Arrays.fill(this.killers, Move.NONE);
+		for (int i = 0; i < this.history.length; i++)
+		{
+			this.history[i] >>= 2; // Keep some history from the last search
+		}
+
+		int rootMoveCount = MoveGenerator.generateMoves(
+				this.position,
+				userToMove,
+				this.moves,
+				0);
+		if (rootMoveCount == 0)
+		{
+			return Move.NONE;
+		} else if (rootMoveCount == 1) // There is nothing to decide
+		{
+			this.bestMove = this.moves[0];
+			return this.bestMove;
+		}
+
+		// Every move from a position in the tablebase leads to another one,
+		// so a single iteration already finds the perfect move
+		if (this.probeTablebase(0, userToMove) != Tablebase.NOT_FOUND)
+		{
+			maxDepth = 1;
+		}
+
+		maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+		for (int depth = 1; depth <= maxDepth; depth++)
+		{
+			// Helpers skip every other depth, half of them the odd depths and
+			// half the even ones
+			if (this.helperIndex > 0 && depth > 1 && depth < maxDepth
+					&& ((depth + this.helperIndex) & 1) == 0)
+				continue;
+
+			long iterationBestMove = this.searchRoot(depth, userToMove);
+			if (this.stopped)
+				break;
+
+			this.bestMove = iterationBestMove;
+			this.completedDepth = depth;
+
+			// There is no point searching deeper once the result is certain
+			if (Math.abs(this.bestScore) > WIN - MAX_PLY)
+				break;
+		}
+
+		// Only possible if the search was stopped from another thread before
+		// the first iteration finished
+		if (this.bestMove == Move.NONE)
+		{
+			this.bestMove = this.moves[0];
+		}
+
+		return this.bestMove;
+	}
+
+	/**
+	 * Stops a search running on another thread as soon as possible.
+	 */
+	public void stop()
+	{
+		this.stopped = true;
+	}
+
+	/**
+	 * @param tablebase The endgame tablebase to look positions up in, or null
+	 *            to search every position
+	 */
+	public void setTablebase(Tablebase tablebase)
+	{
+		this.tablebase = tablebase;
+	}
+
+	void clearStop()
+	{
+		this.stopped = false;
+	}
+
+	void setHelperIndex(int helperIndex)
+	{
+		this.helperIndex = helperIndex;
+	}
+
+	// -------------------------------------------------------------------------
+	// Searching
+	// -------------------------------------------------------------------------
+
+	private long searchRoot(int depth, boolean userToMove)
+	{
+		int moveCount = MoveGenerator.generateMoves(
+				this.position,
+				userToMove,
+				this.moves,
+				0);
+		this.scoreMoves(0, moveCount, 0, userToMove, this.bestMove, 0L);
+
+		int alpha = -INFINITY;
+		long iterationBestMove = Move.NONE;
+
+		for (int i = 0; i < moveCount; i++)
+		{
+			long move = this.pickNextMove(0, i, moveCount);
+
+			int capturedKings = this.position.applyMove(move, userToMove);
+			int score = -this.negamax(depth - 1, 1, -INFINITY, -alpha, !userToMove);
+			this.position.undoMove(move, userToMove, capturedKings);
+
+			if (this.stopped)
+				return Move.NONE;
+
+			if (score > alpha)
+			{
+				alpha = score;
+				iterationBestMove = move;
+			}
+		}
+
+		this.bestScore = alpha;
+		this.transpositionTable.store(
+				this.position.getHash(userToMove),
+				iterationBestMove,
+				alpha,
+				depth,
+				TranspositionTable.EXACT);
+
+		return iterationBestMove;
+	}
+
+	private int negamax(
+			int depth,
+			int ply,
+			int alpha,
+			int beta,
+			boolean userToMove)
+	{
+		if (depth <= 0)
+			return this.quiesce(ply, alpha, beta, userToMove);
+
+		if (this.checkClock())
+			return 0;
+
+		int tablebaseScore = this.probeTablebase(ply, userToMove);
+		if (tablebaseScore != Tablebase.NOT_FOUND)
+			return tablebaseScore;
+
+		// A deep enough result from the table may settle this position
+		// without searching it again
+		long key = this.position.getHash(userToMove);
+		long entry = this.transpositionTable.probe(key);
+		if (entry != 0 && TranspositionTable.getDepth(entry) >= depth)
+		{
+			int score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+			int bound = TranspositionTable.getBound(entry);
+
+			if (bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+					|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+			{
+				return score;
+			}
+		}
+
+		int offset = ply * MoveGenerator.MAX_MOVES;
+		int moveCount = MoveGenerator.generateMoves(
+				this.position,
+				userToMove,
+				this.moves,
+				offset);
+
+		// A player who cannot move has lost
+		if (moveCount == 0)
+			return -WIN + ply;
+
+		if (ply >= MAX_PLY - 1)
+			return this.evaluator.evaluate(this.position, userToMove);
+
+		this.scoreMoves(offset, moveCount, ply, userToMove, Move.NONE, entry);
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		long bestMove = Move.NONE;
+		for (int i = 0; i < moveCount; i++)
+		{
+			long move = this.pickNextMove(offset, i, moveCount);
+
+			int capturedKings = this.position.applyMove(move, userToMove);
+			int score = -this.negamax(
+					depth - 1,
+					ply + 1,
+					-beta,
+					-alpha,
+					!userToMove);
+			this.position.undoMove(move, userToMove, capturedKings);
+
+			if (this.stopped)
+				return 0;
+
+			if (score > bestScore)
+			{
+				bestScore = score;
+				if (score > alpha)
+				{
+					alpha = score;
+					bestMove = move;
+					if (alpha >= beta)
+					{
+						this.recordCutoff(move, ply, depth, userToMove);
+						break;
+					}
+				}
+			}
+		}
+
+		int bound = TranspositionTable.EXACT;
+		if (bestScore <= originalAlpha)
+		{
+			bound = TranspositionTable.UPPER_BOUND;
+		} else if (bestScore >= beta)
+		{
+			bound = TranspositionTable.LOWER_BOUND;
+		}
+		this.transpositionTable.store(
+				key,
+				bestMove,
+				scoreToTable(bestScore, ply),
+				depth,
+				bound);
+
+		return bestScore;
+	}
+
+	/**
+	 * Keeps searching past the last ply for as long as the player to move is
+	 * forced to capture. Because captures are mandatory in checkers, the
+	 * player may not simply "stand pat" on the evaluation while one is
+	 * pending.
+	 */
+	private int quiesce(int ply, int alpha, int beta, boolean userToMove)
+	{
+		if (this.checkClock())
+			return 0;
+
+		int tablebaseScore = this.probeTablebase(ply, userToMove);
+		if (tablebaseScore != Tablebase.NOT_FOUND)
+			return tablebaseScore;
+
+		if (ply >= MAX_PLY - 1
+				|| MoveGenerator.hasCaptures(this.position, userToMove) == false)
+		{
+			if (MoveGenerator.hasMoves(this.position, userToMove) == false)
+				return -WIN + ply;
+
+			return this.evaluator.evaluate(this.position, userToMove);
+		}
+
+		int offset = ply * MoveGenerator.MAX_MOVES;
+		int moveCount = MoveGenerator.generateCaptures(
+				this.position,
+				userToMove,
+				this.moves,
+				offset);
+		this.scoreMoves(offset, moveCount, ply, userToMove, Move.NONE, 0L);
+
+		int bestScore = -INFINITY;
+		for (int i = 0; i < moveCount; i++)
+		{
+			long move = this.pickNextMove(offset, i, moveCount);
+
+			int capturedKings = this.position.applyMove(move, userToMove);
+			int score = -this.quiesce(ply + 1, -beta, -alpha, !userToMove);
+			this.position.undoMove(move, userToMove, capturedKings);
+
+			if (this.stopped)
+				return 0;
+
+			if (score > bestScore)
+			{
+				bestScore = score;
+				if (score > alpha)
+				{
+					alpha = score;
+					if (alpha >= beta)
+						break;
+				}
+			}
+		}
+
+		return bestScore;
+	}
+
+	/**
+	 * Looks the current position up in the tablebase.
+	 *
+	 * @return The position's exact score<br>
+	 *         Will return {@link Tablebase#NOT_FOUND} if there are too many
+	 *         pieces or no tablebase
+	 */
+	private int probeTablebase(int ply, boolean userToMove)
+	{
+		if (this.tablebase == null
+				|| Integer.bitCount(this.position.getOccupied()) > this.tablebase
+						.getMaxPieces())
+			return Tablebase.NOT_FOUND;
+
+		int value = this.tablebase.probe(this.position, userToMove);
+		if (value == Tablebase.NOT_FOUND || value == 0)
+			return value;
+
+		// Very long wins still score as wins, if a little sooner than they are
+		int plies = Math.min(ply + Tablebase.getPlies(value), MAX_PLY - 1);
+
+		return (value > 0) ? (WIN - plies) : (-WIN + plies);
+	}
+
+	/**
+	 * Counts a node and, every so often, checks whether the time budget has
+	 * run out. The first iteration is always allowed to finish so that there
+	 * is a move to play.
+	 *
+	 * @return Whether the search has been stopped
+	 */
+	private boolean checkClock()
+	{
+		this.nodes++;
+		if ((this.nodes % CLOCK_CHECK_INTERVAL) == 0
+				&& this.completedDepth > 0
+				&& System.nanoTime() > this.deadline)
+		{
+			this.stopped = true;
+		}
+
+		return this.stopped;
+	}
+
+	// -------------------------------------------------------------------------
+	// Move Ordering
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Gives each move of a ply an ordering score.
+	 *
+	 * @param bestMove The best move of the last iteration, if known
+	 * @param entry The transposition table entry of the position, if any
+	 */
+	private void scoreMoves(
+			int offset,
+			int moveCount,
+			int ply,
+			boolean userToMove,
+			long bestMove,
+			long entry)
+	{
+		long killer1 = this.killers[ply * 2];
+		long killer2 = this.killers[(ply * 2) + 1];
+		int side = (userToMove) ? (0) : (1);
+
+		for (int i = offset; i < offset + moveCount; i++)
+		{
+			long move = this.moves[i];
+			int score;
+
+			if (move == bestMove
+					|| TranspositionTable.isBestMove(entry, move))
+			{
+				score = BEST_MOVE_SCORE;
+			} else if (Move.isCapture(move))
+			{
+				score = CAPTURE_SCORE
+						+ Integer.bitCount(Move.getCaptured(move));
+			} else if (move == killer1 || move == killer2)
+			{
+				score = KILLER_SCORE;
+			} else
+			{
+				score = this.history[historyIndex(side, move)];
+			}
+
+			this.moveScores[i] = score;
+		}
+	}
+
+	/**
+	 * Moves the highest scored of the remaining moves into the given slot and
+	 * returns it. Selecting one move at a time is cheaper than sorting when
+	 * a cutoff comes early.
+	 */
+	private long pickNextMove(int offset, int index, int moveCount)
+	{
+		int best = offset + index;
+		for (int i = best + 1; i < offset + moveCount; i++)
+		{
+			if (this.moveScores[i] > this.moveScores[best])
+			{
+				best = i;
+			}
+		}
+
+		int slot = offset + index;
+		long move = this.moves[best];
+		int score = this.moveScores[best];
+
+		this.moves[best] = this.moves[slot];
+		this.moveScores[best] = this.moveScores[slot];
+		this.moves[slot] = move;
+		this.moveScores[slot] = score;
+
+		return move;
+	}
+
+	private void recordCutoff(long move, int ply, int depth, boolean userToMove)
+	{
+		// Captures are already ordered first
+		if (Move.isCapture(move))
+			return;
+
+		if (this.killers[ply * 2] != move)
+		{
+			this.killers[(ply * 2) + 1] = this.killers[ply * 2];
+			this.killers[ply * 2] = move;
+		}
+
+		int index = historyIndex((userToMove) ? (0) : (1), move);
+		this.history[index] = Math.min(
+				this.history[index] + (depth * depth),
+				KILLER_SCORE - 1);
+	}
+
+	// Win and loss scores count plies from the root, but the table stores
+	// them counting from the position itself so they stay true wherever the
+	// position is reached
+	private static int scoreToTable(int score, int ply)
+	{
+		if (score > WIN - MAX_PLY)
+			return score + ply;
+		if (score < -WIN + MAX_PLY)
+			return score - ply;
+
+		return score;
+	}
+
+	private static int scoreFromTable(int score, int ply)
+	{
+		if (score > WIN - MAX_PLY)
+			return score - ply;
+		if (score < -WIN + MAX_PLY)
+			return score + ply;
+
+		return score;
+	}
+
+	private static int historyIndex(int side, long move)
+	{
+		return (side << 10) | (Move.getFrom(move) << 5) | Move.getTo(move);
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The number of positions visited by the last search
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * @return The best move from the last finished iteration
+	 */
+	public long getBestMove()
+	{
+		return bestMove;
+	}
+
+	/**
+	 * @return The score of the best move from the last finished iteration
+	 */
+	public int getBestScore()
+	{
+		return bestScore;
+	}
+
+	/**
+	 * @return The depth of the last finished iteration
+	 */
+	public int getCompletedDepth()
+	{
+		return completedDepth;
+	}
+
+	public Evaluator getEvaluator()
+	{
+		return evaluator;
+	}
+
+	public TranspositionTable getTranspositionTable()
+	{
+		return transpositionTable;
+	}
+
+	public Tablebase getTablebase()
+	{
+		return tablebase;
+	}
+
+}
@@ -0,0 +1,478 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * An endgame tablebase holds the perfect result of every position with only
+ * a few pieces left, as built by the {@link TablebaseGenerator}. There is one
+ * table for each material signature: the number of men and kings belonging
+ * to the player to move and to their opponent.
+ * </p>
+ * <p>
+ * The tables are memory-mapped straight from their files, so opening a
+ * tablebase costs almost nothing, lookups use no heap at all and the
+ * operating system shares the pages between every search thread.
+ * </p>
+ * <p>
+ * Tables are always from the point of view of the user to move. A position
+ * where the opponent is to move is first turned around (rotated half a turn
+ * with the colours swapped), which makes the opponent the "user".
+ * </p>
+ * Each position takes up a single byte:
+ * <ul>
+ * <li>0: A draw</li>
+ * <li>v &gt; 0: The player to move wins within 2v - 1 plies</li>
+ * <li>v &lt; 0: The player to move loses within 2(-v - 1) plies</li>
+ * </ul>
+ */
+public class Tablebase
+{
+	// Where the game looks for the tables unless told otherwise
+	public static final String DEFAULT_DIRECTORY = "tablebase";
+
+	// Returned by probe when the position is not in any table
+	public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+	// The value of a position whose player to move has no moves left
+	public static final int LOST = -1;
+
+	// The most pieces the generator supports, which also bounds the number
+	// of men or kings of a single kind
+	public static final int MAX_PIECES = 6;
+
+	// Men are never found on their own king row, so each player's men have
+	// only 28 squares to choose from
+	static final int MAN_SQUARES = 28;
+
+	private static final int[][] BINOMIAL = new int[Position.SQUARE_COUNT + 1][MAX_PIECES + 1];
+
+	static
+	{
+		for (int n = 0; n <= Position.SQUARE_COUNT; n++)
+		{
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= Math.min(n, MAX_PIECES); k++)
+			{
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	// Indexed by signature
+	private ByteBuffer[] tables = new ByteBuffer[signature(
+			MAX_PIECES,
+			MAX_PIECES,
+			MAX_PIECES,
+			MAX_PIECES) + 1];
+	private int maxPieces = 0;
+
+	/**
+	 * Creates an empty tablebase.
+	 */
+	public Tablebase()
+	{ }
+
+	/**
+	 * Maps every table found in the given directory. A directory which does
+	 * not exist gives an empty tablebase.
+	 *
+	 * @param directory
+	 * @return The tablebase
+	 */
+	public static Tablebase open(File directory)
+	{
+		Tablebase tablebase = new Tablebase();
+
+		File[] files = directory.listFiles();
+		if (files == null)
+			return tablebase;
+
+		for (File file : files)
+		{
+			int[] counts = parseFileName(file.getName());
+			if (counts == null)
+				continue;
+
+			try
+			{
+				tablebase.map(file, counts[0], counts[1], counts[2], counts[3]);
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		return tablebase;
+	}
+
+	/**
+	 * Maps a single table file into this tablebase.
+	 *
+	 * @throws IOException If the file cannot be read or is the wrong size
+	 */
+	void map(File file, int userMen, int userKings, int opponentMen,
+			int opponentKings) throws IOException
+	{
+		long size = getTableSize(userMen, userKings, opponentMen, opponentKings);
+
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = input.getChannel();
+			if (channel.size() != size)
+			{
+				throw new IOException(file + " should be " + size
+						+ " bytes long but is " + channel.size());
+			}
+
+			// The mapping stays valid after the file is closed
+			this.put(
+					userMen,
+					userKings,
+					opponentMen,
+					opponentKings,
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} finally
+		{
+			input.close();
+		}
+	}
+
+	void put(int userMen, int userKings, int opponentMen, int opponentKings,
+			ByteBuffer table)
+	{
+		this.tables[signature(userMen, userKings, opponentMen, opponentKings)] = table;
+		this.maxPieces = Math.max(
+				this.maxPieces,
+				userMen + userKings + opponentMen + opponentKings);
+	}
+
+	// -------------------------------------------------------------------------
+	// Probing
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Looks up the given position.
+	 *
+	 * @param position
+	 * @param userToMove Whether the user is the player to move
+	 * @return The position's value as described above<br>
+	 *         Will return {@link #NOT_FOUND} if there is no table for it
+	 */
+	public int probe(Position position, boolean userToMove)
+	{
+		if (userToMove)
+		{
+			return this.probe(
+					position.getUserPieces(),
+					position.getOpponentPieces(),
+					position.getKings());
+		} else
+		{
+			return this.probe(
+					Integer.reverse(position.getOpponentPieces()),
+					Integer.reverse(position.getUserPieces()),
+					Integer.reverse(position.getKings()));
+		}
+	}
+
+	/**
+	 * Looks up a position where the user is to move.
+	 *
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings
+	 * @return The position's value as described above<br>
+	 *         Will return {@link #NOT_FOUND} if there is no table for it
+	 */
+	public int probe(int userPieces, int opponentPieces, int kings)
+	{
+		if (userPieces == 0)
+			return LOST;
+
+		int userMen = Integer.bitCount(userPieces & ~kings);
+		int userKings = Integer.bitCount(userPieces & kings);
+		int opponentMen = Integer.bitCount(opponentPieces & ~kings);
+		int opponentKings = Integer.bitCount(opponentPieces & kings);
+
+		if (userMen + userKings + opponentMen + opponentKings > this.maxPieces)
+			return NOT_FOUND;
+
+		ByteBuffer table = this.tables[signature(
+				userMen,
+				userKings,
+				opponentMen,
+				opponentKings)];
+		if (table == null)
+			return NOT_FOUND;
+
+		return table.get(getIndex(userPieces, opponentPieces, kings));
+	}
+
+	/**
+	 * @param value A value found in the tablebase
+	 * @return The number of plies until the game is won or lost, or
+	 *         <b>0</b> for a draw
+	 */
+	public static int getPlies(int value)
+	{
+		if (value > 0)
+			return (2 * value) - 1;
+		if (value < 0)
+			return 2 * (-value - 1);
+
+		return 0;
+	}
+
+	// -------------------------------------------------------------------------
+	// Indexing
+	// -------------------------------------------------------------------------
+
+	/**
+	 * <p>
+	 * Gives each position of a signature its own index, where the user is to
+	 * move. The user's men are numbered among the 28 squares outside of row
+	 * 0, and the opponent's men among the 28 outside of row 7. The user's
+	 * kings are then numbered among the squares left over, and finally the
+	 * opponent's kings among those still left.
+	 * </p>
+	 * Men of the two players may share a square in this numbering, so a few
+	 * indexes do not belong to any real position.
+	 */
+	static int getIndex(int userPieces, int opponentPieces, int kings)
+	{
+		int userMen = userPieces & ~kings;
+		int opponentMen = opponentPieces & ~kings;
+		int userKings = userPieces & kings;
+		int opponentKings = opponentPieces & kings;
+
+		int menCount = Integer.bitCount(userMen | opponentMen);
+		int userKingCount = Integer.bitCount(userKings);
+
+		int index = rank(userMen >>> (Position.SQUARE_COUNT - MAN_SQUARES));
+		index = (index * BINOMIAL[MAN_SQUARES][Integer.bitCount(opponentMen)])
+				+ rank(opponentMen);
+		index = (index * BINOMIAL[Position.SQUARE_COUNT - menCount][userKingCount])
+				+ rank(compress(userKings, userMen | opponentMen));
+		index = (index * BINOMIAL[Position.SQUARE_COUNT - menCount
+				- userKingCount][Integer.bitCount(opponentKings)])
+				+ rank(compress(opponentKings, userMen | opponentMen | userKings));
+
+		return index;
+	}
+
+	/**
+	 * Rebuilds the position of the given index, the reverse of
+	 * {@link #getIndex(int, int, int)}.
+	 *
+	 * @param position Is set to the position, unless there is none
+	 * @return Whether the index belongs to a real position
+	 */
+	static boolean setPosition(
+			Position position,
+			int index,
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings)
+	{
+		int menCount = userMen + opponentMen;
+		int userKingCombinations = BINOMIAL[Position.SQUARE_COUNT - menCount][userKings];
+		int opponentKingCombinations = BINOMIAL[Position.SQUARE_COUNT
+				- menCount - userKings][opponentKings];
+		int opponentMenCombinations = BINOMIAL[MAN_SQUARES][opponentMen];
+
+		int opponentKingRank = index % opponentKingCombinations;
+		index /= opponentKingCombinations;
+		int userKingRank = index % userKingCombinations;
+		index /= userKingCombinations;
+		int opponentMenRank = index % opponentMenCombinations;
+		int userMenRank = index / opponentMenCombinations;
+
+		int userMenMask = unrank(userMenRank, userMen) << (Position.SQUARE_COUNT - MAN_SQUARES);
+		int opponentMenMask = unrank(opponentMenRank, opponentMen);
+		if ((userMenMask & opponentMenMask) != 0)
+			return false;
+
+		int occupied = userMenMask | opponentMenMask;
+		int userKingMask = expand(unrank(userKingRank, userKings), occupied);
+		int opponentKingMask = expand(
+				unrank(opponentKingRank, opponentKings),
+				occupied | userKingMask);
+
+		position.set(
+				userMenMask | userKingMask,
+				opponentMenMask | opponentKingMask,
+				userKingMask | opponentKingMask);
+
+		return true;
+	}
+
+	/**
+	 * @return The number of positions (and bytes) in the given table
+	 */
+	public static int getTableSize(
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings)
+	{
+		int menCount = userMen + opponentMen;
+
+		return BINOMIAL[MAN_SQUARES][userMen]
+				* BINOMIAL[MAN_SQUARES][opponentMen]
+				* BINOMIAL[Position.SQUARE_COUNT - menCount][userKings]
+				* BINOMIAL[Position.SQUARE_COUNT - menCount - userKings][opponentKings];
+	}
+
+	/**
+	 * @return The name of the file holding the given table
+	 */
+	public static String getFileName(
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings)
+	{
+		return "tb_" + userMen + "_" + userKings + "_" + opponentMen + "_"
+				+ opponentKings;
+	}
+
+	/**
+	 * @return The men and king counts of the file's table, or null if the
+	 *         file is not a table
+	 */
+	private static int[] parseFileName(String name)
+	{
+		String[] parts = name.split("_");
+		if (parts.length != 5 || parts[0].equals("tb") == false)
+			return null;
+
+		int[] counts = new int[4];
+		int total = 0;
+		for (int i = 0; i < 4; i++)
+		{
+			if (parts[i + 1].length() != 1
+					|| Character.isDigit(parts[i + 1].charAt(0)) == false)
+				return null;
+
+			counts[i] = parts[i + 1].charAt(0) - '0';
+			total += counts[i];
+		}
+
+		if (total > MAX_PIECES || counts[0] + counts[1] == 0
+				|| counts[2] + counts[3] == 0)
+			return null;
+
+		return counts;
+	}
+
+	private static int signature(
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings)
+	{
+		int base = MAX_PIECES + 1;
+
+		return (((userMen * base) + userKings) * base + opponentMen) * base
+				+ opponentKings;
+	}
+
+	/**
+	 * Numbers a set of squares using the combinatorial number system, so that
+	 * every set of k squares gets a number from 0 to C(n, k) - 1.
+	 */
+	private static int rank(int squares)
+	{
+		int rank = 0;
+		for (int i = 1; squares != 0; i++)
+		{
+			rank += BINOMIAL[Integer.numberOfTrailingZeros(squares)][i];
+			squares &= squares - 1;
+		}
+
+		return rank;
+	}
+
+	/**
+	 * The reverse of {@link #rank(int)}.
+	 */
+	private static int unrank(int rank, int count)
+	{
+		int squares = 0;
+		for (int i = count; i > 0; i--)
+		{
+			int square = i - 1;
+			while (BINOMIAL[square + 1][i] <= rank)
+			{
+				square++;
+			}
+
+			rank -= BINOMIAL[square][i];
+			squares |= 1 << square;
+		}
+
+		return squares;
+	}
+
+	/**
+	 * Renumbers the given squares as if the occupied squares had been
+	 * removed from the board.
+	 */
+	private static int compress(int squares, int occupied)
+	{
+		int compressed = 0;
+		while (squares != 0)
+		{
+			int square = Integer.numberOfTrailingZeros(squares);
+			compressed |= 1 << (square - Integer.bitCount(occupied
+					& ((1 << square) - 1)));
+			squares &= squares - 1;
+		}
+
+		return compressed;
+	}
+
+	/**
+	 * The reverse of {@link #compress(int, int)}.
+	 */
+	private static int expand(int compressed, int occupied)
+	{
+		int squares = 0;
+		int free = ~occupied;
+		while (compressed != 0)
+		{
+			int square = Integer.numberOfTrailingZeros(free);
+			if ((compressed & 1) != 0)
+			{
+				squares |= 1 << square;
+			}
+
+			compressed >>>= 1;
+			free &= free - 1;
+		}
+
+		return squares;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The most pieces of any table in this tablebase
+	 */
+	public int getMaxPieces()
+	{
+		return maxPieces;
+	}
+
+}
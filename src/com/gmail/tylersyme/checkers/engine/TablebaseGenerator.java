@@ -0,0 +1,327 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Builds the files of a {@link Tablebase} by working backwards from the end
+ * of the game. Every position where the player to move has no moves is lost
+ * at once. A position is then won in n plies if some move leads to a
+ * position lost in n - 1 plies, and lost in n plies if every move leads to a
+ * position won in fewer than n plies. Passes over the tables continue one ply
+ * at a time until nothing changes, and whatever is left is a draw.
+ * </p>
+ * <p>
+ * A move which neither captures nor crowns a man leads to the same material
+ * with the other player to move, so each table is built together with its
+ * "partner" table where the players' pieces are swapped. Captures and
+ * crownings lead to tables with fewer pieces or fewer men, which are always
+ * built first and are read back from their files.
+ * </p>
+ * Every table up to four pieces takes a few seconds, while the full six
+ * pieces take hours and several gigabytes of disk.
+ */
+public class TablebaseGenerator
+{
+	// The most plies a value is able to hold
+	private static final int MAX_PLIES = 253;
+
+	private File directory;
+	private Tablebase tablebase = new Tablebase();
+	private Position position = new Position();
+	private long[] moves = new long[MoveGenerator.MAX_MOVES];
+
+	// The longest win or loss in any table built so far
+	private int longestPlies = 0;
+
+	/**
+	 * @param directory Where the table files are written
+	 */
+	public TablebaseGenerator(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Builds every table with up to the given number of pieces. Tables whose
+	 * files already exist are not built again, so an interrupted run may be
+	 * picked up where it left off.
+	 *
+	 * @param maxPieces
+	 * @param log Where progress is reported, or null
+	 * @throws IOException If a table file cannot be written or read
+	 */
+	public void generate(int maxPieces, PrintStream log) throws IOException
+	{
+		if (maxPieces > Tablebase.MAX_PIECES)
+		{
+			throw new IllegalArgumentException("At most "
+					+ Tablebase.MAX_PIECES + " pieces are supported");
+		}
+
+		this.directory.mkdirs();
+
+		// Fewer pieces first, then fewer men, so that every table a capture
+		// or a crowning leads to is finished before it is needed
+		for (int pieces = 2; pieces <= maxPieces; pieces++)
+		{
+			for (int men = 0; men <= pieces; men++)
+			{
+				for (int userMen = men; userMen >= 0; userMen--)
+				{
+					int opponentMen = men - userMen;
+					for (int userKings = pieces - men; userKings >= 0; userKings--)
+					{
+						int opponentKings = pieces - men - userKings;
+
+						if (userMen + userKings == 0
+								|| opponentMen + opponentKings == 0)
+							continue;
+
+						// The partner of each table is built alongside it
+						if (userMen < opponentMen
+								|| (userMen == opponentMen && userKings < opponentKings))
+							continue;
+
+						this.generatePair(
+								userMen,
+								userKings,
+								opponentMen,
+								opponentKings,
+								log);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a table and its partner table.
+	 */
+	private void generatePair(
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings,
+			PrintStream log) throws IOException
+	{
+		boolean isOwnPartner = (userMen == opponentMen && userKings == opponentKings);
+
+		File file = new File(this.directory, Tablebase.getFileName(
+				userMen,
+				userKings,
+				opponentMen,
+				opponentKings));
+		File partnerFile = new File(this.directory, Tablebase.getFileName(
+				opponentMen,
+				opponentKings,
+				userMen,
+				userKings));
+
+		if (file.exists() && partnerFile.exists())
+		{
+			this.tablebase.map(file, userMen, userKings, opponentMen, opponentKings);
+			this.tablebase.map(partnerFile, opponentMen, opponentKings, userMen, userKings);
+			return;
+		}
+
+		long start = System.nanoTime();
+
+		byte[] table = new byte[Tablebase.getTableSize(
+				userMen,
+				userKings,
+				opponentMen,
+				opponentKings)];
+		byte[] partner = (isOwnPartner) ? (table) : (new byte[Tablebase
+				.getTableSize(opponentMen, opponentKings, userMen, userKings)]);
+
+		// The tables are read through the tablebase while they are built, so
+		// that moves into either table are looked up like any other
+		this.tablebase.put(
+				userMen,
+				userKings,
+				opponentMen,
+				opponentKings,
+				ByteBuffer.wrap(table));
+		this.tablebase.put(
+				opponentMen,
+				opponentKings,
+				userMen,
+				userKings,
+				ByteBuffer.wrap(partner));
+
+		int lastChange = 0;
+		for (int plies = 0;; plies++)
+		{
+			if (plies > MAX_PLIES)
+			{
+				throw new IllegalStateException("A win in "
+						+ Tablebase.getFileName(userMen, userKings, opponentMen,
+								opponentKings) + " is too long to be stored");
+			}
+
+			boolean changed = this.pass(
+					table,
+					plies,
+					userMen,
+					userKings,
+					opponentMen,
+					opponentKings);
+			if (isOwnPartner == false)
+			{
+				changed |= this.pass(
+						partner,
+						plies,
+						opponentMen,
+						opponentKings,
+						userMen,
+						userKings);
+			}
+
+			if (changed)
+			{
+				lastChange = plies;
+			}
+
+			// A pass only finds results one ply longer than the last, and
+			// results in the finished tables may be as long as longestPlies
+			if (plies > lastChange + 1 && plies > this.longestPlies + 1)
+				break;
+		}
+		this.longestPlies = Math.max(this.longestPlies, lastChange);
+
+		write(table, file);
+		this.tablebase.map(file, userMen, userKings, opponentMen, opponentKings);
+		if (isOwnPartner == false)
+		{
+			write(partner, partnerFile);
+			this.tablebase.map(partnerFile, opponentMen, opponentKings, userMen, userKings);
+		}
+
+		if (log != null)
+		{
+			log.println(String.format(
+					"%s: %,d positions, longest result %d plies, %.1fs",
+					(isOwnPartner) ? (file.getName()) : (file.getName()
+							+ " and " + partnerFile.getName()),
+					table.length + ((isOwnPartner) ? (0) : (partner.length)),
+					lastChange,
+					(System.nanoTime() - start) / 1e9));
+		}
+	}
+
+	/**
+	 * Looks for positions of a table decided in exactly the given number of
+	 * plies. Wins always take an odd number of plies and losses an even
+	 * number.
+	 *
+	 * @return Whether any position was decided
+	 */
+	private boolean pass(
+			byte[] table,
+			int plies,
+			int userMen,
+			int userKings,
+			int opponentMen,
+			int opponentKings)
+	{
+		boolean changed = false;
+		boolean findWins = (plies & 1) != 0;
+
+		for (int index = 0; index < table.length; index++)
+		{
+			if (table[index] != 0
+					|| Tablebase.setPosition(
+							this.position,
+							index,
+							userMen,
+							userKings,
+							opponentMen,
+							opponentKings) == false)
+				continue;
+
+			int moveCount = MoveGenerator.generateMoves(
+					this.position,
+					true,
+					this.moves,
+					0);
+
+			if (plies == 0)
+			{
+				if (moveCount == 0)
+				{
+					table[index] = Tablebase.LOST;
+					changed = true;
+				}
+				continue;
+			}
+
+			// A win needs one move to a lost position, and a loss needs every
+			// move to lead to a won position
+			boolean decided = (findWins == false);
+			for (int i = 0; i < moveCount; i++)
+			{
+				int value = this.probeAfter(this.moves[i]);
+				if (value == Tablebase.NOT_FOUND || value == 0)
+				{
+					if (findWins == false)
+					{
+						decided = false;
+						break;
+					}
+					continue;
+				}
+
+				boolean isSoonEnough = Tablebase.getPlies(value) < plies;
+				if (findWins && value < 0 && isSoonEnough)
+				{
+					decided = true;
+					break;
+				} else if (findWins == false && (value < 0 || isSoonEnough == false))
+				{
+					decided = false;
+					break;
+				}
+			}
+
+			if (decided)
+			{
+				table[index] = (byte) ((findWins) ? ((plies + 1) / 2)
+						: (-(plies / 2) - 1));
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * @return The value of the position after the user plays the given move,
+	 *         from the opponent's point of view
+	 */
+	private int probeAfter(long move)
+	{
+		int capturedKings = this.position.applyMove(move, true);
+		int value = this.tablebase.probe(this.position, false);
+		this.position.undoMove(move, true, capturedKings);
+
+		return value;
+	}
+
+	private static void write(byte[] table, File file) throws IOException
+	{
+		FileOutputStream output = new FileOutputStream(file);
+		try
+		{
+			output.write(table);
+		} finally
+		{
+			output.close();
+		}
+	}
+
+}
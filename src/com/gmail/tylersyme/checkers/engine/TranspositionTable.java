@@ -0,0 +1,224 @@
+package com.gmail.tylersyme.checkers.engine;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A fixed size hash table of search results, keyed by {@link Zobrist} key.
+ * Searches reach the same position through many different move orders, and
+ * the table lets every visit after the first reuse what was already learned.
+ * </p>
+ * <p>
+ * Entries live in a single long[] with no objects behind them. Each entry is
+ * two longs: the entry's data and the key XORed with that data. Several
+ * threads may read and write the table at once without locking, because a
+ * read whose two halves come from different writes fails the XOR check and
+ * is treated as a miss.
+ * </p>
+ * <p>
+ * Each bucket holds two entries. The first keeps the deepest result (unless
+ * it is left over from an earlier search) and the second is always
+ * replaced, so shallow results never push out expensive ones.
+ * </p>
+ * Entry data is laid out as:
+ * <ul>
+ * <li>Bits 0-9: The from and to squares of the best move</li>
+ * <li>Bit 10: Set if there is a best move</li>
+ * <li>Bits 11-12: The bound type</li>
+ * <li>Bits 13-20: The depth searched</li>
+ * <li>Bits 21-28: The generation (search) that stored the entry</li>
+ * <li>Bits 32-63: The score</li>
+ * </ul>
+ */
+public class TranspositionTable
+{
+	// Bound types. Zero is never used, so data of zero means "no entry".
+	public static final int EXACT = 1;
+	public static final int LOWER_BOUND = 2; // The score is at least this
+	public static final int UPPER_BOUND = 3; // The score is at most this
+
+	public static final int DEFAULT_SIZE_MB = 32;
+
+	private static final int HAS_MOVE_FLAG = 1 << 10;
+	private static final int BOUND_SHIFT = 11;
+	private static final int DEPTH_SHIFT = 13;
+	private static final int GENERATION_SHIFT = 21;
+
+	// Two entries of two longs each
+	private static final int LONGS_PER_BUCKET = 4;
+
+	// -------------------------------------------------------------------------
+
+	private long[] table;
+	private int bucketMask;
+	private volatile int generation = 0;
+
+	public TranspositionTable()
+	{
+		this(DEFAULT_SIZE_MB);
+	}
+
+	/**
+	 * @param sizeMB The table's size in megabytes, which is rounded down to
+	 *            a power of two
+	 */
+	public TranspositionTable(int sizeMB)
+	{
+		long bytes = Math.max(1L, sizeMB) << 20;
+		int buckets = Integer.highestOneBit((int) Math.min(
+				bytes / (LONGS_PER_BUCKET * 8),
+				1 << 28));
+
+		this.table = new long[buckets * LONGS_PER_BUCKET];
+		this.bucketMask = buckets - 1;
+	}
+
+	/**
+	 * Must be called at the start of each search so that entries from older
+	 * searches are replaced first.
+	 */
+	public void newSearch()
+	{
+		this.generation = (this.generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Erases every entry.
+	 */
+	public void clear()
+	{
+		Arrays.fill(this.table, 0L);
+	}
+
+	/**
+	 * Looks up the given position.
+	 *
+	 * @param key The position's key, including the player to move
+	 * @return The entry's data, which is read with the static getters of this
+	 *         class<br>
+	 *         Will return <b>0</b> if the position is not in the table
+	 */
+	public long probe(long key)
+	{
+		int base = ((int) key & this.bucketMask) * LONGS_PER_BUCKET;
+
+		for (int i = base; i < base + LONGS_PER_BUCKET; i += 2)
+		{
+			long data = this.table[i + 1];
+			if ((this.table[i] ^ data) == key)
+			{
+				return data;
+			}
+		}
+
+		return 0L;
+	}
+
+	/**
+	 * Stores the result of searching the given position.
+	 *
+	 * @param key The position's key, including the player to move
+	 * @param move The best move found, or {@link Move#NONE}
+	 * @param score
+	 * @param depth
+	 * @param bound One of {@link #EXACT}, {@link #LOWER_BOUND} or
+	 *            {@link #UPPER_BOUND}
+	 */
+	public void store(long key, long move, int score, int depth, int bound)
+	{
+		int base = ((int) key & this.bucketMask) * LONGS_PER_BUCKET;
+		int currentGeneration = this.generation;
+
+		long deepData = this.table[base + 1];
+		boolean isSamePosition = (this.table[base] ^ deepData) == key;
+
+		// Keep the best move of the old entry if this search found none
+		if (move == Move.NONE && isSamePosition)
+		{
+			move = toMove(deepData);
+		}
+
+		long data = ((long) score << 32)
+				| ((long) currentGeneration << GENERATION_SHIFT)
+				| ((long) Math.min(depth, 255) << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT);
+		if (move != Move.NONE)
+		{
+			data |= HAS_MOVE_FLAG | Move.getFrom(move)
+					| (Move.getTo(move) << 5);
+		}
+
+		int slot = base + 2; // The always-replace entry
+		if (isSamePosition
+				|| deepData == 0
+				|| getGeneration(deepData) != currentGeneration
+				|| depth >= getDepth(deepData))
+		{
+			slot = base;
+		}
+
+		this.table[slot] = key ^ data;
+		this.table[slot + 1] = data;
+	}
+
+	// -------------------------------------------------------------------------
+	// Entry Data
+	// -------------------------------------------------------------------------
+
+	public static int getScore(long data)
+	{
+		return (int) (data >> 32);
+	}
+
+	public static int getDepth(long data)
+	{
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int getBound(long data)
+	{
+		return (int) (data >>> BOUND_SHIFT) & 3;
+	}
+
+	private static int getGeneration(long data)
+	{
+		return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Returns whether the given move is the best move stored in an entry.
+	 * Only the from and to squares are stored, which in practice is enough
+	 * to tell moves apart.
+	 *
+	 * @param data
+	 * @param move
+	 * @return
+	 */
+	public static boolean isBestMove(long data, long move)
+	{
+		return (data & HAS_MOVE_FLAG) != 0
+				&& (int) (data & 0x3FF) == (Move.getFrom(move) | (Move
+						.getTo(move) << 5));
+	}
+
+	/**
+	 * Rebuilds the stored best move as a move without captures, which is
+	 * only good for passing back into {@link #store}.
+	 */
+	private static long toMove(long data)
+	{
+		if ((data & HAS_MOVE_FLAG) == 0)
+			return Move.NONE;
+
+		return Move.create((int) data & 31, (int) (data >>> 5) & 31, 0, false);
+	}
+
+	/**
+	 * @return The size of the table in entries
+	 */
+	public int getCapacity()
+	{
+		return this.table.length / 2;
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.gmail.tylersyme.checkers.engine;
+
+/**
+ * <p>
+ * Zobrist hashing gives every position a 64-bit key made by XORing together
+ * one random number for each piece on the board. Because XOR undoes itself,
+ * a {@link Position} keeps its key up to date by XORing in only the pieces a
+ * move changes rather than hashing the whole board again.
+ * </p>
+ * The random numbers come from a fixed seed so that keys are the same every
+ * time the program runs and may be stored in files such as an opening book.
+ */
+public final class Zobrist
+{
+	// Mixed into the key whenever it is the opponent's turn to move
+	public static final long OPPONENT_TO_MOVE;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	// Indexed by square
+	private static final long[] USER_MEN = new long[Position.SQUARE_COUNT];
+	private static final long[] USER_KINGS = new long[Position.SQUARE_COUNT];
+	private static final long[] OPPONENT_MEN = new long[Position.SQUARE_COUNT];
+	private static final long[] OPPONENT_KINGS = new long[Position.SQUARE_COUNT];
+
+	static
+	{
+		long state = 0x436865636B657273L; // "Checkers"
+
+		for (int square = 0; square < Position.SQUARE_COUNT; square++)
+		{
+			USER_MEN[square] = mix(state += GOLDEN_GAMMA);
+			USER_KINGS[square] = mix(state += GOLDEN_GAMMA);
+			OPPONENT_MEN[square] = mix(state += GOLDEN_GAMMA);
+			OPPONENT_KINGS[square] = mix(state += GOLDEN_GAMMA);
+		}
+
+		OPPONENT_TO_MOVE = mix(state += GOLDEN_GAMMA);
+	}
+
+	private Zobrist()
+	{ }
+
+	/**
+	 * @param square
+	 * @param isUserPiece
+	 * @param isKing
+	 * @return The random number of the given piece standing on the given
+	 *         square
+	 */
+	public static long getPieceKey(
+			int square,
+			boolean isUserPiece,
+			boolean isKing)
+	{
+		if (isUserPiece)
+		{
+			return (isKing) ? (USER_KINGS[square]) : (USER_MEN[square]);
+		} else
+		{
+			return (isKing) ? (OPPONENT_KINGS[square])
+					: (OPPONENT_MEN[square]);
+		}
+	}
+
+	/**
+	 * Hashes a whole board from scratch.
+	 *
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings
+	 * @return The key of the board
+	 */
+	public static long hash(int userPieces, int opponentPieces, int kings)
+	{
+		return hashPieces(userPieces & ~kings, USER_MEN)
+				^ hashPieces(userPieces & kings, USER_KINGS)
+				^ hashPieces(opponentPieces & ~kings, OPPONENT_MEN)
+				^ hashPieces(opponentPieces & kings, OPPONENT_KINGS);
+	}
+
+	/**
+	 * @param pieces
+	 * @param isUserPiece
+	 * @param kings
+	 * @return The XOR of the random numbers of every given piece
+	 */
+	public static long hashPieces(int pieces, boolean isUserPiece, int kings)
+	{
+		if (isUserPiece)
+		{
+			return hashPieces(pieces & ~kings, USER_MEN)
+					^ hashPieces(pieces & kings, USER_KINGS);
+		} else
+		{
+			return hashPieces(pieces & ~kings, OPPONENT_MEN)
+					^ hashPieces(pieces & kings, OPPONENT_KINGS);
+		}
+	}
+
+	private static long hashPieces(int pieces, long[] keys)
+	{
+		long hash = 0;
+		while (pieces != 0)
+		{
+			hash ^= keys[Integer.numberOfTrailingZeros(pieces)];
+			pieces &= pieces - 1;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * The output function of the SplitMix64 generator, which is all that is
+	 * needed to fill a few tables with well mixed bits.
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+		return z ^ (z >>> 31);
+	}
+
+}
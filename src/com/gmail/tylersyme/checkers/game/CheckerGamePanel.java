@@ -17,6 +17,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.Timer;
 
 import com.gmail.tylersyme.checkers.CheckersWindow;
 
@@ -30,8 +31,11 @@ import com.gmail.tylersyme.checkers.CheckersWindow;
  * <li>The Resign, Draw, and End Turn Buttons</li>
  * </ul>
  * </p>
+ * It listens to the game being played to keep the turn indicator and chat up
+ * to date and to return to the main menu once the game ends.
  */
-public class CheckerGamePanel extends JPanel implements ActionListener
+public class CheckerGamePanel extends JPanel implements ActionListener,
+		GameListener
 {
 	private static final long serialVersionUID = 3619833909126801343L;
 
@@ -43,6 +47,7 @@ public class CheckerGamePanel extends JPanel implements ActionListener
 
 	// Non-Panel components are kept as variables for event handling purposes
 	private JLabel isUsersTurnLabel;
+	private JLabel latencyLabel; // Empty until a round trip is measured
 	
 	private JTextArea chatWindow;
 	private JTextField typeChatMessageField;
@@ -156,7 +161,15 @@ public class CheckerGamePanel extends JPanel implements ActionListener
 				3,
 				0));
 
+		this.latencyLabel = new JLabel();
+		this.latencyLabel.setBorder(BorderFactory.createEmptyBorder(
+				3,
+				10,
+				3,
+				0));
+
 		userTurnPanel.add(this.isUsersTurnLabel);
+		userTurnPanel.add(this.latencyLabel);
 
 		// Finally, add all the panels in the correct order
 		otherOperationsPanel.add(userTurnPanel);   // Top
@@ -195,6 +208,21 @@ public class CheckerGamePanel extends JPanel implements ActionListener
 		this.repaint();
 	}
 
+	/**
+	 * This will update the JLabel which shows the player how long packets take
+	 * to reach their opponent (or the server) and back.
+	 * 
+	 * @param roundTrip The smoothed round trip, in milliseconds
+	 * @param jitter
+	 */
+	public void updateLatencyLabel(double roundTrip, double jitter)
+	{
+		this.latencyLabel.setText(String.format(
+				"Ping %.0f ms (\u00B1%.0f)",
+				roundTrip,
+				jitter));
+	}
+
 	/**
 	 * Opens a confirmation window for requesting a draw.
 	 */
@@ -231,6 +259,103 @@ public class CheckerGamePanel extends JPanel implements ActionListener
 		this.chatWindow.append(sender + chatMsg + "\n");
 	}
 
+	/**
+	 * Returns the player to the main menu after two seconds. The timer fires
+	 * on the event dispatch thread, so no thread waits in the meantime.
+	 */
+	private void returnToMenu()
+	{
+		Timer returnToMenu = new Timer(2000, new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				mainWindow.openMainMenu();
+			}
+		});
+
+		returnToMenu.setRepeats(false);
+		returnToMenu.start();
+	}
+
+	// -------------------------------------------------------------------------
+	// Game Events
+	// -------------------------------------------------------------------------
+
+	@Override
+	public void gameSetUp(String description)
+	{
+		this.mainWindow.setTitle(description);
+		this.latencyLabel.setText("");
+	}
+
+	@Override
+	public void boardChanged()
+	{ }
+
+	@Override
+	public void squaresChanged(int squares)
+	{ }
+
+	@Override
+	public void opponentMoved(int from, int to, int captured, int kings)
+	{ }
+
+	@Override
+	public void turnChanged(boolean isUsersTurn)
+	{
+		this.updateUsersTurnLabel(isUsersTurn);
+	}
+
+	@Override
+	public void messageReceived(String message)
+	{
+		this.showMessage(message, false);
+	}
+
+	/**
+	 * Opens a dialog window where the user can either accept or reject their
+	 * opponent's proposal.
+	 */
+	@Override
+	public boolean drawRequested()
+	{
+		Object[] options = { "Accept", "Reject" };
+
+		// Open a custom dialog window with a request and reject option
+		int selection = JOptionPane.showOptionDialog(
+				this.checkerboard,
+				"Your opponent has requested a draw.",
+				"End With a Draw?",
+				JOptionPane.YES_NO_OPTION,
+				JOptionPane.QUESTION_MESSAGE,
+				null,
+				options,
+				options[0]);
+
+		return (selection == 0); // The 'Accept' Button
+	}
+
+	@Override
+	public void gameEnded(boolean didUserWin)
+	{
+		this.disableButtons();
+		this.returnToMenu();
+	}
+
+	@Override
+	public void gameDrawn()
+	{
+		this.disableButtons();
+		this.returnToMenu();
+	}
+
+	@Override
+	public void latencyMeasured(double roundTrip, double jitter)
+	{
+		this.updateLatencyLabel(roundTrip, jitter);
+	}
+
 	// -------------------------------------------------------------------------
 	// Event Handlers
 	// -------------------------------------------------------------------------
@@ -293,6 +418,11 @@ public class CheckerGamePanel extends JPanel implements ActionListener
 		return isUsersTurnLabel;
 	}
 
+	public JLabel getLatencyLabel()
+	{
+		return latencyLabel;
+	}
+
 	public CheckersWindow getMainWindow()
 	{
 		return mainWindow;
@@ -1,8 +1,11 @@
 package com.gmail.tylersyme.checkers.game;
 
+import com.gmail.tylersyme.checkers.engine.Position;
 
 /**
- * This represents a single checker piece on a checkerboard.
+ * This represents a single checker piece on a checkerboard.<br>
+ * A checker piece is only a view of one square of its GameLogic's
+ * {@link Position}, which is where the piece's king status is stored.
  */
 public class CheckerPiece
 {
@@ -11,7 +14,6 @@ public class CheckerPiece
 	private int x;
 	private int y;
 	private boolean isUserPiece;
-	private boolean isKing = false;
 
 	public CheckerPiece(GameLogic gameLogic, boolean isUserPiece, int x, int y)
 	{
@@ -73,6 +75,15 @@ public class CheckerPiece
 	{
 		return y;
 	}
+
+	/**
+	 * @return The index of the square this piece stands on within its
+	 *         GameLogic's {@link Position}
+	 */
+	public int getSquare()
+	{
+		return Position.toSquare(this.x, this.y);
+	}
 	
 	public boolean isUserPiece()
 	{
@@ -86,12 +97,12 @@ public class CheckerPiece
 
 	public boolean isKing()
 	{
-		return isKing;
+		return this.gameLogic.getPosition().isKing(this.getSquare());
 	}
 
 	public void setKing(boolean isKing)
 	{
-		this.isKing = isKing;
+		this.gameLogic.getPosition().setKing(this.getSquare(), isKing);
 	}
 
 }
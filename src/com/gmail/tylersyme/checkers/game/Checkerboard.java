@@ -1,24 +1,50 @@
 package com.gmail.tylersyme.checkers.game;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.Rectangle2D;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.Executor;
 
 import javax.swing.JPanel;
 
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+import com.gmail.tylersyme.checkers.engine.Position;
+
 /**
+ * <p>
  * A Checkerboard is responsible <b>only</b> for drawing the visible
- * checkerboard and its pieces to the screen from within its JFrame.
+ * checkerboard and its pieces to the screen from within its JFrame. It
+ * listens to its GameLogic to know when to draw them again.
+ * </p>
+ * <p>
+ * The squares themselves never change during a game, so they are drawn once
+ * into an image kept in video memory, which every repaint then copies in a
+ * single call. The image is drawn again only when the board's size or theme
+ * changes, or when the graphics card loses it.
+ * </p>
+ * <p>
+ * Only the squares which change are painted again: those a move touches, and
+ * those the dragged piece's "ghost" leaves and enters. Pieces outside the
+ * area being painted are not drawn at all.
+ * </p>
+ * Each kind of piece (and the ghost) is drawn once into a sprite for the
+ * current piece size, and pieces are painted straight from the game's
+ * {@link Position}, so painting a frame creates no objects at all.
  */
-public class Checkerboard extends JPanel
+public class Checkerboard extends JPanel implements GameListener
 {
 	// These represent the color of the squares which compose the visual
 	// checkerboard.
@@ -34,12 +60,59 @@ public class Checkerboard extends JPanel
 
 	private static final long serialVersionUID = -7745329248389094195L;
 
+	private static final Font KING_FONT = new Font("TimesRoman", Font.PLAIN, 16);
+	private static final Font GAME_END_FONT = new Font("TimesRoman", Font.PLAIN, 43);
+
+	// The sprites of each kind of piece, with the king of each kind after it
+	private static final int USER_SPRITE = 0;
+	private static final int OPPONENT_SPRITE = 2;
+	private static final int GHOST_SPRITE = 4; // The dragged piece's marker
+	private static final int SPRITE_COUNT = 6;
+
+	// The opacities captured pieces fade through, made once for every frame
+	private static final AlphaComposite[] FADES = new AlphaComposite[16];
+	static
+	{
+		for (int i = 0; i < FADES.length; i++)
+		{
+			FADES[i] = AlphaComposite.getInstance(
+					AlphaComposite.SRC_OVER,
+					i / (float) FADES.length);
+		}
+	}
+
+	// Plays the computer's moves and the opponent's packets on the event
+	// dispatch thread, where the user's moves are made
+	private static final Executor EVENT_DISPATCH_THREAD = new EventDispatchBatcher();
+
 	// -------------------------------------------------------------------------
 
 	private CheckerGamePanel checkerGamePanel;
 	private int boardSize;
 	private GameLogic gameLogic;
 	private MouseHandler mouseListener; // Handles checkerpiece movement w/Mouse
+	private MoveAnimator animator; // Slides the opponent's pieces into place
+
+	// The squares, drawn for the size and theme below
+	private VolatileImage boardImage;
+	private int boardImageSize;
+	private Color boardImageColor1;
+	private Color boardImageColor2;
+
+	// The square the "ghost" piece was last drawn on, or null
+	private Point ghostSquare;
+
+	// Drawn for pieces of spriteSize, or 0 before they are needed
+	private BufferedImage[] pieceSprites = new BufferedImage[SPRITE_COUNT];
+	private int spriteSize = 0;
+
+	// Laid out by the first paint once the game has ended
+	private TextLayout gameEndLayout;
+	private Rectangle2D gameEndBounds;
+	private String gameEndMsg;
+	private Color gameEndMsgColor;
+	private Color gameEndMsgBoxColor;
+	private Rectangle clipBounds = new Rectangle();
 
 	private boolean gameEnded = false;
 	private boolean didUserWin = false;
@@ -56,6 +129,7 @@ public class Checkerboard extends JPanel
 		this.boardSize = BOARD_SIZE;
 		this.setPreferredSize(new Dimension(BOARD_SIZE, BOARD_SIZE));
 		this.mouseListener = new MouseHandler(this);
+		this.animator = new MoveAnimator(this, MoveAnimator.DEFAULT_HOP_DURATION);
 
 		this.addMouseListener(mouseListener);
 		this.addMouseMotionListener(mouseListener);
@@ -69,6 +143,7 @@ public class Checkerboard extends JPanel
 		this.setPreferredSize(new Dimension(this.boardSize, this.boardSize));
 
 		this.mouseListener = new MouseHandler(this);
+		this.animator = new MoveAnimator(this, MoveAnimator.DEFAULT_HOP_DURATION);
 
 		this.addMouseListener(mouseListener);
 		this.addMouseMotionListener(mouseListener);
@@ -77,33 +152,112 @@ public class Checkerboard extends JPanel
 	/**
 	 * Starts a new multiplayer game between two players.
 	 * 
-	 * @param output
-	 * @param input
+	 * @param connection The connection to the other player
 	 */
-	public void startNewMultiplayerGame(
-			ObjectOutputStream output,
-			ObjectInputStream input)
+	public void startNewMultiplayerGame(PacketConnection connection)
 	{
 		this.gameEnded = false;
 		this.didUserWin = false;
 		this.wasDraw = false;
 		
-		this.gameLogic = new GameLogicMP(this, output, input);
+		this.gameLogic = new GameLogicMP(connection, EVENT_DISPATCH_THREAD);
+		this.gameLogic.addGameListener(this);
+		this.gameLogic.addGameListener(this.checkerGamePanel);
 		this.gameLogic.startNewGame();
 	}
 
+	/**
+	 * Starts a new singleplayer game against the computer.
+	 */
 	public void startNewSingleplayerGame()
 	{
-		// NOT YET IMPLEMENTED //
+		this.gameEnded = false;
+		this.didUserWin = false;
+		this.wasDraw = false;
+
+		this.gameLogic = new GameLogicSP(EVENT_DISPATCH_THREAD);
+		this.gameLogic.addGameListener(this);
+		this.gameLogic.addGameListener(this.checkerGamePanel);
+		this.gameLogic.startNewGame();
 	}
 
+	// -------------------------------------------------------------------------
+	// Game Events
+	// -------------------------------------------------------------------------
+
+	@Override
+	public void gameSetUp(String description)
+	{
+		this.animator.clear();
+	}
+
+	@Override
+	public void boardChanged()
+	{
+		this.animator.clear();
+		this.repaint();
+	}
+
+	@Override
+	public void squaresChanged(int squares)
+	{
+		while (squares != 0)
+		{
+			int square = Integer.numberOfTrailingZeros(squares);
+			squares &= squares - 1;
+
+			this.repaintSquare(
+					Position.getSquareX(square),
+					Position.getSquareY(square));
+		}
+	}
+
+	@Override
+	public void opponentMoved(int from, int to, int captured, int kings)
+	{
+		this.animator.addHop(from, to, captured, kings);
+	}
+
+	@Override
+	public void turnChanged(boolean isUsersTurn)
+	{ }
+
+	@Override
+	public void messageReceived(String message)
+	{ }
+
+	@Override
+	public boolean drawRequested()
+	{
+		return false; // Left to the CheckerGamePanel
+	}
+
+	@Override
+	public void gameEnded(boolean didUserWin)
+	{
+		this.showGameEnded(didUserWin);
+		this.repaint();
+	}
+
+	@Override
+	public void gameDrawn()
+	{
+		this.showGameDraw();
+		this.repaint();
+	}
+
+	@Override
+	public void latencyMeasured(double roundTrip, double jitter)
+	{ }
+
 	// -------------------------------------------------------------------------
 	// Drawing Methods
 	// -------------------------------------------------------------------------
 
 	/**
 	 * This is a universal function which allows the user to edit the color
-	 * scheme of all checkerboards.
+	 * scheme of all checkerboards. Each checkerboard draws its squares again
+	 * the next time it is painted.
 	 * 
 	 * @param color1
 	 * @param color2
@@ -120,16 +274,82 @@ public class Checkerboard extends JPanel
 		this.drawGame(g);
 	}
 
+	/**
+	 * Paints a single square again, along with whatever piece is on it.
+	 * Swing joins the squares asked for before the next paint into one area.
+	 * 
+	 * @param x The x position of the square
+	 * @param y The y position of the square
+	 */
+	public void repaintSquare(int x, int y)
+	{
+		int squareSize = this.getSquareSize();
+
+		this.repaint(x * squareSize, y * squareSize, squareSize, squareSize);
+	}
+
+	/**
+	 * Paints the rectangle of squares with the given squares at its corners,
+	 * as a piece crossing between them needs.
+	 * 
+	 * @param x1 The x position of one corner square
+	 * @param y1 The y position of one corner square
+	 * @param x2 The x position of the other
+	 * @param y2 The y position of the other
+	 */
+	public void repaintSquares(int x1, int y1, int x2, int y2)
+	{
+		int squareSize = this.getSquareSize();
+
+		this.repaint(
+				Math.min(x1, x2) * squareSize,
+				Math.min(y1, y2) * squareSize,
+				(Math.abs(x2 - x1) + 1) * squareSize,
+				(Math.abs(y2 - y1) + 1) * squareSize);
+	}
+
+	/**
+	 * Called whenever the dragged piece moves or is let go. The "ghost" piece
+	 * is drawn on whole squares, so only a drag onto another square needs
+	 * anything painted: the square left and the square entered.
+	 */
+	public void repaintDraggedPiece()
+	{
+		Point square = null;
+		if (this.mouseListener.isDraggingPiece)
+		{
+			Point mouseDragLoc = this.mouseListener.mouseDragLocation;
+			square = MouseHandler.getSquareAt(this, mouseDragLoc.x, mouseDragLoc.y);
+		}
+
+		boolean isSameSquare = (square == null) ? (this.ghostSquare == null)
+				: (square.equals(this.ghostSquare));
+		if (isSameSquare)
+			return;
+
+		if (this.ghostSquare != null)
+		{
+			this.repaintSquare(this.ghostSquare.x, this.ghostSquare.y);
+		}
+		if (square != null)
+		{
+			this.repaintSquare(square.x, square.y);
+		}
+		this.ghostSquare = square;
+	}
+
 	public void showGameEnded(boolean didUserWin)
 	{
 		this.gameEnded = true;
 		this.didUserWin = didUserWin;
+		this.gameEndLayout = null;
 	}
 	
 	public void showGameDraw()
 	{
 		this.gameEnded = true;
 		this.wasDraw = true;
+		this.gameEndLayout = null;
 	}
 
 	/**
@@ -149,10 +369,11 @@ public class Checkerboard extends JPanel
 
 	/**
 	 * Used to draw a checker piece. This piece's scale will be determined
-	 * by the square size of the checkerboard.
+	 * by the square size of the checkerboard.<br>
+	 * Only sprites are drawn this way; the board copies them.
 	 * 
 	 * @param g
-	 * @param fillColor The color of the square
+	 * @param fillColor The color of the piece
 	 * @param rawLoc The exact top-left position of the square
 	 * @param isKing Determines if the piece has been "kinged"
 	 */
@@ -177,7 +398,7 @@ public class Checkerboard extends JPanel
 
 		if (isKing)
 		{
-			g.setFont(new Font("TimesRoman", Font.PLAIN, 16));
+			g.setFont(KING_FONT);
 			g.drawString(
 					"K",
 					(int) (rawLoc.x + (pieceSize * .28)),
@@ -185,25 +406,187 @@ public class Checkerboard extends JPanel
 		}
 	}
 
+	/**
+	 * Draws every kind of piece into a sprite of its own, large enough for
+	 * the piece's outline. Sprites are made to suit the screen where there is
+	 * one, so that they too can be kept in video memory.
+	 * 
+	 * @param pieceSize
+	 */
+	private void createPieceSprites(int pieceSize)
+	{
+		GraphicsConfiguration configuration = this.getGraphicsConfiguration();
+
+		// Copies the color scheme and applies a 50% alpha (transparency)
+		Color ghostColor = new Color(
+				USER_PIECE_COLOR.getRed(), USER_PIECE_COLOR.getGreen(),
+				USER_PIECE_COLOR.getBlue(), 127);
+
+		for (int i = 0; i < SPRITE_COUNT; i++)
+		{
+			BufferedImage sprite = (configuration != null) ? (configuration
+					.createCompatibleImage(
+							pieceSize + 1,
+							pieceSize + 1,
+							Transparency.TRANSLUCENT)) : (new BufferedImage(
+					pieceSize + 1,
+					pieceSize + 1,
+					BufferedImage.TYPE_INT_ARGB));
+
+			Color fillColor;
+			if (i < OPPONENT_SPRITE)
+			{
+				fillColor = USER_PIECE_COLOR;
+			} else if (i < GHOST_SPRITE)
+			{
+				fillColor = OPPONENT_PIECE_COLOR;
+			} else
+			{
+				fillColor = ghostColor;
+			}
+
+			Graphics spriteGraphics = sprite.createGraphics();
+			try
+			{
+				this.drawCheckerPiece(spriteGraphics, fillColor, new Point(0, 0), i % 2 == 1);
+			} finally
+			{
+				spriteGraphics.dispose();
+			}
+
+			if (this.pieceSprites[i] != null)
+			{
+				this.pieceSprites[i].flush();
+			}
+			this.pieceSprites[i] = sprite;
+		}
+
+		this.spriteSize = pieceSize;
+	}
+
+	/**
+	 * Copies the sprite of a piece to the given square.
+	 * 
+	 * @param g
+	 * @param sprite One of the kinds of piece, such as {@link #USER_SPRITE}
+	 * @param isKing
+	 * @param x The x position of the square
+	 * @param y The y position of the square
+	 */
+	private void drawSprite(Graphics g, int sprite, boolean isKing, int x, int y)
+	{
+		g.drawImage(
+				this.pieceSprites[(isKing) ? (sprite + 1) : (sprite)],
+				this.calculateRawPieceLocation(x),
+				this.calculateRawPieceLocation(y),
+				null);
+	}
+
 	/**
 	 * Draws every checker piece to the screen in the corresponding square.<br>
-	 * This uses the Checkerboard's GameLogic to determine which pieces to draw
-	 * and at what location.
+	 * The pieces are read straight from the masks of the GameLogic's
+	 * position. Pieces outside the area being painted are skipped, as are
+	 * the opponent's pieces which are still sliding into place.
 	 * 
 	 * @param g
+	 * @param hiddenSquares The squares to leave out
 	 */
-	private void drawCheckerPieces(Graphics g)
+	private void drawCheckerPieces(Graphics g, int hiddenSquares)
 	{
-		for (CheckerPiece piece : this.gameLogic.getAllCheckerPieces())
+		// Graphics without a clip leave the bounds as they are
+		this.clipBounds.setBounds(0, 0, this.getWidth(), this.getHeight());
+		g.getClipBounds(this.clipBounds);
+		int squareSize = this.getSquareSize();
+
+		Position position = this.gameLogic.getPosition();
+		int userPieces = position.getUserPieces();
+		int kings = position.getKings();
+		int pieces = userPieces | (position.getOpponentPieces() & ~hiddenSquares);
+		while (pieces != 0)
 		{
-			// Calculates the raw point based upon the piece's grid location
-			Point rawLoc = this.calculateRawPieceLocation(
-					piece.getX(),
-					piece.getY());
+			int square = Integer.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+
+			int x = Position.getSquareX(square);
+			int y = Position.getSquareY(square);
+			if (this.clipBounds.intersects(x * squareSize, y * squareSize, squareSize, squareSize) == false)
+				continue;
 
-			this.drawCheckerPiece(g, (piece.isUserPiece()) ? (USER_PIECE_COLOR)
-					: (OPPONENT_PIECE_COLOR), rawLoc, piece.isKing());
+			this.drawSprite(
+					g,
+					((userPieces & (1 << square)) != 0) ? (USER_SPRITE) : (OPPONENT_SPRITE),
+					(kings & (1 << square)) != 0,
+					x,
+					y);
+		}
+	}
+
+	/**
+	 * Copies the squares to the screen from the cached image, drawing the
+	 * image first if it is missing, out of date or was lost. A board which is
+	 * not yet on screen has no graphics card to keep an image on, so draws the
+	 * squares directly.
+	 * 
+	 * @param g
+	 */
+	private void drawCachedCheckerboard(Graphics g)
+	{
+		GraphicsConfiguration configuration = this.getGraphicsConfiguration();
+		if (configuration == null)
+		{
+			this.drawCheckerboard(g, new Point(0, 0));
+			return;
 		}
+
+		do
+		{
+			int status = VolatileImage.IMAGE_INCOMPATIBLE;
+			if (this.boardImage != null && this.isBoardImageOutdated() == false)
+			{
+				status = this.boardImage.validate(configuration);
+			}
+
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+			{
+				if (this.boardImage != null)
+				{
+					this.boardImage.flush();
+				}
+
+				this.boardImage = configuration.createCompatibleVolatileImage(
+						this.boardSize,
+						this.boardSize);
+			}
+
+			// A new image, or one whose contents were lost
+			if (status != VolatileImage.IMAGE_OK)
+			{
+				Graphics imageGraphics = this.boardImage.createGraphics();
+				try
+				{
+					this.drawCheckerboard(imageGraphics, new Point(0, 0));
+				} finally
+				{
+					imageGraphics.dispose();
+				}
+
+				this.boardImageSize = this.boardSize;
+				this.boardImageColor1 = TILE_COLOR_1;
+				this.boardImageColor2 = TILE_COLOR_2;
+			}
+
+			g.drawImage(this.boardImage, 0, 0, null);
+		} while (this.boardImage.contentsLost());
+	}
+
+	/**
+	 * @return Whether the cached squares were drawn for another size or theme
+	 */
+	private boolean isBoardImageOutdated()
+	{
+		return this.boardImageSize != this.boardSize
+				|| this.boardImageColor1.equals(TILE_COLOR_1) == false
+				|| this.boardImageColor2.equals(TILE_COLOR_2) == false;
 	}
 
 	/**
@@ -239,6 +622,44 @@ public class Checkerboard extends JPanel
 		}
 	}
 
+	/**
+	 * Draws the frame the animator is at: the captured pieces still fading
+	 * away, then the opponent's piece part way across its hop. The caller
+	 * holds the animator's lock.
+	 * 
+	 * @param g
+	 */
+	private void drawAnimation(Graphics g)
+	{
+		Graphics2D g2 = (Graphics2D) g;
+		Composite composite = g2.getComposite();
+		for (int i = 0; i < this.animator.getFadingCount(); i++)
+		{
+			int fade = (int) (this.animator.getFadingAlpha(i) * FADES.length);
+			if (fade <= 0)
+				continue;
+
+			int square = this.animator.getFadingSquare(i);
+			g2.setComposite((fade < FADES.length) ? (FADES[fade]) : (composite));
+			this.drawSprite(
+					g,
+					USER_SPRITE,
+					this.animator.isFadingKing(i),
+					Position.getSquareX(square),
+					Position.getSquareY(square));
+		}
+		g2.setComposite(composite);
+
+		int squareSize = this.getSquareSize();
+		int sizeDifference = squareSize - this.getPieceSize();
+		g.drawImage(
+				this.pieceSprites[(this.animator.isPieceKing()) ? (OPPONENT_SPRITE + 1)
+						: (OPPONENT_SPRITE)],
+				Math.round(this.animator.getPieceX() * squareSize) + sizeDifference / 2,
+				Math.round(this.animator.getPieceY() * squareSize) + sizeDifference / 2,
+				null);
+	}
+
 	/**
 	 * Draws a "ghost" checker piece that is used when the user clicks and
 	 * drags his/her piece across the screen. It is used to mark where the
@@ -249,29 +670,14 @@ public class Checkerboard extends JPanel
 	 */
 	private void drawDraggedPiece(Graphics g)
 	{
-		if (this.mouseListener.isDraggingPiece)
+		if (this.mouseListener.isDraggingPiece && this.ghostSquare != null)
 		{
-			Point mouseDragLoc = this.mouseListener.mouseDragLocation;
-			Point squareHover = MouseHandler.getSquareAt(
-					this,
-					mouseDragLoc.x,
-					mouseDragLoc.y);
-			Point rawLoc = this.calculateRawPieceLocation(
-					squareHover.x,
-					squareHover.y);
-			CheckerPiece piece = this.mouseListener.pieceClicked;
-
-			// Copies the color scheme and applies a 50% alpha (transparency)
-			Color transparentCheckerPiece = new Color(
-					USER_PIECE_COLOR.getRed(), USER_PIECE_COLOR.getGreen(),
-					USER_PIECE_COLOR.getBlue(), 127);
-
-			// Draw the "ghost" checker piece marker
-			this.drawCheckerPiece(
+			this.drawSprite(
 					g,
-					transparentCheckerPiece,
-					rawLoc,
-					piece.isKing());
+					GHOST_SPRITE,
+					this.mouseListener.pieceClicked.isKing(),
+					this.ghostSquare.x,
+					this.ghostSquare.y);
 		}
 	}
 
@@ -283,8 +689,23 @@ public class Checkerboard extends JPanel
 	 */
 	private void drawGame(Graphics g)
 	{
-		this.drawCheckerboard(g, new Point(0, 0));
-		this.drawCheckerPieces(g);
+		if (this.spriteSize != this.getPieceSize())
+		{
+			this.createPieceSprites(this.getPieceSize());
+		}
+
+		this.drawCachedCheckerboard(g);
+		synchronized (this.animator)
+		{
+			if (this.animator.isAnimating())
+			{
+				this.drawCheckerPieces(g, this.animator.getHiddenSquares());
+				this.drawAnimation(g);
+			} else
+			{
+				this.drawCheckerPieces(g, 0);
+			}
+		}
 
 		// Dragged pieces are used as markers when the user clicks and drags on
 		// one of his pieces
@@ -292,52 +713,73 @@ public class Checkerboard extends JPanel
 
 		if (this.gameEnded)
 		{
-			String gameEndMsg;
-			Color msgColor;
-			Color msgBoxColor;
-			if (this.wasDraw == false)
+			if (this.gameEndLayout == null)
 			{
-				if (this.didUserWin)
-				{
-					gameEndMsg = "You Are the Winner!";
-					msgColor = USER_PIECE_COLOR.darker();
-					msgBoxColor = OPPONENT_PIECE_COLOR.darker();
-				} else
-				{
-					gameEndMsg = "Your Opponent is the Winner";
-					msgColor = OPPONENT_PIECE_COLOR.darker();
-					msgBoxColor = USER_PIECE_COLOR.darker();
-				}
+				this.layOutGameEndMessage(((Graphics2D) g).getFontRenderContext());
+			}
+
+			this.drawGameEndMessage(g);
+		}
+	}
+
+	/**
+	 * Chooses the end of game message and its colors, and lays it out once
+	 * for every frame after.
+	 * 
+	 * @param context
+	 */
+	private void layOutGameEndMessage(FontRenderContext context)
+	{
+		if (this.wasDraw == false)
+		{
+			if (this.didUserWin)
+			{
+				this.gameEndMsg = "You Are the Winner!";
+				this.gameEndMsgColor = USER_PIECE_COLOR.darker();
+				this.gameEndMsgBoxColor = OPPONENT_PIECE_COLOR.darker();
 			} else
 			{
-				gameEndMsg = "The Game Was a Draw";
-				msgColor = USER_PIECE_COLOR.darker();
-				msgBoxColor = OPPONENT_PIECE_COLOR.darker();
+				this.gameEndMsg = "Your Opponent is the Winner";
+				this.gameEndMsgColor = OPPONENT_PIECE_COLOR.darker();
+				this.gameEndMsgBoxColor = USER_PIECE_COLOR.darker();
 			}
-
-			// Center the text on the checkerboard
-			g.setFont(new Font("TimesRoman", Font.PLAIN, 43));
-			FontRenderContext context = ((Graphics2D) g).getFontRenderContext();
-			TextLayout txt = new TextLayout(gameEndMsg, g.getFont(), context);
-			Rectangle2D bounds = txt.getBounds();
-
-			int x = (int) ((getWidth() - (int) bounds.getWidth()) / 2);
-			int y = (int) ((getHeight() - (bounds.getHeight() - txt
-					.getDescent())) / 2);
-			y += txt.getAscent() - txt.getDescent();
-
-			// Draw the centered message to the screen
-
-			g.setColor(msgBoxColor); // Set drawing color
-			g.fillRect(
-					(int) x - 5,
-					(int) (y - (txt.getAscent() - txt.getDescent())) - 5,
-					(int) bounds.getWidth() + 10,
-					(int) bounds.getHeight() + 10 + ((int) txt.getDescent()));
-			g.setColor(msgColor); // Set drawing color
-			g.drawString(gameEndMsg, x, y);
-			
+		} else
+		{
+			this.gameEndMsg = "The Game Was a Draw";
+			this.gameEndMsgColor = USER_PIECE_COLOR.darker();
+			this.gameEndMsgBoxColor = OPPONENT_PIECE_COLOR.darker();
 		}
+
+		this.gameEndLayout = new TextLayout(this.gameEndMsg, GAME_END_FONT, context);
+		this.gameEndBounds = this.gameEndLayout.getBounds();
+	}
+
+	/**
+	 * Draws the end of game message in the center of the checkerboard.
+	 * 
+	 * @param g
+	 */
+	private void drawGameEndMessage(Graphics g)
+	{
+		TextLayout txt = this.gameEndLayout;
+		Rectangle2D bounds = this.gameEndBounds;
+
+		int x = (int) ((getWidth() - (int) bounds.getWidth()) / 2);
+		int y = (int) ((getHeight() - (bounds.getHeight() - txt
+				.getDescent())) / 2);
+		y += txt.getAscent() - txt.getDescent();
+
+		// Draw the centered message to the screen
+
+		g.setColor(this.gameEndMsgBoxColor); // Set drawing color
+		g.fillRect(
+				(int) x - 5,
+				(int) (y - (txt.getAscent() - txt.getDescent())) - 5,
+				(int) bounds.getWidth() + 10,
+				(int) bounds.getHeight() + 10 + ((int) txt.getDescent()));
+		g.setColor(this.gameEndMsgColor); // Set drawing color
+		g.setFont(GAME_END_FONT);
+		g.drawString(this.gameEndMsg, x, y);
 	}
 
 	// -------------------------------------------------------------------------
@@ -369,22 +811,17 @@ public class Checkerboard extends JPanel
 	}
 
 	/**
-	 * Calculates the raw x and y pixel draw location of a checkerpiece at the
-	 * given x and y square on the checkerboard.
+	 * Calculates the raw pixel draw location of a checkerpiece in the given
+	 * row or column of the checkerboard. Pieces are centered in their square.
 	 * 
-	 * @param x The x position of the square
-	 * @param y The y position of the square
-	 * @return The Top-Left hand Point of the checkerpiece
+	 * @param square The x or y position of the square
+	 * @return The left (or top) edge of the checkerpiece
 	 */
-	private Point calculateRawPieceLocation(int x, int y)
+	private int calculateRawPieceLocation(int square)
 	{
 		int sizeDifference = this.getSquareSize() - this.getPieceSize();
-		Point rawLoc = new Point(x * this.getPieceSize()
-				+ ((sizeDifference * x) + sizeDifference / 2), y
-				* this.getPieceSize()
-				+ ((sizeDifference * y) + sizeDifference / 2));
 
-		return rawLoc;
+		return square * this.getSquareSize() + sizeDifference / 2;
 	}
 
 	// -------------------------------------------------------------------------
@@ -401,9 +838,19 @@ public class Checkerboard extends JPanel
 		return boardSize;
 	}
 
+	/**
+	 * @param pixelSize The new width and height, for which the squares are
+	 *            drawn again
+	 */
 	public void setBoardSize(int pixelSize)
 	{
 		this.boardSize = pixelSize;
+
+		if (this.boardImage != null)
+		{
+			this.boardImage.flush();
+			this.boardImage = null;
+		}
 	}
 
 	public GameLogic getGameLogic()
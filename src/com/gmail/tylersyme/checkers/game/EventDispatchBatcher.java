@@ -0,0 +1,82 @@
+package com.gmail.tylersyme.checkers.game;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>
+ * Runs tasks on the Swing event dispatch thread, in the order they were
+ * given, without ever making the thread which gives them wait. This is how
+ * the game's events reach the windows from threads such as the one reading
+ * the opponent's packets.
+ * </p>
+ * <p>
+ * Tasks are queued, and only the first task given while the queue is idle
+ * asks Swing for a turn on the event dispatch thread. That turn then runs
+ * every task queued by the time it gets there, so a burst of packets (the
+ * hops of a move, the end of the turn and a chat message, say) is played in
+ * one go. Swing joins every area asked to be repainted before it next
+ * paints, so the whole batch is drawn in a single frame.
+ * </p>
+ * A task which opens a dialog (the opponent's offer of a draw, say) does not
+ * hold up the tasks behind it. Before each task runs, another turn is asked
+ * for if anything is still queued. Swing keeps handling events while a
+ * dialog is open, so that turn runs the rest. When nothing blocks, the turn
+ * finds the queue already empty.
+ */
+public class EventDispatchBatcher implements Executor
+{
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	// Whether Swing has been asked for a turn which has not yet started
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+	private Runnable runTasks = new Runnable() {
+
+		@Override
+		public void run()
+		{
+			// Tasks queued from here on need a turn of their own
+			isScheduled.set(false);
+
+			Runnable task;
+			while ((task = tasks.poll()) != null)
+			{
+				// Should the task open a dialog, the tasks behind it run in
+				// the dialog's own event loop
+				if (tasks.isEmpty() == false && isScheduled.compareAndSet(false, true))
+				{
+					SwingUtilities.invokeLater(this);
+				}
+
+				try
+				{
+					task.run();
+				} catch (RuntimeException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Queues a task to be run on the event dispatch thread. Returns straight
+	 * away.
+	 */
+	@Override
+	public void execute(Runnable task)
+	{
+		this.tasks.add(task);
+
+		if (this.isScheduled.compareAndSet(false, true))
+		{
+			SwingUtilities.invokeLater(this.runTasks);
+		}
+	}
+
+}
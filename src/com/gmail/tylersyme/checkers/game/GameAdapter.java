@@ -0,0 +1,53 @@
+package com.gmail.tylersyme.checkers.game;
+
+/**
+ * A {@link GameListener} which ignores every event, so that listeners only
+ * interested in a few events need not implement the rest. Draw requests are
+ * always rejected.
+ */
+public abstract class GameAdapter implements GameListener
+{
+
+	@Override
+	public void gameSetUp(String description)
+	{ }
+
+	@Override
+	public void boardChanged()
+	{ }
+
+	@Override
+	public void squaresChanged(int squares)
+	{ }
+
+	@Override
+	public void opponentMoved(int from, int to, int captured, int kings)
+	{ }
+
+	@Override
+	public void turnChanged(boolean isUsersTurn)
+	{ }
+
+	@Override
+	public void messageReceived(String message)
+	{ }
+
+	@Override
+	public boolean drawRequested()
+	{
+		return false;
+	}
+
+	@Override
+	public void gameEnded(boolean didUserWin)
+	{ }
+
+	@Override
+	public void gameDrawn()
+	{ }
+
+	@Override
+	public void latencyMeasured(double roundTrip, double jitter)
+	{ }
+
+}
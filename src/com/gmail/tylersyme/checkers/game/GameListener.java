@@ -0,0 +1,93 @@
+package com.gmail.tylersyme.checkers.game;
+
+/**
+ * <p>
+ * Receives the events of a {@link GameLogic}. The game logic itself knows
+ * nothing about windows or drawing, so whatever shows the game to a player
+ * (such as the {@link Checkerboard} and {@link CheckerGamePanel}) listens for
+ * these events instead. Without any listeners a game runs headless.
+ * </p>
+ * Events arrive on the thread which plays the game's moves. A game shown in a
+ * window plays the opponent's moves (and its other packets) on the event
+ * dispatch thread, through an {@link EventDispatchBatcher}, so its listeners
+ * may touch Swing directly. Games made without one send events from
+ * whichever thread caused them.
+ * 
+ * @see GameAdapter
+ */
+public interface GameListener
+{
+	/**
+	 * A new game has been set up and is about to begin.
+	 * 
+	 * @param description The kind of game, such as "Singleplayer"
+	 */
+	public void gameSetUp(String description);
+
+	/**
+	 * One or more pieces have moved, been captured or been "kinged", anywhere
+	 * on the board.
+	 */
+	public void boardChanged();
+
+	/**
+	 * Like {@link #boardChanged()}, but only the given squares have changed,
+	 * as they do when a single move is played.
+	 * 
+	 * @param squares The changed squares, as a set of
+	 *            {@link com.gmail.tylersyme.checkers.engine.Position} squares
+	 */
+	public void squaresChanged(int squares);
+
+	/**
+	 * The opponent's piece has made one hop of a move, which has already been
+	 * played on the board. A move with several jumps sends one event for
+	 * each, in order, followed by {@link #squaresChanged(int)}.
+	 * 
+	 * @param from The square the piece left
+	 * @param to The square the piece landed on
+	 * @param captured The square of the user's piece it jumped, or -1
+	 * @param kings The kings as they were before the hop
+	 */
+	public void opponentMoved(int from, int to, int captured, int kings);
+
+	/**
+	 * @param isUsersTurn Whether it is now the user's turn or the opponent's
+	 */
+	public void turnChanged(boolean isUsersTurn);
+
+	/**
+	 * The opponent has sent the user a chat message.
+	 * 
+	 * @param message
+	 */
+	public void messageReceived(String message);
+
+	/**
+	 * The opponent would like the game to end in a draw.
+	 * 
+	 * @return Whether the user accepts the draw
+	 */
+	public boolean drawRequested();
+
+	/**
+	 * The game has ended with a winner.
+	 * 
+	 * @param didUserWin
+	 */
+	public void gameEnded(boolean didUserWin);
+
+	/**
+	 * The game has ended in a draw.
+	 */
+	public void gameDrawn();
+
+	/**
+	 * The connection to the opponent (or to a dedicated server) has measured
+	 * another round trip.
+	 * 
+	 * @param roundTrip The smoothed round trip, in milliseconds
+	 * @param jitter How far round trips stray from it, in milliseconds
+	 */
+	public void latencyMeasured(double roundTrip, double jitter);
+}
@@ -2,28 +2,39 @@ package com.gmail.tylersyme.checkers.game;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+
+/**
+ * The rules and state of a single game of checkers. A GameLogic never draws
+ * anything itself. Whatever displays the game subscribes as a
+ * {@link GameListener}, so a game with no listeners is able to run without
+ * any display at all.
+ */
 public abstract class GameLogic
 {
-	protected List<CheckerPiece> userCheckerPieces = new ArrayList<>();
-	protected List<CheckerPiece> opponentCheckerPieces = new ArrayList<>();
+	// The position stores every piece on the board as a set of bit masks.
+	// Checker Pieces are only created as views of it when they are needed.
+	protected Position position = new Position();
 
-	// Grid Checker Pieces is a 2D Array which stores each checker piece at the
-	// x and y coordinate.
-	protected List<ArrayList<CheckerPiece>> gridCheckerPieces = new ArrayList<>();
+	// Listeners may be added from any thread while events are being sent
+	private List<GameListener> listeners = new CopyOnWriteArrayList<GameListener>();
 
-	protected Checkerboard checkerboard;
-	protected boolean hasGameStarted = false;
+	// Read by the thread which reconnects a lost multiplayer game
+	protected volatile boolean hasGameStarted = false;
 	
 	// Changes when the player clicks the 'end turn' button
 	protected boolean isUsersTurn = false;
 	// Changes when the player moves a checker piece (allows for double jumps)
 	protected boolean hasUserMoved = false;
+	// The square of the user's piece which is partway through a multi-jump.
+	// Only that piece may move, and only by jumping, until the jump ends.
+	protected int jumpingSquare = -1;
 
-	public GameLogic(Checkerboard checkerboard)
-	{
-		this.checkerboard = checkerboard;
-	}
+	public GameLogic()
+	{ }
 
 	/**
 	 * Not to be confused with {@link GameLogic#setupCheckerboard()}, this
@@ -97,8 +108,8 @@ public abstract class GameLogic
 	public abstract void requestDraw();
 	
 	/**
-	 * This will open a dialog window if your opponent requests a draw. The user
-	 * can either accept or reject the proposal.
+	 * This will ask the listeners whether the user accepts their opponent's
+	 * request for a draw.
 	 */
 	public abstract void opponentRequestedDraw();
 	
@@ -112,6 +123,9 @@ public abstract class GameLogic
 	/**
 	 * Returns whether the given new X and Y coordinates represent a valid
 	 * location for the given checker piece to be moved to.<br>
+	 * Captures are mandatory, so a step is only valid if none of the player's
+	 * pieces are able to jump. A piece partway through a multi-jump is the
+	 * only piece allowed to move.<br>
 	 * This does not take into account whether it is the player's turn.
 	 * 
 	 * @param movedPiece The checker piece to be moved
@@ -123,11 +137,12 @@ public abstract class GameLogic
 	{
 		int xDif = movedPiece.getX() - newX;
 		int yDif = movedPiece.getY() - newY;
+		int newSquare = Position.toSquare(newX, newY);
 
 		// Every valid move requires that a change in both x and y take
 		// place and that the square does not already have a piece on it.
-		if (xDif == 0 || yDif == 0
-				|| this.getCheckerPieceAt(newX, newY) != null)
+		if (xDif == 0 || yDif == 0 || newSquare < 0
+				|| this.position.isEmpty(newSquare) == false)
 			return false;
 
 		// The checker piece moves forward one space (checks if the piece is
@@ -135,7 +150,9 @@ public abstract class GameLogic
 		if (((movedPiece.isKing()) ? (Math.abs(yDif)) : (yDif)) == 1
 				&& Math.abs(xDif) == 1)
 		{
-			return true;
+			return (this.jumpingSquare < 0 && MoveGenerator.hasCaptures(
+					this.position,
+					movedPiece.isUserPiece()) == false);
 
 		// The checker piece is attempting to capture an opponent's
 		// piece (checks if the piece is a king to allow for backward
@@ -143,13 +160,14 @@ public abstract class GameLogic
 		} else if (((movedPiece.isKing()) ? (Math.abs(yDif)) : (yDif)) == 2
 				&& Math.abs(xDif) == 2)
 		{
-			// Get the piece that may be jumped over
-			CheckerPiece toBeCaptured = this.getCheckerPieceAt(newX
-					+ (xDif / 2), newY + (yDif / 2));
+			// Get the square that may be jumped over
+			int toBeCaptured = Position.toSquare(newX + (xDif / 2), newY
+					+ (yDif / 2));
 
-			if (toBeCaptured != null && !toBeCaptured.isUserPiece())
+			if (this.position.isOpponentPiece(toBeCaptured))
 			{
-				return true;
+				return (this.jumpingSquare < 0 || this.jumpingSquare == movedPiece
+						.getSquare());
 			}
 		}
 
@@ -174,7 +192,7 @@ public abstract class GameLogic
 		int yDif = movedPiece.getY() - newY;
 
 		CheckerPiece toBeCaptured = null;
-		if (Math.abs(xDif) == 2 && Math.abs(yDif) == 2)
+		if (this.isJump(movedPiece, newX, newY))
 		{
 			toBeCaptured = this.getCheckerPieceAt(newX + (xDif / 2), newY
 					+ (yDif / 2));
@@ -211,15 +229,7 @@ public abstract class GameLogic
 	 */
 	public void captureCheckerPiece(CheckerPiece captured)
 	{
-		if (captured.isUserPiece() == false)
-		{
-			this.opponentCheckerPieces.remove(captured);
-		} else
-		{
-			this.userCheckerPieces.remove(captured);
-		}
-
-		this.gridCheckerPieces.get(captured.getX()).set(captured.getY(), null);
+		this.position.removePiece(captured.getSquare());
 	}
 
 	/**
@@ -229,8 +239,8 @@ public abstract class GameLogic
 	 */
 	protected boolean gameEnded()
 	{
-		return (this.userCheckerPieces.size() == 0 || this.opponentCheckerPieces
-				.size() == 0);
+		return (this.position.getUserPieceCount() == 0 || this.position
+				.getOpponentPieceCount() == 0);
 	}
 	
 	/**
@@ -240,60 +250,141 @@ public abstract class GameLogic
 	 */
 	protected boolean didUserWin()
 	{
-		return (this.userCheckerPieces.size() > 0);
+		return (this.position.getUserPieceCount() > 0);
 	}
 
 	// -------------------------------------------------------------------------
-	// Game Setup
+	// Listeners
 	// -------------------------------------------------------------------------
 
+	public void addGameListener(GameListener listener)
+	{
+		this.listeners.add(listener);
+	}
+
+	public void removeGameListener(GameListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+	protected void fireGameSetUp(String description)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.gameSetUp(description);
+		}
+	}
+
+	protected void fireBoardChanged()
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.boardChanged();
+		}
+	}
+
+	protected void fireSquaresChanged(int squares)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.squaresChanged(squares);
+		}
+	}
+
 	/**
-	 * This will clear the Checkerboard's pieces and start a brand new game by
-	 * placing both the user's and opponent's Checkers into the correct setup
-	 * position.
+	 * Tells the listeners which squares differ from the given position, which
+	 * is the position as it was before a move.
+	 * 
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings
 	 */
-	public void setupCheckerboard()
+	protected void fireSquaresChangedSince(
+			int userPieces,
+			int opponentPieces,
+			int kings)
 	{
-		this.userCheckerPieces.clear();
-		this.opponentCheckerPieces.clear();
-		this.gridCheckerPieces.clear();
-		this.ensureBoardCapacity();
+		this.fireSquaresChanged((userPieces ^ this.position.getUserPieces())
+				| (opponentPieces ^ this.position.getOpponentPieces())
+				| (kings ^ this.position.getKings()));
+	}
 
-		// Setup both the user's and opponent's checker pieces
-		// Note - The top left square of the checkerboard is position (0, 0)
-		for (int y = 5; y < 8; y++)
+	protected void fireOpponentMoved(int from, int to, int captured, int kings)
+	{
+		for (GameListener listener : this.listeners)
 		{
-			for (int x = 0 + ((y + 1) % 2); x < 8; x += 2)
-			{
-				CheckerPiece newUserPiece = new CheckerPiece(this, true, x, y);
+			listener.opponentMoved(from, to, captured, kings);
+		}
+	}
+
+	protected void fireTurnChanged(boolean isUsersTurn)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.turnChanged(isUsersTurn);
+		}
+	}
+
+	protected void fireMessageReceived(String message)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.messageReceived(message);
+		}
+	}
 
-				// Transform the current x and y position to create a mirrored
-				// version of the opponent's pieces on the opposite side of the
-				// board
-				CheckerPiece newOpponentPiece = new CheckerPiece(this, false,
-						(7 - x), (7 - y));
+	/**
+	 * @return Whether any listener accepted the draw
+	 */
+	protected boolean fireDrawRequested()
+	{
+		boolean accepted = false;
+		for (GameListener listener : this.listeners)
+		{
+			accepted |= listener.drawRequested();
+		}
 
-				this.userCheckerPieces.add(newUserPiece);
-				this.opponentCheckerPieces.add(newOpponentPiece);
+		return accepted;
+	}
 
-				this.addCheckerPiece(newUserPiece);
-				this.addCheckerPiece(newOpponentPiece);
-			}
+	protected void fireGameEnded(boolean didUserWin)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.gameEnded(didUserWin);
 		}
 	}
 
+	protected void fireGameDrawn()
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.gameDrawn();
+		}
+	}
+
+	protected void fireLatencyMeasured(double roundTrip, double jitter)
+	{
+		for (GameListener listener : this.listeners)
+		{
+			listener.latencyMeasured(roundTrip, jitter);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Game Setup
+	// -------------------------------------------------------------------------
+
 	/**
-	 * This is used to appropriately set the given Checker Piece to the 2D
-	 * array gridCheckerPieces. For example, if the piece's position is
-	 * (3,5) then the element at column 3 and row 5 will be set to the given
-	 * Checker Piece.<br>
-	 * <b>Note:</b> Does not protect against out of bounds values
-	 * 
-	 * @param piece
+	 * This will clear the Checkerboard's pieces and start a brand new game by
+	 * placing both the user's and opponent's Checkers into the correct setup
+	 * position.
 	 */
-	private void addCheckerPiece(CheckerPiece piece)
+	public void setupCheckerboard()
 	{
-		this.gridCheckerPieces.get(piece.getX()).set(piece.getY(), piece);
+		// Note - The top left square of the checkerboard is position (0, 0)
+		// and the user's pieces fill the bottom three rows
+		this.position.setupInitial();
 	}
 
 	/**
@@ -306,22 +397,34 @@ public abstract class GameLogic
 	 */
 	public CheckerPiece getCheckerPieceAt(int x, int y)
 	{
-		return this.gridCheckerPieces.get(x).get(y);
+		int square = Position.toSquare(x, y);
+		if (square < 0 || this.position.isEmpty(square))
+		{
+			return null;
+		}
+
+		return new CheckerPiece(this, this.position.isUserPiece(square), x, y);
 	}
 
 	/**
-	 * Fills the 2D grid with 8x8 elements of empty space.
+	 * Creates a Checker Piece view for every piece within the given mask.
+	 * 
+	 * @param pieces A mask of occupied squares
+	 * @param isUserPiece
+	 * @param list The list the checker pieces will be added to
 	 */
-	private void ensureBoardCapacity()
+	private void addCheckerPieces(
+			int pieces,
+			boolean isUserPiece,
+			List<CheckerPiece> list)
 	{
-		for (int xPos = 0; xPos < 8; xPos++)
+		while (pieces != 0)
 		{
-			this.gridCheckerPieces.add(new ArrayList<CheckerPiece>()); // New
-																		// Column
-			for (int yPos = 0; yPos < 8; yPos++)
-			{
-				this.gridCheckerPieces.get(xPos).add(null); // Modify Row
-			}
+			int square = Integer.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+
+			list.add(new CheckerPiece(this, isUserPiece, Position
+					.getSquareX(square), Position.getSquareY(square)));
 		}
 	}
 
@@ -335,25 +438,37 @@ public abstract class GameLogic
 	public List<CheckerPiece> getAllCheckerPieces()
 	{
 		List<CheckerPiece> allPieces = new ArrayList<CheckerPiece>();
-		allPieces.addAll(this.userCheckerPieces);
-		allPieces.addAll(this.opponentCheckerPieces);
+		this.addCheckerPieces(this.position.getUserPieces(), true, allPieces);
+		this.addCheckerPieces(
+				this.position.getOpponentPieces(),
+				false,
+				allPieces);
 
 		return allPieces;
 	}
 
 	public List<CheckerPiece> getUserCheckerPieces()
 	{
-		return this.userCheckerPieces;
+		List<CheckerPiece> userPieces = new ArrayList<CheckerPiece>();
+		this.addCheckerPieces(this.position.getUserPieces(), true, userPieces);
+
+		return userPieces;
 	}
 
 	public List<CheckerPiece> getOpponentCheckerPieces()
 	{
-		return this.opponentCheckerPieces;
+		List<CheckerPiece> opponentPieces = new ArrayList<CheckerPiece>();
+		this.addCheckerPieces(
+				this.position.getOpponentPieces(),
+				false,
+				opponentPieces);
+
+		return opponentPieces;
 	}
 
-	public List<ArrayList<CheckerPiece>> getGridCheckerPieces()
+	public Position getPosition()
 	{
-		return this.gridCheckerPieces;
+		return this.position;
 	}
 
 	public boolean isUsersTurn()
@@ -361,9 +476,15 @@ public abstract class GameLogic
 		return isUsersTurn;
 	}
 
+	/**
+	 * Changes whose turn it is and lets the listeners know.
+	 * 
+	 * @param isUsersTurn
+	 */
 	public void setUsersTurn(boolean isUsersTurn)
 	{
 		this.isUsersTurn = isUsersTurn;
+		this.fireTurnChanged(isUsersTurn);
 	}
 
 	public boolean hasGameStarted()
@@ -375,14 +496,4 @@ public abstract class GameLogic
 	{
 		this.hasGameStarted = hasGameStarted;
 	}
-
-	public Checkerboard getCheckerboard()
-	{
-		return checkerboard;
-	}
-
-	public void setCheckerboard(Checkerboard checkerboard)
-	{
-		this.checkerboard = checkerboard;
-	}
 }
@@ -1,36 +1,59 @@
 package com.gmail.tylersyme.checkers.game;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.Random;
+import java.util.concurrent.Executor;
 
-import javax.swing.JOptionPane;
-import javax.swing.SwingUtilities;
-
-import com.gmail.tylersyme.checkers.CheckersWindow;
 import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.ConnectionThreads;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
 import com.gmail.tylersyme.checkers.connection.PacketHandler;
-
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+
+/**
+ * The game logic of a multiplayer game, where the opponent plays from the
+ * other end of a connection. Everything the opponent sends is handed to the
+ * game's event executor to be played, on the same thread as the user's own
+ * moves.
+ */
 public class GameLogicMP extends GameLogic
 {
-	private ObjectOutputStream output;
-	private ObjectInputStream input;
+	// Plays the opponent's packets straight away on the thread reading them,
+	// unless told otherwise
+	public static final Executor READER_THREAD = new Executor() {
+
+		@Override
+		public void execute(Runnable task)
+		{
+			task.run();
+		}
+	};
+
+	private PacketConnection connection;
 	private PacketHandler packetHandler;
+	private Executor eventExecutor;
 
-	public GameLogicMP(Checkerboard checkerboard, ObjectOutputStream output,
-			ObjectInputStream input)
+	public GameLogicMP(PacketConnection connection)
 	{
-		super(checkerboard);
+		this(connection, READER_THREAD);
+	}
 
-		this.output = output;
-		this.input = input;
+	/**
+	 * @param connection
+	 * @param eventExecutor Plays the opponent's packets, which must happen on
+	 *            the same thread as the user's moves (such as the Swing event
+	 *            dispatch thread). It must not make the reading thread wait.
+	 */
+	public GameLogicMP(PacketConnection connection, Executor eventExecutor)
+	{
+		this.connection = connection;
+		this.eventExecutor = eventExecutor;
 	}
 
 	@Override
 	public void startNewGame()
 	{
-		this.packetHandler = new PacketHandler(this, this.output, this.input);
+		this.packetHandler = new PacketHandler(this, this.connection);
 		
 		// Listens for incoming packets from opponent
 		this.packetHandler.startListening();
@@ -39,29 +62,23 @@ public class GameLogicMP extends GameLogic
 
 		if (ConnectionHandler.isHost)
 		{
-			this.checkerboard.getCheckerGamePanel().getMainWindow().setTitle("Server");
+			this.fireGameSetUp("Server");
 			
 			Random r = new Random();
 			int firstTurn = r.nextInt(2);
 
-			if (firstTurn == 0)
-			{
-				this.isUsersTurn = true;
-			} else
-			{
-				this.isUsersTurn = false;
-			}
-			this.getCheckerboard().getCheckerGamePanel()
-					.updateUsersTurnLabel(this.isUsersTurn);
+			this.setUsersTurn(firstTurn == 0);
 
 			// Will set the turn of the opponent to the opposite of the server's
-			// turn
+			// turn. Both packets leave in a single write.
+			this.packetHandler.startBatch();
 			this.packetHandler.sendPlayerTurnPacket(!this.isUsersTurn);
 			this.packetHandler.sendStartGamePacket();
+			this.packetHandler.endBatch();
 
 			this.setHasGameStarted(true);
 		} else {
-			this.checkerboard.getCheckerGamePanel().getMainWindow().setTitle("Client");
+			this.fireGameSetUp("Client");
 		}
 		
 		//this.packetHandler.sendEndGamePacket(false);
@@ -85,6 +102,15 @@ public class GameLogicMP extends GameLogic
 
 				|| movedPiece.isUserPiece() == false)
 		{
+			int newSquare = Position.toSquare(newX, newY);
+			boolean isJump = this.isJump(movedPiece, newX, newY);
+			boolean wasKinged = false;
+
+			// Only the squares the move touches need drawing again
+			int userPieces = this.position.getUserPieces();
+			int opponentPieces = this.position.getOpponentPieces();
+			int kings = this.position.getKings();
+
 			// Will send a packet only if this user's piece was moved
 			if (movedPiece.isUserPiece())
 			{
@@ -94,22 +120,14 @@ public class GameLogicMP extends GameLogic
 						newX,
 						newY);
 
-				// Will allow the user to possibly jump multiple times if their
-				// first move was a jump. Otherwise their turn ends.
-				if (this.isJump(movedPiece, newX, newY))
-				{
-					this.hasUserMoved = true;
-				} else
-				{
-					// User must move before turn can end
-					this.hasUserMoved = true;
-					this.endTurn();
-				}
+				// User must move before turn can end
+				this.hasUserMoved = true;
 
 				// King this piece if it reaches the row at the back
-				if (newY == 0)
+				if (newY == 0 && movedPiece.isKing() == false)
 				{
 					movedPiece.setKing(true);
+					wasKinged = true;
 				}
 			} else
 			{
@@ -120,30 +138,49 @@ public class GameLogicMP extends GameLogic
 				}
 			}
 
-			// Internally update the 2D grid list which is used to store pieces
-			// at their x and y location
-			this.gridCheckerPieces.get(movedPiece.getX()).set(
-					movedPiece.getY(),
-					null);
-			this.gridCheckerPieces.get(newX).set(newY, movedPiece);
-
 			// Checks to see if a piece was captured
 			CheckerPiece capturedPiece = this.getCapturedPiece(
 					movedPiece,
 					newX,
 					newY);
+			int capturedSquare = -1;
 			if (capturedPiece != null)
 			{
+				capturedSquare = capturedPiece.getSquare();
 				this.captureCheckerPiece(capturedPiece);
 			}
 
+			// Internally update the position which is used to store pieces
+			// at their x and y location
+			int oldSquare = movedPiece.getSquare();
+			this.position.movePiece(oldSquare, newSquare);
+
+			if (movedPiece.isUserPiece())
+			{
+				// Will allow the user to keep jumping if their move was a jump
+				// and the same piece can jump again. Otherwise their turn
+				// ends. Being "kinged" always ends the turn.
+				if (isJump && wasKinged == false
+						&& MoveGenerator.canJumpFrom(this.position, newSquare, true))
+				{
+					this.jumpingSquare = newSquare;
+				} else
+				{
+					this.jumpingSquare = -1;
+					this.endTurn();
+				}
+			} else
+			{
+				this.fireOpponentMoved(oldSquare, newSquare, capturedSquare, kings);
+			}
+
 			// Determines if a player has won the game
 			if (this.gameEnded())
 			{
 				this.endGame(this.didUserWin());
 			}
 
-			this.checkerboard.repaint();
+			this.fireSquaresChangedSince(userPieces, opponentPieces, kings);
 
 			isValid = true;
 		}
@@ -154,15 +191,23 @@ public class GameLogicMP extends GameLogic
 	@Override
 	public void endTurn()
 	{
-		if (this.isUsersTurn && this.hasUserMoved)
+		// A multi-jump must be finished before the turn can end
+		if (this.isUsersTurn && this.hasUserMoved && this.jumpingSquare < 0)
 		{
-			this.isUsersTurn = false;
 			this.hasUserMoved = false;
-			this.getCheckerboard().getCheckerGamePanel()
-					.updateUsersTurnLabel(false);
+			this.setUsersTurn(false);
 
-			// Let the other player know it's their turn
+			// Let the other player know it's their turn. The hops of the move
+			// (and the end of the game, if it has ended) leave with it.
+			this.packetHandler.startBatch();
 			this.packetHandler.sendPlayerTurnPacket(true);
+
+			// An opponent who is unable to move loses the game
+			if (MoveGenerator.hasMoves(this.position, false) == false)
+			{
+				this.endGame(true);
+			}
+			this.packetHandler.endBatch();
 		}
 	}
 
@@ -174,44 +219,39 @@ public class GameLogicMP extends GameLogic
 			this.setHasGameStarted(false);
 
 			this.packetHandler.sendEndGamePacket(!didUserWin);
-			this.getCheckerboard().getCheckerGamePanel().disableButtons();
+			this.fireGameEnded(didUserWin);
 
-			this.getCheckerboard().showGameEnded(didUserWin);
+			this.closeConnection();
+		}
+	}
 
-			this.getCheckerboard().repaint();
+	/**
+	 * Ends the game after the opponent has declared its result.
+	 * 
+	 * @param didUserWin
+	 */
+	public void opponentEndedGame(boolean didUserWin)
+	{
+		this.setHasGameStarted(false);
+		this.fireGameEnded(didUserWin);
 
-			Thread returnToMenu = new Thread(new Runnable() {
+		this.closeConnection();
+	}
 
-				@Override
-				public void run()
-				{
-					try
-					{
-						Thread.sleep(2000);
-						
-						packetHandler.setListening(false);
-						try
-						{
-							input.close();
-							output.close();
-						} catch (IOException e)
-						{
-							e.printStackTrace();
-						}
-
-						CheckersWindow checkerWindow = (CheckersWindow) SwingUtilities
-								.getWindowAncestor(getCheckerboard());
-
-						checkerWindow.openMainMenu();
-					} catch (InterruptedException e)
-					{
-						e.printStackTrace();
-					}
-				}
-			});
+	/**
+	 * Stops listening for packets and closes the connection after two
+	 * seconds, which gives the last packets time to arrive.
+	 */
+	private void closeConnection()
+	{
+		ConnectionThreads.schedule(new Runnable() {
 
-			returnToMenu.start();
-		}
+			@Override
+			public void run()
+			{
+				packetHandler.close();
+			}
+		}, 2000);
 	}
 
 	@Override
@@ -222,35 +262,9 @@ public class GameLogicMP extends GameLogic
 			this.setHasGameStarted(false);
 
 			this.packetHandler.sendDrawResponsePacket(true);
-			this.getCheckerboard().getCheckerGamePanel().disableButtons();
-
-			this.getCheckerboard().showGameDraw();
-
-			this.getCheckerboard().repaint();
-
-			Thread returnToMenu = new Thread(new Runnable() {
+			this.fireGameDrawn();
 
-				@Override
-				public void run()
-				{
-					try
-					{
-						Thread.sleep(2000);
-						packetHandler.setListening(false);
-
-						CheckersWindow checkerWindow = 
-								(CheckersWindow) SwingUtilities
-								.getWindowAncestor(getCheckerboard());
-
-						checkerWindow.openMainMenu();
-					} catch (InterruptedException e)
-					{
-						e.printStackTrace();
-					}
-				}
-			});
-
-			returnToMenu.start();
+			this.closeConnection();
 		}
 	}
 
@@ -266,28 +280,132 @@ public class GameLogicMP extends GameLogic
 	@Override
 	public void opponentRequestedDraw()
 	{
-		Object[] options = { "Accept", "Reject" };
-
-		// Open a custom dialog window with a request and reject option
-		int selection = JOptionPane.showOptionDialog(
-				this.getCheckerboard(),
-				"Your opponent has requested a draw.",
-				"End With a Draw?",
-				JOptionPane.YES_NO_OPTION,
-				JOptionPane.QUESTION_MESSAGE,
-				null,
-				options,
-				options[0]);
-
-		if (selection == 0) // The 'Accept' Button
+		if (this.fireDrawRequested())
 		{
 			this.drawGame(); // The game is a draw
 		}
 	}
 
+	/**
+	 * Replaces the board with the one kept by a dedicated server, which
+	 * happens when the server refuses one of the user's moves.
+	 * 
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings
+	 * @param isUsersTurn
+	 * @param jumpingSquare The square of the user's piece part way through a
+	 *            multi-jump, or -1 if no piece is
+	 */
+	public void synchronizeBoard(
+			int userPieces,
+			int opponentPieces,
+			int kings,
+			boolean isUsersTurn,
+			int jumpingSquare)
+	{
+		this.position.set(userPieces, opponentPieces, kings);
+		this.jumpingSquare = jumpingSquare;
+		this.hasUserMoved = (jumpingSquare >= 0);
+		this.setUsersTurn(isUsersTurn);
+
+		this.fireBoardChanged();
+		this.fireMessageReceived("[Server] That move was refused, and the board has been put back");
+	}
+
+	/**
+	 * Called once the connection to a dedicated server is lost, while the
+	 * game tries to take its place in the match back.
+	 */
+	public void connectionLost()
+	{
+		this.fireMessageReceived("[Server] Connection lost, reconnecting...");
+	}
+
+	/**
+	 * @param wasResumed Whether the game took its place in the match back, or
+	 *            gave up
+	 */
+	public void connectionResumed(boolean wasResumed)
+	{
+		this.fireMessageReceived((wasResumed) ? ("[Server] Reconnected")
+				: ("[Server] Could not reconnect to the game"));
+
+		// The server gives the match to the opponent of a player who does
+		// not come back
+		if (wasResumed == false)
+		{
+			this.connectionEnded(false);
+		}
+	}
+
+	/**
+	 * Called once the connection to an opponent played directly is lost,
+	 * which cannot be resumed. Neither side can tell who dropped the
+	 * connection, so the game ends without a result, as a draw.
+	 */
+	public void opponentLost()
+	{
+		if (this.hasGameStarted == false)
+			return; // The opponent's last packets ended the game first
+
+		this.fireMessageReceived("Lost the connection to your opponent, so the game was abandoned");
+		this.setHasGameStarted(false);
+		this.fireGameDrawn();
+
+		this.packetHandler.close();
+	}
+
+	/**
+	 * Ends the game once nothing more can be sent to the opponent, so no
+	 * result is sent.
+	 * 
+	 * @param didUserWin
+	 */
+	private void connectionEnded(boolean didUserWin)
+	{
+		if (this.hasGameStarted)
+		{
+			this.setHasGameStarted(false);
+			this.fireGameEnded(didUserWin);
+
+			this.packetHandler.close();
+		}
+	}
+
+	/**
+	 * Passes the latest round trip to the opponent (or to a dedicated server)
+	 * on to the listeners.
+	 * 
+	 * @param roundTrip The smoothed round trip, in milliseconds
+	 * @param jitter
+	 */
+	public void latencyMeasured(double roundTrip, double jitter)
+	{
+		this.fireLatencyMeasured(roundTrip, jitter);
+	}
+
+	/**
+	 * @return Plays the opponent's packets
+	 */
+	public Executor getEventExecutor()
+	{
+		return this.eventExecutor;
+	}
+
 	@Override
 	public void sendChatMessage(String chatMsg)
 	{
 		this.packetHandler.sendChatMessagePacket(chatMsg);
 	}
+
+	/**
+	 * Passes a chat message from the opponent on to the listeners.
+	 * 
+	 * @param chatMsg
+	 */
+	public void receiveChatMessage(String chatMsg)
+	{
+		this.fireMessageReceived(chatMsg);
+	}
 }
@@ -0,0 +1,441 @@
+package com.gmail.tylersyme.checkers.game;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.OpeningBook;
+import com.gmail.tylersyme.checkers.engine.ParallelSearch;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.engine.Search;
+import com.gmail.tylersyme.checkers.engine.Tablebase;
+
+/**
+ * <p>
+ * The game logic of a singleplayer game, where the opponent is played by the
+ * computer. The computer's moves are chosen by a {@link ParallelSearch}
+ * running on its own threads so that the window stays responsive while it
+ * thinks, unless the position is in the opening book. The search threads only
+ * ever see their own copy of the position, and the chosen move is handed to
+ * the game's executor to be played.
+ * </p>
+ * The search cannot tell a drawn ending from one still in play, so the game
+ * is drawn once {@link #MAX_QUIET_PLIES} plies pass without progress.
+ */
+public class GameLogicSP extends GameLogic
+{
+	// How long the computer may think about each move
+	public static final long DEFAULT_TIME_BUDGET = 750;
+
+	// A game is drawn once this many plies pass without a capture or a man
+	// moving
+	public static final int MAX_QUIET_PLIES = 80;
+
+	// The number of search threads may be set with -Dcheckers.searchThreads
+	public static final int DEFAULT_SEARCH_THREADS = Integer.getInteger(
+			"checkers.searchThreads",
+			Runtime.getRuntime().availableProcessors());
+
+	// Mapped once and shared by every game. The directory may be set with
+	// -Dcheckers.tablebase and is simply empty if the tables were never built.
+	private static final Tablebase TABLEBASE = Tablebase.open(new File(
+			System.getProperty("checkers.tablebase", Tablebase.DEFAULT_DIRECTORY)));
+
+	// The book file may be set with -Dcheckers.openingBook
+	private static final OpeningBook OPENING_BOOK = OpeningBook.open(new File(
+			System.getProperty("checkers.openingBook", OpeningBook.DEFAULT_FILE)));
+
+	// Plays the computer's moves once they are found. Runs them straight
+	// away on the search thread unless told otherwise.
+	public static final Executor SEARCH_THREAD = new Executor() {
+
+		@Override
+		public void execute(Runnable task)
+		{
+			task.run();
+		}
+	};
+
+	private ParallelSearch search;
+	private long timeBudget;
+	private Executor moveExecutor;
+	private Random random = new Random();
+	private int[] path = new int[Position.SQUARE_COUNT];
+	private int quietPlies = 0;
+
+	// What the search thought of the computer's last move, kept on the move
+	// executor's thread. A depth of 0 means the move was not searched.
+	private int computerScore = 0;
+	private int computerDepth = 0;
+
+	/**
+	 * @param moveExecutor Plays the computer's moves, which must happen on
+	 *            the same thread as the user's moves (such as the Swing event
+	 *            dispatch thread)
+	 */
+	public GameLogicSP(Executor moveExecutor)
+	{
+		this(moveExecutor, DEFAULT_TIME_BUDGET, DEFAULT_SEARCH_THREADS);
+	}
+
+	public GameLogicSP(
+			Executor moveExecutor,
+			long timeBudget,
+			int searchThreads)
+	{
+		this(moveExecutor, timeBudget, new ParallelSearch(searchThreads));
+		this.search.setTablebase(TABLEBASE);
+	}
+
+	/**
+	 * @param moveExecutor
+	 * @param timeBudget How long the computer may think about each move
+	 * @param search Chooses the computer's moves
+	 */
+	protected GameLogicSP(
+			Executor moveExecutor,
+			long timeBudget,
+			ParallelSearch search)
+	{
+		this.moveExecutor = moveExecutor;
+		this.timeBudget = timeBudget;
+		this.search = search;
+	}
+
+	@Override
+	public void setupCheckerboard()
+	{
+		super.setupCheckerboard();
+		this.quietPlies = 0;
+		this.computerDepth = 0;
+	}
+
+	@Override
+	public void startNewGame()
+	{
+		this.setupCheckerboard();
+
+		this.fireGameSetUp("Singleplayer");
+
+		this.setUsersTurn(this.random.nextInt(2) == 0);
+
+		this.setHasGameStarted(true);
+
+		if (this.isUsersTurn == false)
+		{
+			this.startComputerTurn();
+		}
+	}
+
+	@Override
+	public boolean handleCheckerMovement(
+			CheckerPiece movedPiece,
+			int newX,
+			int newY)
+	{
+		// Only the user's pieces are moved through their Checker Pieces. The
+		// computer's moves are played straight onto the position.
+		if (this.hasGameStarted == false || this.isUsersTurn == false
+				|| movedPiece.isUserPiece() == false
+				|| this.isValidMove(movedPiece, newX, newY) == false
+				|| (this.hasUserMoved && !this.isJump(movedPiece, newX, newY)))
+		{
+			return false;
+		}
+
+		int newSquare = Position.toSquare(newX, newY);
+		boolean isJump = this.isJump(movedPiece, newX, newY);
+		boolean wasKinged = false;
+
+		// Only the squares the move touches need drawing again
+		int userPieces = this.position.getUserPieces();
+		int opponentPieces = this.position.getOpponentPieces();
+		int kings = this.position.getKings();
+
+		this.hasUserMoved = true;
+
+		// King this piece if it reaches the row at the back
+		if (newY == 0 && movedPiece.isKing() == false)
+		{
+			movedPiece.setKing(true);
+			wasKinged = true;
+		}
+
+		CheckerPiece capturedPiece = this.getCapturedPiece(
+				movedPiece,
+				newX,
+				newY);
+		if (capturedPiece != null)
+		{
+			this.captureCheckerPiece(capturedPiece);
+		}
+
+		this.position.movePiece(movedPiece.getSquare(), newSquare);
+		this.countQuietPly(userPieces, opponentPieces, kings);
+
+		// Will allow the user to keep jumping if the same piece can jump
+		// again. Otherwise their turn ends.
+		if (isJump && wasKinged == false
+				&& MoveGenerator.canJumpFrom(this.position, newSquare, true))
+		{
+			this.jumpingSquare = newSquare;
+		} else
+		{
+			this.jumpingSquare = -1;
+			this.endTurn();
+		}
+
+		this.fireSquaresChangedSince(userPieces, opponentPieces, kings);
+
+		return true;
+	}
+
+	@Override
+	public void endTurn()
+	{
+		// A multi-jump must be finished before the turn can end
+		if (this.isUsersTurn && this.hasUserMoved && this.jumpingSquare < 0)
+		{
+			this.hasUserMoved = false;
+			this.setUsersTurn(false);
+
+			if (this.gameEnded())
+			{
+				this.endGame(this.didUserWin());
+			} else if (this.quietPlies >= MAX_QUIET_PLIES)
+			{
+				this.drawGame();
+			} else
+			{
+				this.startComputerTurn();
+			}
+		}
+	}
+
+	/**
+	 * Finds the computer's move on a separate thread, from the opening book if
+	 * possible and otherwise by searching. The search works on its own copy of
+	 * the position and the chosen move is played by the move executor.
+	 */
+	protected void startComputerTurn()
+	{
+		final Position searchPosition = new Position();
+		searchPosition.copyFrom(this.position);
+
+		Thread searchThread = new Thread(new Runnable() {
+
+			@Override
+			public void run()
+			{
+				long bookMove = OPENING_BOOK.probe(searchPosition, false, random);
+				final long move = (bookMove != Move.NONE) ? (bookMove)
+						: (search.findBestMove(
+								searchPosition,
+								false,
+								timeBudget,
+								Search.MAX_PLY));
+
+				// Read here, before the search can be used again
+				final int score = search.getBestScore();
+				final int depth = (bookMove != Move.NONE) ? (0)
+						: (search.getCompletedDepth());
+
+				moveExecutor.execute(new Runnable() {
+
+					@Override
+					public void run()
+					{
+						playComputerMove(move, score, depth);
+					}
+				});
+			}
+		}, "Checkers AI");
+		searchThread.setDaemon(true);
+		searchThread.start();
+	}
+
+	/**
+	 * Plays a move the computer searched for, keeping what the search thought
+	 * of it.
+	 * 
+	 * @param move
+	 * @param score The score of the move
+	 * @param completedDepth The depth searched, or 0 if the move was not
+	 *            searched
+	 */
+	protected void playComputerMove(long move, int score, int completedDepth)
+	{
+		this.computerScore = score;
+		this.computerDepth = completedDepth;
+
+		this.playComputerMove(move);
+	}
+
+	/**
+	 * Plays the computer's chosen move and hands the turn back to the user.
+	 *
+	 * @param move The move, or {@link Move#NONE} if the computer was unable
+	 *            to move
+	 */
+	protected void playComputerMove(long move)
+	{
+		// The game may have been resigned while the computer was thinking
+		if (this.hasGameStarted == false)
+			return;
+
+		// A player who is unable to move loses the game
+		if (move == Move.NONE)
+		{
+			this.endGame(true);
+			return;
+		}
+
+		int userPieces = this.position.getUserPieces();
+		int opponentPieces = this.position.getOpponentPieces();
+		int kings = this.position.getKings();
+		int hopCount = MoveGenerator.getPath(this.position, move, false, this.path);
+
+		this.position.applyMove(move, false);
+		this.countQuietPly(userPieces, opponentPieces, kings);
+		this.fireComputerHops(Move.getFrom(move), hopCount, Move.isCapture(move), kings);
+		this.fireSquaresChangedSince(userPieces, opponentPieces, kings);
+
+		if (this.gameEnded()
+				|| MoveGenerator.hasMoves(this.position, true) == false)
+		{
+			this.endGame(false);
+			return;
+		}
+
+		if (this.quietPlies >= MAX_QUIET_PLIES)
+		{
+			this.drawGame();
+			return;
+		}
+
+		this.setUsersTurn(true);
+	}
+
+	/**
+	 * Counts the ply just played towards {@link #MAX_QUIET_PLIES}. Progress
+	 * is a capture or a man moving. Each hop of a multi-jump captures, so
+	 * counting hops counts plies.
+	 * 
+	 * @param userPieces
+	 * @param opponentPieces
+	 * @param kings The position as it was before the ply
+	 */
+	private void countQuietPly(int userPieces, int opponentPieces, int kings)
+	{
+		int occupied = userPieces | opponentPieces;
+		int newOccupied = this.position.getOccupied();
+
+		if ((occupied & ~kings) != (newOccupied & ~this.position.getKings())
+				|| Integer.bitCount(occupied) != Integer.bitCount(newOccupied))
+		{
+			this.quietPlies = 0;
+		} else
+		{
+			this.quietPlies++;
+		}
+	}
+
+	/**
+	 * Tells the listeners about each hop of the computer's move, the squares
+	 * jumped being those halfway along each hop.
+	 * 
+	 * @param from The square the move started from
+	 * @param hopCount The number of hops in {@link #path}
+	 * @param isCapture
+	 * @param kings The kings as they were before the move
+	 */
+	private void fireComputerHops(int from, int hopCount, boolean isCapture, int kings)
+	{
+		boolean isKing = (kings & (1 << from)) != 0;
+
+		for (int hop = 0; hop < hopCount; hop++)
+		{
+			int to = this.path[hop];
+			int captured = (isCapture) ? (Position.toSquare(
+					(Position.getSquareX(from) + Position.getSquareX(to)) / 2,
+					(Position.getSquareY(from) + Position.getSquareY(to)) / 2)) : (-1);
+
+			this.fireOpponentMoved(from, to, captured, kings);
+
+			// The king travels with its piece
+			if (isKing)
+			{
+				kings = (kings & ~(1 << from)) | (1 << to);
+			}
+			from = to;
+		}
+	}
+
+	@Override
+	public void endGame(boolean didUserWin)
+	{
+		if (this.hasGameStarted)
+		{
+			this.setHasGameStarted(false);
+			this.releaseSearch();
+
+			this.fireGameEnded(didUserWin);
+		}
+	}
+
+	@Override
+	public void drawGame()
+	{
+		if (this.hasGameStarted)
+		{
+			this.setHasGameStarted(false);
+			this.releaseSearch();
+
+			this.fireGameDrawn();
+		}
+	}
+
+	/**
+	 * Called once the game is over. The search belongs to this game alone, so
+	 * its threads are stopped for good.
+	 */
+	protected void releaseSearch()
+	{
+		this.search.shutdown();
+	}
+
+	/**
+	 * The computer accepts a draw only if the search for its last move
+	 * thought it was behind or the game drawn, as a tablebase draw scores
+	 * exactly 0. The search itself may be busy with another move, so only
+	 * what was kept of its last move is read.
+	 */
+	@Override
+	public void requestDraw()
+	{
+		if (this.hasGameStarted)
+		{
+			if (this.computerDepth > 0 && this.computerScore <= 0)
+			{
+				this.drawGame();
+			} else
+			{
+				this.fireMessageReceived("I would rather keep playing.");
+			}
+		}
+	}
+
+	@Override
+	public void opponentRequestedDraw()
+	{
+		// The computer never requests a draw
+	}
+
+	@Override
+	public void sendChatMessage(String chatMsg)
+	{
+		// There is nobody to read the message
+	}
+}
@@ -0,0 +1,280 @@
+package com.gmail.tylersyme.checkers.game;
+
+import java.util.Random;
+
+import com.gmail.tylersyme.checkers.engine.Move;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.ParallelSearch;
+import com.gmail.tylersyme.checkers.engine.Position;
+import com.gmail.tylersyme.checkers.engine.Tablebase;
+
+/**
+ * <p>
+ * A headless game where the computer plays both sides, so that two engines
+ * (or two sets of evaluation weights) can be played against each other.
+ * The whole game is played on the thread which calls
+ * {@link #startNewGame()}, with no listeners needed.
+ * </p>
+ * <p>
+ * The opponent's moves are played just as in a singleplayer game. The user's
+ * moves are made one hop at a time through
+ * {@link #handleCheckerMovement(CheckerPiece, int, int)}, exactly as if a
+ * player had dragged the pieces, so every game also checks that the rules
+ * followed by the window agree with the {@link MoveGenerator}.
+ * </p>
+ * The game starts with a few random moves so that no two games are alike,
+ * and is drawn if it goes on too long without progress.
+ */
+public class GameLogicSelfPlay extends GameLogicSP
+{
+	// Results from the user's point of view
+	public static final int WON = 1;
+	public static final int DRAWN = 0;
+	public static final int LOST = -1;
+
+	// A game is also drawn once it reaches this many plies, as well as after
+	// MAX_QUIET_PLIES without progress
+	public static final int MAX_PLIES = 400;
+
+	// -------------------------------------------------------------------------
+
+	private ParallelSearch userSearch;
+	private ParallelSearch opponentSearch;
+	private long timeBudget;
+	private int maxDepth;
+	private Tablebase adjudicator;
+
+	private int openingPlies;
+	private Random openingRandom;
+
+	private int result = DRAWN;
+	private int plies = 0;
+
+	// The squares a move passes through
+	private int[] path = new int[Position.SQUARE_COUNT];
+	private long[] moves = new long[MoveGenerator.MAX_MOVES];
+
+	/**
+	 * @param userSearch Plays the user's side
+	 * @param opponentSearch Plays the opponent's side
+	 * @param timeBudget How long each side may think about each move
+	 * @param maxDepth The deepest each side may search
+	 * @param openingPlies How many random moves start the game
+	 * @param openingSeed Chooses the random moves, so two games with the
+	 *            same seed start the same way
+	 */
+	public GameLogicSelfPlay(
+			ParallelSearch userSearch,
+			ParallelSearch opponentSearch,
+			long timeBudget,
+			int maxDepth,
+			int openingPlies,
+			long openingSeed)
+	{
+		super(SEARCH_THREAD, timeBudget, opponentSearch);
+
+		this.userSearch = userSearch;
+		this.opponentSearch = opponentSearch;
+		this.timeBudget = timeBudget;
+		this.maxDepth = maxDepth;
+		this.openingPlies = openingPlies;
+		this.openingRandom = new Random(openingSeed);
+	}
+
+	/**
+	 * Plays the whole game before returning.
+	 */
+	@Override
+	public void startNewGame()
+	{
+		this.setupCheckerboard();
+		this.fireGameSetUp("Self-Play");
+
+		// The user always moves first from the starting position
+		boolean userToMove = true;
+		for (int i = 0; i < this.openingPlies; i++)
+		{
+			int moveCount = MoveGenerator.generateMoves(
+					this.position,
+					userToMove,
+					this.moves,
+					0);
+			if (moveCount == 0)
+				break;
+
+			this.position.applyMove(
+					this.moves[this.openingRandom.nextInt(moveCount)],
+					userToMove);
+			userToMove = !userToMove;
+		}
+
+		this.setHasGameStarted(true);
+		this.setUsersTurn(userToMove);
+		this.fireBoardChanged();
+
+		while (this.hasGameStarted)
+		{
+			if (this.adjudicate())
+				break;
+
+			if (this.isUsersTurn)
+			{
+				this.playUserMove();
+			} else
+			{
+				this.playComputerMove(this.opponentSearch.findBestMove(
+						this.position,
+						false,
+						this.timeBudget,
+						this.maxDepth));
+			}
+			this.plies++;
+		}
+	}
+
+	/**
+	 * Searches for the user's move and plays it hop by hop.
+	 */
+	private void playUserMove()
+	{
+		long move = this.userSearch.findBestMove(
+				this.position,
+				true,
+				this.timeBudget,
+				this.maxDepth);
+		if (move == Move.NONE)
+		{
+			this.endGame(false);
+			return;
+		}
+
+		int from = Move.getFrom(move);
+		int pathLength = MoveGenerator.getPath(this.position, move, true, this.path);
+
+		int square = from;
+		for (int i = 0; i < pathLength; i++)
+		{
+			CheckerPiece piece = this.getCheckerPieceAt(
+					Position.getSquareX(square),
+					Position.getSquareY(square));
+
+			if (this.handleCheckerMovement(
+					piece,
+					Position.getSquareX(this.path[i]),
+					Position.getSquareY(this.path[i])) == false)
+			{
+				throw new IllegalStateException("The game refused hop "
+						+ (i + 1) + " of " + Move.toString(move));
+			}
+
+			square = this.path[i];
+		}
+
+		if (this.hasGameStarted && this.isUsersTurn)
+		{
+			throw new IllegalStateException("The turn did not end after "
+					+ Move.toString(move));
+		}
+	}
+
+	/**
+	 * Ends the game early if its result is already known or it has gone on
+	 * too long.
+	 *
+	 * @return Whether the game ended
+	 */
+	private boolean adjudicate()
+	{
+		if (this.adjudicator != null)
+		{
+			int value = this.adjudicator.probe(this.position, this.isUsersTurn);
+			if (value == 0)
+			{
+				this.drawGame();
+				return true;
+			} else if (value != Tablebase.NOT_FOUND)
+			{
+				this.endGame((value > 0) == this.isUsersTurn);
+				return true;
+			}
+		}
+
+		if (this.plies >= MAX_PLIES)
+		{
+			this.drawGame();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * The opponent's moves are played by {@link #startNewGame()} itself.
+	 */
+	@Override
+	protected void startComputerTurn()
+	{ }
+
+	/**
+	 * Both searches outlive the game, so they are only stopped.
+	 */
+	@Override
+	protected void releaseSearch()
+	{
+		this.userSearch.stop();
+		this.opponentSearch.stop();
+	}
+
+	@Override
+	public void endGame(boolean didUserWin)
+	{
+		if (this.hasGameStarted)
+		{
+			this.result = (didUserWin) ? (WON) : (LOST);
+		}
+
+		super.endGame(didUserWin);
+	}
+
+	@Override
+	public void drawGame()
+	{
+		if (this.hasGameStarted)
+		{
+			this.result = DRAWN;
+		}
+
+		super.drawGame();
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters and Setters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return {@link #WON}, {@link #DRAWN} or {@link #LOST} from the user's
+	 *         point of view
+	 */
+	public int getResult()
+	{
+		return result;
+	}
+
+	/**
+	 * @return The number of plies played after the opening
+	 */
+	public int getPlies()
+	{
+		return plies;
+	}
+
+	/**
+	 * @param adjudicator A tablebase which ends the game as soon as its
+	 *            result is known, or null to always play to the end
+	 */
+	public void setAdjudicator(Tablebase adjudicator)
+	{
+		this.adjudicator = adjudicator;
+	}
+
+}
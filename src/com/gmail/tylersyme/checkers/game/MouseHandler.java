@@ -155,7 +155,8 @@ public class MouseHandler implements MouseListener, MouseMotionListener
 		this.squareClicked = null;
 		this.pieceClicked = null;
 
-		this.sender.repaint();
+		// The move itself has the squares it touched painted
+		this.sender.repaintDraggedPiece();
 	}
 
 	@Override
@@ -166,7 +167,7 @@ public class MouseHandler implements MouseListener, MouseMotionListener
 			this.isDraggingPiece = true;
 			this.mouseDragLocation = e.getPoint();
 
-			this.sender.repaint();
+			this.sender.repaintDraggedPiece();
 		}
 	}
 
@@ -0,0 +1,287 @@
+package com.gmail.tylersyme.checkers.game;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+import com.gmail.tylersyme.checkers.engine.Position;
+
+/**
+ * <p>
+ * Slides the opponent's pieces across a {@link Checkerboard} instead of
+ * letting them jump straight to their new squares. Each hop of a move is
+ * played in turn, and a piece which is jumped fades away as the opponent's
+ * piece passes over it.
+ * </p>
+ * <p>
+ * A hop has already been played on the board by the time it is animated, so
+ * the animator only tells the board what to draw differently: which squares
+ * to leave empty (those the moving piece will end up on), where the moving
+ * piece is and which captured pieces are still fading. The board reads this
+ * frame state while it paints, and asks {@link #isAnimating()} whether to.
+ * </p>
+ * Every animator in the program is driven by one shared Swing
+ * {@link Timer} on the event dispatch thread, which only runs while
+ * something is moving. Each tick paints only the squares the current hop
+ * covers. The hops and the frame state live in arrays made once, so that an
+ * animation creates no garbage while it plays.
+ */
+public class MoveAnimator implements ActionListener
+{
+	public static final long DEFAULT_HOP_DURATION = 150;
+
+	// About 60 frames per second
+	public static final int FRAME_INTERVAL = 16;
+
+	// The most hops which may wait to be played, far more than any move has
+	public static final int MAX_HOPS = 32;
+
+	private static final Timer TIMER = new Timer(FRAME_INTERVAL, null);
+
+	// -------------------------------------------------------------------------
+
+	private Checkerboard checkerboard;
+	private long hopDuration; // In nanoseconds
+
+	// The hops waiting to be played, oldest first, in a ring
+	private int[] hopFrom = new int[MAX_HOPS];
+	private int[] hopTo = new int[MAX_HOPS];
+	private int[] hopCaptured = new int[MAX_HOPS];
+	private boolean[] isHopKing = new boolean[MAX_HOPS];
+	private boolean[] isCapturedKing = new boolean[MAX_HOPS];
+	private int firstHop = 0;
+	private int hopCount = 0;
+	private long hopStartTime;
+
+	// The frame state, which the checkerboard reads while it paints
+	private int hiddenSquares = 0;
+	private float pieceX;
+	private float pieceY;
+	private boolean isPieceKing;
+	private int[] fadingSquares = new int[MAX_HOPS];
+	private boolean[] isFadingKing = new boolean[MAX_HOPS];
+	private float[] fadingAlphas = new float[MAX_HOPS];
+	private int fadingCount = 0;
+
+	/**
+	 * @param checkerboard The board the pieces move across
+	 * @param hopDuration How long each hop takes, in milliseconds
+	 */
+	public MoveAnimator(Checkerboard checkerboard, long hopDuration)
+	{
+		this.checkerboard = checkerboard;
+		this.hopDuration = hopDuration * 1000000;
+	}
+
+	/**
+	 * Plays a hop of the opponent's once every hop before it has been
+	 * played. A hop which does not fit is simply not animated.
+	 *
+	 * @param from The square the piece left
+	 * @param to The square the piece landed on
+	 * @param captured The square of the piece jumped, or -1
+	 * @param kings The kings as they were before the hop
+	 */
+	public synchronized void addHop(int from, int to, int captured, int kings)
+	{
+		if (this.hopCount == MAX_HOPS)
+			return;
+
+		int hop = (this.firstHop + this.hopCount) % MAX_HOPS;
+		this.hopFrom[hop] = from;
+		this.hopTo[hop] = to;
+		this.hopCaptured[hop] = captured;
+		this.isHopKing[hop] = (kings & (1 << from)) != 0;
+		this.isCapturedKing[hop] = captured >= 0
+				&& (kings & (1 << captured)) != 0;
+		this.hopCount++;
+
+		long now = System.nanoTime();
+		if (this.hopCount == 1)
+		{
+			this.hopStartTime = now;
+			TIMER.addActionListener(this);
+			TIMER.start();
+		}
+
+		this.updateFrame(now);
+		this.repaintHop(hop);
+	}
+
+	/**
+	 * Stops every animation, as when the whole board is replaced.
+	 */
+	public synchronized void clear()
+	{
+		this.hopCount = 0;
+		this.updateFrame(System.nanoTime());
+		this.stopTimer();
+	}
+
+	/**
+	 * Moves every animation on to the current time. Called by the shared
+	 * timer.
+	 */
+	@Override
+	public synchronized void actionPerformed(ActionEvent e)
+	{
+		long now = System.nanoTime();
+
+		// Hops which have finished are painted one last time, in place
+		while (this.hopCount > 0 && now - this.hopStartTime >= this.hopDuration)
+		{
+			this.repaintHop(this.firstHop);
+			this.firstHop = (this.firstHop + 1) % MAX_HOPS;
+			this.hopCount--;
+			this.hopStartTime += this.hopDuration;
+		}
+
+		this.updateFrame(now);
+		if (this.hopCount == 0)
+		{
+			this.stopTimer();
+			return;
+		}
+
+		this.repaintHop(this.firstHop);
+	}
+
+	/**
+	 * Works out what the board should draw at the given time.
+	 */
+	private void updateFrame(long now)
+	{
+		this.hiddenSquares = 0;
+		this.fadingCount = 0;
+		if (this.hopCount == 0)
+			return;
+
+		float progress = Math.min(1, (now - this.hopStartTime) / (float) this.hopDuration);
+		float eased = progress * progress * (3 - 2 * progress);
+
+		int hop = this.firstHop;
+		int from = this.hopFrom[hop];
+		int to = this.hopTo[hop];
+		this.pieceX = Position.getSquareX(from)
+				+ (Position.getSquareX(to) - Position.getSquareX(from)) * eased;
+		this.pieceY = Position.getSquareY(from)
+				+ (Position.getSquareY(to) - Position.getSquareY(from)) * eased;
+		this.isPieceKing = this.isHopKing[hop];
+
+		for (int i = 0; i < this.hopCount; i++)
+		{
+			hop = (this.firstHop + i) % MAX_HOPS;
+			this.hiddenSquares |= 1 << this.hopTo[hop];
+
+			if (this.hopCaptured[hop] >= 0)
+			{
+				// A piece fades once the moving piece has passed over it
+				this.fadingSquares[this.fadingCount] = this.hopCaptured[hop];
+				this.isFadingKing[this.fadingCount] = this.isCapturedKing[hop];
+				this.fadingAlphas[this.fadingCount] = (i > 0 || progress < 0.5f) ? (1)
+						: (2 - 2 * progress);
+				this.fadingCount++;
+			}
+		}
+	}
+
+	/**
+	 * Paints every square the given hop crosses.
+	 */
+	private void repaintHop(int hop)
+	{
+		int from = this.hopFrom[hop];
+		int to = this.hopTo[hop];
+
+		this.checkerboard.repaintSquares(
+				Position.getSquareX(from),
+				Position.getSquareY(from),
+				Position.getSquareX(to),
+				Position.getSquareY(to));
+	}
+
+	private void stopTimer()
+	{
+		TIMER.removeActionListener(this);
+		if (TIMER.getActionListeners().length == 0)
+		{
+			TIMER.stop();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Frame State
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return Whether a piece is moving, in which case the rest of the frame
+	 *         state holds
+	 */
+	public synchronized boolean isAnimating()
+	{
+		return this.hopCount > 0;
+	}
+
+	/**
+	 * @return The squares whose pieces the board should leave out, as a set
+	 *         of {@link Position} squares
+	 */
+	public synchronized int getHiddenSquares()
+	{
+		return hiddenSquares;
+	}
+
+	/**
+	 * @return The column the moving piece is over, part way between squares
+	 */
+	public synchronized float getPieceX()
+	{
+		return pieceX;
+	}
+
+	/**
+	 * @return The row the moving piece is over, part way between squares
+	 */
+	public synchronized float getPieceY()
+	{
+		return pieceY;
+	}
+
+	public synchronized boolean isPieceKing()
+	{
+		return isPieceKing;
+	}
+
+	/**
+	 * @return The number of captured pieces still to be drawn
+	 */
+	public synchronized int getFadingCount()
+	{
+		return fadingCount;
+	}
+
+	/**
+	 * @param index
+	 * @return The square of a captured piece still to be drawn
+	 */
+	public synchronized int getFadingSquare(int index)
+	{
+		return this.fadingSquares[index];
+	}
+
+	public synchronized boolean isFadingKing(int index)
+	{
+		return this.isFadingKing[index];
+	}
+
+	/**
+	 * @param index
+	 * @return How opaque a captured piece is, from 1 down to 0
+	 */
+	public synchronized float getFadingAlpha(int index)
+	{
+		return this.fadingAlphas[index];
+	}
+
+}
@@ -0,0 +1,1037 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.Heartbeat;
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+
+/**
+ * <p>
+ * A dedicated server which hosts any number of multiplayer games on a single
+ * port. Players connect to it exactly as they would connect to another
+ * player's hosted game, and are paired up by a {@link Matchmaker}: at once
+ * with a waiting player of similar rating, or with a less similar one the
+ * longer they wait. A player who gives no rating soon after connecting (as
+ * older games never do) is rated {@link Matchmaker#DEFAULT_RATING}, so such
+ * players are paired in the order they arrive.
+ * </p>
+ * <p>
+ * Every connection is a non-blocking channel registered with one
+ * {@link Selector}, so a single thread serves every match and an idle player
+ * costs nothing more than their buffers.
+ * </p>
+ * <p>
+ * The server plays the part of the host in each match: it decides at random
+ * who moves first and starts both games. After that it passes each packet on
+ * to the opponent once the match's {@link Referee} has checked it. A refused
+ * packet goes no further, and its sender is sent the true board instead.
+ * </p>
+ * <p>
+ * A newer game is given a session token when its match starts. If its
+ * connection is lost, its place in the match is held for
+ * {@link PacketConnection#RESUME_TIMEOUT} milliseconds, and a new connection
+ * which gives the token takes it back: the server sends on whatever the game
+ * missed, and tells it how many of its own packets arrived. A player who does
+ * not come back in time loses the game, as they always did before.
+ * </p>
+ * <p>
+ * A client which asks to watch a match rather than play is sent the board
+ * and then every packet of the game from the first player's point of view
+ * (see {@link Match#broadcast(String)}). Spectators never hold up the match
+ * however slowly they read.
+ * </p>
+ * Newer games are pinged every {@link #getHeartbeatInterval()} milliseconds,
+ * and answer pings of their own. The round trips measured are reported with
+ * the server's status, and a game which says nothing at all for
+ * {@link Heartbeat#TIMEOUT_INTERVALS} intervals is disconnected, so its place
+ * in the match is held for it to resume just as if the connection had
+ * broken.
+ */
+public class GameServer implements Runnable
+{
+	// How often the number of players and matches is printed
+	private static final long STATUS_INTERVAL = 60000;
+
+	// The most buffers a single gathering write takes
+	private static final int MAX_GATHER = 64;
+
+	private int port;
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private volatile boolean isRunning = false;
+
+	private Matchmaker<Session> matchmaker;
+
+	// Players who have not yet given a rating, in the order they connected
+	private ArrayDeque<Session> unratedSessions = new ArrayDeque<Session>();
+	private Random random = new Random();
+
+	// Matches being played, by id
+	private Map<Integer, Match> matches = new HashMap<Integer, Match>();
+
+	// Spectators who asked to watch while no match was being played
+	private List<Session> waitingSpectators = new ArrayList<Session>();
+
+	// Players who may resume their match by their token, and those whose
+	// connection has been lost, in the order they were lost
+	private Map<Long, Session> resumableSessions = new HashMap<Long, Session>();
+	private ArrayDeque<Session> lostSessions = new ArrayDeque<Session>();
+	private SecureRandom tokenRandom = new SecureRandom();
+
+	// Shared by every session, as only the selector thread writes
+	private ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER];
+
+	// Sessions with packets queued during this round of events
+	private List<Session> pendingFlushes = new ArrayList<Session>();
+
+	private long heartbeatInterval = Heartbeat.getDefaultInterval();
+	private List<Session> deadSessions = new ArrayList<Session>();
+	private double averageRoundTrip = 0;
+	private double maxRoundTrip = 0;
+	private double averageJitter = 0;
+	private long deadPeerCount = 0;
+
+	private int nextSessionId = 1;
+	private int nextMatchId = 1;
+	private int sessionCount = 0;
+	private int spectatorCount = 0;
+	private long resyncCount = 0;
+	private long resumeCount = 0;
+	private long lastStatusTime;
+	private long lastPairingTime;
+
+	public GameServer()
+	{
+		this(ConnectionHandler.PORT);
+	}
+
+	public GameServer(int port)
+	{
+		this.port = port;
+		this.matchmaker = new Matchmaker<Session>(new Matchmaker.Listener<Session>() {
+
+			@Override
+			public void matched(
+					Matchmaker.Ticket<Session> first,
+					Matchmaker.Ticket<Session> second)
+			{
+				startMatch(first.getPlayer(), second.getPlayer());
+			}
+		});
+	}
+
+	/**
+	 * Opens the server's port. Players may connect as soon as this returns.
+	 * 
+	 * @throws IOException If the port could not be opened
+	 */
+	public void open() throws IOException
+	{
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.socket().setReuseAddress(true);
+		this.serverChannel.bind(new InetSocketAddress(this.port), 1024);
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+		this.isRunning = true;
+	}
+
+	/**
+	 * Serves players until {@link #stop()} is called. The server must have
+	 * been {@link #open()}ed first.
+	 */
+	@Override
+	public void run()
+	{
+		this.lastStatusTime = System.currentTimeMillis();
+		this.lastPairingTime = this.lastStatusTime;
+
+		try
+		{
+			while (this.isRunning)
+			{
+				this.selector.select(Matchmaker.PAIRING_INTERVAL);
+
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (key.isValid() == false)
+						continue;
+
+					if (key.isAcceptable())
+					{
+						this.accept();
+					} else
+					{
+						this.handle(key);
+					}
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - this.lastPairingTime >= Matchmaker.PAIRING_INTERVAL)
+				{
+					this.lastPairingTime = now;
+					this.queueUnratedSessions();
+					this.matchmaker.pair();
+					this.expireLostSessions();
+					this.beat();
+				}
+
+				if (now - this.lastStatusTime >= STATUS_INTERVAL)
+				{
+					this.lastStatusTime = now;
+					System.out.println(String.format(
+							"%,d players, %,d matches, %,d waiting, "
+									+ "%.0f ms average time to match, "
+									+ "%,d spectators, %,d spectator resyncs, "
+									+ "%,d matches resumed, "
+									+ "%.1f ms average round trip (%.1f ms max, "
+									+ "%.1f ms jitter), %,d dead peers dropped",
+							this.sessionCount - this.spectatorCount,
+							this.matches.size(),
+							this.matchmaker.getQueueDepth(),
+							this.matchmaker.getAverageTimeToMatch(),
+							this.spectatorCount,
+							this.resyncCount,
+							this.resumeCount,
+							this.averageRoundTrip,
+							this.maxRoundTrip,
+							this.averageJitter,
+							this.deadPeerCount));
+				}
+
+				this.flushPending();
+			}
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		} finally
+		{
+			this.closeAll();
+		}
+	}
+
+	/**
+	 * Stops the server, disconnecting every player.
+	 */
+	public void stop()
+	{
+		this.isRunning = false;
+		if (this.selector != null)
+		{
+			this.selector.wakeup();
+		}
+	}
+
+	private void accept() throws IOException
+	{
+		SocketChannel channel;
+		while ((channel = this.serverChannel.accept()) != null)
+		{
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+
+			SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+			Session session = new Session(this, channel, key, this.nextSessionId++);
+			key.attach(session);
+			this.sessionCount++;
+
+			session.flush();
+			this.unratedSessions.add(session);
+		}
+	}
+
+	private void handle(SelectionKey key)
+	{
+		Session session = (Session) key.attachment();
+		try
+		{
+			if (key.isWritable())
+			{
+				session.flush();
+			}
+			if (key.isValid() && key.isReadable())
+			{
+				session.read();
+			}
+		} catch (IOException e)
+		{
+			// A broken connection only ends that player's match
+			session.close();
+		}
+	}
+
+	/**
+	 * Queues every player who has had {@link Matchmaker#RATING_WAIT}
+	 * milliseconds to give a rating and has not, with the default rating.
+	 * Players are checked in the order they connected, so one whose wait was
+	 * restarted may hold up those behind them for a moment.
+	 */
+	private void queueUnratedSessions()
+	{
+		long now = System.nanoTime();
+		Session session;
+		while ((session = this.unratedSessions.peek()) != null
+				&& now - session.getRatingWaitStart() >= Matchmaker.RATING_WAIT * 1000000)
+		{
+			this.unratedSessions.poll();
+			if (session.isClosed() == false && session.isSpectator() == false
+					&& session.getMatch() == null && session.getTicket() == null)
+			{
+				session.setTicket(this.matchmaker.enqueue(
+						session,
+						Matchmaker.DEFAULT_RATING,
+						session.getConnectTime()));
+			}
+		}
+	}
+
+	/**
+	 * Starts a match between two players the matchmaker has paired.
+	 */
+	private void startMatch(Session session, Session opponent)
+	{
+		int id = this.nextMatchId++;
+		Match match = (this.random.nextBoolean()) ? (new Match(id, session, opponent))
+				: (new Match(id, opponent, session));
+		session.setMatch(match);
+		opponent.setMatch(match);
+		this.matches.put(id, match);
+
+		// Only newer games know what to do with a token
+		if (session.hasOfferedVersion())
+		{
+			this.giveToken(match, session);
+		}
+		if (opponent.hasOfferedVersion())
+		{
+			this.giveToken(match, opponent);
+		}
+
+		// The same packets a host would send
+		match.send(match.getFirst(), "1:true");
+		match.send(match.getFirst(), "0:");
+		match.send(match.getSecond(), "1:false");
+		match.send(match.getSecond(), "0:");
+		this.sendToken(match.getFirst());
+		this.sendToken(match.getSecond());
+
+		for (Session spectator : this.waitingSpectators)
+		{
+			match.addSpectator(spectator);
+		}
+		this.waitingSpectators.clear();
+	}
+
+	private void giveToken(Match match, Session session)
+	{
+		long token;
+		do
+		{
+			token = this.tokenRandom.nextLong();
+		} while (token == 0 || this.resumableSessions.containsKey(token));
+
+		session.setToken(token);
+		this.resumableSessions.put(token, session);
+		match.keepLog(session);
+	}
+
+	private void sendToken(Session session)
+	{
+		if (session.getToken() != 0)
+		{
+			session.send(Packet.sessionToken(session.getToken())
+					.toLegacyString());
+		}
+	}
+
+	/**
+	 * Passes a player's packet on to their opponent.
+	 * 
+	 * @param session The player who sent the packet
+	 * @param packet
+	 */
+	void packetReceived(Session session, String packet)
+	{
+		// The server only speaks legacy packets, which it says straight away
+		// so that a newer game need not wait out its negotiation
+		if (packet.startsWith(Packet.VERSION_OFFER + ":"))
+		{
+			// Only newer games offer a version, and only they can give a
+			// rating, which they do once they have heard back
+			session.restartRatingWait();
+			session.setOfferedVersion(true);
+
+			session.send(Packet.versionOffer(PacketConnection.LEGACY_VERSION)
+					.toLegacyString());
+			return;
+		}
+
+		// Neither side's pings are part of the match
+		if (packet.startsWith(Packet.PING + ":"))
+		{
+			session.send(Packet.PONG + packet.substring(packet.indexOf(':')));
+			return;
+		}
+		if (packet.startsWith(Packet.PONG + ":"))
+		{
+			try
+			{
+				session.getHeartbeat().pongReceived(
+						Long.parseLong(packet.substring(packet.indexOf(':') + 1)),
+						System.nanoTime());
+			} catch (NumberFormatException e)
+			{
+				// Measures nothing
+			}
+			return;
+		}
+
+		// Spectators only ever listen
+		if (session.isSpectator())
+			return;
+
+		// A rating which arrives once the player is matched is too late to
+		// matter, as is a request to watch
+		Match match = session.getMatch();
+		if (packet.startsWith(Packet.WATCH_REQUEST + ":"))
+		{
+			if (match == null)
+			{
+				this.watch(session, packet);
+			}
+			return;
+		}
+		if (packet.startsWith(Packet.MATCH_REQUEST + ":"))
+		{
+			if (match == null)
+			{
+				this.requestMatch(session, packet);
+			}
+			return;
+		}
+		if (packet.startsWith(Packet.RESUME + ":"))
+		{
+			this.resume(session, packet);
+			return;
+		}
+
+		// Every other packet counts towards resuming, just as the game counts
+		// every packet it sends
+		session.setReceivedCount(session.getReceivedCount() + 1);
+		if (match == null || match.isOver())
+			return;
+
+		if (this.check(match, session, packet) == false)
+		{
+			this.refuse(match, session);
+			return;
+		}
+
+		match.send(match.getOpponent(session), packet);
+		this.broadcast(match, session, packet);
+
+		// The game ends when either player says so or a draw is accepted
+		if (packet.startsWith("3:") || packet.equals("5:true"))
+		{
+			this.endMatch(match);
+		}
+	}
+
+	/**
+	 * Queues a player with the rating they gave, or moves a player already
+	 * waiting to the bucket of their new rating.
+	 */
+	private void requestMatch(Session session, String packet)
+	{
+		int rating;
+		try
+		{
+			rating = Integer.parseInt(packet.substring(packet.indexOf(':') + 1));
+		} catch (NumberFormatException e)
+		{
+			return;
+		}
+
+		if (session.getTicket() == null)
+		{
+			session.setTicket(this.matchmaker.enqueue(
+					session,
+					rating,
+					session.getConnectTime()));
+		} else if (this.matchmaker.cancel(session.getTicket()))
+		{
+			session.setTicket(this.matchmaker.requeue(session.getTicket(), rating));
+		}
+	}
+
+	/**
+	 * Gives a lost player's place in their match to a new connection, which
+	 * is told how many packets arrived over the old one and is sent every
+	 * packet the player missed. A match which has just ended may still be
+	 * resumed, so that the player hears how it ended.
+	 */
+	private void resume(Session session, String packet)
+	{
+		long token;
+		int receivedCount;
+		try
+		{
+			String[] fields = packet.split(":");
+			token = Long.parseLong(fields[1]);
+			receivedCount = Integer.parseInt(fields[2]);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+		{
+			return;
+		}
+
+		Session lost = this.resumableSessions.get(token);
+		if (lost == null || lost == session || session.getMatch() != null
+				|| session.isSpectator()
+				|| (session.getTicket() != null && this.matchmaker
+						.cancel(session.getTicket()) == false))
+		{
+			session.send(Packet.resumed(-1).toLegacyString());
+			return;
+		}
+		session.setTicket(null);
+
+		// The old connection may not yet have been found to be broken
+		lost.close();
+
+		if (lost.getMatch().resume(lost, session, receivedCount) == false)
+		{
+			session.send(Packet.resumed(-1).toLegacyString());
+			return;
+		}
+
+		session.setToken(token);
+		session.setReceivedCount(lost.getReceivedCount());
+		this.resumableSessions.put(token, session);
+		this.resumeCount++;
+	}
+
+	/**
+	 * Ends the match of every player whose connection was lost
+	 * {@link PacketConnection#RESUME_TIMEOUT} milliseconds ago and who has not
+	 * come back, in their opponent's favour.
+	 */
+	private void expireLostSessions()
+	{
+		long now = System.nanoTime();
+		Session session;
+		while ((session = this.lostSessions.peek()) != null
+				&& now - session.getCloseTime() >= PacketConnection.RESUME_TIMEOUT * 1000000L)
+		{
+			this.lostSessions.poll();
+			if (this.resumableSessions.get(session.getToken()) == session)
+			{
+				this.resumableSessions.remove(session.getToken());
+			}
+
+			Match match = session.getMatch();
+			if (match.isOver() == false && match.isPlaying(session))
+			{
+				this.forfeit(match, session);
+			}
+		}
+	}
+
+	/**
+	 * Pings every newer game which is due a ping, and disconnects those which
+	 * have stopped answering. The round trips of every game are summed up for
+	 * the status line on the way.
+	 */
+	private void beat()
+	{
+		long now = System.nanoTime();
+		double totalRoundTrip = 0;
+		double totalJitter = 0;
+		double maxRoundTrip = 0;
+		int measured = 0;
+
+		for (SelectionKey key : this.selector.keys())
+		{
+			if ((key.attachment() instanceof Session) == false)
+				continue;
+
+			// Older games would not know what to make of a ping
+			Session session = (Session) key.attachment();
+			if (session.isClosed() || session.hasOfferedVersion() == false)
+				continue;
+
+			Heartbeat heartbeat = session.getHeartbeat();
+			if (heartbeat.isDead(now))
+			{
+				this.deadSessions.add(session);
+				continue;
+			}
+			if (heartbeat.isPingDue(now))
+			{
+				session.send(Packet.ping(now).toLegacyString());
+			}
+
+			if (heartbeat.getSampleCount() > 0)
+			{
+				totalRoundTrip += heartbeat.getSmoothedRoundTrip();
+				totalJitter += heartbeat.getJitter();
+				maxRoundTrip = Math.max(maxRoundTrip, heartbeat.getSmoothedRoundTrip());
+				measured++;
+			}
+		}
+
+		this.averageRoundTrip = (measured == 0) ? (0) : (totalRoundTrip / measured);
+		this.averageJitter = (measured == 0) ? (0) : (totalJitter / measured);
+		this.maxRoundTrip = maxRoundTrip;
+
+		// Closed once the keys are no longer being walked
+		for (Session session : this.deadSessions)
+		{
+			this.deadPeerCount++;
+			session.close();
+		}
+		this.deadSessions.clear();
+	}
+
+	/**
+	 * Turns a player into a spectator of the match they asked for. A
+	 * spectator who asks for the most watched match while none is being
+	 * played watches the next one to start.
+	 */
+	private void watch(Session session, String packet)
+	{
+		int matchId;
+		try
+		{
+			matchId = Integer.parseInt(packet.substring(packet.indexOf(':') + 1));
+		} catch (NumberFormatException e)
+		{
+			return;
+		}
+
+		if (session.getTicket() != null
+				&& this.matchmaker.cancel(session.getTicket()) == false)
+			return;
+		session.setTicket(null);
+		session.setSpectator(true);
+		this.spectatorCount++;
+
+		Match match = null;
+		if (matchId < 0)
+		{
+			for (Match live : this.matches.values())
+			{
+				if (match == null
+						|| live.getSpectatorCount() > match.getSpectatorCount())
+				{
+					match = live;
+				}
+			}
+
+			if (match == null)
+			{
+				this.waitingSpectators.add(session);
+				return;
+			}
+		} else
+		{
+			match = this.matches.get(matchId);
+
+			// The match is already over, or never was
+			if (match == null)
+			{
+				session.closeWhenFlushed();
+				return;
+			}
+		}
+
+		match.addSpectator(session);
+	}
+
+	/**
+	 * Sends the spectators of a match a packet one of its players sent,
+	 * turned around to the first player's point of view.
+	 * 
+	 * @param match
+	 * @param session The player who sent the packet
+	 * @param packet A packet the referee has allowed
+	 */
+	private void broadcast(Match match, Session session, String packet)
+	{
+		if (match.getSpectatorCount() == 0)
+			return;
+
+		boolean isFirst = match.isFirst(session);
+		switch (packet.charAt(0) - '0')
+		{
+			case (Packet.CHECKER_MOVE):
+				if (isFirst == false)
+				{
+					// The second player sees the board turned around
+					packet = "2:" + (7 - digit(packet, 2)) + ":"
+							+ (7 - digit(packet, 4)) + ":"
+							+ (7 - digit(packet, 6)) + ":"
+							+ (7 - digit(packet, 8));
+				}
+				break;
+			case (Packet.PLAYER_TURN):
+				// The turn passes to whoever did not send the packet
+				packet = "1:" + (isFirst == false);
+				break;
+			case (Packet.END_GAME):
+				packet = "3:" + (isFirst != isTrue(packet));
+				break;
+			case (Packet.DRAW_RESPONSE):
+				if (isTrue(packet) == false)
+					return;
+				break;
+			case (Packet.CHAT_MESSAGE):
+				break;
+			default:
+				// Offers of a draw mean nothing to a spectator
+				return;
+		}
+
+		this.resyncCount += match.broadcast(packet);
+	}
+
+	/**
+	 * Checks a legacy packet with the match's referee, reading its fields
+	 * straight from the text.
+	 */
+	private boolean check(Match match, Session session, String packet)
+	{
+		Referee referee = match.getReferee();
+		boolean isFirst = match.isFirst(session);
+
+		if (packet.length() < 2 || packet.charAt(1) != ':')
+			return false;
+
+		switch (packet.charAt(0) - '0')
+		{
+			case (Packet.CHECKER_MOVE):
+				// "2:oldX:oldY:newX:newY", with every location a single digit
+				if (packet.length() != 9)
+					return false;
+
+				return referee.checkMove(
+						isFirst,
+						digit(packet, 2),
+						digit(packet, 4),
+						digit(packet, 6),
+						digit(packet, 8));
+			case (Packet.PLAYER_TURN):
+				return referee.checkTurnEnd(isFirst, isTrue(packet));
+			case (Packet.END_GAME):
+				return referee.checkEndGame(isFirst, isTrue(packet));
+			case (Packet.REQUEST_DRAW):
+				return referee.checkDrawRequest(isFirst);
+			case (Packet.DRAW_RESPONSE):
+				return referee.checkDrawResponse(isFirst, isTrue(packet));
+			case (Packet.CHAT_MESSAGE):
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Sends the true board to a player whose packet was refused. A player
+	 * whose move was already complete is no longer able to hand over the
+	 * turn, so the server does it for them. An older game has no use for a
+	 * board, and cannot be put back in step, so it loses the match instead.
+	 */
+	private void refuse(Match match, Session session)
+	{
+		Referee referee = match.getReferee();
+		boolean isFirst = match.isFirst(session);
+
+		if (referee.isLegacy(isFirst))
+		{
+			match.send(session, Packet.endGame(false).toLegacyString());
+			this.forfeit(match, session);
+			return;
+		}
+
+		match.send(session, referee.getBoardSync(isFirst).toLegacyString());
+		if (referee.checkTurnEnd(isFirst, true))
+		{
+			String turnEnd = Packet.playerTurn(true).toLegacyString();
+			match.send(match.getOpponent(session), turnEnd);
+			this.broadcast(match, session, turnEnd);
+		}
+	}
+
+	/**
+	 * @return The digit at the given index, or -1 if there is none
+	 */
+	private static int digit(String text, int index)
+	{
+		int digit = text.charAt(index) - '0';
+
+		return (digit >= 0 && digit <= 9) ? (digit) : (-1);
+	}
+
+	private static boolean isTrue(String packet)
+	{
+		return packet.length() == 6 && packet.endsWith("true");
+	}
+
+	/**
+	 * Called once a player disconnects. An opponent still playing wins the
+	 * game, unless the player may yet resume it.
+	 */
+	void sessionClosed(Session session)
+	{
+		this.sessionCount--;
+
+		// A spectator is dropped from their match when it next sends them
+		// anything
+		if (session.isSpectator())
+		{
+			this.spectatorCount--;
+			if (session.getMatch() == null)
+			{
+				this.waitingSpectators.remove(session);
+			}
+			return;
+		}
+
+		Match match = session.getMatch();
+		if (match == null)
+		{
+			if (session.getTicket() != null)
+			{
+				this.matchmaker.cancel(session.getTicket());
+			}
+			return;
+		}
+
+		// Even a match which is over is held, in case the player lost their
+		// connection before hearing how it ended
+		if (session.getToken() != 0)
+		{
+			this.lostSessions.add(session);
+			return;
+		}
+
+		if (match.isOver() == false && match.isPlaying(session))
+		{
+			this.forfeit(match, session);
+		}
+	}
+
+	/**
+	 * Ends a match in the opponent's favour after a player leaves it.
+	 */
+	private void forfeit(Match match, Session session)
+	{
+		Session opponent = match.getOpponent(session);
+		match.send(opponent, Packet.endGame(true).toLegacyString());
+		this.broadcast(match, opponent, Packet.endGame(false).toLegacyString());
+		this.endMatch(match);
+	}
+
+	private void endMatch(Match match)
+	{
+		match.setOver(true);
+		this.matches.remove(match.getId());
+		match.dismissSpectators();
+	}
+
+	/**
+	 * Has a session's queued packets written once this round of events is
+	 * over.
+	 */
+	void flushLater(Session session)
+	{
+		this.pendingFlushes.add(session);
+	}
+
+	/**
+	 * Writes out every session's packets queued during this round. A session
+	 * may close as it is flushed, and queue packets for others in turn.
+	 */
+	private void flushPending()
+	{
+		for (int i = 0; i < this.pendingFlushes.size(); i++)
+		{
+			Session session = this.pendingFlushes.get(i);
+			if (session.isClosed())
+				continue;
+
+			try
+			{
+				session.flush();
+			} catch (IOException e)
+			{
+				session.close();
+			}
+		}
+		this.pendingFlushes.clear();
+	}
+
+	/**
+	 * @return An array for gathering writes, which only the selector thread
+	 *         may use
+	 */
+	ByteBuffer[] getGatherBuffers()
+	{
+		return this.gatherBuffers;
+	}
+
+	private void closeAll()
+	{
+		if (this.selector == null)
+			return;
+
+		for (SelectionKey key : this.selector.keys())
+		{
+			if (key.attachment() instanceof Session)
+			{
+				((Session) key.attachment()).close();
+			}
+		}
+
+		try
+		{
+			this.serverChannel.close();
+			this.selector.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public int getPort()
+	{
+		return port;
+	}
+
+	/**
+	 * @return The number of players and spectators connected
+	 */
+	public int getSessionCount()
+	{
+		return sessionCount;
+	}
+
+	/**
+	 * @return The number of spectators connected
+	 */
+	public int getSpectatorCount()
+	{
+		return spectatorCount;
+	}
+
+	/**
+	 * @return How many times a spectator has fallen too far behind and been
+	 *         sent the board afresh
+	 */
+	public long getResyncCount()
+	{
+		return resyncCount;
+	}
+
+	/**
+	 * @return How many times a player has taken their place in a match back
+	 *         after losing their connection
+	 */
+	public long getResumeCount()
+	{
+		return resumeCount;
+	}
+
+	/**
+	 * @return How often newer games are pinged, in milliseconds
+	 */
+	public long getHeartbeatInterval()
+	{
+		return heartbeatInterval;
+	}
+
+	/**
+	 * Must be set before the server is opened.
+	 * 
+	 * @param heartbeatInterval How often to ping newer games, in milliseconds
+	 */
+	public void setHeartbeatInterval(long heartbeatInterval)
+	{
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	/**
+	 * @return The smoothed round trip to the average newer game, in
+	 *         milliseconds
+	 */
+	public double getAverageRoundTrip()
+	{
+		return averageRoundTrip;
+	}
+
+	/**
+	 * @return The smoothed round trip to the furthest newer game, in
+	 *         milliseconds
+	 */
+	public double getMaxRoundTrip()
+	{
+		return maxRoundTrip;
+	}
+
+	/**
+	 * @return The jitter of the average newer game, in milliseconds
+	 */
+	public double getAverageJitter()
+	{
+		return averageJitter;
+	}
+
+	/**
+	 * @return How many games have been disconnected for not answering
+	 */
+	public long getDeadPeerCount()
+	{
+		return deadPeerCount;
+	}
+
+	/**
+	 * @return The queue of players waiting for a match
+	 */
+	public Matchmaker<Session> getMatchmaker()
+	{
+		return matchmaker;
+	}
+
+	/**
+	 * @return The number of matches being played
+	 */
+	public int getMatchCount()
+	{
+		return this.matches.size();
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+import com.gmail.tylersyme.checkers.connection.Packet;
+
+/**
+ * <p>
+ * Reads and writes packets in the form the game's clients send them: each
+ * packet is a String written to an ObjectOutputStream. Because the server
+ * only ever needs Strings, it speaks just enough of the serialization
+ * protocol to handle them without any streams or blocking.
+ * </p>
+ * A stream begins with a four byte header, and then every String is the byte
+ * {@link #TC_STRING} followed by its length (two bytes) and its characters in
+ * modified UTF-8. Strings longer than 65535 bytes use {@link #TC_LONGSTRING}
+ * and an eight byte length instead. No packet a client sends is anywhere
+ * near that long, so when reading, such Strings (and any String longer than
+ * {@link #MAX_PACKET_LENGTH}) are refused rather than waited for.
+ */
+public final class LegacyCodec
+{
+	public static final int STREAM_MAGIC = 0xACED;
+	public static final int STREAM_VERSION = 5;
+	public static final int HEADER_LENGTH = 4;
+
+	public static final byte TC_RESET = 0x79;
+	public static final byte TC_STRING = 0x74;
+	public static final byte TC_LONGSTRING = 0x7C;
+
+	// The longest String a client may send: a chat message of the longest
+	// length, with room to spare for its packet ID and multi-byte characters
+	public static final int MAX_PACKET_LENGTH = 4 * Packet.MAX_MESSAGE_LENGTH;
+
+	// The most bytes the longest String takes, type code and length included
+	public static final int MAX_ENCODED_LENGTH = MAX_PACKET_LENGTH + 3;
+
+	private LegacyCodec()
+	{ }
+
+	/**
+	 * Writes the header which must begin every stream.
+	 */
+	public static void writeHeader(ByteBuffer output)
+	{
+		output.putShort((short) STREAM_MAGIC);
+		output.putShort((short) STREAM_VERSION);
+	}
+
+	/**
+	 * Reads the header which must begin every stream.
+	 * 
+	 * @return Whether the whole header was available
+	 * @throws IOException If this is not the start of an object stream
+	 */
+	public static boolean readHeader(ByteBuffer input) throws IOException
+	{
+		if (input.remaining() < HEADER_LENGTH)
+			return false;
+
+		int magic = input.getShort() & 0xFFFF;
+		int version = input.getShort() & 0xFFFF;
+		if (magic != STREAM_MAGIC || version != STREAM_VERSION)
+		{
+			throw new IOException("Not an object stream: "
+					+ Integer.toHexString(magic) + " " + version);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads the next String from the input. Nothing is consumed unless the
+	 * whole String is available.
+	 * 
+	 * @param input A buffer ready to be read from
+	 * @return The String<br>
+	 *         Will return <b>null</b> if the String has not fully arrived
+	 * @throws IOException If the stream holds anything other than Strings, or
+	 *             a String longer than {@link #MAX_PACKET_LENGTH}
+	 */
+	public static String decode(ByteBuffer input) throws IOException
+	{
+		while (input.hasRemaining()
+				&& input.get(input.position()) == TC_RESET)
+		{
+			input.get();
+		}
+
+		if (input.remaining() < 3)
+			return null;
+
+		int start = input.position();
+		byte type = input.get(start);
+		if (type != TC_STRING)
+		{
+			throw new IOException("Unexpected type code 0x"
+					+ Integer.toHexString(type & 0xFF));
+		}
+
+		int length = input.getShort(start + 1) & 0xFFFF;
+		int dataStart = start + 3;
+		if (length > MAX_PACKET_LENGTH)
+			throw new IOException("Packet too long: " + length + " bytes");
+		if (input.limit() - dataStart < length)
+			return null;
+
+		String packet = decodeUTF(input, dataStart, length);
+		input.position(dataStart + length);
+
+		return packet;
+	}
+
+	/**
+	 * @return The number of bytes {@link #encode(String, ByteBuffer)} will
+	 *         write for the given String
+	 */
+	public static int getEncodedLength(String packet)
+	{
+		int length = getUTFLength(packet);
+
+		return length + ((length > 0xFFFF) ? (9) : (3));
+	}
+
+	/**
+	 * Writes a String exactly as ObjectOutputStream would.
+	 * 
+	 * @param packet
+	 * @param output Must have room for {@link #getEncodedLength(String)}
+	 *            bytes
+	 */
+	public static void encode(String packet, ByteBuffer output)
+	{
+		int length = getUTFLength(packet);
+		if (length > 0xFFFF)
+		{
+			output.put(TC_LONGSTRING);
+			output.putLong(length);
+		} else
+		{
+			output.put(TC_STRING);
+			output.putShort((short) length);
+		}
+
+		for (int i = 0; i < packet.length(); i++)
+		{
+			char c = packet.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F)
+			{
+				output.put((byte) c);
+			} else if (c <= 0x07FF) // Includes the null character
+			{
+				output.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+				output.put((byte) (0x80 | (c & 0x3F)));
+			} else
+			{
+				output.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+				output.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				output.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private static int getUTFLength(String packet)
+	{
+		int length = 0;
+		for (int i = 0; i < packet.length(); i++)
+		{
+			char c = packet.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F)
+			{
+				length += 1;
+			} else if (c <= 0x07FF)
+			{
+				length += 2;
+			} else
+			{
+				length += 3;
+			}
+		}
+
+		return length;
+	}
+
+	private static String decodeUTF(ByteBuffer input, int start, int length)
+			throws UTFDataFormatException
+	{
+		char[] chars = new char[length];
+		int count = 0;
+		int end = start + length;
+
+		for (int i = start; i < end; count++)
+		{
+			int a = input.get(i) & 0xFF;
+			if (a < 0x80)
+			{
+				chars[count] = (char) a;
+				i += 1;
+			} else if ((a & 0xE0) == 0xC0 && i + 1 < end)
+			{
+				int b = input.get(i + 1) & 0xFF;
+				chars[count] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+				i += 2;
+			} else if ((a & 0xF0) == 0xE0 && i + 2 < end)
+			{
+				int b = input.get(i + 1) & 0xFF;
+				int c = input.get(i + 2) & 0xFF;
+				chars[count] = (char) (((a & 0x0F) << 12)
+						| ((b & 0x3F) << 6) | (c & 0x3F));
+				i += 3;
+			} else
+			{
+				throw new UTFDataFormatException("Malformed string at byte "
+						+ (i - start));
+			}
+		}
+
+		return new String(chars, 0, count);
+	}
+
+}
@@ -0,0 +1,262 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.gmail.tylersyme.checkers.connection.Packet;
+
+/**
+ * <p>
+ * Two {@link Session}s playing each other. The match's {@link Referee}
+ * follows the game, so that only legal packets are passed on from one player
+ * to the other.
+ * </p>
+ * <p>
+ * Every packet sent to a player who may resume the match is kept, so that a
+ * player whose connection is lost can be sent whatever they missed.
+ * </p>
+ * Any number of spectators may watch the match. They see the board from the
+ * first player's point of view, and every packet they are sent is encoded
+ * only once however many of them there are.
+ */
+public class Match
+{
+	private int id;
+	private Session first;
+	private Session second;
+	private Referee referee;
+	private boolean isOver = false;
+
+	// The packets sent to each player, or null for a player who cannot
+	// resume the match
+	private List<String> firstLog;
+	private List<String> secondLog;
+
+	private List<Session> spectators = new ArrayList<Session>();
+
+	/**
+	 * @param id
+	 * @param first The player who moves first
+	 * @param second
+	 */
+	public Match(int id, Session first, Session second)
+	{
+		this.id = id;
+		this.first = first;
+		this.second = second;
+
+		// Games which never offered a version follow the older rules
+		this.referee = new Referee(
+				first.hasOfferedVersion() == false,
+				second.hasOfferedVersion() == false);
+	}
+
+	/**
+	 * Keeps every packet sent to the given player from now on, so that they
+	 * may resume the match.
+	 */
+	public void keepLog(Session player)
+	{
+		if (player == this.first)
+		{
+			this.firstLog = new ArrayList<String>();
+		} else
+		{
+			this.secondLog = new ArrayList<String>();
+		}
+	}
+
+	/**
+	 * Sends a packet to one of the players, keeping it if the player may
+	 * resume the match. A player whose connection is lost is sent nothing
+	 * until they resume it.
+	 * 
+	 * @param player
+	 * @param packet
+	 */
+	public void send(Session player, String packet)
+	{
+		List<String> log = (player == this.first) ? (this.firstLog)
+				: (this.secondLog);
+		if (log != null)
+		{
+			log.add(packet);
+		}
+
+		player.send(packet);
+	}
+
+	/**
+	 * Gives a player's place in the match to their new connection, and sends
+	 * it every packet the player has not yet received.
+	 * 
+	 * @param player The player's old session
+	 * @param resumed The player's new session
+	 * @param receivedCount The number of packets the player has received
+	 * @return Whether the player could resume the match
+	 */
+	public boolean resume(Session player, Session resumed, int receivedCount)
+	{
+		List<String> log = (player == this.first) ? (this.firstLog)
+				: (this.secondLog);
+		if (log == null || receivedCount < 0 || receivedCount > log.size())
+			return false;
+
+		if (player == this.first)
+		{
+			this.first = resumed;
+		} else
+		{
+			this.second = resumed;
+		}
+		resumed.setMatch(this);
+
+		resumed.send(Packet.resumed(player.getReceivedCount()).toLegacyString());
+		for (int i = receivedCount; i < log.size(); i++)
+		{
+			resumed.send(log.get(i));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Starts sending a spectator the match, beginning with the board as it
+	 * stands.
+	 */
+	public void addSpectator(Session spectator)
+	{
+		spectator.setMatch(this);
+		spectator.send(this.referee.getBoardSync(true).toLegacyString());
+
+		this.spectators.add(spectator);
+	}
+
+	/**
+	 * Sends a packet to every spectator. A spectator who has fallen too far
+	 * behind is sent the board instead of the packets they missed.
+	 * 
+	 * @param packet A legacy packet from the first player's point of view
+	 * @return The number of spectators who had to be sent the board
+	 */
+	public int broadcast(String packet)
+	{
+		if (this.spectators.isEmpty())
+			return 0;
+
+		ByteBuffer buffer = ByteBuffer.allocate(LegacyCodec.getEncodedLength(packet));
+		LegacyCodec.encode(packet, buffer);
+		buffer.flip();
+		ByteBuffer shared = buffer.asReadOnlyBuffer();
+
+		String boardSync = null;
+		int resyncCount = 0;
+		Iterator<Session> spectators = this.spectators.iterator();
+		while (spectators.hasNext())
+		{
+			Session spectator = spectators.next();
+			if (spectator.sendShared(shared) == false)
+			{
+				if (boardSync == null)
+				{
+					boardSync = this.referee.getBoardSync(true).toLegacyString();
+				}
+				spectator.resync(boardSync);
+				resyncCount++;
+			}
+
+			// Spectators who leave are only dropped here, as no packet ever
+			// needs to reach them again
+			if (spectator.isClosed())
+			{
+				spectators.remove();
+			}
+		}
+
+		return resyncCount;
+	}
+
+	/**
+	 * Disconnects every spectator once they have been sent the end of the
+	 * match.
+	 */
+	public void dismissSpectators()
+	{
+		for (Session spectator : this.spectators)
+		{
+			spectator.closeWhenFlushed();
+		}
+		this.spectators.clear();
+	}
+
+	/**
+	 * @return Whether the given player moves first
+	 */
+	public boolean isFirst(Session session)
+	{
+		return session == this.first;
+	}
+
+	/**
+	 * @return Whether the given session still plays in the match, rather
+	 *         than having been replaced by a resumed one
+	 */
+	public boolean isPlaying(Session session)
+	{
+		return session == this.first || session == this.second;
+	}
+
+	/**
+	 * @return The other player in the match
+	 */
+	public Session getOpponent(Session session)
+	{
+		return (session == this.first) ? (this.second) : (this.first);
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters and Setters
+	// -------------------------------------------------------------------------
+
+	public int getId()
+	{
+		return id;
+	}
+
+	public Session getFirst()
+	{
+		return first;
+	}
+
+	public Session getSecond()
+	{
+		return second;
+	}
+
+	public Referee getReferee()
+	{
+		return referee;
+	}
+
+	/**
+	 * @return The number of spectators watching, counting any who have left
+	 *         since the last packet
+	 */
+	public int getSpectatorCount()
+	{
+		return this.spectators.size();
+	}
+
+	public boolean isOver()
+	{
+		return isOver;
+	}
+
+	public void setOver(boolean isOver)
+	{
+		this.isOver = isOver;
+	}
+
+}
@@ -0,0 +1,403 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The queue of players waiting for a game on a dedicated server. Players are
+ * sorted into buckets of similar rating, and a player is matched straight
+ * away whenever someone from their own bucket is already waiting.
+ * </p>
+ * <p>
+ * Everyone else is matched by {@link #pair()}, which the server calls every
+ * {@link #PAIRING_INTERVAL} milliseconds. The longer a player has waited, the
+ * further from their own bucket they will look for an opponent, one more
+ * bucket either side for every {@link #WIDEN_INTERVAL} milliseconds.
+ * </p>
+ * Each bucket is a lock-free queue, so players may join and leave from any
+ * thread and the cost of joining does not grow with the number waiting.
+ * Players who leave are only marked, and are dropped once they reach the
+ * front of their bucket.
+ *
+ * @param <T> The servers' players
+ */
+public class Matchmaker<T>
+{
+	public static final int DEFAULT_RATING = 1200;
+
+	// How long a new player has to give their rating before the server
+	// queues them with the default rating, as it must for older games
+	public static final long RATING_WAIT = 500;
+
+	// Ratings from 0 to 3999, with anything outside counted as the nearest
+	public static final int BUCKET_WIDTH = 100;
+	public static final int BUCKET_COUNT = 40;
+
+	public static final long PAIRING_INTERVAL = 100;
+	public static final long WIDEN_INTERVAL = 2000;
+
+	/**
+	 * Told about every match made, from whichever thread made it.
+	 */
+	public interface Listener<T>
+	{
+		/**
+		 * @param first The player who waited longer
+		 * @param second
+		 */
+		public void matched(Ticket<T> first, Ticket<T> second);
+	}
+
+	/**
+	 * A single player's place in the queue.
+	 */
+	public static class Ticket<T>
+	{
+		private static final int WAITING = 0;
+		private static final int CLAIMED = 1; // Being matched by one thread
+		private static final int MATCHED = 2;
+		private static final int CANCELLED = 3;
+
+		private T player;
+		private int rating;
+		private long enqueueTime;
+		private AtomicInteger state = new AtomicInteger(WAITING);
+
+		private Ticket(T player, int rating, long enqueueTime)
+		{
+			this.player = player;
+			this.rating = rating;
+			this.enqueueTime = enqueueTime;
+		}
+
+		private boolean isWaiting()
+		{
+			return this.state.get() == WAITING;
+		}
+
+		private boolean claim()
+		{
+			return this.state.compareAndSet(WAITING, CLAIMED);
+		}
+
+		public T getPlayer()
+		{
+			return player;
+		}
+
+		public int getRating()
+		{
+			return rating;
+		}
+
+		/**
+		 * @return When the player joined the queue, as given by
+		 *         {@link System#nanoTime()}
+		 */
+		public long getEnqueueTime()
+		{
+			return enqueueTime;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private List<ConcurrentLinkedDeque<Ticket<T>>> buckets = new ArrayList<ConcurrentLinkedDeque<Ticket<T>>>();
+	private Listener<T> listener;
+
+	private AtomicInteger queueDepth = new AtomicInteger();
+	private AtomicLong matchCount = new AtomicLong();
+	private AtomicLong totalTimeToMatch = new AtomicLong();
+	private AtomicLong maxTimeToMatch = new AtomicLong();
+
+	public Matchmaker(Listener<T> listener)
+	{
+		this.listener = listener;
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			this.buckets.add(new ConcurrentLinkedDeque<Ticket<T>>());
+		}
+	}
+
+	/**
+	 * Adds a player to the queue, matching them straight away if a player
+	 * from the same bucket is waiting.
+	 *
+	 * @param player
+	 * @param rating
+	 * @return The player's ticket, which is needed to leave the queue
+	 */
+	public Ticket<T> enqueue(T player, int rating)
+	{
+		return this.enqueue(player, rating, System.nanoTime());
+	}
+
+	/**
+	 * Puts a player back in the queue under a new rating, or after the
+	 * opponent they were matched with turned out to have left. They keep
+	 * their place in the queue.
+	 *
+	 * @param ticket The player's old ticket, which has been cancelled or
+	 *            matched
+	 * @param rating
+	 * @return The player's new ticket
+	 */
+	public Ticket<T> requeue(Ticket<T> ticket, int rating)
+	{
+		return this.enqueue(ticket.player, rating, ticket.enqueueTime);
+	}
+
+	/**
+	 * Adds a player who has been waiting since the given time.
+	 *
+	 * @param player
+	 * @param rating
+	 * @param enqueueTime As given by {@link System#nanoTime()}
+	 * @return The player's ticket, which is needed to leave the queue
+	 */
+	public Ticket<T> enqueue(T player, int rating, long enqueueTime)
+	{
+		Ticket<T> ticket = new Ticket<T>(player, rating, enqueueTime);
+		this.queueDepth.incrementAndGet();
+
+		ConcurrentLinkedDeque<Ticket<T>> bucket = this.buckets.get(getBucket(rating));
+		Ticket<T> partner;
+		while ((partner = pollWaiting(bucket)) != null)
+		{
+			if (this.match(partner, ticket))
+				return ticket;
+		}
+
+		bucket.offerLast(ticket);
+
+		return ticket;
+	}
+
+	/**
+	 * Takes a player out of the queue.
+	 *
+	 * @param ticket
+	 * @return Whether the player was still waiting, rather than already
+	 *         matched
+	 */
+	public boolean cancel(Ticket<T> ticket)
+	{
+		while (true)
+		{
+			int state = ticket.state.get();
+			if (state == Ticket.WAITING)
+			{
+				if (ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED))
+				{
+					this.queueDepth.decrementAndGet();
+					return true;
+				}
+			} else if (state != Ticket.CLAIMED)
+			{
+				return false;
+			}
+			// A claim only lasts until the match is made or given up
+		}
+	}
+
+	/**
+	 * Matches every player who has an opponent within reach. The player at
+	 * the front of each bucket has waited the longest, so only they need to
+	 * look beyond it.
+	 */
+	public synchronized void pair()
+	{
+		long now = System.nanoTime();
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			ConcurrentLinkedDeque<Ticket<T>> bucket = this.buckets.get(i);
+			Ticket<T> ticket;
+			while ((ticket = pollWaiting(bucket)) != null)
+			{
+				Ticket<T> partner = this.findPartner(ticket, i, now);
+				if (partner == null)
+				{
+					bucket.offerFirst(ticket);
+					break;
+				}
+
+				// Either player may have left in the meantime, in which case
+				// the other goes back to the front of their bucket
+				if (this.match(ticket, partner) == false)
+				{
+					if (partner.isWaiting())
+					{
+						this.buckets.get(getBucket(partner.rating)).offerFirst(partner);
+					}
+					if (ticket.isWaiting())
+					{
+						bucket.offerFirst(ticket);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the longest waiting player within reach of the given one out of
+	 * the queue.
+	 */
+	private Ticket<T> findPartner(Ticket<T> ticket, int bucket, long now)
+	{
+		Ticket<T> partner = pollWaiting(this.buckets.get(bucket));
+		int reach = (int) Math.min(
+				BUCKET_COUNT,
+				((now - ticket.enqueueTime) / 1000000) / WIDEN_INTERVAL);
+
+		for (int distance = 1; distance <= reach && partner == null; distance++)
+		{
+			ConcurrentLinkedDeque<Ticket<T>> below = (bucket - distance >= 0) ? (this.buckets
+					.get(bucket - distance)) : (null);
+			ConcurrentLinkedDeque<Ticket<T>> above = (bucket + distance < BUCKET_COUNT) ? (this.buckets
+					.get(bucket + distance)) : (null);
+			Ticket<T> belowHead = (below != null) ? (peekWaiting(below)) : (null);
+			Ticket<T> aboveHead = (above != null) ? (peekWaiting(above)) : (null);
+
+			if (belowHead != null
+					&& (aboveHead == null || belowHead.enqueueTime <= aboveHead.enqueueTime))
+			{
+				partner = pollWaiting(below);
+			} else if (aboveHead != null)
+			{
+				partner = pollWaiting(above);
+			}
+		}
+
+		return partner;
+	}
+
+	/**
+	 * Claims both players and tells the listener, unless one of them has
+	 * left the queue.
+	 */
+	private boolean match(Ticket<T> first, Ticket<T> second)
+	{
+		if (first.claim() == false)
+			return false;
+
+		if (second.claim() == false)
+		{
+			first.state.set(Ticket.WAITING);
+			return false;
+		}
+
+		first.state.set(Ticket.MATCHED);
+		second.state.set(Ticket.MATCHED);
+
+		long now = System.nanoTime();
+		this.queueDepth.addAndGet(-2);
+		this.matchCount.incrementAndGet();
+		this.recordTimeToMatch(now - first.enqueueTime);
+		this.recordTimeToMatch(now - second.enqueueTime);
+
+		this.listener.matched(first, second);
+
+		return true;
+	}
+
+	private void recordTimeToMatch(long time)
+	{
+		this.totalTimeToMatch.addAndGet(time);
+
+		long max;
+		while (time > (max = this.maxTimeToMatch.get()))
+		{
+			if (this.maxTimeToMatch.compareAndSet(max, time))
+				break;
+		}
+	}
+
+	/**
+	 * @return The first waiting player in the bucket, who is taken out of
+	 *         it, or null if nobody is waiting
+	 */
+	private static <T> Ticket<T> pollWaiting(ConcurrentLinkedDeque<Ticket<T>> bucket)
+	{
+		Ticket<T> ticket;
+		while ((ticket = bucket.pollFirst()) != null)
+		{
+			if (ticket.isWaiting())
+				return ticket;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return The first waiting player in the bucket, or null if nobody is
+	 *         waiting
+	 */
+	private static <T> Ticket<T> peekWaiting(ConcurrentLinkedDeque<Ticket<T>> bucket)
+	{
+		Ticket<T> ticket;
+		while ((ticket = bucket.peekFirst()) != null)
+		{
+			if (ticket.isWaiting())
+				return ticket;
+
+			// Players who left are dropped once they reach the front
+			bucket.removeFirstOccurrence(ticket);
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param rating
+	 * @return The bucket of players with ratings like the given one
+	 */
+	public static int getBucket(int rating)
+	{
+		return Math.max(0, Math.min(BUCKET_COUNT - 1, rating / BUCKET_WIDTH));
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The number of players waiting for a game
+	 */
+	public int getQueueDepth()
+	{
+		return this.queueDepth.get();
+	}
+
+	/**
+	 * @return The number of matches made so far
+	 */
+	public long getMatchCount()
+	{
+		return this.matchCount.get();
+	}
+
+	/**
+	 * @return How long matched players waited on average, in milliseconds
+	 */
+	public double getAverageTimeToMatch()
+	{
+		long matched = this.matchCount.get() * 2;
+
+		return (matched == 0) ? (0) : (this.totalTimeToMatch.get() / 1e6 / matched);
+	}
+
+	/**
+	 * @return The longest any matched player waited, in milliseconds
+	 */
+	public double getMaxTimeToMatch()
+	{
+		return this.maxTimeToMatch.get() / 1e6;
+	}
+
+}
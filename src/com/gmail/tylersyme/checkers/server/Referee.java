@@ -0,0 +1,386 @@
+package com.gmail.tylersyme.checkers.server;
+
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.engine.MoveGenerator;
+import com.gmail.tylersyme.checkers.engine.Position;
+
+/**
+ * <p>
+ * Keeps the true board of a single match on the server, and checks every
+ * packet a player sends against it before it is passed on. A player whose
+ * game has been tampered with (or has fallen out of step) can then no longer
+ * make an illegal move on their opponent's board.
+ * </p>
+ * <p>
+ * The board is kept from the first player's point of view, so the first
+ * player's pieces are the position's "user" pieces. The second player's
+ * game sees the board turned around, so their squares are mirrored (square s
+ * becomes 31 - s).
+ * </p>
+ * <p>
+ * Games which never offered a protocol version follow the older rules, and
+ * are refereed by those. A piece may step or jump (a man only forwards), but
+ * no capture is forced, any piece may jump again after a jump, and the turn
+ * ends when the player says so. Such a game has no use for a board sent
+ * back to it.
+ * </p>
+ * Checks never allocate, and the whole referee is little more than a
+ * {@link Position}, so a server may hold one for every match it plays.
+ */
+public class Referee
+{
+	// Who has offered a draw which has not yet been answered
+	private static final int NO_OFFER = 0;
+	private static final int FIRST_OFFERED = 1;
+	private static final int SECOND_OFFERED = 2;
+
+	// -------------------------------------------------------------------------
+
+	private Position position = new Position();
+	private boolean isFirstToMove = true;
+
+	// Set once a move is complete, until its player hands over the turn
+	private boolean isTurnEndPending = false;
+	private int jumpingSquare = -1;
+	private int drawOffer = NO_OFFER;
+
+	// Whether each player follows the older rules
+	private boolean isFirstLegacy;
+	private boolean isSecondLegacy;
+
+	// Set once a player following the older rules has jumped this turn
+	private boolean hasJumped = false;
+
+	public Referee()
+	{
+		this(false, false);
+	}
+
+	/**
+	 * @param isFirstLegacy Whether the first player follows the older rules
+	 * @param isSecondLegacy Whether the second player does
+	 */
+	public Referee(boolean isFirstLegacy, boolean isSecondLegacy)
+	{
+		this.isFirstLegacy = isFirstLegacy;
+		this.isSecondLegacy = isSecondLegacy;
+		this.position.setupInitial();
+	}
+
+	/**
+	 * Checks a packet one of the players sent, and follows the game along if
+	 * the packet is allowed.
+	 *
+	 * @param isFirst Whether the packet came from the first player
+	 * @param packet
+	 * @return Whether the packet may be passed on to the opponent
+	 */
+	public boolean check(boolean isFirst, Packet packet)
+	{
+		switch (packet.getType())
+		{
+			case (Packet.CHECKER_MOVE):
+				return this.checkMove(
+						isFirst,
+						packet.getOldX(),
+						packet.getOldY(),
+						packet.getNewX(),
+						packet.getNewY());
+			case (Packet.PLAYER_TURN):
+				return this.checkTurnEnd(isFirst, packet.getFlag());
+			case (Packet.END_GAME):
+				return this.checkEndGame(isFirst, packet.getFlag());
+			case (Packet.REQUEST_DRAW):
+				return this.checkDrawRequest(isFirst);
+			case (Packet.DRAW_RESPONSE):
+				return this.checkDrawResponse(isFirst, packet.getFlag());
+			case (Packet.CHAT_MESSAGE):
+				return true;
+			default:
+				// Only the server starts games or sends boards
+				return false;
+		}
+	}
+
+	/**
+	 * Checks a single hop of one of the player's pieces, given from that
+	 * player's point of view.
+	 *
+	 * @param isFirst Whether the hop came from the first player
+	 * @param oldX
+	 * @param oldY
+	 * @param newX
+	 * @param newY
+	 * @return Whether the hop is legal, in which case it is played
+	 */
+	public boolean checkMove(
+			boolean isFirst,
+			int oldX,
+			int oldY,
+			int newX,
+			int newY)
+	{
+		if (isFirst != this.isFirstToMove || this.isTurnEndPending)
+			return false;
+
+		if (this.isLegacy(isFirst))
+			return this.checkLegacyMove(isFirst, oldX, oldY, newX, newY);
+
+		int from = toSquare(isFirst, oldX, oldY);
+		int to = toSquare(isFirst, newX, newY);
+		if (MoveGenerator.isLegalHop(
+				this.position,
+				isFirst,
+				from,
+				to,
+				this.jumpingSquare) == false)
+			return false;
+
+		boolean isJump = (oldY - newY == 2 || newY - oldY == 2);
+		if (isJump)
+		{
+			this.position.removePiece(toSquare(
+					isFirst,
+					(oldX + newX) / 2,
+					(oldY + newY) / 2));
+		}
+		this.position.movePiece(from, to);
+
+		// Being "kinged" always ends the move
+		int kingRow = (isFirst) ? (MoveGenerator.USER_KING_ROW)
+				: (MoveGenerator.OPPONENT_KING_ROW);
+		boolean wasKinged = false;
+		if (((kingRow >>> to) & 1) != 0 && this.position.isKing(to) == false)
+		{
+			this.position.setKing(to, true);
+			wasKinged = true;
+		}
+
+		if (isJump && wasKinged == false
+				&& MoveGenerator.canJumpFrom(this.position, to, isFirst))
+		{
+			this.jumpingSquare = to;
+		} else
+		{
+			this.jumpingSquare = -1;
+			this.isFirstToMove = !isFirst;
+			this.isTurnEndPending = true;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks a hop under the older rules. A step ends the move, and may only
+	 * be made if the player has not jumped this turn.
+	 */
+	private boolean checkLegacyMove(
+			boolean isFirst,
+			int oldX,
+			int oldY,
+			int newX,
+			int newY)
+	{
+		int from = toSquare(isFirst, oldX, oldY);
+		int to = toSquare(isFirst, newX, newY);
+		if (from < 0 || to < 0 || this.position.isEmpty(to) == false
+				|| ((isFirst) ? (this.position.isUserPiece(from))
+						: (this.position.isOpponentPiece(from))) == false)
+			return false;
+
+		// Every player's men move up their own board
+		int forward = oldY - newY;
+		int distance = Math.abs(newX - oldX);
+		if (Math.abs(forward) != distance
+				|| (forward < 0 && this.position.isKing(from) == false))
+			return false;
+
+		if (distance == 1)
+		{
+			if (this.hasJumped)
+				return false;
+		} else if (distance == 2)
+		{
+			int captured = toSquare(isFirst, (oldX + newX) / 2, (oldY + newY) / 2);
+			if (((isFirst) ? (this.position.isOpponentPiece(captured))
+					: (this.position.isUserPiece(captured))) == false)
+				return false;
+
+			this.position.removePiece(captured);
+		} else
+		{
+			return false;
+		}
+		this.position.movePiece(from, to);
+
+		int kingRow = (isFirst) ? (MoveGenerator.USER_KING_ROW)
+				: (MoveGenerator.OPPONENT_KING_ROW);
+		if (((kingRow >>> to) & 1) != 0)
+		{
+			this.position.setKing(to, true);
+		}
+
+		if (distance == 1)
+		{
+			this.isFirstToMove = !isFirst;
+			this.isTurnEndPending = true;
+		} else
+		{
+			this.hasJumped = true;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks a player handing the turn over to their opponent, which they may
+	 * only do once their move is complete. A player following the older
+	 * rules may also stop after any jump.
+	 *
+	 * @param isFirst Whether the packet came from the first player
+	 * @param isReceiversTurn
+	 * @return
+	 */
+	public boolean checkTurnEnd(boolean isFirst, boolean isReceiversTurn)
+	{
+		if (isReceiversTurn == false)
+			return false;
+
+		if (this.hasJumped && isFirst == this.isFirstToMove)
+		{
+			this.hasJumped = false;
+			this.isFirstToMove = !isFirst;
+
+			return true;
+		}
+
+		if (this.isTurnEndPending == false || isFirst == this.isFirstToMove)
+			return false;
+
+		this.isTurnEndPending = false;
+
+		return true;
+	}
+
+	/**
+	 * Checks a player ending the game. A player may always resign, but may
+	 * only claim to have won once their opponent is unable to move. A player
+	 * following the older rules may claim it after any jump, part way through
+	 * their turn.
+	 *
+	 * @param isFirst Whether the packet came from the first player
+	 * @param didReceiverWin
+	 * @return
+	 */
+	public boolean checkEndGame(boolean isFirst, boolean didReceiverWin)
+	{
+		if (didReceiverWin)
+			return true;
+
+		boolean isMoveOver = isFirst != this.isFirstToMove
+				|| (this.isLegacy(isFirst) && this.hasJumped);
+
+		return isMoveOver
+				&& MoveGenerator.hasMoves(this.position, !isFirst) == false;
+	}
+
+	/**
+	 * @param isFirst Whether the packet came from the first player
+	 * @return
+	 */
+	public boolean checkDrawRequest(boolean isFirst)
+	{
+		this.drawOffer = (isFirst) ? (FIRST_OFFERED) : (SECOND_OFFERED);
+
+		return true;
+	}
+
+	/**
+	 * Checks the answer to a draw offer, which must have been made by the
+	 * opponent.
+	 *
+	 * @param isFirst Whether the packet came from the first player
+	 * @param didAccept
+	 * @return
+	 */
+	public boolean checkDrawResponse(boolean isFirst, boolean didAccept)
+	{
+		if (this.drawOffer != ((isFirst) ? (SECOND_OFFERED) : (FIRST_OFFERED)))
+			return false;
+
+		this.drawOffer = NO_OFFER;
+
+		return true;
+	}
+
+	/**
+	 * @param isFirst Whether the packet is for the first player
+	 * @return The true board from the given player's point of view, which
+	 *         the player is sent after one of their packets is refused
+	 */
+	public Packet getBoardSync(boolean isFirst)
+	{
+		boolean isReceiversTurn = (isFirst == this.isFirstToMove)
+				&& this.isTurnEndPending == false;
+		int jumpingSquare = (isReceiversTurn) ? (this.jumpingSquare) : (-1);
+
+		if (isFirst)
+		{
+			return Packet.boardSync(
+					this.position.getUserPieces(),
+					this.position.getOpponentPieces(),
+					this.position.getKings(),
+					isReceiversTurn,
+					jumpingSquare);
+		}
+
+		// Reversing the bits mirrors every square
+		return Packet.boardSync(
+				Integer.reverse(this.position.getOpponentPieces()),
+				Integer.reverse(this.position.getUserPieces()),
+				Integer.reverse(this.position.getKings()),
+				isReceiversTurn,
+				(jumpingSquare < 0) ? (-1)
+						: (Position.SQUARE_COUNT - 1 - jumpingSquare));
+	}
+
+	/**
+	 * @param isFirst Whether the player is the first player
+	 * @return Whether the player follows the older rules, in which case they
+	 *         must not be sent a board
+	 */
+	public boolean isLegacy(boolean isFirst)
+	{
+		return (isFirst) ? (this.isFirstLegacy) : (this.isSecondLegacy);
+	}
+
+	/**
+	 * @param isFirst Whether the location is given by the first player
+	 * @param x
+	 * @param y
+	 * @return The square from the first player's point of view, or -1
+	 */
+	private static int toSquare(boolean isFirst, int x, int y)
+	{
+		int square = Position.toSquare(x, y);
+		if (isFirst || square < 0)
+			return square;
+
+		return Position.SQUARE_COUNT - 1 - square;
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	public Position getPosition()
+	{
+		return position;
+	}
+
+	public boolean isFirstToMove()
+	{
+		return isFirstToMove;
+	}
+
+}
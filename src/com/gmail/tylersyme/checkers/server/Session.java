@@ -0,0 +1,410 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import com.gmail.tylersyme.checkers.connection.Heartbeat;
+
+/**
+ * <p>
+ * A single client connected to the {@link GameServer}. Everything here runs
+ * on the server's selector thread: packets are decoded as their bytes arrive
+ * and packets for the client wait in a queue until the channel can take them.
+ * Packets queued while the server handles one round of events (the hops and
+ * end of a turn, say) are written together by a single gathering write once
+ * the round is over.
+ * </p>
+ * <p>
+ * A spectator's queue is bounded, so that one who reads slowly never holds
+ * up the match. A spectator who falls too far behind loses the packets they
+ * have not yet been sent and is sent the board afresh.
+ * </p>
+ * Each session keeps a {@link Heartbeat}, which the server uses to ping newer
+ * games and to notice those which have stopped answering.
+ */
+public class Session
+{
+	private static final int READ_BUFFER_SIZE = 512;
+
+	// The most packets a spectator may have waiting
+	public static final int SPECTATOR_QUEUE_LIMIT = 64;
+
+	private GameServer server;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private int id;
+	private long connectTime = System.nanoTime();
+	private long ratingWaitStart = this.connectTime;
+
+	private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private boolean hasReadHeader = false;
+	private ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>();
+	private boolean isFlushPending = false;
+	private Heartbeat heartbeat;
+
+	private Matchmaker.Ticket<Session> ticket;
+	private Match match;
+	private boolean isSpectator = false;
+
+	// Only newer games offer a version, and only they can resume a match
+	private boolean hasOfferedVersion = false;
+	private long token = 0;
+	private int receivedCount = 0;
+	private long closeTime;
+	private boolean isClosing = false;
+	private boolean isClosed = false;
+
+	Session(GameServer server, SocketChannel channel, SelectionKey key, int id)
+	{
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		this.id = id;
+		this.heartbeat = new Heartbeat(server.getHeartbeatInterval());
+
+		// Every stream begins with a header, which the client's
+		// ObjectInputStream waits for before anything else
+		ByteBuffer header = ByteBuffer.allocate(LegacyCodec.HEADER_LENGTH);
+		LegacyCodec.writeHeader(header);
+		header.flip();
+		this.writeQueue.add(header);
+	}
+
+	/**
+	 * Reads whatever has arrived and passes each whole packet to the server.
+	 */
+	void read() throws IOException
+	{
+		int count = this.channel.read(this.readBuffer);
+		if (count < 0)
+		{
+			this.close();
+			return;
+		}
+		this.heartbeat.received(System.nanoTime());
+
+		this.readBuffer.flip();
+		if (this.hasReadHeader == false)
+		{
+			this.hasReadHeader = LegacyCodec.readHeader(this.readBuffer);
+		}
+
+		if (this.hasReadHeader)
+		{
+			String packet;
+			while (this.isClosed == false
+					&& (packet = LegacyCodec.decode(this.readBuffer)) != null)
+			{
+				this.server.packetReceived(this, packet);
+			}
+		}
+
+		this.readBuffer.compact();
+
+		// A packet too large for the buffer needs a larger one, up to the
+		// longest packet a client may send
+		if (this.readBuffer.hasRemaining() == false)
+		{
+			if (this.readBuffer.capacity() >= LegacyCodec.MAX_ENCODED_LENGTH)
+				throw new IOException("Packet too long");
+
+			ByteBuffer larger = ByteBuffer.allocate(Math.min(
+					this.readBuffer.capacity() * 2,
+					LegacyCodec.MAX_ENCODED_LENGTH));
+			this.readBuffer.flip();
+			larger.put(this.readBuffer);
+			this.readBuffer = larger;
+		}
+	}
+
+	/**
+	 * Queues a packet for the client, which is written along with anything
+	 * else queued once the server has handled the current round of events.
+	 * 
+	 * @param packet
+	 */
+	public void send(String packet)
+	{
+		if (this.isClosed)
+			return;
+
+		ByteBuffer buffer = ByteBuffer.allocate(LegacyCodec.getEncodedLength(packet));
+		LegacyCodec.encode(packet, buffer);
+		buffer.flip();
+		this.writeQueue.add(buffer);
+
+		this.flushLater();
+	}
+
+	/**
+	 * Queues a packet which is shared with other spectators. The packet's
+	 * bytes are never copied; the spectator is given a view of them with a
+	 * position of its own.
+	 * 
+	 * @param packet An encoded packet, which must not change
+	 * @return Whether there was room in the spectator's queue
+	 */
+	boolean sendShared(ByteBuffer packet)
+	{
+		if (this.isClosed)
+			return true;
+		if (this.writeQueue.size() >= SPECTATOR_QUEUE_LIMIT)
+			return false;
+
+		this.writeQueue.add(packet.duplicate());
+
+		this.flushLater();
+
+		return true;
+	}
+
+	/**
+	 * Drops every packet waiting to be sent and sends the given board in
+	 * their place. A packet already partly written is finished first, so the
+	 * stream stays whole.
+	 * 
+	 * @param boardSync
+	 */
+	void resync(String boardSync)
+	{
+		ByteBuffer partlyWritten = this.writeQueue.peek();
+		this.writeQueue.clear();
+		if (partlyWritten != null && partlyWritten.position() > 0)
+		{
+			this.writeQueue.add(partlyWritten);
+		}
+
+		this.send(boardSync);
+	}
+
+	private void flushLater()
+	{
+		if (this.isFlushPending == false)
+		{
+			this.isFlushPending = true;
+			this.server.flushLater(this);
+		}
+	}
+
+	/**
+	 * Writes queued packets until the queue is empty or the channel is full,
+	 * in which case the selector says when to carry on.
+	 */
+	void flush() throws IOException
+	{
+		this.isFlushPending = false;
+		ByteBuffer[] buffers = this.server.getGatherBuffers();
+
+		while (this.writeQueue.isEmpty() == false)
+		{
+			int count = 0;
+			for (ByteBuffer buffer : this.writeQueue)
+			{
+				buffers[count++] = buffer;
+				if (count == buffers.length)
+					break;
+			}
+
+			this.channel.write(buffers, 0, count);
+			Arrays.fill(buffers, 0, count, null);
+
+			int written = 0;
+			while (this.writeQueue.isEmpty() == false
+					&& this.writeQueue.peek().hasRemaining() == false)
+			{
+				this.writeQueue.poll();
+				written++;
+			}
+
+			if (written < count)
+			{
+				this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+
+		this.key.interestOps(SelectionKey.OP_READ);
+
+		if (this.isClosing)
+		{
+			this.close();
+		}
+	}
+
+	/**
+	 * Disconnects the client once every packet waiting has been sent.
+	 */
+	void closeWhenFlushed()
+	{
+		this.isClosing = true;
+
+		if (this.writeQueue.isEmpty())
+		{
+			this.close();
+		}
+	}
+
+	/**
+	 * Disconnects the client. The server is told, so that an opponent can be
+	 * told too.
+	 */
+	public void close()
+	{
+		if (this.isClosed)
+			return;
+		this.isClosed = true;
+		this.closeTime = System.nanoTime();
+
+		this.key.cancel();
+		try
+		{
+			this.channel.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		this.writeQueue.clear();
+
+		this.server.sessionClosed(this);
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters and Setters
+	// -------------------------------------------------------------------------
+
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * @return When the client connected, as given by
+	 *         {@link System#nanoTime()}
+	 */
+	public long getConnectTime()
+	{
+		return connectTime;
+	}
+
+	/**
+	 * @return When the client's time to give a rating began, as given by
+	 *         {@link System#nanoTime()}
+	 */
+	public long getRatingWaitStart()
+	{
+		return ratingWaitStart;
+	}
+
+	/**
+	 * Gives the client a fresh {@link Matchmaker#RATING_WAIT}, once they
+	 * have shown they are able to give a rating.
+	 */
+	void restartRatingWait()
+	{
+		this.ratingWaitStart = System.nanoTime();
+	}
+
+	/**
+	 * @return The client's place in the matchmaking queue, which stays
+	 *         behind once they are matched, or null until they have joined
+	 *         it
+	 */
+	public Matchmaker.Ticket<Session> getTicket()
+	{
+		return ticket;
+	}
+
+	void setTicket(Matchmaker.Ticket<Session> ticket)
+	{
+		this.ticket = ticket;
+	}
+
+	/**
+	 * @return The match the client plays or watches, or null until there is
+	 *         one
+	 */
+	public Match getMatch()
+	{
+		return match;
+	}
+
+	void setMatch(Match match)
+	{
+		this.match = match;
+	}
+
+	/**
+	 * @return The round trips measured to the client, who is only pinged if
+	 *         they offered a version
+	 */
+	public Heartbeat getHeartbeat()
+	{
+		return heartbeat;
+	}
+
+	public boolean isSpectator()
+	{
+		return isSpectator;
+	}
+
+	void setSpectator(boolean isSpectator)
+	{
+		this.isSpectator = isSpectator;
+	}
+
+	public boolean hasOfferedVersion()
+	{
+		return hasOfferedVersion;
+	}
+
+	void setOfferedVersion(boolean hasOfferedVersion)
+	{
+		this.hasOfferedVersion = hasOfferedVersion;
+	}
+
+	/**
+	 * @return The token with which the player may resume their match, or 0
+	 */
+	public long getToken()
+	{
+		return token;
+	}
+
+	void setToken(long token)
+	{
+		this.token = token;
+	}
+
+	/**
+	 * @return The number of game packets received from the client, which a
+	 *         resumed session carries on from
+	 */
+	public int getReceivedCount()
+	{
+		return receivedCount;
+	}
+
+	void setReceivedCount(int receivedCount)
+	{
+		this.receivedCount = receivedCount;
+	}
+
+	public boolean isClosed()
+	{
+		return isClosed;
+	}
+
+	/**
+	 * @return When the client disconnected, as given by
+	 *         {@link System#nanoTime()}
+	 */
+	public long getCloseTime()
+	{
+		return closeTime;
+	}
+
+}
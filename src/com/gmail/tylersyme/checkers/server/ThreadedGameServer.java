@@ -0,0 +1,485 @@
+package com.gmail.tylersyme.checkers.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gmail.tylersyme.checkers.connection.ConnectionHandler;
+import com.gmail.tylersyme.checkers.connection.ConnectionThreads;
+import com.gmail.tylersyme.checkers.connection.Packet;
+import com.gmail.tylersyme.checkers.connection.PacketConnection;
+
+/**
+ * <p>
+ * A dedicated server built from the same blocking {@link PacketConnection}s
+ * the game itself uses, with a thread for every player. Players are paired
+ * by the same {@link Matchmaker} and their packets checked and passed on just
+ * as by the {@link GameServer}, but each
+ * player's connection negotiates its own protocol, so newer games are served
+ * binary packets even when their opponent is an older game.
+ * </p>
+ * How many players the server can hold depends on its executor. On virtual
+ * threads (see {@link ConnectionThreads}) a waiting player costs little more
+ * than their buffers; on ordinary threads every player costs a whole stack.
+ */
+public class ThreadedGameServer implements Runnable
+{
+	// How long a finished match is kept open so its last packets arrive
+	private static final long CLOSE_DELAY = 2000;
+
+	private static class Player
+	{
+		private PacketConnection connection;
+		private long connectTime = System.nanoTime();
+		private Matchmaker.Ticket<Player> ticket; // Null until queued
+		private boolean hasLeft = false;
+		private Player opponent;
+		private Referee referee; // Shared with the opponent
+		private boolean isFirst;
+		private boolean isMatchOver = false;
+
+		private Player(PacketConnection connection)
+		{
+			this.connection = connection;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private int port;
+	private ExecutorService executor;
+	private ServerSocket serverSocket;
+	private volatile boolean isRunning = false;
+
+	private Matchmaker<Player> matchmaker;
+
+	private AtomicInteger playerCount = new AtomicInteger();
+	private AtomicInteger matchCount = new AtomicInteger();
+
+	public ThreadedGameServer(ExecutorService executor)
+	{
+		this(ConnectionHandler.PORT, executor);
+	}
+
+	/**
+	 * @param port The port to listen on, or 0 for any free port
+	 * @param executor Runs each player's connection on a thread of its own
+	 */
+	public ThreadedGameServer(int port, ExecutorService executor)
+	{
+		this.port = port;
+		this.executor = executor;
+		this.matchmaker = new Matchmaker<Player>(new Matchmaker.Listener<Player>() {
+
+			@Override
+			public void matched(
+					Matchmaker.Ticket<Player> first,
+					Matchmaker.Ticket<Player> second)
+			{
+				startMatch(first.getPlayer(), second.getPlayer());
+			}
+		});
+	}
+
+	/**
+	 * Opens the server's port. Players may connect as soon as this returns.
+	 * 
+	 * @throws IOException If the port could not be opened
+	 */
+	public void open() throws IOException
+	{
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.setReuseAddress(true);
+		this.serverSocket.bind(new InetSocketAddress(this.port), 1024);
+		this.port = this.serverSocket.getLocalPort();
+
+		this.isRunning = true;
+		this.schedulePairing();
+	}
+
+	/**
+	 * Pairs waiting players every {@link Matchmaker#PAIRING_INTERVAL}
+	 * milliseconds until the server stops.
+	 */
+	private void schedulePairing()
+	{
+		ConnectionThreads.schedule(this.executor, new Runnable() {
+
+			@Override
+			public void run()
+			{
+				if (isRunning)
+				{
+					matchmaker.pair();
+					schedulePairing();
+				}
+			}
+		}, Matchmaker.PAIRING_INTERVAL);
+	}
+
+	/**
+	 * Accepts players until {@link #stop()} is called. The server must have
+	 * been {@link #open()}ed first.
+	 */
+	@Override
+	public void run()
+	{
+		while (this.isRunning)
+		{
+			final Socket socket;
+			try
+			{
+				socket = this.serverSocket.accept();
+				socket.setTcpNoDelay(true);
+			} catch (IOException e)
+			{
+				if (this.isRunning)
+				{
+					e.printStackTrace();
+				}
+				continue;
+			}
+
+			try
+			{
+				this.executor.execute(new Runnable() {
+
+					@Override
+					public void run()
+					{
+						serve(socket);
+					}
+				});
+			} catch (OutOfMemoryError e)
+			{
+				// No more threads can be started, so the player is turned
+				// away rather than the server stopping
+				close(socket);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting players. Players already connected finish their
+	 * matches.
+	 */
+	public void stop()
+	{
+		this.isRunning = false;
+		close(this.serverSocket);
+	}
+
+	/**
+	 * Serves a single player until they disconnect.
+	 */
+	private void serve(Socket socket)
+	{
+		PacketConnection connection;
+		try
+		{
+			connection = new PacketConnection(socket);
+			connection.negotiate();
+		} catch (IOException e)
+		{
+			close(socket);
+			return;
+		}
+
+		final Player player = new Player(connection);
+		this.playerCount.incrementAndGet();
+
+		// A player who gives no rating in time is queued with the default
+		ConnectionThreads.schedule(this.executor, new Runnable() {
+
+			@Override
+			public void run()
+			{
+				queue(player, Matchmaker.DEFAULT_RATING);
+			}
+		}, Matchmaker.RATING_WAIT);
+
+		try
+		{
+			while (true)
+			{
+				this.packetReceived(player, connection.receive());
+			}
+		} catch (IOException e)
+		{
+			// The player has disconnected
+		}
+
+		this.playerCount.decrementAndGet();
+		this.playerLeft(player);
+		connection.close();
+	}
+
+	/**
+	 * Queues a player who has not been queued yet, or moves a player already
+	 * waiting to the bucket of their new rating.
+	 */
+	private synchronized void queue(Player player, int rating)
+	{
+		if (player.hasLeft || player.opponent != null)
+			return;
+
+		if (player.ticket == null)
+		{
+			player.ticket = this.matchmaker.enqueue(
+					player,
+					rating,
+					player.connectTime);
+		} else if (rating != player.ticket.getRating()
+				&& this.matchmaker.cancel(player.ticket))
+		{
+			player.ticket = this.matchmaker.requeue(player.ticket, rating);
+		}
+	}
+
+	/**
+	 * Starts a match between two players the matchmaker has paired, unless
+	 * one of them left in the meantime, in which case the other goes back in
+	 * the queue.
+	 */
+	private void startMatch(Player player, Player opponent)
+	{
+		synchronized (this)
+		{
+			if (player.hasLeft || opponent.hasLeft)
+			{
+				Player remaining = (player.hasLeft) ? (opponent) : (player);
+				if (remaining.hasLeft == false)
+				{
+					remaining.ticket = this.matchmaker.requeue(
+							remaining.ticket,
+							remaining.ticket.getRating());
+				}
+				return;
+			}
+
+			player.opponent = opponent;
+			opponent.opponent = player;
+
+			boolean isPlayerFirst = ThreadLocalRandom.current().nextBoolean();
+			Player first = (isPlayerFirst) ? (player) : (opponent);
+			Player second = (isPlayerFirst) ? (opponent) : (player);
+
+			// Games which never answered the offer of a version follow the
+			// older rules
+			player.referee = new Referee(
+					first.connection.getVersion() == PacketConnection.LEGACY_VERSION,
+					second.connection.getVersion() == PacketConnection.LEGACY_VERSION);
+			opponent.referee = player.referee;
+			player.isFirst = isPlayerFirst;
+			opponent.isFirst = isPlayerFirst == false;
+		}
+		this.matchCount.incrementAndGet();
+
+		// The same packets a host would send
+		boolean isPlayerFirst = player.isFirst;
+		send(player, Packet.playerTurn(isPlayerFirst));
+		send(player, Packet.startGame());
+		send(opponent, Packet.playerTurn(isPlayerFirst == false));
+		send(opponent, Packet.startGame());
+	}
+
+	/**
+	 * Passes a player's packet on to their opponent, once the match's referee
+	 * has checked it. A player whose packet is refused is sent the true board
+	 * instead, or loses the match if their game is too old to use one.
+	 */
+	private void packetReceived(Player player, Packet packet)
+	{
+		// Pings are answered, but never passed on
+		if (packet.getType() == Packet.PING)
+		{
+			send(player, Packet.pong(packet.getTime()));
+			return;
+		}
+		if (packet.getType() == Packet.PONG)
+			return;
+
+		Player opponent;
+		Packet boardSync = null;
+		boolean isOpponentsTurn = false;
+		boolean isForfeit = false;
+		synchronized (this)
+		{
+			opponent = player.opponent;
+			// A rating which arrives once the player is matched is too late to
+			// matter
+			if (packet.getType() == Packet.MATCH_REQUEST)
+			{
+				this.queue(player, packet.getRating());
+				return;
+			}
+			// Only the GameServer has spectators, as only it can share one
+			// encoded packet between them
+			if (opponent == null || player.isMatchOver
+					|| packet.getType() == Packet.VERSION_OFFER
+					|| packet.getType() == Packet.WATCH_REQUEST)
+				return;
+
+			if (player.referee.check(player.isFirst, packet) == false)
+			{
+				if (player.referee.isLegacy(player.isFirst))
+				{
+					// An older game has no use for a board, and cannot be
+					// put back in step, so it loses the match instead
+					isForfeit = true;
+					this.endMatch(player);
+				} else
+				{
+					boardSync = player.referee.getBoardSync(player.isFirst);
+
+					// A player whose move was already complete is no longer
+					// able to hand over the turn, so the server does it for
+					// them
+					isOpponentsTurn = player.referee.checkTurnEnd(player.isFirst, true);
+				}
+			} else if (packet.getType() == Packet.END_GAME
+					|| (packet.getType() == Packet.DRAW_RESPONSE && packet
+							.getFlag()))
+			{
+				// The game ends when either player says so or a draw is
+				// accepted
+				this.endMatch(player);
+			}
+		}
+
+		if (isForfeit)
+		{
+			send(player, Packet.endGame(false));
+			send(opponent, Packet.endGame(true));
+			return;
+		}
+		if (boardSync != null)
+		{
+			send(player, boardSync);
+			if (isOpponentsTurn)
+			{
+				send(opponent, Packet.playerTurn(true));
+			}
+			return;
+		}
+
+		send(opponent, packet);
+	}
+
+	/**
+	 * Called once a player disconnects. An opponent still playing wins the
+	 * game.
+	 */
+	private void playerLeft(Player player)
+	{
+		Player opponent;
+		synchronized (this)
+		{
+			player.hasLeft = true;
+
+			// A player matched but not yet started is put back by startMatch
+			opponent = player.opponent;
+			if (opponent == null)
+			{
+				if (player.ticket != null)
+				{
+					this.matchmaker.cancel(player.ticket);
+				}
+				return;
+			}
+
+			if (player.isMatchOver)
+				return;
+
+			this.endMatch(player);
+		}
+
+		send(opponent, Packet.endGame(true));
+	}
+
+	/**
+	 * Marks the match over and disconnects both players once their last
+	 * packets have had time to arrive.
+	 */
+	private void endMatch(final Player player)
+	{
+		player.isMatchOver = true;
+		player.opponent.isMatchOver = true;
+		this.matchCount.decrementAndGet();
+
+		ConnectionThreads.schedule(this.executor, new Runnable() {
+
+			@Override
+			public void run()
+			{
+				player.connection.close();
+				player.opponent.connection.close();
+			}
+		}, CLOSE_DELAY);
+	}
+
+	private static void send(Player player, Packet packet)
+	{
+		try
+		{
+			player.connection.send(packet);
+		} catch (IOException e)
+		{
+			// The player's own thread notices the broken connection
+			player.connection.close();
+		}
+	}
+
+	private static void close(Closeable closeable)
+	{
+		try
+		{
+			closeable.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Getters
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @return The port the server listens on, once it has been opened
+	 */
+	public int getPort()
+	{
+		return port;
+	}
+
+	/**
+	 * @return The number of players connected
+	 */
+	public int getPlayerCount()
+	{
+		return this.playerCount.get();
+	}
+
+	/**
+	 * @return The queue of players waiting for a match
+	 */
+	public Matchmaker<?> getMatchmaker()
+	{
+		return matchmaker;
+	}
+
+	/**
+	 * @return The number of matches being played
+	 */
+	public int getMatchCount()
+	{
+		return this.matchCount.get();
+	}
+
+}